@@ -60,7 +60,9 @@ import org.n52.shetland.ogc.om.values.GeometryValue;
 import org.n52.shetland.ogc.om.values.QuantityValue;
 import org.n52.shetland.ogc.om.values.Value;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.sos.netcdf.data.DimensionValues;
 import org.n52.sos.netcdf.data.dataset.IdentifierDatasetSensor;
+import org.n52.sos.netcdf.data.dataset.SensorDataValues;
 import org.n52.sos.netcdf.data.dataset.TimeSeriesProfileSensorDataset;
 import org.n52.sos.netcdf.data.dataset.TimeSeriesSensorDataset;
 import org.n52.sos.netcdf.data.dataset.TrajectoryProfileSensorDataset;
@@ -105,9 +107,9 @@ public interface NetCDFUtil {
      */
     default List<NetCDFObservation> createNetCDFSosObservations(ObservationStream omObservations)
             throws EncodingException, OwsExceptionReport {
-        // the main map of observation value strings by asset, time, phenomenon,
-        // and subsensor (height, profile bin, etc)
-        Map<String, Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>>> obsValuesMap = new HashMap<>();
+        // the columnar observation values by asset, each value references its
+        // time, phenomenon, and subsensor (height, profile bin, etc)
+        Map<String, SensorDataValues> obsValuesMap = new HashMap<>();
 
         SetMultimap<String, OmObservableProperty> sensorPhens = HashMultimap.create();
         Map<String, AbstractFeature> sensorProcedure = Maps.newHashMap();
@@ -116,9 +118,9 @@ public interface NetCDFUtil {
 
         // maps to keep track of unique dimension values by sensor (these may or
         // may not vary, determining the feature type)
-        SetMultimap<String, Double> sensorLngs = HashMultimap.create();
-        SetMultimap<String, Double> sensorLats = HashMultimap.create();
-        SetMultimap<String, Double> sensorHeights = HashMultimap.create();
+        Map<String, DimensionValues> sensorLngs = new HashMap<>();
+        Map<String, DimensionValues> sensorLats = new HashMap<>();
+        Map<String, DimensionValues> sensorHeights = new HashMap<>();
 
         while (omObservations.hasNext()) {
             OmObservation sosObs = omObservations.next();
@@ -173,20 +175,18 @@ public interface NetCDFUtil {
         Envelope trajectoryEnvelope = new Envelope();
         Envelope trajectoryProfileEnvelope = new Envelope();
 
-        for (Map.Entry<String, Map<Time, Map<OmObservableProperty,
-                Map<SubSensor, Value<?>>>>> obsValuesEntry : obsValuesMap
-                .entrySet()) {
+        for (Map.Entry<String, SensorDataValues> obsValuesEntry : obsValuesMap.entrySet()) {
             IdentifierDatasetSensor datasetSensor = new IdentifierDatasetSensor(obsValuesEntry.getKey());
             String sensor = datasetSensor.getSensorIdentifier();
-            Set<Time> sensorTimes = obsValuesEntry.getValue().keySet();
+            List<Time> sensorTimes = obsValuesEntry.getValue().getTimes();
 
-            int lngCount = sensorLngs.get(sensor).size();
-            int latCount = sensorLats.get(sensor).size();
-            int heightCount = sensorHeights.get(sensor).size();
+            DimensionValues lngs = getDimensionValues(sensorLngs, sensor);
+            DimensionValues lats = getDimensionValues(sensorLats, sensor);
+            DimensionValues heights = getDimensionValues(sensorHeights, sensor);
             // int timeCount = sensorTimes.size();
 
-            boolean locationVaries = lngCount > 0 && latCount > 0 && (lngCount > 1 || latCount > 1);
-            boolean heightVaries = heightCount > 1;
+            boolean locationVaries = !lngs.isEmpty() && !lats.isEmpty() && (lngs.isVarying() || lats.isVarying());
+            boolean heightVaries = heights.isVarying();
             // boolean timeVaries = timeCount > 1;
 
             // set static dimension values where applicable
@@ -195,17 +195,11 @@ public interface NetCDFUtil {
             Double staticHeight = null;
             // Time staticTime = null;
             if (!locationVaries) {
-                if (!sensorLngs.get(sensor).isEmpty()) {
-                    staticLng = sensorLngs.get(sensor).iterator().next();
-                }
-                if (!sensorLats.get(sensor).isEmpty()) {
-                    staticLat = sensorLats.get(sensor).iterator().next();
-                }
+                staticLng = lngs.getFirst();
+                staticLat = lats.getFirst();
             }
             if (!heightVaries) {
-                if (!sensorHeights.get(sensor).isEmpty()) {
-                    staticHeight = sensorHeights.get(sensor).iterator().next();
-                }
+                staticHeight = heights.getFirst();
             }
             // if( !timeVaries ){
             // if( !sensorTimes.isEmpty() ){
@@ -254,14 +248,14 @@ public interface NetCDFUtil {
                 trajectorySensorDatasets.put(sensor, new TrajectorySensorDataset(datasetSensor, staticHeight,
                         obsValuesEntry.getValue(), sensorProcedure.get(sensor)));
                 trajectoryPhenomena.addAll(sensorPhens.get(sensor));
-                expandEnvelopeToInclude(trajectoryEnvelope, sensorLngs.get(sensor), sensorLats.get(sensor));
+                expandEnvelopeToInclude(trajectoryEnvelope, lngs, lats);
             } else if (locationVaries && heightVaries) {
                 // trajectory profile
                 trajectoryProfileSamplingTimePeriod.extendToContain(sensorTimes);
                 trajectoryProfileSensorDatasets.put(sensor, new TrajectoryProfileSensorDataset(datasetSensor,
                         obsValuesEntry.getValue(), sensorProcedure.get(sensor)));
                 trajectoryProfilePhenomena.addAll(sensorPhens.get(sensor));
-                expandEnvelopeToInclude(trajectoryProfileEnvelope, sensorLngs.get(sensor), sensorLats.get(sensor));
+                expandEnvelopeToInclude(trajectoryProfileEnvelope, lngs, lats);
             }
         }
 
@@ -299,10 +293,9 @@ public interface NetCDFUtil {
     }
 
     default void processObservation(OmObservation sosObs, SetMultimap<String, OmObservableProperty> sensorPhens,
-            Map<String, AbstractFeature> sensorProcedure, SetMultimap<String, Double> sensorLngs,
-            SetMultimap<String, Double> sensorLats, SetMultimap<String, Double> sensorHeights,
-            Map<String, Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>>> obsValuesMap)
-            throws EncodingException {
+            Map<String, AbstractFeature> sensorProcedure, Map<String, DimensionValues> sensorLngs,
+            Map<String, DimensionValues> sensorLats, Map<String, DimensionValues> sensorHeights,
+            Map<String, SensorDataValues> obsValuesMap) throws EncodingException {
 
         OmObservationConstellation obsConst = sosObs.getObservationConstellation();
 
@@ -335,6 +328,10 @@ public interface NetCDFUtil {
         List<OmObservableProperty> phenomena = new ArrayList<>(phenomenaMap.values());
         sensorPhens.putAll(sensor, phenomena);
 
+        DimensionValues lngs = getDimensionValues(sensorLngs, sensor);
+        DimensionValues lats = getDimensionValues(sensorLats, sensor);
+        DimensionValues heights = getDimensionValues(sensorHeights, sensor);
+
         // get foi
         AbstractFeature aFoi = obsConst.getFeatureOfInterest();
         if (!(aFoi instanceof AbstractSamplingFeature)) {
@@ -346,14 +343,13 @@ public interface NetCDFUtil {
             try {
                 // TODO is this correct?
                 Point p = (Point) getGeometryHandler().switchCoordinateAxisFromToDatasourceIfNeeded(point);
-                sensorLngs.put(sensor, p.getX());
-                sensorLats.put(sensor, p.getY());
+                lngs.add(p.getX());
+                lats.add(p.getY());
             } catch (OwsExceptionReport e) {
                 throw new EncodingException("Exception while normalizing feature coordinate axis order.", e);
             }
         }
-        Set<Double> featureHeights = FeatureUtil.getFeatureHeights(foi);
-        sensorHeights.putAll(sensor, featureHeights);
+        heights.addAll(FeatureUtil.getFeatureHeights(foi));
 
         String phenId = obsConst.getObservableProperty().getIdentifier();
         ObservationValue<?> iObsValue = sosObs.getValue();
@@ -370,22 +366,25 @@ public interface NetCDFUtil {
             throw new EncodingException("Only QuantityValues are supported.");
         }
         QuantityValue quantityValue = (QuantityValue) obsValue;
+        if (!quantityValue.isSetValue()) {
+            throw new EncodingException("Only QuantityValues with value are supported.");
+        }
+        double value = quantityValue.getValue().doubleValue();
 
         // axes shouldn't be composite phenomena
         if (phenomena.size() == 1) {
             OmObservableProperty phenomenon = phenomena.get(0);
             // add dimensional values to procedure dimension tracking maps
             if (isLng(phenomenon.getIdentifier())) {
-                sensorLngs.get(sensor).add(quantityValue.getValue().doubleValue());
+                lngs.add(value);
             }
 
             if (isLat(phenomenon.getIdentifier())) {
-                sensorLats.get(sensor).add(quantityValue.getValue().doubleValue());
+                lats.add(value);
             }
 
             if (isZ(phenomenon.getIdentifier())) {
-                Double zValue = quantityValue.getValue().doubleValue();
-                sensorHeights.get(sensor).add(zValue);
+                heights.add(value);
             }
         }
 
@@ -393,9 +392,9 @@ public interface NetCDFUtil {
         if (sosObs.isSetParameter()) {
             if (sosObs.isSetHeightDepthParameter()) {
                 if (sosObs.isSetHeightParameter()) {
-                    sensorHeights.get(sensor).add(sosObs.getHeightParameter().getValue().getValue().doubleValue());
+                    heights.add(sosObs.getHeightParameter().getValue().getValue().doubleValue());
                 } else if (sosObs.isSetDepthParameter()) {
-                    sensorHeights.get(sensor).add(sosObs.getDepthParameter().getValue().getValue().doubleValue());
+                    heights.add(sosObs.getDepthParameter().getValue().getValue().doubleValue());
                 }
             }
             if (hasSamplingGeometry(sosObs)) {
@@ -404,49 +403,47 @@ public interface NetCDFUtil {
                 for (Point point : points) {
                     try {
                         Point p = (Point) getGeometryHandler().switchCoordinateAxisFromToDatasourceIfNeeded(point);
-                        sensorLngs.put(sensor, p.getX());
-                        sensorLats.put(sensor, p.getY());
+                        lngs.add(p.getX());
+                        lats.add(p.getY());
                     } catch (OwsExceptionReport e) {
                         throw new EncodingException(
                                 "Exception while normalizing sampling geometry coordinate axis order.");
                     }
                 }
-                sensorHeights.putAll(sensor, FeatureUtil.getHeights(points));
+                heights.addAll(FeatureUtil.getHeights(points));
             }
         }
 
-        // get the sensor's data map
-        Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>> sensorObsMap = obsValuesMap.get(sensor);
-        if (sensorObsMap == null) {
-            sensorObsMap = new HashMap<>();
-            obsValuesMap.put(sensor, sensorObsMap);
-        }
-
-        // get the map of the asset's phenomena by time
-        Map<OmObservableProperty, Map<SubSensor, Value<?>>> obsPropMap = sensorObsMap.get(obsTime);
-        if (obsPropMap == null) {
-            obsPropMap = new HashMap<>();
-            sensorObsMap.put(obsTime, obsPropMap);
+        // get the sensor's data values
+        SensorDataValues sensorValues = obsValuesMap.get(sensor);
+        if (sensorValues == null) {
+            sensorValues = new SensorDataValues();
+            obsValuesMap.put(sensor, sensorValues);
         }
 
+        // add obs value to the sensor's values (null subsensors are ok)
         OmObservableProperty phen = phenomenaMap.get(phenId);
-        Map<SubSensor, Value<?>> subSensorMap = obsPropMap.get(phen);
-        if (subSensorMap == null) {
-            subSensorMap = new HashMap<>();
-            obsPropMap.put(phen, subSensorMap);
-        }
-
-        // add obs value to subsensor map (null subsensors are ok)
         if (sosObs.isSetParameter() && hasSamplingGeometry(sosObs)) {
-            subSensorMap.put(createSubSensor(sensor, getSamplingGeometryGeometry(sosObs)), obsValue);
+            sensorValues.add(obsTime, phen, createSubSensor(sensor, getSamplingGeometryGeometry(sosObs)), value);
         } else {
-            subSensorMap.put(createSubSensor(sensor, foi), obsValue);
+            sensorValues.add(obsTime, phen, createSubSensor(sensor, foi), value);
         }
     }
 
-    default void expandEnvelopeToInclude(Envelope env, Set<Double> lngs, Set<Double> lats) {
-        lngs.stream().forEach(lng -> env.expandToInclude(lng, env.getMinY()));
-        lats.stream().forEach(lat -> env.expandToInclude(env.getMinX(), lat));
+    default DimensionValues getDimensionValues(Map<String, DimensionValues> dimensionValues, String sensor) {
+        return dimensionValues.computeIfAbsent(sensor, s -> new DimensionValues());
+    }
+
+    default void expandEnvelopeToInclude(Envelope env, DimensionValues lngs, DimensionValues lats) {
+        // the extent is sufficient, inner values do not expand the envelope
+        if (!lngs.isEmpty()) {
+            env.expandToInclude(lngs.getMin(), env.getMinY());
+            env.expandToInclude(lngs.getMax(), env.getMinY());
+        }
+        if (!lats.isEmpty()) {
+            env.expandToInclude(env.getMinX(), lats.getMin());
+            env.expandToInclude(env.getMinX(), lats.getMax());
+        }
     }
 
     default Envelope createEnvelope(Collection<OmObservation> observationCollection) {
@@ -28,6 +28,8 @@
  */
 package org.n52.sos.netcdf;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Set;
 
@@ -77,6 +79,8 @@ public class NetcdfHelper {
 
     private Set<String> z = Collections.emptySet();
 
+    private Path tempDirectory;
+
     /**
      * @param version
      *
@@ -282,4 +286,24 @@ public class NetcdfHelper {
         }
     }
 
+    /**
+     * @return the directory for temporary netCDF files or <code>null</code>
+     *         if the default temporary directory should be used
+     */
+    public Path getTempDirectory() {
+        return tempDirectory;
+    }
+
+    /**
+     * @param tempDirectory the directory for temporary netCDF files to set
+     */
+    @Setting(NetcdfSettingsProvider.NETCDF_TEMP_DIRECTORY)
+    public void setTempDirectory(String tempDirectory) {
+        if (!Strings.isNullOrEmpty(tempDirectory)) {
+            this.tempDirectory = Paths.get(tempDirectory.trim());
+        } else {
+            this.tempDirectory = null;
+        }
+    }
+
 }
@@ -59,4 +59,6 @@ public interface NetcdfSettingsProvider {
 
     String NETCDF_PHEN_Z = "netcdf.phenomenon.z";
 
+    String NETCDF_TEMP_DIRECTORY = "netcdf.tempDirectory";
+
 }
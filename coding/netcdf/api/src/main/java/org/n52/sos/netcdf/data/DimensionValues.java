@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.netcdf.data;
+
+import java.util.Collection;
+
+/**
+ * Tracks the values of a sensor dimension like latitude, longitude or height
+ * without keeping every value. Only the first value, the extent and whether
+ * the values vary are retained.
+ *
+ * @since 5.1.1
+ */
+public class DimensionValues {
+
+    private boolean empty = true;
+
+    private boolean varying;
+
+    private double first;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Add a dimension value.
+     *
+     * @param value
+     *            the value to add
+     */
+    public void add(double value) {
+        if (empty) {
+            first = value;
+            empty = false;
+        } else if (!varying && Double.compare(first, value) != 0) {
+            varying = true;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add dimension values.
+     *
+     * @param values
+     *            the values to add
+     */
+    public void addAll(Collection<Double> values) {
+        for (Double value : values) {
+            add(value);
+        }
+    }
+
+    /**
+     * @return <code>true</code>, if no value was added
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return <code>true</code>, if different values were added
+     */
+    public boolean isVarying() {
+        return varying;
+    }
+
+    /**
+     * @return the first added value or <code>null</code> if no value was added
+     */
+    public Double getFirst() {
+        return empty ? null : first;
+    }
+
+    /**
+     * @return the minimum value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the maximum value
+     */
+    public double getMax() {
+        return max;
+    }
+
+}
@@ -28,23 +28,16 @@
  */
 package org.n52.sos.netcdf.data.dataset;
 
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.gml.time.Time;
 import org.n52.shetland.ogc.om.OmObservableProperty;
-import org.n52.shetland.ogc.om.values.Value;
 import org.n52.shetland.util.CollectionHelper;
 import org.n52.sos.netcdf.data.subsensor.SubSensor;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
-
 import ucar.nc2.constants.CF;
 
 /**
@@ -63,55 +56,17 @@ public abstract class AbstractSensorDataset implements Comparable<AbstractSensor
 
     private AbstractFeature procedure;
 
-    private List<OmObservableProperty> obsProps;
-
-    private List<Time> times;
-
-    private List<SubSensor> subSensors;
-
-    private Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>> dataValues;
+    private SensorDataValues dataValues;
 
-    public AbstractSensorDataset(CF.FeatureType featureType, DatasetSensor sensor,
-            Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>> dataValues, AbstractFeature procedure) {
+    public AbstractSensorDataset(CF.FeatureType featureType, DatasetSensor sensor, SensorDataValues dataValues,
+            AbstractFeature procedure) {
         this.featureType = featureType;
         this.sensor = sensor;
         this.procedure = procedure;
-        // make the sensorDataValues unmodifiable, since some data summaries
-        // will be made below and we don't want the data changing
-        this.dataValues = Collections.unmodifiableMap(dataValues);
-
-        // set times, phenomena, and subsensors
-        Set<Time> timeSet = Sets.newHashSet();
-        Set<OmObservableProperty> obsPropSet = Sets.newHashSet();
-        Set<SubSensor> subSensorSet = Sets.newHashSet();
-        for (Entry<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>> dataValuesEntry : dataValues
-                .entrySet()) {
-            Time time = dataValuesEntry.getKey();
-            timeSet.add(time);
-            for (Map.Entry<OmObservableProperty, Map<SubSensor, Value<?>>> phenObsEntry : dataValuesEntry.getValue()
-                    .entrySet()) {
-                OmObservableProperty phen = phenObsEntry.getKey();
-                Set<SubSensor> phenSubSensors = phenObsEntry.getValue().keySet();
-                obsPropSet.add(phen);
-                for (SubSensor subSensor : phenSubSensors) {
-                    if (subSensor != null) {
-                        subSensorSet.add(subSensor);
-                    }
-                }
-            }
-        }
-
-        List<Time> timeList = Lists.newArrayList(timeSet);
-        Collections.sort(timeList);
-        times = Collections.unmodifiableList(timeList);
-
-        List<OmObservableProperty> obsPropList = Lists.newArrayList(obsPropSet);
-        Collections.sort(obsPropList);
-        obsProps = Collections.unmodifiableList(obsPropList);
-
-        List<SubSensor> subSensorList = Lists.newArrayList(subSensorSet);
-        Collections.sort(subSensorList);
-        subSensors = Collections.unmodifiableList(subSensorList);
+        // complete the values, since some data summaries are made from them
+        // and we don't want the data changing
+        dataValues.complete();
+        this.dataValues = dataValues;
     }
 
     public DatasetSensor getSensor() {
@@ -127,11 +82,11 @@ public abstract class AbstractSensorDataset implements Comparable<AbstractSensor
     }
 
     public List<OmObservableProperty> getPhenomena() {
-        return obsProps;
+        return dataValues.getPhenomena();
     }
 
     public List<SubSensor> getSubSensors() {
-        return subSensors;
+        return dataValues.getSubSensors();
     }
 
     public AbstractFeature getProcedureDescription() {
@@ -139,10 +94,10 @@ public abstract class AbstractSensorDataset implements Comparable<AbstractSensor
     }
 
     public List<Time> getTimes() {
-        return times;
+        return dataValues.getTimes();
     }
 
-    public Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>> getDataValues() {
+    public SensorDataValues getDataValues() {
         return dataValues;
     }
 
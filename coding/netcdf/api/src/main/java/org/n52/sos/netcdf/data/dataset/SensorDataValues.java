@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.netcdf.data.dataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.sos.netcdf.data.subsensor.SubSensor;
+
+/**
+ * Columnar store of the observation values of a sensor. Each value is added
+ * as a row of primitive columns, times, phenomena and subsensors are stored
+ * once and referenced by index. If a value is added more than once for the
+ * same time, phenomenon and subsensor, the last added value wins.
+ *
+ * @since 5.1.1
+ */
+public class SensorDataValues {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<Time, Integer> timeIndex = new HashMap<>();
+
+    private final List<Time> times = new ArrayList<>();
+
+    private final Map<OmObservableProperty, Integer> phenomenonIndex = new HashMap<>();
+
+    private final List<OmObservableProperty> phenomena = new ArrayList<>();
+
+    private final Map<SubSensor, Integer> subSensorIndex = new HashMap<>();
+
+    private final List<SubSensor> subSensors = new ArrayList<>();
+
+    private int[] timeColumn = new int[INITIAL_CAPACITY];
+
+    private int[] phenomenonColumn = new int[INITIAL_CAPACITY];
+
+    private int[] subSensorColumn = new int[INITIAL_CAPACITY];
+
+    private double[] valueColumn = new double[INITIAL_CAPACITY];
+
+    private int size;
+
+    private List<Time> sortedTimes;
+
+    private List<OmObservableProperty> sortedPhenomena;
+
+    private List<SubSensor> sortedSubSensors;
+
+    private int[] sortedTimePositions;
+
+    private int[] sortedSubSensorPositions;
+
+    /**
+     * Add an observation value.
+     *
+     * @param time
+     *            the phenomenon time
+     * @param phenomenon
+     *            the observed property
+     * @param subSensor
+     *            the subsensor, may be <code>null</code>
+     * @param value
+     *            the value
+     */
+    public void add(Time time, OmObservableProperty phenomenon, SubSensor subSensor, double value) {
+        if (sortedTimes != null) {
+            throw new IllegalStateException("Values are already completed");
+        }
+        if (size == valueColumn.length) {
+            int capacity = size * 2;
+            timeColumn = Arrays.copyOf(timeColumn, capacity);
+            phenomenonColumn = Arrays.copyOf(phenomenonColumn, capacity);
+            subSensorColumn = Arrays.copyOf(subSensorColumn, capacity);
+            valueColumn = Arrays.copyOf(valueColumn, capacity);
+        }
+        timeColumn[size] = indexOf(timeIndex, times, time);
+        phenomenonColumn[size] = indexOf(phenomenonIndex, phenomena, phenomenon);
+        subSensorColumn[size] = indexOf(subSensorIndex, subSensors, subSensor);
+        valueColumn[size] = value;
+        size++;
+    }
+
+    private static <T> int indexOf(Map<T, Integer> index, List<T> values, T value) {
+        Integer i = index.get(value);
+        if (i == null) {
+            i = values.size();
+            index.put(value, i);
+            values.add(value);
+        }
+        return i;
+    }
+
+    /**
+     * Sort the times, phenomena and subsensors. No values can be added
+     * afterwards.
+     */
+    void complete() {
+        if (sortedTimes != null) {
+            return;
+        }
+        sortedTimes = sort(times);
+        sortedPhenomena = sort(phenomena);
+        List<SubSensor> nonNullSubSensors = new ArrayList<>(subSensors.size());
+        for (SubSensor subSensor : subSensors) {
+            if (subSensor != null) {
+                nonNullSubSensors.add(subSensor);
+            }
+        }
+        sortedSubSensors = sort(nonNullSubSensors);
+        sortedTimePositions = getPositions(times, sortedTimes);
+        sortedSubSensorPositions = getPositions(subSensors, sortedSubSensors);
+        timeIndex.clear();
+        phenomenonIndex.clear();
+        subSensorIndex.clear();
+        timeColumn = Arrays.copyOf(timeColumn, size);
+        phenomenonColumn = Arrays.copyOf(phenomenonColumn, size);
+        subSensorColumn = Arrays.copyOf(subSensorColumn, size);
+        valueColumn = Arrays.copyOf(valueColumn, size);
+    }
+
+    private static <T extends Comparable<? super T>> List<T> sort(List<T> values) {
+        List<T> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private static <T> int[] getPositions(List<T> values, List<T> sorted) {
+        Map<T, Integer> sortedIndex = new HashMap<>(sorted.size() * 2);
+        for (int i = 0; i < sorted.size(); i++) {
+            sortedIndex.put(sorted.get(i), i);
+        }
+        int[] positions = new int[values.size()];
+        for (int i = 0; i < positions.length; i++) {
+            Integer position = sortedIndex.get(values.get(i));
+            positions[i] = position != null ? position : -1;
+        }
+        return positions;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the sorted times
+     */
+    public List<Time> getTimes() {
+        complete();
+        return sortedTimes;
+    }
+
+    /**
+     * @return the sorted phenomena
+     */
+    public List<OmObservableProperty> getPhenomena() {
+        complete();
+        return sortedPhenomena;
+    }
+
+    /**
+     * @return the sorted subsensors without <code>null</code>
+     */
+    public List<SubSensor> getSubSensors() {
+        complete();
+        return sortedSubSensors;
+    }
+
+    /**
+     * @param row
+     *            the value row
+     * @return the index of the time of the value in {@link #getTimes()}
+     */
+    public int getTimeIndex(int row) {
+        complete();
+        return sortedTimePositions[timeColumn[row]];
+    }
+
+    /**
+     * @param row
+     *            the value row
+     * @return the phenomenon of the value
+     */
+    public OmObservableProperty getPhenomenon(int row) {
+        return phenomena.get(phenomenonColumn[row]);
+    }
+
+    /**
+     * @param row
+     *            the value row
+     * @return the index of the subsensor of the value in
+     *         {@link #getSubSensors()} or <code>-1</code> if the value has no
+     *         subsensor
+     */
+    public int getSubSensorIndex(int row) {
+        complete();
+        return sortedSubSensorPositions[subSensorColumn[row]];
+    }
+
+    /**
+     * @param row
+     *            the value row
+     * @return the value
+     */
+    public double getValue(int row) {
+        return valueColumn[row];
+    }
+
+}
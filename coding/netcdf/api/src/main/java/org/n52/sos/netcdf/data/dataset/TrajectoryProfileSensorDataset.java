@@ -28,13 +28,7 @@
  */
 package org.n52.sos.netcdf.data.dataset;
 
-import java.util.Map;
-
 import org.n52.shetland.ogc.gml.AbstractFeature;
-import org.n52.shetland.ogc.gml.time.Time;
-import org.n52.shetland.ogc.om.OmObservableProperty;
-import org.n52.shetland.ogc.om.values.Value;
-import org.n52.sos.netcdf.data.subsensor.SubSensor;
 
 import ucar.nc2.constants.CF;
 
@@ -48,8 +42,8 @@ import ucar.nc2.constants.CF;
  *
  */
 public class TrajectoryProfileSensorDataset extends AbstractSensorDataset {
-    public TrajectoryProfileSensorDataset(DatasetSensor sensor,
-            Map<Time, Map<OmObservableProperty, Map<SubSensor, Value<?>>>> dataValues, AbstractFeature procedure) {
+    public TrajectoryProfileSensorDataset(DatasetSensor sensor, SensorDataValues dataValues,
+            AbstractFeature procedure) {
         super(CF.FeatureType.trajectoryProfile, sensor, dataValues, procedure);
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.netcdf.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DimensionValuesTest {
+
+    private static final double DELTA = 0.0;
+
+    private final DimensionValues values = new DimensionValues();
+
+    @Test
+    public void should_be_empty_without_values() {
+        assertTrue(values.isEmpty());
+        assertFalse(values.isVarying());
+        assertNull(values.getFirst());
+    }
+
+    @Test
+    public void should_be_static_for_equal_values() {
+        values.addAll(Arrays.asList(52.5, 52.5, 52.5));
+
+        assertFalse(values.isEmpty());
+        assertFalse(values.isVarying());
+        assertEquals(52.5, values.getFirst(), DELTA);
+        assertEquals(52.5, values.getMin(), DELTA);
+        assertEquals(52.5, values.getMax(), DELTA);
+    }
+
+    @Test
+    public void should_be_varying_for_different_values() {
+        values.addAll(Arrays.asList(7.5, 9.0, 6.0, 7.5));
+
+        assertTrue(values.isVarying());
+        assertEquals(7.5, values.getFirst(), DELTA);
+        assertEquals(6.0, values.getMin(), DELTA);
+        assertEquals(9.0, values.getMax(), DELTA);
+    }
+
+    @Test
+    public void should_stay_varying_when_values_return_to_first() {
+        values.add(-10.0);
+        values.add(-20.0);
+        values.add(-10.0);
+
+        assertTrue(values.isVarying());
+        assertEquals(-10.0, values.getFirst(), DELTA);
+        assertEquals(-20.0, values.getMin(), DELTA);
+        assertEquals(-10.0, values.getMax(), DELTA);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.netcdf.data.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.sos.netcdf.data.subsensor.PointProfileSubSensor;
+import org.n52.sos.netcdf.data.subsensor.SubSensor;
+
+public class SensorDataValuesTest {
+
+    private static final double DELTA = 0.0;
+
+    private static final OmObservableProperty TEMPERATURE = new OmObservableProperty("temperature");
+
+    private static final OmObservableProperty SALINITY = new OmObservableProperty("salinity");
+
+    private final SensorDataValues values = new SensorDataValues();
+
+    @Test
+    public void should_sort_times_added_out_of_order() {
+        values.add(time(3), TEMPERATURE, null, 3.0);
+        values.add(time(1), TEMPERATURE, null, 1.0);
+        values.add(time(2), TEMPERATURE, null, 2.0);
+        values.add(time(1), SALINITY, null, 4.0);
+
+        assertEquals(Arrays.asList(time(1), time(2), time(3)), values.getTimes());
+        assertEquals(2, values.getTimeIndex(0));
+        assertEquals(0, values.getTimeIndex(1));
+        assertEquals(1, values.getTimeIndex(2));
+        assertEquals(0, values.getTimeIndex(3));
+        assertEquals(3.0, values.getValue(0), DELTA);
+        assertEquals(4.0, values.getValue(3), DELTA);
+    }
+
+    @Test
+    public void should_sort_phenomena() {
+        values.add(time(1), TEMPERATURE, null, 1.0);
+        values.add(time(1), SALINITY, null, 2.0);
+
+        assertEquals(Arrays.asList(SALINITY, TEMPERATURE), values.getPhenomena());
+        assertSame(TEMPERATURE, values.getPhenomenon(0));
+        assertSame(SALINITY, values.getPhenomenon(1));
+    }
+
+    @Test
+    public void should_exclude_null_subsensors() {
+        SubSensor shallow = new PointProfileSubSensor(5.0);
+        SubSensor deep = new PointProfileSubSensor(10.0);
+        values.add(time(1), TEMPERATURE, null, 1.0);
+        values.add(time(1), TEMPERATURE, shallow, 2.0);
+        values.add(time(1), TEMPERATURE, deep, 3.0);
+
+        // profile subsensors are sorted by descending height
+        assertEquals(Arrays.asList(deep, shallow), values.getSubSensors());
+        assertEquals(-1, values.getSubSensorIndex(0));
+        assertEquals(1, values.getSubSensorIndex(1));
+        assertEquals(0, values.getSubSensorIndex(2));
+    }
+
+    @Test
+    public void should_have_no_subsensors_if_only_null_was_added() {
+        values.add(time(1), TEMPERATURE, null, 1.0);
+
+        assertTrue(values.getSubSensors().isEmpty());
+        assertEquals(-1, values.getSubSensorIndex(0));
+    }
+
+    @Test
+    public void should_keep_duplicate_rows_in_order() {
+        SubSensor subSensor = new PointProfileSubSensor(5.0);
+        values.add(time(1), TEMPERATURE, subSensor, 1.0);
+        values.add(time(1), TEMPERATURE, subSensor, 2.0);
+
+        assertEquals(2, values.size());
+        assertEquals(1, values.getTimes().size());
+        assertEquals(1, values.getSubSensors().size());
+        assertEquals(values.getTimeIndex(0), values.getTimeIndex(1));
+        assertEquals(values.getSubSensorIndex(0), values.getSubSensorIndex(1));
+        // the encoder writes the rows in order, so the last value wins
+        assertEquals(2.0, values.getValue(1), DELTA);
+    }
+
+    @Test
+    public void should_grow_beyond_initial_capacity() {
+        for (int i = 0; i < 100; i++) {
+            values.add(time(i % 24), TEMPERATURE, new PointProfileSubSensor(i), i);
+        }
+
+        assertEquals(100, values.size());
+        assertEquals(24, values.getTimes().size());
+        assertEquals(100, values.getSubSensors().size());
+        assertEquals(99.0, values.getValue(99), DELTA);
+        assertEquals(3, values.getTimeIndex(99));
+        assertEquals(0, values.getSubSensorIndex(99));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_reject_values_after_completion() {
+        values.add(time(1), TEMPERATURE, null, 1.0);
+        values.getTimes();
+        values.add(time(2), TEMPERATURE, null, 2.0);
+    }
+
+    private static Time time(int hour) {
+        return new TimeInstant(new Date(TimeUnit.HOURS.toMillis(hour)));
+    }
+}
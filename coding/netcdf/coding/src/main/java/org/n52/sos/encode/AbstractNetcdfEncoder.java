@@ -31,6 +31,8 @@ package org.n52.sos.encode;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -41,6 +43,8 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.inject.Inject;
 
@@ -59,7 +63,6 @@ import org.n52.shetland.ogc.gml.time.TimeInstant;
 import org.n52.shetland.ogc.om.ObservationStream;
 import org.n52.shetland.ogc.om.OmConstants;
 import org.n52.shetland.ogc.om.OmObservableProperty;
-import org.n52.shetland.ogc.om.values.Value;
 import org.n52.shetland.ogc.ows.OwsAddress;
 import org.n52.shetland.ogc.ows.OwsContact;
 import org.n52.shetland.ogc.ows.OwsOnlineResource;
@@ -93,6 +96,7 @@ import org.n52.sos.netcdf.NetCDFUtil;
 import org.n52.sos.netcdf.NetcdfConstants;
 import org.n52.sos.netcdf.NetcdfHelper;
 import org.n52.sos.netcdf.data.dataset.AbstractSensorDataset;
+import org.n52.sos.netcdf.data.dataset.SensorDataValues;
 import org.n52.sos.netcdf.data.dataset.StaticLocationDataset;
 import org.n52.sos.netcdf.data.subsensor.BinProfileSubSensor;
 import org.n52.sos.netcdf.data.subsensor.ProfileSubSensor;
@@ -103,6 +107,8 @@ import org.n52.svalbard.encode.EncodingContext;
 import org.n52.svalbard.encode.ObservationEncoder;
 import org.n52.svalbard.encode.exception.EncodingException;
 import org.n52.svalbard.encode.exception.UnsupportedEncoderInputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.axiomalaska.cf4j.CFStandardNames;
 import com.axiomalaska.cf4j.constants.ACDDConstants;
@@ -144,6 +150,12 @@ import ucar.nc2.jni.netcdf.Nc4Iosp;
 public abstract class AbstractNetcdfEncoder
         implements ObservationEncoder<BinaryAttachmentResponse, Object>, NetCDFUtil {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractNetcdfEncoder.class);
+
+    private static final String TEMP_FILE_PREFIX = "sos-netcdf-";
+
+    private static final String TEMP_FILE_SUFFIX = ".nc";
+
     private final Set<SupportedType> SUPPORTED_TYPES =
             ImmutableSet.<SupportedType>builder().add(OmConstants.OBS_TYPE_TRUTH_OBSERVATION_TYPE).build();
 
@@ -326,8 +338,13 @@ public abstract class AbstractNetcdfEncoder
     }
 
     protected NetcdfFileWriter getNetcdfFileWriter(File netcdfFile, Version version) throws IOException {
-        return NetcdfFileWriter.createNew(version, netcdfFile.getAbsolutePath(), new Nc4ForceTimeChunkingStategy(
-                getNetcdfHelper().getChunkSizeTime()));
+        return getNetcdfFileWriter(netcdfFile, version, getNetcdfHelper().getChunkSizeTime());
+    }
+
+    protected NetcdfFileWriter getNetcdfFileWriter(File netcdfFile, Version version, int chunkSizeTime)
+            throws IOException {
+        return NetcdfFileWriter.createNew(version, netcdfFile.getAbsolutePath(),
+                new Nc4ForceTimeChunkingStategy(chunkSizeTime));
     }
 
     protected void encodeSensorDataToNetcdf(File netcdfFile, AbstractSensorDataset sensorDataset, Version version)
@@ -336,7 +353,100 @@ public abstract class AbstractNetcdfEncoder
         sensorDataset.getSensor().setSensorDescription(
                 getProcedureDescription(sensor, sensorDataset.getProcedureDescription()));
 
-        NetcdfFileWriter writer = getNetcdfFileWriter(netcdfFile, version);
+        int chunkSizeTime = getChunkSizeTime(sensorDataset.getTimes().size());
+        try (NetcdfFileWriter writer = getNetcdfFileWriter(netcdfFile, version, chunkSizeTime)) {
+            encodeSensorDataToNetcdf(writer, sensorDataset);
+        }
+    }
+
+    /**
+     * Encode the sensor dataset to netCDF and return the encoded bytes. The
+     * temporary file of the netCDF writer is deleted before returning.
+     *
+     * @param sensorDataset
+     *            the sensor dataset to encode
+     * @param version
+     *            the netCDF version
+     * @return the encoded netCDF file
+     * @throws EncodingException
+     *             If an error occurs
+     * @throws IOException
+     *             If the temporary file can not be written or read
+     */
+    protected byte[] encodeSensorDataToBytes(AbstractSensorDataset sensorDataset, Version version)
+            throws EncodingException, IOException {
+        Path netcdfFile = createTempFile();
+        try {
+            encodeSensorDataToNetcdf(netcdfFile.toFile(), sensorDataset, version);
+            return Files.readAllBytes(netcdfFile);
+        } finally {
+            deleteTempFile(netcdfFile);
+        }
+    }
+
+    /**
+     * Encode the sensor dataset to netCDF and stream it as entry to the zip
+     * file. The temporary file of the netCDF writer is deleted as soon as the
+     * entry is written, so only one dataset at a time is kept on disk. If the
+     * file name of the dataset is already used by another entry, a counter is
+     * added to the name.
+     *
+     * @param zip
+     *            the zip file to add the entry to
+     * @param entryNames
+     *            the names of the entries already added to the zip file
+     * @param sensorDataset
+     *            the sensor dataset to encode
+     * @param version
+     *            the netCDF version
+     * @throws EncodingException
+     *             If an error occurs
+     * @throws IOException
+     *             If the temporary file or the zip entry can not be written
+     */
+    protected void encodeSensorDataToZip(ZipOutputStream zip, Set<String> entryNames,
+            AbstractSensorDataset sensorDataset, Version version) throws EncodingException, IOException {
+        Path netcdfFile = createTempFile();
+        try {
+            encodeSensorDataToNetcdf(netcdfFile.toFile(), sensorDataset, version);
+            zip.putNextEntry(new ZipEntry(getEntryName(getFilename(sensorDataset), entryNames)));
+            Files.copy(netcdfFile, zip);
+            zip.closeEntry();
+        } finally {
+            deleteTempFile(netcdfFile);
+        }
+    }
+
+    private String getEntryName(String filename, Set<String> entryNames) {
+        String entryName = filename;
+        int extension = filename.lastIndexOf('.');
+        int counter = 1;
+        while (!entryNames.add(entryName)) {
+            entryName = extension > 0
+                    ? filename.substring(0, extension) + "_" + counter++ + filename.substring(extension)
+                    : filename + "_" + counter++;
+        }
+        return entryName;
+    }
+
+    private Path createTempFile() throws IOException {
+        Path tempDirectory = getNetcdfHelper().getTempDirectory();
+        if (tempDirectory != null) {
+            return Files.createTempFile(Files.createDirectories(tempDirectory), TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+        }
+        return Files.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+    }
+
+    private void deleteTempFile(Path netcdfFile) {
+        try {
+            Files.deleteIfExists(netcdfFile);
+        } catch (IOException e) {
+            LOGGER.warn("Temporary netCDF file {} could not be deleted", netcdfFile, e);
+        }
+    }
+
+    private void encodeSensorDataToNetcdf(NetcdfFileWriter writer, AbstractSensorDataset sensorDataset)
+            throws EncodingException, IOException {
         // set fill on, doesn't seem to have any effect though
         writer.setFill(true);
 
@@ -396,7 +506,7 @@ public abstract class AbstractNetcdfEncoder
         // time var
         Variable vTime = addVariableTime(writer, timeDims);
         if (numTimes > 1 && writer.getVersion().isNetdf4format()) {
-            vTime.addAttribute(new Attribute(CDM.CHUNK_SIZES, getNetcdfHelper().getChunkSizeTime()));
+            vTime.addAttribute(new Attribute(CDM.CHUNK_SIZES, getChunkSizeTime(numTimes)));
         }
         ArrayDouble timeArray = new ArrayDouble(getDimShapes(timeDims));
         initArrayWithFillValue(timeArray, getNetcdfHelper().getFillValue());
@@ -490,43 +600,33 @@ public abstract class AbstractNetcdfEncoder
                 timeIndex.setDim(timeIndexCounter++, timeCounter++);
             }
             timeArray.set(timeIndex, getTimeValue(time));
+        }
 
-            // data values
-            Map<OmObservableProperty, Map<SubSensor, Value<?>>> obsPropMap = sensorDataset.getDataValues().get(time);
-            for (Entry<OmObservableProperty, Map<SubSensor, Value<?>>> entry : obsPropMap.entrySet()) {
-                OmObservableProperty obsProp = entry.getKey();
-                Variable variable = obsPropVarMap.get(obsProp);
-                Array array = varDataArrayMap.get(variable);
-                for (Entry<SubSensor, Value<?>> subSensorEntry : obsPropMap.get(obsProp).entrySet()) {
-                    SubSensor subSensor = subSensorEntry.getKey();
-                    Value<?> value = subSensorEntry.getValue();
-                    Object valObj = value.getValue();
-                    if (!(valObj instanceof Number)) {
-                        throw new EncodingException("Value class %s not supported",
-                                valObj.getClass().getCanonicalName());
-                    }
-                    Index index = array.getIndex();
-                    int obsPropDimCounter = 0;
-                    for (Dimension dim : obsPropDims) {
-                        // if (dim.equals(dFeatureTypeInstance)){
-                        // feature type instance index
-                        // index.setDim(obsPropDimCounter++, 0);
-                        // } else if (dim.equals(dTime)){
-                        if (dim.equals(dTime)) {
-                            // time index dim
-                            index.setDim(obsPropDimCounter++, timeCounter - 1);
-                        } else if (dim.equals(dZ) && dim.getLength() > 1) {
-                            // height/depth index dim
-                            index.setDim(obsPropDimCounter++, sensorDataset.getSubSensors().indexOf(subSensor));
-                        }
-                    }
-                    if (array instanceof ArrayFloat) {
-                        ((ArrayFloat) array).set(index, ((Number) valObj).floatValue());
-                    } else {
-                        ((ArrayDouble) array).set(index, ((Number) valObj).doubleValue());
-                    }
+        // data values, each row references its time and subsensor index
+        SensorDataValues dataValues = sensorDataset.getDataValues();
+        for (int row = 0; row < dataValues.size(); row++) {
+            Variable variable = obsPropVarMap.get(dataValues.getPhenomenon(row));
+            Array array = varDataArrayMap.get(variable);
+            Index index = array.getIndex();
+            int obsPropDimCounter = 0;
+            for (Dimension dim : obsPropDims) {
+                // if (dim.equals(dFeatureTypeInstance)){
+                // feature type instance index
+                // index.setDim(obsPropDimCounter++, 0);
+                // } else if (dim.equals(dTime)){
+                if (dim.equals(dTime)) {
+                    // time index dim
+                    index.setDim(obsPropDimCounter++, dataValues.getTimeIndex(row));
+                } else if (dim.equals(dZ) && dim.getLength() > 1) {
+                    // height/depth index dim
+                    index.setDim(obsPropDimCounter++, dataValues.getSubSensorIndex(row));
                 }
             }
+            if (array instanceof ArrayFloat) {
+                ((ArrayFloat) array).set(index, (float) dataValues.getValue(row));
+            } else {
+                ((ArrayDouble) array).set(index, dataValues.getValue(row));
+            }
         }
 
         // create the empty netCDF with dims/vars/attributes defined
@@ -543,7 +643,6 @@ public abstract class AbstractNetcdfEncoder
         variableArrayMap.putAll(varDataArrayMap);
         // create the empty netCDF with dims/vars/attributes defined
         writeToFile(writer, variableArrayMap);
-        writer.close();
     }
 
     protected void addGlobaleAttributes(NetcdfFileWriter writer, AbstractSensorDataset sensorDataset)
@@ -1030,6 +1129,18 @@ public abstract class AbstractNetcdfEncoder
         return timeInstant.getValue();
     }
 
+    /**
+     * Get the time chunk size limited to the number of times, so that small
+     * datasets are not written with mostly empty chunks.
+     *
+     * @param numTimes
+     *            the number of times of the dataset
+     * @return the time chunk size
+     */
+    protected int getChunkSizeTime(int numTimes) {
+        return Math.max(1, Math.min(getNetcdfHelper().getChunkSizeTime(), numTimes));
+    }
+
     protected double getTimeValue(Time time) throws EncodingException {
         return DateTimeHelper.getSecondsSinceEpoch(getDateTime(time));
     }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.encode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.sos.netcdf.NetcdfHelper;
+import org.n52.sos.netcdf.data.dataset.AbstractSensorDataset;
+import org.n52.svalbard.encode.exception.EncodingException;
+
+import com.google.common.collect.Sets;
+
+import ucar.nc2.NetcdfFileWriter.Version;
+
+public class AbstractNetcdfEncoderTest {
+
+    private static final byte[] CONTENT = "netcdf".getBytes(StandardCharsets.UTF_8);
+
+    private static final String FILENAME = "dataset.nc";
+
+    @Rule
+    public final TemporaryFolder tempDirectory = new TemporaryFolder();
+
+    private final AbstractSensorDataset sensorDataset = mock(AbstractSensorDataset.class);
+
+    private final TestEncoder encoder = new TestEncoder();
+
+    @Before
+    public void setUp() {
+        NetcdfHelper netcdfHelper = new NetcdfHelper();
+        netcdfHelper.setTempDirectory(tempDirectory.getRoot().getAbsolutePath());
+        encoder.setNetcdfHelper(netcdfHelper);
+    }
+
+    @Test
+    public void should_delete_temporary_file_after_encoding() throws EncodingException, IOException {
+        assertArrayEquals(CONTENT, encoder.encodeSensorDataToBytes(sensorDataset, Version.netcdf3));
+        assertNoTemporaryFiles();
+    }
+
+    @Test
+    public void should_delete_temporary_file_if_encoding_fails() throws IOException {
+        encoder.fail = true;
+        try {
+            encoder.encodeSensorDataToBytes(sensorDataset, Version.netcdf3);
+            fail("EncodingException expected");
+        } catch (EncodingException e) {
+            assertNoTemporaryFiles();
+        }
+    }
+
+    @Test
+    public void should_delete_temporary_file_if_zip_encoding_fails() throws IOException {
+        encoder.fail = true;
+        try (ZipOutputStream zip = new ZipOutputStream(new ByteArrayOutputStream())) {
+            encoder.encodeSensorDataToZip(zip, Sets.newHashSet(), sensorDataset, Version.netcdf3);
+            fail("EncodingException expected");
+        } catch (EncodingException e) {
+            assertNoTemporaryFiles();
+        }
+    }
+
+    @Test
+    public void should_add_datasets_with_equal_file_names_as_separate_entries()
+            throws EncodingException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Set<String> entryNames = Sets.newHashSet();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            encoder.encodeSensorDataToZip(zip, entryNames, sensorDataset, Version.netcdf3);
+            encoder.encodeSensorDataToZip(zip, entryNames, sensorDataset, Version.netcdf3);
+            encoder.encodeSensorDataToZip(zip, entryNames, sensorDataset, Version.netcdf3);
+        }
+        assertNoTemporaryFiles();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(FILENAME, zip.getNextEntry().getName());
+            assertEquals("dataset_1.nc", zip.getNextEntry().getName());
+            assertEquals("dataset_2.nc", zip.getNextEntry().getName());
+            assertNull(zip.getNextEntry());
+        }
+    }
+
+    private void assertNoTemporaryFiles() {
+        assertEquals(0, tempDirectory.getRoot().list().length);
+    }
+
+    private static class TestEncoder extends NetcdfZipEncoder {
+
+        private boolean fail;
+
+        @Override
+        protected void encodeSensorDataToNetcdf(File netcdfFile, AbstractSensorDataset sensorDataset,
+                Version version) throws EncodingException, IOException {
+            Files.write(netcdfFile.toPath(), CONTENT);
+            if (fail) {
+                throw new EncodingException("encoding failed");
+            }
+        }
+
+        @Override
+        protected String getFilename(AbstractSensorDataset sensorDataset) {
+            return FILENAME;
+        }
+    }
+}
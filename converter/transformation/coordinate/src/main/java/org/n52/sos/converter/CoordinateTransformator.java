@@ -28,25 +28,20 @@
  */
 package org.n52.sos.converter;
 
-import static java.util.stream.Collectors.toList;
-
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.geom.PrecisionModel;
 import org.n52.faroe.annotation.Setting;
 import org.n52.iceland.convert.RequestResponseModifier;
 import org.n52.iceland.convert.RequestResponseModifierFacilitator;
@@ -56,6 +51,7 @@ import org.n52.shetland.ogc.filter.SpatialFilter;
 import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.om.MultiObservationValues;
 import org.n52.shetland.ogc.om.NamedValue;
+import org.n52.shetland.ogc.om.ObservationStream;
 import org.n52.shetland.ogc.om.OmObservation;
 import org.n52.shetland.ogc.om.PointValuePair;
 import org.n52.shetland.ogc.om.SingleObservationValue;
@@ -126,9 +122,9 @@ import org.n52.sos.util.GeometryHandler;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 
 /**
  * Class that transforms geometries in the requests to the stored EPSG code and
@@ -176,22 +172,24 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
      *            Target EPSG code
      * @param target3DCRS
      *            Target 3D EPSG code
+     * @param streamingCrs
+     *            CRS parameter for streaming values
+     * @param checkedFeatures
+     *            the features of the response that are already checked
      * @throws OwsExceptionReport
      *             If the transformation fails
      */
-    private void checkResponseObservation(OmObservation omObservation, int targetCRS, int target3DCRS)
-            throws OwsExceptionReport {
-        if (omObservation.getObservationConstellation().getFeatureOfInterest() instanceof AbstractSamplingFeature) {
-            checkResponseGeometryOfSamplingFeature(
-                    (AbstractSamplingFeature) omObservation.getObservationConstellation().getFeatureOfInterest(),
-                    targetCRS, target3DCRS);
+    private void checkResponseObservation(OmObservation omObservation, int targetCRS, int target3DCRS,
+            List<Integer> streamingCrs, Set<AbstractFeature> checkedFeatures) throws OwsExceptionReport {
+        AbstractFeature feature = omObservation.getObservationConstellation().getFeatureOfInterest();
+        if (feature instanceof AbstractSamplingFeature && checkedFeatures.add(feature)) {
+            checkResponseGeometryOfSamplingFeature((AbstractSamplingFeature) feature, targetCRS, target3DCRS);
         }
         if (omObservation.isSetParameter()) {
             checkOmParameterForGeometry(omObservation.getParameter(), false);
         }
         if (omObservation.getValue() instanceof AbstractStreaming) {
-            ((AbstractStreaming) omObservation.getValue()).add(OWSConstants.AdditionalRequestParams.crs,
-                    Lists.newArrayList(targetCRS, target3DCRS));
+            addStreamingCrs(omObservation, streamingCrs);
         } else if (omObservation.getValue() instanceof MultiObservationValues) {
             if (((MultiObservationValues) omObservation.getValue()).getValue() instanceof TLVTValue) {
                 checkTLVTValueForGeometry((TLVTValue) ((MultiObservationValues) omObservation.getValue()).getValue(),
@@ -207,6 +205,22 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
         }
     }
 
+    /**
+     * Add the CRS parameter to streaming values, the values are transformed
+     * when they are emitted during the encoding.
+     *
+     * @param omObservation
+     *            Response {@link OmObservation}
+     * @param streamingCrs
+     *            CRS parameter for streaming values
+     */
+    private void addStreamingCrs(OmObservation omObservation, List<Integer> streamingCrs) {
+        if (omObservation.getValue() instanceof AbstractStreaming) {
+            ((AbstractStreaming) omObservation.getValue()).add(OWSConstants.AdditionalRequestParams.crs,
+                    streamingCrs);
+        }
+    }
+
     /**
      *
      * Get the keys
@@ -393,10 +407,7 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
     private OwsServiceResponse modifyGetObservationResponse(GetObservationRequest request,
             GetObservationResponse response) throws OwsExceptionReport {
         response.setResponseFormat(request.getResponseFormat());
-        int crs = getRequestedCrs(request);
-        int crs3D = getRequested3DCrs(request);
-        response.setObservationCollection(
-                response.getObservationCollection().modify(o -> checkResponseObservation(o, crs, crs3D)));
+        response.setObservationCollection(modifyObservations(request, response.getObservationCollection()));
         return response;
     }
 
@@ -413,11 +424,51 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
      */
     private OwsServiceResponse modifyGetObservationByIdResponse(GetObservationByIdRequest request,
             GetObservationByIdResponse response) throws OwsExceptionReport {
+        response.setObservationCollection(modifyObservations(request, response.getObservationCollection()));
+        return response;
+    }
+
+    /**
+     * Modify the response observations lazily, the observations are checked
+     * when they are emitted by the stream. The CRS parameter for streaming
+     * values is created once per response.
+     *
+     * The observations of a response share the instances of their features
+     * of interest. The transformation replaces the geometry of a feature with
+     * a transformed copy, so each feature instance is transformed only once
+     * per response and the original geometry is never modified.
+     *
+     * @param request
+     *            the request
+     * @param observations
+     *            the response observations
+     * @return Modified response observations
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     */
+    private ObservationStream modifyObservations(OwsServiceRequest request, ObservationStream observations)
+            throws OwsExceptionReport {
         int crs = getRequestedCrs(request);
         int crs3D = getRequested3DCrs(request);
-        response.setObservationCollection(
-                response.getObservationCollection().modify(o -> checkResponseObservation(o, crs, crs3D)));
-        return response;
+        List<Integer> streamingCrs = ImmutableList.of(crs, crs3D);
+        Set<AbstractFeature> checkedFeatures = Collections.newSetFromMap(new IdentityHashMap<>());
+        return observations.modify(o -> checkResponseObservation(o, crs, crs3D, streamingCrs, checkedFeatures));
+    }
+
+    /**
+     * Check if a response geometry needs to be transformed. Features may be
+     * stored or inserted in EPSG codes other than the storage EPSG code, so
+     * the EPSG code of each geometry is compared with the target.
+     *
+     * @param geometry
+     *            the geometry to check
+     * @param targetCRS
+     *            Target EPSG code
+     * @return <code>true</code>, if the geometry is not in the target EPSG code
+     */
+    @VisibleForTesting
+    protected boolean isTransformationRequired(Geometry geometry, int targetCRS) {
+        return geometry != null && !geometry.isEmpty() && geometry.getSRID() != targetCRS;
     }
 
     /**
@@ -607,46 +658,41 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
         }
         if (easting != null && northing != null) {
 
-            double x;
-            double y;
-            if (getGeomtryHandler().isNorthingFirstEpsgCode(sourceCrs)) {
-                y = northing.doubleValue();
-                x = easting.doubleValue();
-            } else {
-                y = easting.doubleValue();
-                x = northing.doubleValue();
-            }
-
-
-
-            GeometryFactory factory = new GeometryFactory(new PrecisionModel(PrecisionModel.FLOATING), sourceCrs);
-            Coordinate coordinate = null;
+            double[] coordinates;
             if (getGeomtryHandler().is3dCrs(sourceCrs)) {
-                double z = 0.0;
+                coordinates = new double[3];
                 if (altitude != null && altitude.getValue() != null && altitude.getValue().getValue() != null) {
-                    z = altitude.getValue().getValue().doubleValue();
+                    coordinates[2] = altitude.getValue().getValue().doubleValue();
                 }
-                coordinate = getGeomtryHandler().transform(factory.createPoint(new Coordinate(x, y, z)), targetCrs)
-                        .getCoordinate();
             } else {
-                coordinate = getGeomtryHandler().transform(factory.createPoint(new Coordinate(x, y)), targetCrs)
-                        .getCoordinate();
+                coordinates = new double[2];
             }
-
+            if (getGeomtryHandler().isNorthingFirstEpsgCode(sourceCrs)) {
+                coordinates[0] = easting.doubleValue();
+                coordinates[1] = northing.doubleValue();
+            } else {
+                coordinates[0] = northing.doubleValue();
+                coordinates[1] = easting.doubleValue();
+            }
+            double[] transformed = getGeomtryHandler().transform(coordinates, sourceCrs, targetCrs);
+            double x;
+            double y;
             if (getGeomtryHandler().isNorthingFirstEpsgCode(targetCrs)) {
-                x = coordinate.y;
-                y = coordinate.x;
+                x = transformed[1];
+                y = transformed[0];
             } else {
-                x = coordinate.x;
-                y = coordinate.y;
+                x = transformed[0];
+                y = transformed[1];
+            }
+            List<SweCoordinate<? extends Number>> transformedPosition = new ArrayList<>(3);
+            transformedPosition.add(new SweCoordinate<>(northingName,
+                    createSweQuantity(y, SweConstants.Y_AXIS, procedureSettings.getLatLongUom())));
+            transformedPosition.add(new SweCoordinate<>(eastingName,
+                    createSweQuantity(x, SweConstants.X_AXIS, procedureSettings.getLatLongUom())));
+            if (altitude != null) {
+                transformedPosition.add(altitude);
             }
-            return Stream
-                    .of(new SweCoordinate<>(northingName,
-                            createSweQuantity(y, SweConstants.Y_AXIS, procedureSettings.getLatLongUom())),
-                            new SweCoordinate<>(eastingName,
-                                    createSweQuantity(x, SweConstants.X_AXIS, procedureSettings.getLatLongUom())),
-                            altitude)
-                    .filter(Objects::nonNull).collect(toList());
+            return transformedPosition;
         }
         return position;
     }
@@ -874,9 +920,8 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
     }
 
     private boolean checkReferenceFrame(String referenceFrame) {
-        char[] charArray = referenceFrame.toCharArray();
-        for (int i = 0; i < charArray.length; i++) {
-            if (Character.isDigit(referenceFrame.toCharArray()[i])) {
+        for (int i = 0; i < referenceFrame.length(); i++) {
+            if (Character.isDigit(referenceFrame.charAt(i))) {
                 return true;
             }
         }
@@ -940,18 +985,24 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
     private void checkMultiPointCoverageForGeometry(MultiPointCoverage value, int targetCRS)
             throws OwsExceptionReport {
         for (PointValuePair pvp : value.getValue()) {
-            pvp.setPoint((Point) getGeomtryHandler().transform(pvp.getPoint(), targetCRS));
+            if (isTransformationRequired(pvp.getPoint(), targetCRS)) {
+                pvp.setPoint((Point) getGeomtryHandler().transform(pvp.getPoint(), targetCRS));
+            }
         }
     }
 
     private void checkCvDiscretePointCoverageForGeometry(CvDiscretePointCoverage value, int targetCRS)
             throws OwsExceptionReport {
-        value.getValue().setPoint((Point) getGeomtryHandler().transform(value.getValue().getPoint(), targetCRS));
+        if (isTransformationRequired(value.getValue().getPoint(), targetCRS)) {
+            value.getValue().setPoint((Point) getGeomtryHandler().transform(value.getValue().getPoint(), targetCRS));
+        }
     }
 
     private void checkTLVTValueForGeometry(TLVTValue value, int targetCRS) throws OwsExceptionReport {
         for (TimeLocationValueTriple tlvt : value.getValue()) {
-            tlvt.setLocation(getGeomtryHandler().transform(tlvt.getLocation(), targetCRS));
+            if (isTransformationRequired(tlvt.getLocation(), targetCRS)) {
+                tlvt.setLocation(getGeomtryHandler().transform(tlvt.getLocation(), targetCRS));
+            }
         }
     }
 
@@ -986,12 +1037,12 @@ public class CoordinateTransformator implements RequestResponseModifier, Constru
             int target3DCRS) throws OwsExceptionReport {
         if (samplingFeature.isSetGeometry()) {
             if (Double.isNaN(samplingFeature.getGeometry().getCoordinate().z)) {
-                if (samplingFeature.getGeometry().getSRID() != targetCRS) {
+                if (isTransformationRequired(samplingFeature.getGeometry(), targetCRS)) {
                     samplingFeature
                             .setGeometry(getGeomtryHandler().transform(samplingFeature.getGeometry(), targetCRS));
                 }
             } else {
-                if (samplingFeature.getGeometry().getSRID() != target3DCRS) {
+                if (isTransformationRequired(samplingFeature.getGeometry(), target3DCRS)) {
                     samplingFeature
                             .setGeometry(getGeomtryHandler().transform(samplingFeature.getGeometry(), target3DCRS));
                 }
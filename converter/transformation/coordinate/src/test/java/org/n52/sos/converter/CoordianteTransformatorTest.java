@@ -31,13 +31,36 @@ package org.n52.sos.converter;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import javax.naming.ConfigurationException;
 
 import org.junit.Test;
-
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.n52.iceland.ds.ConnectionProviderException;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.ObservationStream;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.om.SingleObservationValue;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.om.values.QuantityValue;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.request.GetFeatureOfInterestRequest;
+import org.n52.shetland.ogc.sos.request.GetObservationRequest;
+import org.n52.shetland.ogc.sos.response.GetFeatureOfInterestResponse;
+import org.n52.shetland.ogc.sos.response.GetObservationResponse;
 import org.n52.shetland.ogc.swe.SweConstants.SweCoordinateNames;
+import org.n52.shetland.util.JTSHelper;
+import org.n52.sos.util.GeometryHandler;
+
+import com.google.common.base.Joiner;
 
 /**
  * Test class for {@link CoordianteTransformator}
@@ -144,4 +167,101 @@ public class CoordianteTransformatorTest {
         assertThat(transformer.checkEastingName("testEasting"), is(true));
     }
 
+    @Test
+    public void testIsTransformationRequired() {
+        GeometryFactory factory = JTSHelper.getGeometryFactoryForSRID(EPSG);
+        assertThat(transformer.isTransformationRequired(factory.createPoint(new Coordinate(52.7, 7.5)), EPSG),
+                is(false));
+        assertThat(transformer.isTransformationRequired(factory.createPoint(new Coordinate(52.7, 7.5)),
+                TARGET_EPSG), is(true));
+        assertThat(transformer.isTransformationRequired(factory.createPoint((Coordinate) null), TARGET_EPSG),
+                is(false));
+        assertThat(transformer.isTransformationRequired(null, TARGET_EPSG), is(false));
+    }
+
+    @Test
+    public void testTransformMixedSridResponseToStorageEpsg() throws Exception {
+        transformer.setGeometryHandler(createGeometryHandler());
+        SamplingFeature stored = createFeature("stored", EPSG, 52.7, 7.5);
+        SamplingFeature inserted = createFeature("inserted", TARGET_EPSG, 2591000, 5780000);
+        Geometry storedGeometry = stored.getGeometry();
+        GetObservationResponse response = new GetObservationResponse();
+        response.setObservationCollection(
+                ObservationStream.of(Arrays.asList(createObservation(stored), createObservation(inserted))));
+        // the target is the storage EPSG code, but not every geometry is stored in it
+        transformer.modifyResponse(new GetObservationRequest(), response);
+        ObservationStream observations = response.getObservationCollection();
+        while (observations.hasNext()) {
+            observations.next();
+        }
+        assertThat(stored.getGeometry() == storedGeometry, is(true));
+        assertThat(inserted.getGeometry().getSRID(), is(EPSG));
+    }
+
+    @Test
+    public void testTransformSharedFeatureOncePerResponse() throws Exception {
+        transformer.setGeometryHandler(createGeometryHandler());
+        SamplingFeature shared = createFeature("shared", TARGET_EPSG, 2591000, 5780000);
+        Geometry original = shared.getGeometry();
+        Coordinate originalCoordinate = new Coordinate(original.getCoordinate());
+        GetObservationResponse response = new GetObservationResponse();
+        response.setObservationCollection(
+                ObservationStream.of(Arrays.asList(createObservation(shared), createObservation(shared))));
+        transformer.modifyResponse(new GetObservationRequest(), response);
+        ObservationStream observations = response.getObservationCollection();
+        observations.next();
+        Geometry transformed = shared.getGeometry();
+        observations.next();
+        assertThat(shared.getGeometry() == transformed, is(true));
+        assertThat(transformed.getSRID(), is(EPSG));
+        // the transformation creates a copy, the original geometry is unchanged
+        assertThat(original.getSRID(), is(TARGET_EPSG));
+        assertThat(original.getCoordinate().equals2D(originalCoordinate), is(true));
+    }
+
+    @Test
+    public void testTransformMixedSridFeaturesToStorageEpsg() throws Exception {
+        transformer.setGeometryHandler(createGeometryHandler());
+        SamplingFeature stored = createFeature("stored", EPSG, 52.7, 7.5);
+        SamplingFeature inserted = createFeature("inserted", TARGET_EPSG, 2591000, 5780000);
+        Geometry storedGeometry = stored.getGeometry();
+        Map<String, AbstractFeature> features = new LinkedHashMap<>();
+        features.put("stored", stored);
+        features.put("inserted", inserted);
+        GetFeatureOfInterestResponse response = new GetFeatureOfInterestResponse();
+        response.setAbstractFeature(new FeatureCollection(features));
+        transformer.modifyResponse(new GetFeatureOfInterestRequest(), response);
+        assertThat(stored.getGeometry() == storedGeometry, is(true));
+        assertThat(inserted.getGeometry().getSRID(), is(EPSG));
+    }
+
+    private GeometryHandler createGeometryHandler() {
+        GeometryHandler geometryHandler = new GeometryHandler();
+        geometryHandler.setAuthority("EPSG");
+        geometryHandler.setStorageEpsg(EPSG);
+        geometryHandler.setStorage3DEpsg(4979);
+        geometryHandler.setDefaultResponseEpsg(EPSG);
+        geometryHandler.setDefaultResponse3DEpsg(4979);
+        geometryHandler.setSupportedCRS(Joiner.on(",").join(EPSG, 4979, TARGET_EPSG));
+        geometryHandler.setEpsgCodesWithNorthingFirstAxisOrder(Integer.toString(EPSG));
+        geometryHandler.setDatasourceNorthingFirst(false);
+        geometryHandler.init();
+        return geometryHandler;
+    }
+
+    private SamplingFeature createFeature(String identifier, int srid, double x, double y) throws Exception {
+        SamplingFeature feature = new SamplingFeature(new CodeWithAuthority(identifier));
+        feature.setGeometry(JTSHelper.getGeometryFactoryForSRID(srid).createPoint(new Coordinate(x, y)));
+        return feature;
+    }
+
+    private OmObservation createObservation(SamplingFeature feature) {
+        OmObservationConstellation constellation = new OmObservationConstellation();
+        constellation.setFeatureOfInterest(feature);
+        OmObservation observation = new OmObservation();
+        observation.setObservationConstellation(constellation);
+        observation.setValue(new SingleObservationValue<>(new QuantityValue(1.0)));
+        return observation;
+    }
+
 }
@@ -42,6 +42,7 @@ import org.n52.janmayen.http.MediaType;
 import org.n52.shetland.ogc.ows.service.OwsOperationKey;
 import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
 import org.n52.shetland.ogc.ows.service.ResponseFormat;
+import org.n52.shetland.ogc.sos.response.AbstractObservationResponse;
 import org.n52.svalbard.encode.Encoder;
 import org.n52.svalbard.encode.EncoderRepository;
 import org.n52.svalbard.encode.OperationResponseEncoderKey;
@@ -76,22 +77,42 @@ public class AbstractServiceResponseWriter extends AbstractResponseWriter<OwsSer
     @Override
     public void write(OwsServiceResponse asr, OutputStream out, ResponseProxy responseProxy)
             throws IOException, EncodingException {
-        Encoder<Object, OwsServiceResponse> encoder = getEncoder(asr);
-        if (encoder != null) {
-            if (encoder instanceof StreamingEncoder) {
-                ((StreamingEncoder<?, OwsServiceResponse>) encoder).encode(asr, out);
-            } else {
-                // use encoded Object specific writer, e.g. XmlResponseWriter
-                Object encode = encoder.encode(asr);
-                if (encode != null) {
-                    ResponseWriter<Object> writer = this.responseWriterRepository.getWriter(encode.getClass());
-                    if (writer == null) {
-                        throw new RuntimeException("no writer for " + encode.getClass() + " found!");
+        ClosingObservationStream observations = getClosingObservationStream(asr);
+        try {
+            Encoder<Object, OwsServiceResponse> encoder = getEncoder(asr);
+            if (encoder != null) {
+                if (encoder instanceof StreamingEncoder) {
+                    ((StreamingEncoder<?, OwsServiceResponse>) encoder).encode(asr, out);
+                } else {
+                    // use encoded Object specific writer, e.g. XmlResponseWriter
+                    Object encode = encoder.encode(asr);
+                    if (encode != null) {
+                        ResponseWriter<Object> writer = this.responseWriterRepository.getWriter(encode.getClass());
+                        if (writer == null) {
+                            throw new RuntimeException("no writer for " + encode.getClass() + " found!");
+                        }
+                        writer.write(encode, out, responseProxy);
                     }
-                    writer.write(encode, out, responseProxy);
                 }
             }
+        } finally {
+            // release the resources of observation values the encoding did not exhaust
+            if (observations != null) {
+                observations.close();
+            }
+        }
+    }
+
+    private ClosingObservationStream getClosingObservationStream(OwsServiceResponse asr) {
+        if (asr instanceof AbstractObservationResponse
+                && ((AbstractObservationResponse) asr).getObservationCollection() != null) {
+            AbstractObservationResponse response = (AbstractObservationResponse) asr;
+            ClosingObservationStream observations =
+                    new ClosingObservationStream(response.getObservationCollection());
+            response.setObservationCollection(observations);
+            return observations;
         }
+        return null;
     }
 
     @Override
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.coding.encode;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.n52.shetland.ogc.om.ObservationStream;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ObservationStream} of a response that is written, which closes the
+ * {@link AutoCloseable} values of the observations after the response was
+ * written, regardless whether the encoding completed or failed. Values that
+ * hold resources until they are exhausted, e.g. the session of a streaming
+ * value, are released even if the encoding stopped partway.
+ *
+ * @since 5.1.1
+ */
+class ClosingObservationStream implements ObservationStream, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClosingObservationStream.class);
+
+    private final ObservationStream delegate;
+
+    private final List<AutoCloseable> handedOut = new LinkedList<>();
+
+    /**
+     * @param delegate
+     *            the observations of the response
+     */
+    ClosingObservationStream(ObservationStream delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean hasNext() throws OwsExceptionReport {
+        return delegate.hasNext();
+    }
+
+    @Override
+    public OmObservation next() throws OwsExceptionReport {
+        OmObservation observation = delegate.next();
+        if (observation != null && observation.getValue() instanceof AutoCloseable) {
+            handedOut.add((AutoCloseable) observation.getValue());
+        }
+        return observation;
+    }
+
+    /**
+     * Close the values of the observations handed out to the encoder and of
+     * the observations that were not encoded.
+     */
+    @Override
+    public void close() {
+        handedOut.forEach(this::close);
+        handedOut.clear();
+        if (delegate instanceof AutoCloseable) {
+            // e.g. scrolled observations, which would be queried by draining
+            close((AutoCloseable) delegate);
+        } else {
+            try {
+                while (delegate.hasNext()) {
+                    OmObservation observation = delegate.next();
+                    if (observation != null && observation.getValue() instanceof AutoCloseable) {
+                        close((AutoCloseable) observation.getValue());
+                    }
+                }
+            } catch (OwsExceptionReport | RuntimeException e) {
+                LOGGER.error("Error while closing the observations of the response", e);
+            }
+        }
+    }
+
+    private void close(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.error("Error while closing an observation value of the response", e);
+        }
+    }
+}
@@ -63,4 +63,37 @@ public interface CacheFeederHandler {
      */
     void updateCache(SosWritableContentCache cache)
             throws OwsExceptionReport;
+
+    /**
+     * @return if the next update can be executed as delta update on a copy of
+     *         the current cache
+     *
+     * @see #updateCacheDelta(SosWritableContentCache)
+     */
+    default boolean isDeltaUpdateAvailable() {
+        return false;
+    }
+
+    /**
+     * Updates only the cached data of datasets that were added or changed
+     * since the last update.
+     *
+     * @param cache the cache to update, a copy of the current cache
+     *
+     * @return {@code false} if a delta update is not possible and the cache
+     *         has to be updated completely
+     *
+     * @throws OwsExceptionReport if an error occurs during the cache update
+     */
+    default boolean updateCacheDelta(SosWritableContentCache cache)
+            throws OwsExceptionReport {
+        return false;
+    }
+
+    /**
+     * Discards the state of previous updates, so that the next update is a
+     * complete update.
+     */
+    default void resetDeltaUpdate() {
+    }
 }
@@ -28,6 +28,7 @@
  */
 package org.n52.sos.ds.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -55,4 +56,38 @@ public interface GetDataAvailabilityDao extends DefaultDao {
     Map<String, NamedValue<?>> getMetadata(DataAvailability dataAvailability, Object connection)
             throws OwsExceptionReport;
 
+    /**
+     * Get the result times of the datasets with set-based queries instead of
+     * one query per dataset.
+     *
+     * @param datasets
+     *            the dataset ids
+     * @param request
+     *            the request
+     * @param connection
+     *            the connection to use
+     * @return the ordered result times for each dataset id
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     * @since 5.1.1
+     */
+    Map<Long, List<TimeInstant>> getResultTimes(Collection<Long> datasets, GetDataAvailabilityRequest request,
+            Object connection) throws OwsExceptionReport;
+
+    /**
+     * Get the metadata of the datasets with set-based queries instead of one
+     * query per dataset.
+     *
+     * @param datasets
+     *            the dataset ids
+     * @param connection
+     *            the connection to use
+     * @return the metadata for each dataset id
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     * @since 5.1.1
+     */
+    Map<Long, Map<String, NamedValue<?>>> getMetadata(Collection<Long> datasets, Object connection)
+            throws OwsExceptionReport;
+
 }
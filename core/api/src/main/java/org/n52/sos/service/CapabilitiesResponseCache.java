@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+
+import org.apache.xmlbeans.XmlObject;
+import org.joda.time.DateTime;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.iceland.cache.ContentCache;
+import org.n52.iceland.cache.ContentCacheController;
+import org.n52.iceland.event.events.RequestEvent;
+import org.n52.iceland.event.events.ResponseEvent;
+import org.n52.janmayen.event.Event;
+import org.n52.janmayen.event.EventBus;
+import org.n52.janmayen.event.EventListener;
+import org.n52.janmayen.http.MediaTypes;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.ows.extension.Extension;
+import org.n52.shetland.ogc.ows.service.GetCapabilitiesRequest;
+import org.n52.shetland.ogc.ows.service.GetCapabilitiesResponse;
+import org.n52.shetland.ogc.ows.service.OwsOperationKey;
+import org.n52.shetland.ogc.ows.service.OwsServiceRequestContext;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
+import org.n52.shetland.ogc.swe.simpleType.SweAbstractSimpleType;
+import org.n52.sos.cache.SosContentCache;
+import org.n52.sos.event.events.DeleteObservationEvent;
+import org.n52.sos.event.events.FeatureInsertion;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.sos.event.events.ResultInsertion;
+import org.n52.sos.event.events.ResultTemplateInsertion;
+import org.n52.sos.event.events.ResultTemplatesDeletion;
+import org.n52.sos.event.events.SensorDeletion;
+import org.n52.sos.event.events.SensorInsertion;
+import org.n52.sos.event.events.UpdateCache;
+import org.n52.sos.request.operator.TransactionalRequestChecker;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.OperationResponseEncoderKey;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.XmlOptionsHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Bounded cache of encoded dynamic GetCapabilities responses, keyed by
+ * service, version, sections, language and the further request parameters.
+ * The responses are cached after the request/response modifiers were applied
+ * and are returned as static capabilities documents.
+ *
+ * The cache is cleared if the content cache is modified or updated and if
+ * the configuration is changed. Each clearing starts a new generation that
+ * is used as validator for conditional HTTP requests, see
+ * {@link #getETag(String, String, boolean)} and {@link #getLastModified()}.
+ * A size of {@code 0} disables the cache.
+ *
+ * @since 5.1.1
+ */
+@Configurable
+public class CapabilitiesResponseCache implements EventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CapabilitiesResponseCache.class);
+
+    private static final Set<Class<? extends Event>> EVENT_TYPES =
+            ImmutableSet.of(SensorInsertion.class, ObservationInsertion.class, ResultTemplateInsertion.class,
+                    SensorDeletion.class, ResultInsertion.class, UpdateCache.class, ResultTemplatesDeletion.class,
+                    FeatureInsertion.class, DeleteObservationEvent.class);
+
+    private static final Joiner KEY_JOINER = Joiner.on('|').useForNull("");
+
+    private static final long SECOND = 1000L;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private ContentCacheController contentCacheController;
+
+    private EncoderRepository encoderRepository;
+
+    private XmlOptionsHelper xmlOptionsHelper;
+
+    private EventBus serviceEventBus;
+
+    private Optional<TransactionalSecurityConfiguration> transactionalSecurityConfiguration = Optional.empty();
+
+    private volatile int maxSize;
+
+    /**
+     * The time of the current generation in full seconds, so that it can be
+     * used as {@code Last-Modified} header.
+     */
+    private long lastModified = System.currentTimeMillis() / SECOND * SECOND;
+
+    private ContentCache contentCache;
+
+    private DateTime contentCacheUpdateTime;
+
+    @Inject
+    public void setContentCacheController(ContentCacheController contentCacheController) {
+        this.contentCacheController = contentCacheController;
+    }
+
+    @Inject
+    public void setEncoderRepository(EncoderRepository encoderRepository) {
+        this.encoderRepository = encoderRepository;
+    }
+
+    @Inject
+    public void setXmlOptionsHelper(XmlOptionsHelper xmlOptionsHelper) {
+        this.xmlOptionsHelper = xmlOptionsHelper;
+    }
+
+    @Inject
+    public void setServiceEventBus(EventBus serviceEventBus) {
+        this.serviceEventBus = serviceEventBus;
+    }
+
+    @Inject
+    public void setTransactionalSecurityConfiguration(
+            Optional<TransactionalSecurityConfiguration> transactionalSecurityConfiguration) {
+        this.transactionalSecurityConfiguration = transactionalSecurityConfiguration;
+    }
+
+    /**
+     * Set the maximum number of cached responses, {@code 0} disables the
+     * cache.
+     *
+     * @param maxSize
+     *            the maximum number of responses
+     */
+    @Setting(SosSettings.CAPABILITIES_CACHE_SIZE)
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        evict();
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Get the cached response or create, encode and cache it. Created
+     * responses are returned as encoded static capabilities as well. Requests
+     * that are not encoded as XML and static capabilities are not cached.
+     *
+     * @param request
+     *            the request
+     * @param creator
+     *            the creator of responses that are not cached
+     * @return the response
+     * @throws OwsExceptionReport
+     *             if the creation fails
+     */
+    public OwsServiceResponse get(GetCapabilitiesRequest request, Creator creator) throws OwsExceptionReport {
+        if (!isEnabled() || !isCacheable(request)) {
+            return creator.create();
+        }
+        String key = createKey(request);
+        long generation;
+        Entry entry;
+        synchronized (this) {
+            checkContentCache();
+            generation = lastModified;
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.incrementAndGet();
+            GetCapabilitiesResponse response = entry.toResponse();
+            if (serviceEventBus != null) {
+                serviceEventBus.submit(new RequestEvent(request));
+                serviceEventBus.submit(new ResponseEvent(response));
+            }
+            return response;
+        }
+        misses.incrementAndGet();
+        OwsServiceResponse response = creator.create();
+        if (response instanceof GetCapabilitiesResponse && !((GetCapabilitiesResponse) response).isStatic()) {
+            String xml = encode((GetCapabilitiesResponse) response);
+            if (xml != null) {
+                Entry created = new Entry(response.getService(), response.getVersion(), xml);
+                put(key, generation, created);
+                // return the encoded document, so that the response is not encoded twice
+                return created.toResponse();
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Get the entity tag of the current generation for the specified
+     * representation, e.g. the query string of a GET request, as requested in
+     * the specified language by a client that may or may not see the
+     * transactional operations.
+     *
+     * @param representation
+     *            the representation of the request
+     * @param acceptLanguage
+     *            the {@code Accept-Language} header of the request, may be
+     *            {@code null}
+     * @param transactional
+     *            if the transactional operations are shown to the client, see
+     *            {@link #showTransactionalOperations(OwsServiceRequestContext)}
+     * @return the quoted entity tag
+     */
+    public String getETag(String representation, String acceptLanguage, boolean transactional) {
+        return String.format("\"%x-%x\"", getLastModified(),
+                Objects.hash(representation, acceptLanguage, transactional));
+    }
+
+    /**
+     * @param context
+     *            the context of the request
+     * @return if the transactional operations are shown in the capabilities
+     *         for requests of this context
+     */
+    public boolean showTransactionalOperations(OwsServiceRequestContext context) {
+        return transactionalSecurityConfiguration
+                .map(config -> new TransactionalRequestChecker(config).checkBoolean(context))
+                .orElse(true);
+    }
+
+    /**
+     * @return the time of the current generation in milliseconds, truncated
+     *         to full seconds
+     */
+    public synchronized long getLastModified() {
+        checkContentCache();
+        return lastModified;
+    }
+
+    /**
+     * Remove all responses and start a new generation.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        lastModified = Math.max(lastModified + SECOND, System.currentTimeMillis() / SECOND * SECOND);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the ratio of hits to lookups or {@code 0}, if the cache was not
+     *         queried yet
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long lookups = h + misses.get();
+        return lookups == 0 ? 0 : (double) h / lookups;
+    }
+
+    @Override
+    public Set<Class<? extends Event>> getTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public void handle(Event event) {
+        clear();
+    }
+
+    private boolean isCacheable(GetCapabilitiesRequest request) {
+        return request.getRequestContext() == null || !request.getRequestContext().getContentType()
+                .filter(contentType -> !contentType.getSubtype().endsWith("xml")).isPresent();
+    }
+
+    private String createKey(GetCapabilitiesRequest request) {
+        Set<String> sections = new TreeSet<>();
+        if (request.isSetSections()) {
+            sections.addAll(request.getSections());
+        }
+        Set<String> extensions = new TreeSet<>();
+        if (request.getExtensions() != null) {
+            for (Extension<?> extension : request.getExtensions().getExtensions()) {
+                extensions.add(extension.getIdentifier() + "=" + getValue(extension.getValue()));
+            }
+        }
+        return KEY_JOINER.join(request.getService(), request.getVersion(), join(request.getAcceptVersions()),
+                join(request.getAcceptFormats()), request.getUpdateSequence(), request.getCapabilitiesId(),
+                request.getRequestedLanguage(), KEY_JOINER.join(sections), KEY_JOINER.join(extensions),
+                request.getRequestContext() != null ? request.getRequestContext().getContentType().orElse(null)
+                        : null,
+                showTransactionalOperations(request.getRequestContext()));
+    }
+
+    private String join(List<String> values) {
+        return values != null ? KEY_JOINER.join(values) : null;
+    }
+
+    private String getValue(Object value) {
+        if (value instanceof SweAbstractSimpleType) {
+            return ((SweAbstractSimpleType<?>) value).getStringValue();
+        }
+        return String.valueOf(value);
+    }
+
+    private String encode(GetCapabilitiesResponse response) {
+        try {
+            Encoder<Object, GetCapabilitiesResponse> encoder = encoderRepository.getEncoder(
+                    new OperationResponseEncoderKey(new OwsOperationKey(response), MediaTypes.APPLICATION_XML));
+            if (encoder != null) {
+                Object encoded = encoder.encode(response);
+                if (encoded instanceof XmlObject) {
+                    return ((XmlObject) encoded).xmlText(xmlOptionsHelper.getXmlOptions());
+                }
+            }
+        } catch (EncodingException e) {
+            LOGGER.debug("Error while encoding capabilities for the cache, response is not cached!", e);
+        }
+        return null;
+    }
+
+    /**
+     * Clear the cache if the content cache was replaced or updated since the
+     * last check, as content cache updates are applied after the events.
+     */
+    private void checkContentCache() {
+        ContentCache current = contentCacheController.getCache();
+        DateTime updateTime = current instanceof SosContentCache
+                ? ((SosContentCache) current).getLastUpdateTime()
+                : null;
+        if (current != contentCache || !Objects.equals(updateTime, contentCacheUpdateTime)) {
+            contentCache = current;
+            contentCacheUpdateTime = updateTime;
+            clear();
+        }
+    }
+
+    private synchronized void put(String key, long generation, Entry entry) {
+        checkContentCache();
+        if (generation == lastModified) {
+            entries.put(key, entry);
+            evict();
+        }
+    }
+
+    private void evict() {
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates a response that is not yet cached.
+     */
+    @FunctionalInterface
+    public interface Creator {
+        OwsServiceResponse create() throws OwsExceptionReport;
+    }
+
+    private static class Entry {
+        private final String service;
+
+        private final String version;
+
+        private final String xml;
+
+        Entry(String service, String version, String xml) {
+            this.service = service;
+            this.version = version;
+            this.xml = xml;
+        }
+
+        GetCapabilitiesResponse toResponse() {
+            GetCapabilitiesResponse response = new GetCapabilitiesResponse(service, version);
+            response.setXmlString(xml);
+            return response;
+        }
+    }
+}
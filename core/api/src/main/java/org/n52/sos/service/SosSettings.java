@@ -38,9 +38,17 @@ public interface SosSettings {
     String LIST_ONLY_PARENT_OFFERINGS = "service.capabilities.listOnlyParentOfferings";
     String UPDATE_FEATURE_GEOMETRY = "service.updateFeatureGeometry";
     String CACHE_FILE_FOLDER = "service.cacheFileFolder";
+    String CACHE_PERSISTENCE_DELAY = "service.cachePersistenceDelay";
+    String CACHE_COPY_ON_WRITE = "service.cacheCopyOnWrite";
+    String CACHE_UPDATE_COALESCING_WINDOW = "service.cacheUpdateCoalescing.window";
+    String CACHE_UPDATE_COALESCING_BATCH_SIZE = "service.cacheUpdateCoalescing.batchSize";
+    String LATEST_VALUE_CACHE_SIZE = "service.latestValueCache.size";
+    String PROCEDURE_DESCRIPTION_CACHE_SIZE = "service.procedureDescriptionCache.size";
+    String CAPABILITIES_CACHE_SIZE = "service.capabilitiesCache.size";
     String CREATE_FOI_GEOM_FROM_SAMPLING_GEOMS = "service.createFeatureGeometryFromSamplingGeometries";
     String ALLOW_TEMPLATE_WITHOUT_PROCEDURE_FEATURE = "service.allowTemplateWithoutProcedureAndFeature";
     String INCLUDE_RESULT_TIME_FOR_MERGING = "service.includeResultTimeForMerging";
     String CHECK_FOR_DUPLICITY = "service.checkForDuplicity";
     String STA_SUPPORTS_URLS = "service.sta.supports.urls";
+    String SKIP_DUPLICATE_OBSERVATIONS = "service.skipDuplicateObservations";
 }
@@ -28,6 +28,7 @@
  */
 package org.n52.sos.util;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -41,6 +42,9 @@ import org.geotools.referencing.CRS.AxisOrder;
 import org.geotools.referencing.ReferencingFactoryFinder;
 import org.geotools.referencing.factory.AbstractAuthorityFactory;
 import org.geotools.referencing.factory.DeferredAuthorityFactory;
+import org.geotools.referencing.operation.matrix.GeneralMatrix;
+import org.geotools.referencing.operation.transform.ConcatenatedTransform;
+import org.geotools.referencing.operation.transform.ProjectiveTransform;
 import org.geotools.util.factory.Hints;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
@@ -122,6 +126,20 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
 
     private final Map<Integer, CoordinateReferenceSystem> crsCache = Maps.newConcurrentMap();
 
+    private final Map<Integer, Boolean> northingFirstCache = Maps.newConcurrentMap();
+
+    /**
+     * {@link MathTransform}s per source and target EPSG code pair, see
+     * {@link #getTransformKey(int, int)}.
+     */
+    private final Map<Long, MathTransform> mathTransformCache = Maps.newConcurrentMap();
+
+    /**
+     * {@link MathTransform}s for geometries per source and target EPSG code
+     * pair that include the switching of the coordinate axis, if needed.
+     */
+    private final Map<Long, MathTransform> geometryTransformCache = Maps.newConcurrentMap();
+
     private String srsNamePrefixUrl;
 
     @Setting(CodingSettings.SRS_NAME_PREFIX_URL)
@@ -141,6 +159,7 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
         }
         Hints hints = new Hints(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, eastingFirstEpsgCode);
         this.crsAuthority = ReferencingFactoryFinder.getCRSAuthorityFactory(this.authority, hints);
+        clearSupportedCRSMap();
     }
 
     @Override
@@ -426,8 +445,14 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
      *             If an error occurs
      */
     public boolean isNorthingFirstEpsgCode(int epsgCode) throws CodedException {
+        Boolean northingFirst = northingFirstCache.get(epsgCode);
+        if (northingFirst != null) {
+            return northingFirst;
+        }
         try {
-            return AxisOrder.NORTH_EAST.equals(CRS.getAxisOrder(CRS.decode(EPSG_PREFIX + epsgCode))) ? true : false;
+            northingFirst = AxisOrder.NORTH_EAST.equals(CRS.getAxisOrder(CRS.decode(EPSG_PREFIX + epsgCode)));
+            northingFirstCache.put(epsgCode, northingFirst);
+            return northingFirst;
         } catch (FactoryException e) {
             throw new NoApplicableCodeException().causedBy(e).withMessage("The EPSG '%d' is invalid", epsgCode);
         }
@@ -483,13 +508,6 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
         return JTSHelper.switchCoordinateAxisOrder(geom);
     }
 
-    private Geometry switchCoordinateAxisIfNeeded(Geometry geometry, int targetSRID) throws OwsExceptionReport {
-        if (!shouldSwitchCoordinateAxis(geometry, targetSRID)) {
-            return geometry;
-        }
-        return JTSHelper.switchCoordinateAxisOrder(geometry);
-    }
-
     private boolean shouldSwitchCoordinateAxis(Geometry geom) throws CodedException {
         if (geom == null || geom.isEmpty()) {
             return false;
@@ -497,13 +515,6 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
         return isDatasourceNorthingFirst() != isNorthingFirstEpsgCode(geom.getSRID());
     }
 
-    private boolean shouldSwitchCoordinateAxis(Geometry geom, int targetSRID) throws CodedException {
-        if (geom == null || geom.isEmpty()) {
-            return false;
-        }
-        return isNorthingFirstEpsgCode(geom.getSRID()) != isNorthingFirstEpsgCode(targetSRID);
-    }
-
     /**
      * Get filter geometry for BBOX spatial filter and non spatial datasource.
      *
@@ -646,6 +657,67 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
         return transform(geometry, targetSRID, sourceCRS, targetCRS);
     }
 
+    /**
+     * Transform the geometries to this EPSG code. The transformation is
+     * looked up once per source EPSG code.
+     *
+     * @param geometries
+     *            Geometries to transform
+     * @param targetSRID
+     *            Target EPSG code
+     *
+     * @return Transformed geometries in the order of the input
+     *
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     */
+    public List<Geometry> transform(Collection<? extends Geometry> geometries, int targetSRID)
+            throws OwsExceptionReport {
+        List<Geometry> transformed = new ArrayList<>(geometries.size());
+        for (Geometry geometry : geometries) {
+            transformed.add(transform(geometry, targetSRID));
+        }
+        return transformed;
+    }
+
+    /**
+     * Transform packed coordinates from the source to the target EPSG code in
+     * one pass. The coordinate axis are switched like for geometries.
+     *
+     * @param coordinates
+     *            the coordinates, packed with the dimension of the source CRS
+     * @param sourceSRID
+     *            Source EPSG code
+     * @param targetSRID
+     *            Target EPSG code
+     *
+     * @return the transformed coordinates, packed with the dimension of the
+     *         target CRS
+     *
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     */
+    public double[] transform(double[] coordinates, int sourceSRID, int targetSRID) throws OwsExceptionReport {
+        if (coordinates == null || coordinates.length == 0 || sourceSRID == targetSRID) {
+            return coordinates;
+        }
+        CoordinateReferenceSystem sourceCRS = getCRS(sourceSRID);
+        CoordinateReferenceSystem targetCRS = getCRS(targetSRID);
+        if (sourceCRS.equals(targetCRS)) {
+            return coordinates;
+        }
+        MathTransform transform = getGeometryTransform(sourceSRID, targetSRID, sourceCRS, targetCRS);
+        int points = coordinates.length / transform.getSourceDimensions();
+        double[] transformed = new double[points * transform.getTargetDimensions()];
+        try {
+            transform.transform(coordinates, 0, transformed, 0, points);
+            return transformed;
+        } catch (TransformException te) {
+            throw new NoApplicableCodeException().causedBy(te)
+                    .withMessage("Transformation from EPSG code '%s' to '%s' fails!", sourceSRID, targetSRID);
+        }
+    }
+
     /**
      * Transform geometry.
      *
@@ -669,18 +741,65 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
         if (sourceCRS.equals(targetCRS)) {
             return geometry;
         }
-        Geometry switchedCoordiantes = switchCoordinateAxisIfNeeded(geometry, targetSRID);
         try {
-            MathTransform transform = CRS.findMathTransform(sourceCRS, targetCRS);
-            Geometry transformed = JTS.transform(switchedCoordiantes, transform);
+            MathTransform transform = getGeometryTransform(geometry.getSRID(), targetSRID, sourceCRS, targetCRS);
+            Geometry transformed = JTS.transform(geometry, transform);
             transformed.setSRID(targetSRID);
             return transformed;
-        } catch (FactoryException | MismatchedDimensionException | TransformException fe) {
+        } catch (MismatchedDimensionException | TransformException fe) {
             throw new NoApplicableCodeException().causedBy(fe).withMessage(EPSG_NOT_SUPPORTED_TMEPLATE,
-                    switchedCoordiantes.getSRID());
+                    geometry.getSRID());
         }
     }
 
+    /**
+     * Get the cached transformation for geometries, that switches the
+     * coordinate axis before the transformation if the axis order of the
+     * EPSG codes differ.
+     */
+    private MathTransform getGeometryTransform(int sourceSRID, int targetSRID,
+            CoordinateReferenceSystem sourceCRS, CoordinateReferenceSystem targetCRS) throws OwsExceptionReport {
+        long key = getTransformKey(sourceSRID, targetSRID);
+        MathTransform transform = geometryTransformCache.get(key);
+        if (transform == null) {
+            transform = getMathTransform(sourceSRID, targetSRID, sourceCRS, targetCRS);
+            if (isNorthingFirstEpsgCode(sourceSRID) != isNorthingFirstEpsgCode(targetSRID)) {
+                transform = ConcatenatedTransform.create(createAxisSwitch(transform.getSourceDimensions()), transform);
+            }
+            geometryTransformCache.put(key, transform);
+        }
+        return transform;
+    }
+
+    private MathTransform getMathTransform(int sourceSRID, int targetSRID, CoordinateReferenceSystem sourceCRS,
+            CoordinateReferenceSystem targetCRS) throws OwsExceptionReport {
+        long key = getTransformKey(sourceSRID, targetSRID);
+        MathTransform transform = mathTransformCache.get(key);
+        if (transform == null) {
+            try {
+                transform = CRS.findMathTransform(sourceCRS, targetCRS);
+            } catch (FactoryException fe) {
+                throw new NoApplicableCodeException().causedBy(fe).withMessage(EPSG_NOT_SUPPORTED_TMEPLATE,
+                        sourceSRID);
+            }
+            mathTransformCache.put(key, transform);
+        }
+        return transform;
+    }
+
+    private static MathTransform createAxisSwitch(int dimension) {
+        GeneralMatrix matrix = new GeneralMatrix(dimension + 1);
+        matrix.setElement(0, 0, 0);
+        matrix.setElement(0, 1, 1);
+        matrix.setElement(1, 0, 1);
+        matrix.setElement(1, 1, 0);
+        return ProjectiveTransform.create(matrix);
+    }
+
+    private static long getTransformKey(int sourceSRID, int targetSRID) {
+        return ((long) sourceSRID << Integer.SIZE) | (targetSRID & 0xffffffffL);
+    }
+
     /**
      * Get CRS from EPSG code.
      *
@@ -761,14 +880,11 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
             CoordinateReferenceSystem targetCRS = getCRS(targetSRID);
             try {
                 if (sourceCRS.getCoordinateSystem().getDimension() == targetCRS.getCoordinateSystem().getDimension()) {
-                    MathTransform transform = CRS.findMathTransform(sourceCRS, targetCRS);
+                    MathTransform transform = getMathTransform(sourceSRID, targetSRID, sourceCRS, targetCRS);
                     Envelope transformed = JTS.transform(envelope, transform);
                     return transformed;
                 }
                 return envelope;
-            } catch (FactoryException fe) {
-                throw new NoApplicableCodeException().causedBy(fe).withMessage(EPSG_NOT_SUPPORTED_TMEPLATE,
-                        sourceSRID);
             } catch (MismatchedDimensionException | TransformException mde) {
                 throw new NoApplicableCodeException().causedBy(mde)
                         .withMessage("Transformation from EPSG code '%s' to '%s' fails!", sourceSRID, targetSRID);
@@ -783,6 +899,9 @@ public class GeometryHandler implements GeometryTransformer, Constructable, Dest
     @VisibleForTesting
     protected void clearSupportedCRSMap() {
         crsCache.clear();
+        northingFirstCache.clear();
+        mathTransformCache.clear();
+        geometryTransformCache.clear();
     }
 
     public Set<String> addAuthorityCrsPrefix(Collection<String> crses) {
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.coding.encode;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.om.ObservationStream;
+import org.n52.shetland.ogc.om.ObservationValue;
+import org.n52.shetland.ogc.om.OmObservation;
+
+public class ClosingObservationStreamTest {
+
+    @Test
+    public void should_close_handed_out_and_remaining_values() throws Exception {
+        ObservationValue<?> first = createClosableValue();
+        ObservationValue<?> second = createClosableValue();
+        ClosingObservationStream stream = new ClosingObservationStream(
+                ObservationStream.of(Arrays.asList(createObservation(first), createObservation(second))));
+        // the encoding stops after the first observation
+        assertThat(stream.hasNext(), is(true));
+        stream.next();
+        stream.close();
+        verify((AutoCloseable) first).close();
+        verify((AutoCloseable) second).close();
+        stream.close();
+        verify((AutoCloseable) first, times(1)).close();
+        verify((AutoCloseable) second, times(1)).close();
+    }
+
+    @Test
+    public void should_close_all_values_if_one_fails() throws Exception {
+        ObservationValue<?> first = createClosableValue();
+        ObservationValue<?> second = createClosableValue();
+        doThrow(new IllegalStateException()).when((AutoCloseable) first).close();
+        ClosingObservationStream stream = new ClosingObservationStream(
+                ObservationStream.of(Arrays.asList(createObservation(first), createObservation(second))));
+        stream.close();
+        verify((AutoCloseable) second).close();
+    }
+
+    @Test
+    public void should_close_closeable_observations_without_draining() throws Exception {
+        ObservationStream observations =
+                mock(ObservationStream.class, withSettings().extraInterfaces(AutoCloseable.class));
+        when(observations.hasNext()).thenReturn(true);
+        ClosingObservationStream stream = new ClosingObservationStream(observations);
+        stream.close();
+        verify((AutoCloseable) observations).close();
+        verify(observations, never()).next();
+    }
+
+    private ObservationValue<?> createClosableValue() {
+        return mock(ObservationValue.class, withSettings().extraInterfaces(AutoCloseable.class));
+    }
+
+    private OmObservation createObservation(ObservationValue<?> value) {
+        OmObservation observation = new OmObservation();
+        observation.setValue(value);
+        return observation;
+    }
+}
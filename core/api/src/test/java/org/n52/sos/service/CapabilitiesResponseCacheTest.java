@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.iceland.cache.ContentCacheController;
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.ows.service.GetCapabilitiesRequest;
+import org.n52.shetland.ogc.ows.service.GetCapabilitiesResponse;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.request.InsertObservationRequest;
+import org.n52.shetland.ogc.sos.response.InsertObservationResponse;
+import org.n52.shetland.ogc.swe.simpleType.SweText;
+import org.n52.shetland.ogc.swes.SwesExtension;
+import org.n52.sos.cache.SosContentCache;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.util.XmlOptionsHelper;
+
+public class CapabilitiesResponseCacheTest {
+
+    private static final String CONTENTS = "Contents";
+
+    private static final String SERVICE_IDENTIFICATION = "ServiceIdentification";
+
+    private final CapabilitiesResponseCache cache = new CapabilitiesResponseCache();
+
+    private final SosContentCache contentCache = mock(SosContentCache.class);
+
+    private Encoder<Object, GetCapabilitiesResponse> encoder;
+
+    private int created;
+
+    @Before
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void init() throws Exception {
+        ContentCacheController contentCacheController = mock(ContentCacheController.class);
+        when(contentCacheController.getCache()).thenReturn(contentCache);
+        when(contentCache.getLastUpdateTime()).thenReturn(new DateTime(1000));
+        encoder = mock(Encoder.class);
+        when(encoder.encode(any(GetCapabilitiesResponse.class)))
+                .thenReturn(XmlObject.Factory.parse("<Capabilities/>"));
+        EncoderRepository encoderRepository = mock(EncoderRepository.class);
+        when(encoderRepository.getEncoder(any())).thenReturn((Encoder) encoder);
+        XmlOptionsHelper xmlOptionsHelper = mock(XmlOptionsHelper.class);
+        when(xmlOptionsHelper.getXmlOptions()).thenReturn(new XmlOptions());
+        cache.setContentCacheController(contentCacheController);
+        cache.setEncoderRepository(encoderRepository);
+        cache.setXmlOptionsHelper(xmlOptionsHelper);
+        cache.setMaxSize(10);
+    }
+
+    @Test
+    public void should_encode_created_responses_once() throws Exception {
+        OwsServiceResponse miss = get(createRequest(CONTENTS));
+        OwsServiceResponse hit = get(createRequest(CONTENTS));
+
+        assertThat(created, is(1));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(miss, instanceOf(GetCapabilitiesResponse.class));
+        assertThat(((GetCapabilitiesResponse) miss).isStatic(), is(true));
+        assertThat(((GetCapabilitiesResponse) hit).isStatic(), is(true));
+        assertThat(((GetCapabilitiesResponse) hit).getXmlString(),
+                is(((GetCapabilitiesResponse) miss).getXmlString()));
+        verify(encoder, times(1)).encode(any(GetCapabilitiesResponse.class));
+    }
+
+    @Test
+    public void should_cache_sections_and_languages_separately() throws OwsExceptionReport {
+        GetCapabilitiesRequest german = createRequest(CONTENTS);
+        SweText language = (SweText) new SweText().setValue("ger")
+                .setIdentifier(OWSConstants.AdditionalRequestParams.language.name());
+        german.addExtension(new SwesExtension<SweText>().setValue(language)
+                .setIdentifier(OWSConstants.AdditionalRequestParams.language.name()));
+
+        get(createRequest(CONTENTS));
+        get(createRequest(SERVICE_IDENTIFICATION));
+        get(german);
+        assertThat(created, is(3));
+
+        get(createRequest(CONTENTS));
+        get(createRequest(SERVICE_IDENTIFICATION));
+        get(german);
+        assertThat(created, is(3));
+        assertThat(cache.size(), is(3));
+    }
+
+    @Test
+    public void should_start_a_new_generation_on_events() throws OwsExceptionReport {
+        get(createRequest(CONTENTS));
+        String eTag = cache.getETag("request=GetCapabilities", null, true);
+        long lastModified = cache.getLastModified();
+        assertThat(cache.getETag("request=GetCapabilities", null, true), is(eTag));
+        assertThat(cache.getETag("request=GetCapabilities&sections=Contents", null, true), not(eTag));
+        assertThat(cache.getETag("request=GetCapabilities", "de", true), not(eTag));
+        assertThat(cache.getETag("request=GetCapabilities", null, false), not(eTag));
+
+        cache.handle(new ObservationInsertion(new InsertObservationRequest(), new InsertObservationResponse()));
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getLastModified(), greaterThan(lastModified));
+        assertThat(cache.getETag("request=GetCapabilities", null, true), not(eTag));
+        get(createRequest(CONTENTS));
+        assertThat(created, is(2));
+    }
+
+    @Test
+    public void should_start_a_new_generation_after_content_cache_updates() throws OwsExceptionReport {
+        get(createRequest(CONTENTS));
+        long lastModified = cache.getLastModified();
+
+        when(contentCache.getLastUpdateTime()).thenReturn(new DateTime(2000));
+
+        assertThat(cache.getLastModified(), greaterThan(lastModified));
+        get(createRequest(CONTENTS));
+        assertThat(created, is(2));
+    }
+
+    @Test
+    public void should_not_cache_if_disabled() throws OwsExceptionReport {
+        cache.setMaxSize(0);
+        OwsServiceResponse response = get(createRequest(CONTENTS));
+        get(createRequest(CONTENTS));
+
+        assertThat(created, is(2));
+        assertThat(((GetCapabilitiesResponse) response).isStatic(), is(false));
+    }
+
+    private OwsServiceResponse get(GetCapabilitiesRequest request) throws OwsExceptionReport {
+        return cache.get(request, () -> {
+            created++;
+            return new GetCapabilitiesResponse(SosConstants.SOS, Sos2Constants.SERVICEVERSION);
+        });
+    }
+
+    private GetCapabilitiesRequest createRequest(String section) {
+        GetCapabilitiesRequest request = new GetCapabilitiesRequest(SosConstants.SOS);
+        request.setVersion(Sos2Constants.SERVICEVERSION);
+        request.setSections(Collections.singletonList(section));
+        return request;
+    }
+}
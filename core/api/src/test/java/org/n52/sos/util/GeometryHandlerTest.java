@@ -28,6 +28,9 @@
  */
 package org.n52.sos.util;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.Is;
 import org.junit.Assert;
@@ -168,6 +171,29 @@ public class GeometryHandlerTest {
                 .distance(get31467Geometry()) < DISTANCE, Is.is(true));
     }
 
+    @Test
+    public void shouldTransformCoordinatesLikeGeometries() throws OwsExceptionReport {
+        geometryHandler.clearSupportedCRSMap();
+        Geometry geometry = get31467Geometry();
+        Geometry transformed = geometryHandler.transform(geometry, EPSG_4326);
+        double[] coordinates = geometryHandler.transform(
+                new double[] { geometry.getCoordinate().x, geometry.getCoordinate().y }, EPSG_31467, EPSG_4326);
+        Assert.assertEquals(2, coordinates.length);
+        Assert.assertEquals(transformed.getCoordinate().x, coordinates[0], DISTANCE);
+        Assert.assertEquals(transformed.getCoordinate().y, coordinates[1], DISTANCE);
+    }
+
+    @Test
+    public void shouldTransformGeometries() throws OwsExceptionReport {
+        geometryHandler.clearSupportedCRSMap();
+        List<Geometry> transformed =
+                geometryHandler.transform(Arrays.asList(get31467Geometry(), get4326Geometry()), EPSG_4326);
+        Assert.assertEquals(2, transformed.size());
+        Assert.assertEquals(EPSG_4326, transformed.get(0).getSRID());
+        MatcherAssert.assertThat(transformed.get(0).distance(get4326Geometry()) < DISTANCE_TRANSFORMED, Is.is(true));
+        MatcherAssert.assertThat(transformed.get(1).distance(get4326Geometry()) < DISTANCE, Is.is(true));
+    }
+
     @Test
     public void changeEpsgCodesWithNorthingFirstAxisOrder() throws OwsExceptionReport {
         MatcherAssert.assertThat(geometryHandler.isNorthingFirstEpsgCode(EPSG_31467), Is.is(true));
@@ -34,10 +34,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.locationtech.jts.geom.Envelope;
 
@@ -58,7 +58,92 @@ import com.google.common.collect.Maps;
 public abstract class AbstractContentCache implements ContentCache {
     private static final long serialVersionUID = -5233383843446821643L;
 
+    private final boolean unsynchronizedCollections;
+
     protected AbstractContentCache() {
+        this(true);
+    }
+
+    /**
+     * @param synchronizedCollections
+     *            if the collections of this cache should be synchronized. Only
+     *            caches that are never modified after they are published to
+     *            other threads may use unsynchronized collections.
+     */
+    protected AbstractContentCache(boolean synchronizedCollections) {
+        this.unsynchronizedCollections = !synchronizedCollections;
+    }
+
+    /**
+     * @return if the collections of this cache are synchronized
+     */
+    protected boolean isSynchronizedCollections() {
+        return !unsynchronizedCollections;
+    }
+
+    /**
+     * Creates a new empty map for this cache, synchronized depending on
+     * {@link #isSynchronizedCollections()}. Maps of unsynchronized caches are
+     * copied on the first modification if they are shared with an other
+     * snapshot.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     *
+     * @return the map
+     */
+    protected <K, V> Map<K, V> newCacheMap() {
+        return isSynchronizedCollections() ? newSynchronizedMap() : new CopyOnWriteCacheMap<>();
+    }
+
+    /**
+     * Creates a new set for this cache from the specified elements,
+     * synchronized depending on {@link #isSynchronizedCollections()}.
+     *
+     * @param <T>      the element type
+     * @param elements the elements
+     *
+     * @return the set
+     */
+    protected <T> Set<T> newCacheSet(Iterable<T> elements) {
+        if (isSynchronizedCollections()) {
+            return newSynchronizedSet(elements);
+        } else if (elements == null) {
+            return new HashSet<>();
+        } else if (elements instanceof Collection) {
+            return new HashSet<>((Collection<T>) elements);
+        } else {
+            return Streams.stream(elements).collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    /**
+     * Creates a new empty set for this cache, synchronized depending on
+     * {@link #isSynchronizedCollections()}. Sets of unsynchronized caches are
+     * copied on the first modification if they are shared with an other
+     * snapshot.
+     *
+     * @param <T> the element type
+     *
+     * @return the set
+     */
+    protected <T> Set<T> newCacheSet() {
+        return isSynchronizedCollections() ? newSynchronizedSet() : new CopyOnWriteCacheSet<>();
+    }
+
+    /**
+     * Creates a new empty {@link BiMap} for this cache, synchronized depending
+     * on {@link #isSynchronizedCollections()}. Maps of unsynchronized caches
+     * are copied on the first modification if they are shared with an other
+     * snapshot.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     *
+     * @return the map
+     */
+    protected <K, V> BiMap<K, V> newCacheBiMap() {
+        return isSynchronizedCollections() ? newSynchronizedBiMap() : new CopyOnWriteCacheBiMap<>();
     }
 
     /**
@@ -212,12 +297,51 @@ public abstract class AbstractContentCache implements ContentCache {
      * @param value the value to remove
      */
     protected static <K, V> void removeValue(Map<K, Set<V>> map, V value) {
-        Iterator<K> iterator = map.keySet().iterator();
-        while (iterator.hasNext()) {
-            Set<V> set = map.get(iterator.next());
-            if (set.remove(value) && set.isEmpty()) {
-                iterator.remove();
-            }
+        // only the entries containing the value are modified, so that maps
+        // shared by snapshots are only copied if necessary
+        Set<K> keys = map.entrySet().stream()
+                .filter(e -> e.getValue().contains(value))
+                .map(Entry::getKey)
+                .collect(toSet());
+        for (K key : keys) {
+            map.computeIfPresent(key, (k, set) -> set.remove(value) && set.isEmpty() ? null : set);
+        }
+    }
+
+    /**
+     * Remove value from the values of the key, the entry is kept if the
+     * values are empty. The values are modified using
+     * {@link Map#computeIfPresent(Object, java.util.function.BiFunction)}, so
+     * that maps shared by snapshots are copied before.
+     *
+     * @param <K>   the key type
+     * @param <V>   the value type
+     * @param map   map to modify
+     * @param key   the key
+     * @param value the value to remove
+     */
+    protected static <K, V> void removeValue(Map<K, Set<V>> map, K key, V value) {
+        Set<V> values = map.get(key);
+        if (values != null && values.contains(value)) {
+            map.computeIfPresent(key, (k, set) -> {
+                set.remove(value);
+                return set;
+            });
+        }
+    }
+
+    /**
+     * Remove the entry with the specified value from the {@link BiMap}.
+     *
+     * @param <K>   the key type
+     * @param <V>   the value type
+     * @param map   map to modify
+     * @param value the value to remove
+     */
+    protected static <K, V> void removeKey(BiMap<K, V> map, V value) {
+        K key = map.inverse().get(value);
+        if (key != null) {
+            map.remove(key);
         }
     }
 
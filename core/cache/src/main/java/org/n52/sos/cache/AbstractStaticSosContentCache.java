@@ -43,6 +43,14 @@ public abstract class AbstractStaticSosContentCache extends AbstractContentCache
 
     private transient SupportedTypeRepository supportedTypeRepository;
 
+    protected AbstractStaticSosContentCache() {
+        super();
+    }
+
+    protected AbstractStaticSosContentCache(boolean synchronizedCollections) {
+        super(synchronizedCollections);
+    }
+
     public SupportedTypeRepository getSupportedTypeRepository() {
         return supportedTypeRepository;
     }
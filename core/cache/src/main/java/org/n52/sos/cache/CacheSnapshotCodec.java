@@ -0,0 +1,619 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.locationtech.jts.geom.Envelope;
+import org.n52.janmayen.i18n.LocalizedString;
+import org.n52.janmayen.i18n.MultilingualString;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.util.ReferencedEnvelope;
+
+/**
+ * Binary, versioned snapshot format of an {@link InMemoryCacheImpl}.
+ * <p>
+ * A snapshot consists of a header (magic number and format version), a
+ * sequence of sections, each identified by a stable id and prefixed with its
+ * length, a table of all strings contained in the cache and a CRC32 checksum
+ * of the sections and the table. Values reference strings by their index in
+ * the table, so every identifier is stored and decoded only once. The sections
+ * are streamed to the output as they are written and the table follows them,
+ * so the snapshot is never held in memory as a whole. Sections with unknown
+ * ids are skipped and missing sections leave the respective value empty, so
+ * fields can be added to the cache without invalidating existing snapshots.
+ * Incompatible changes have to increase {@link #VERSION}.
+ *
+ * @since 5.1.1
+ */
+public final class CacheSnapshotCodec {
+
+    /**
+     * The magic number of a snapshot ({@code SOSC}).
+     */
+    public static final int MAGIC = 0x534F5343;
+
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 2;
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int TRAILER_LENGTH = 4;
+
+    private static final int NULL = -1;
+
+    /**
+     * The id marking the end of the sections.
+     */
+    private static final int END = -1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CacheSnapshotCodec() {
+    }
+
+    /**
+     * Writes a snapshot of the specified cache to the channel.
+     *
+     * @param cache
+     *            the cache
+     * @param channel
+     *            the channel to write to
+     * @throws IOException
+     *             if writing fails
+     */
+    public static void write(InMemoryCacheImpl cache, WritableByteChannel channel) throws IOException {
+        // the channel is closed by the caller
+        DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        CRC32 crc = new CRC32();
+        DataOutputStream content = new DataOutputStream(new CheckedOutputStream(out, crc));
+        Writer writer = new Writer(content);
+        cache.snapshot(writer);
+        writer.finish();
+        content.flush();
+        out.writeInt((int) crc.getValue());
+        out.flush();
+    }
+
+    /**
+     * Reads a snapshot from the buffer.
+     *
+     * @param buffer
+     *            the buffer containing the snapshot
+     * @return the cache
+     * @throws IOException
+     *             if the buffer does not contain a valid snapshot of a
+     *             supported version
+     */
+    public static InMemoryCacheImpl read(ByteBuffer buffer) throws IOException {
+        try {
+            ByteBuffer in = buffer.duplicate();
+            if (in.remaining() < HEADER_LENGTH || in.getInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported cache snapshot version %d", version));
+            }
+            if (in.remaining() < TRAILER_LENGTH) {
+                throw new IOException("Corrupt cache snapshot, missing checksum");
+            }
+            int trailer = in.limit() - TRAILER_LENGTH;
+            ByteBuffer content = in.duplicate();
+            content.limit(trailer);
+            CRC32 crc = new CRC32();
+            crc.update(content.duplicate());
+            if ((int) crc.getValue() != in.getInt(trailer)) {
+                throw new IOException("Corrupt cache snapshot, checksum mismatch");
+            }
+            InMemoryCacheImpl cache = new InMemoryCacheImpl();
+            cache.snapshot(new Reader(cache, content));
+            return cache;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("Corrupt cache snapshot", e);
+        }
+    }
+
+    /**
+     * The fields of a cache contained in a snapshot. Depending on the
+     * implementation the values are either written to the snapshot or read
+     * from it into the supplied (empty) collections. Section ids must not be
+     * reused for different values.
+     */
+    interface Fields {
+
+        int integer(int id, int value) throws IOException;
+
+        DateTime dateTime(int id, DateTime value) throws IOException;
+
+        ReferencedEnvelope envelope(int id, ReferencedEnvelope value) throws IOException;
+
+        void timePeriod(int id, TimePeriod value) throws IOException;
+
+        void identifiers(int id, Set<String> value) throws IOException;
+
+        void integers(int id, Set<Integer> value) throws IOException;
+
+        void locales(int id, Set<Locale> value) throws IOException;
+
+        void strings(int id, Map<String, String> value) throws IOException;
+
+        void dateTimes(int id, Map<String, DateTime> value) throws IOException;
+
+        void envelopes(int id, Map<String, ReferencedEnvelope> value) throws IOException;
+
+        void multilingualStrings(int id, Map<String, MultilingualString> value) throws IOException;
+
+        default void relations(int id, Map<String, Set<String>> value) throws IOException {
+            relations(id, value, Function.identity(), Function.identity());
+        }
+
+        <K> void relations(int id, Map<K, Set<String>> value, Function<K, String> toString,
+                Function<String, K> fromString) throws IOException;
+
+    }
+
+    @FunctionalInterface
+    private interface SectionWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface SectionReader {
+        void read(ByteBuffer in);
+    }
+
+    /**
+     * Streams the sections of a snapshot to the output and collects the table
+     * of the contained strings, which is written after the sections. Only the
+     * current section is buffered to prefix it with its length.
+     */
+    private static final class Writer implements Fields {
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final List<String> table = new ArrayList<>();
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream section = new ByteArrayOutputStream();
+        private final DataOutputStream sectionOut = new DataOutputStream(section);
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void finish() throws IOException {
+            out.writeInt(END);
+            out.writeInt(table.size());
+            for (String string : table) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        private void section(int id, SectionWriter writer) throws IOException {
+            section.reset();
+            writer.write(sectionOut);
+            sectionOut.flush();
+            out.writeInt(id);
+            out.writeInt(section.size());
+            section.writeTo(out);
+        }
+
+        private void string(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(NULL);
+            } else {
+                Integer index = strings.get(value);
+                if (index == null) {
+                    index = table.size();
+                    strings.put(value, index);
+                    table.add(value);
+                }
+                out.writeInt(index);
+            }
+        }
+
+        private void dateTime(DataOutputStream out, DateTime value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeLong(value.getMillis());
+                string(out, value.getZone().getID());
+            }
+        }
+
+        private void envelope(DataOutputStream out, ReferencedEnvelope value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeInt(value.getSrid());
+                Envelope envelope = value.getEnvelope();
+                out.writeBoolean(envelope != null);
+                if (envelope != null) {
+                    out.writeDouble(envelope.getMinX());
+                    out.writeDouble(envelope.getMaxX());
+                    out.writeDouble(envelope.getMinY());
+                    out.writeDouble(envelope.getMaxY());
+                }
+            }
+        }
+
+        private void identifierSet(DataOutputStream out, Set<String> value) throws IOException {
+            synchronized (value) {
+                out.writeInt(value.size());
+                for (String element : value) {
+                    string(out, element);
+                }
+            }
+        }
+
+        @Override
+        public int integer(int id, int value) throws IOException {
+            section(id, out -> out.writeInt(value));
+            return value;
+        }
+
+        @Override
+        public DateTime dateTime(int id, DateTime value) throws IOException {
+            section(id, out -> dateTime(out, value));
+            return value;
+        }
+
+        @Override
+        public ReferencedEnvelope envelope(int id, ReferencedEnvelope value) throws IOException {
+            section(id, out -> envelope(out, value));
+            return value;
+        }
+
+        @Override
+        public void timePeriod(int id, TimePeriod value) throws IOException {
+            section(id, out -> {
+                dateTime(out, value.getStart());
+                dateTime(out, value.getEnd());
+            });
+        }
+
+        @Override
+        public void identifiers(int id, Set<String> value) throws IOException {
+            section(id, out -> identifierSet(out, value));
+        }
+
+        @Override
+        public void integers(int id, Set<Integer> value) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Integer element : value) {
+                        out.writeInt(element);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void locales(int id, Set<Locale> value) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Locale element : value) {
+                        string(out, element.toLanguageTag());
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void strings(int id, Map<String, String> value) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Map.Entry<String, String> entry : value.entrySet()) {
+                        string(out, entry.getKey());
+                        string(out, entry.getValue());
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void dateTimes(int id, Map<String, DateTime> value) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Map.Entry<String, DateTime> entry : value.entrySet()) {
+                        string(out, entry.getKey());
+                        dateTime(out, entry.getValue());
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void envelopes(int id, Map<String, ReferencedEnvelope> value) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Map.Entry<String, ReferencedEnvelope> entry : value.entrySet()) {
+                        string(out, entry.getKey());
+                        envelope(out, entry.getValue());
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void multilingualStrings(int id, Map<String, MultilingualString> value) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Map.Entry<String, MultilingualString> entry : value.entrySet()) {
+                        string(out, entry.getKey());
+                        List<LocalizedString> localizations = new ArrayList<>();
+                        if (entry.getValue() != null) {
+                            entry.getValue().forEach(localizations::add);
+                        }
+                        out.writeInt(localizations.size());
+                        for (LocalizedString localization : localizations) {
+                            string(out, localization.getLang().toLanguageTag());
+                            string(out, localization.getText());
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public <K> void relations(int id, Map<K, Set<String>> value, Function<K, String> toString,
+                Function<String, K> fromString) throws IOException {
+            section(id, out -> {
+                synchronized (value) {
+                    out.writeInt(value.size());
+                    for (Map.Entry<K, Set<String>> entry : value.entrySet()) {
+                        string(out, toString.apply(entry.getKey()));
+                        identifierSet(out, entry.getValue() == null ? Collections.emptySet() : entry.getValue());
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads the sections of a snapshot into a cache. The sections and the
+     * string table are only indexed. Each section is decoded directly into
+     * the cache when the cache requests it, and each string is decoded when
+     * it is referenced for the first time.
+     */
+    private static final class Reader implements Fields {
+        private final InMemoryCacheImpl cache;
+        private final Map<Integer, ByteBuffer> sections = new HashMap<>();
+        private final ByteBuffer table;
+        private final int[] offsets;
+        private final String[] strings;
+
+        Reader(InMemoryCacheImpl cache, ByteBuffer in) {
+            this.cache = cache;
+            for (int id = in.getInt(); id != END; id = in.getInt()) {
+                int length = in.getInt();
+                ByteBuffer section = in.slice();
+                section.limit(length);
+                in.position(in.position() + length);
+                sections.put(id, section);
+            }
+            this.table = in.duplicate();
+            this.offsets = new int[in.getInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.position();
+                int length = in.getInt();
+                in.position(in.position() + length);
+            }
+            this.strings = new String[offsets.length];
+        }
+
+        private void section(int id, SectionReader reader) {
+            ByteBuffer section = sections.remove(id);
+            if (section != null) {
+                reader.read(section);
+            }
+        }
+
+        private String string(ByteBuffer in) {
+            int index = in.getInt();
+            if (index == NULL) {
+                return null;
+            }
+            String string = strings[index];
+            if (string == null) {
+                ByteBuffer bytes = table.duplicate();
+                bytes.position(offsets[index]);
+                int length = bytes.getInt();
+                bytes.limit(bytes.position() + length);
+                string = StandardCharsets.UTF_8.decode(bytes).toString();
+                strings[index] = string;
+            }
+            return string;
+        }
+
+        private DateTime dateTime(ByteBuffer in) {
+            if (in.get() == 0) {
+                return null;
+            }
+            long millis = in.getLong();
+            return new DateTime(millis, DateTimeZone.forID(string(in)));
+        }
+
+        private ReferencedEnvelope envelope(ByteBuffer in) {
+            if (in.get() == 0) {
+                return null;
+            }
+            int srid = in.getInt();
+            Envelope envelope = null;
+            if (in.get() != 0) {
+                double minX = in.getDouble();
+                double maxX = in.getDouble();
+                double minY = in.getDouble();
+                double maxY = in.getDouble();
+                envelope = new Envelope(minX, maxX, minY, maxY);
+            }
+            return new ReferencedEnvelope(envelope, srid);
+        }
+
+        private void identifiers(ByteBuffer in, Set<String> value) {
+            for (int i = in.getInt(); i > 0; i--) {
+                value.add(string(in));
+            }
+        }
+
+        @Override
+        public int integer(int id, int value) {
+            ByteBuffer section = sections.remove(id);
+            return section == null ? value : section.getInt();
+        }
+
+        @Override
+        public DateTime dateTime(int id, DateTime value) {
+            ByteBuffer section = sections.remove(id);
+            return section == null ? value : dateTime(section);
+        }
+
+        @Override
+        public ReferencedEnvelope envelope(int id, ReferencedEnvelope value) {
+            ByteBuffer section = sections.remove(id);
+            return section == null ? value : envelope(section);
+        }
+
+        @Override
+        public void timePeriod(int id, TimePeriod value) {
+            section(id, in -> {
+                value.setStart(dateTime(in));
+                value.setEnd(dateTime(in));
+            });
+        }
+
+        @Override
+        public void identifiers(int id, Set<String> value) {
+            section(id, in -> identifiers(in, value));
+        }
+
+        @Override
+        public void integers(int id, Set<Integer> value) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    value.add(in.getInt());
+                }
+            });
+        }
+
+        @Override
+        public void locales(int id, Set<Locale> value) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    value.add(Locale.forLanguageTag(string(in)));
+                }
+            });
+        }
+
+        @Override
+        public void strings(int id, Map<String, String> value) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    value.put(string(in), string(in));
+                }
+            });
+        }
+
+        @Override
+        public void dateTimes(int id, Map<String, DateTime> value) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    value.put(string(in), dateTime(in));
+                }
+            });
+        }
+
+        @Override
+        public void envelopes(int id, Map<String, ReferencedEnvelope> value) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    value.put(string(in), envelope(in));
+                }
+            });
+        }
+
+        @Override
+        public void multilingualStrings(int id, Map<String, MultilingualString> value) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    String key = string(in);
+                    MultilingualString localizations = new MultilingualString();
+                    for (int j = in.getInt(); j > 0; j--) {
+                        localizations.addLocalization(Locale.forLanguageTag(string(in)), string(in));
+                    }
+                    value.put(key, localizations);
+                }
+            });
+        }
+
+        @Override
+        public <K> void relations(int id, Map<K, Set<String>> value, Function<K, String> toString,
+                Function<String, K> fromString) {
+            section(id, in -> {
+                for (int i = in.getInt(); i > 0; i--) {
+                    K key = fromString.apply(string(in));
+                    Set<String> identifiers = cache.newIdentifierSet();
+                    identifiers(in, identifiers);
+                    value.put(key, identifiers);
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
+
+/**
+ * {@link BiMap} of a {@link SnapshotCacheImpl} that shares the map of the
+ * snapshot it was copied from until it is modified for the first time. The
+ * {@link #inverse()} view of an unmodified map is unmodifiable.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ *
+ * @since 5.1.1
+ */
+class CopyOnWriteCacheBiMap<K, V> extends CopyOnWriteCacheMap<K, V> implements BiMap<K, V> {
+
+    @Override
+    protected Map<K, V> createCopy(Map<K, V> map, UnaryOperator<V> copier) {
+        return HashBiMap.create(map);
+    }
+
+    @Override
+    protected BiMap<K, V> read() {
+        Map<K, V> map = super.read();
+        return map instanceof BiMap ? (BiMap<K, V>) map : HashBiMap.create(map);
+    }
+
+    @Override
+    protected BiMap<K, V> write() {
+        return (BiMap<K, V>) super.write();
+    }
+
+    @Override
+    public V forcePut(K key, V value) {
+        return write().forcePut(key, value);
+    }
+
+    @Override
+    public Set<V> values() {
+        return isCopied() ? read().values() : Collections.unmodifiableSet(read().values());
+    }
+
+    @Override
+    public BiMap<V, K> inverse() {
+        return isCopied() ? read().inverse() : Maps.unmodifiableBiMap(read()).inverse();
+    }
+}
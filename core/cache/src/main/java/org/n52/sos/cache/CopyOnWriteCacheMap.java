@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Map of a {@link SnapshotCacheImpl} that shares the map of the snapshot it
+ * was copied from until it is modified for the first time. Only the maps that
+ * are modified by an update are copied, including their values if a value
+ * copier is set.
+ *
+ * Values returned by {@link #get(Object)} may be shared with the source
+ * snapshot, modifications of mutable values have to be done using the
+ * modifying methods of this map (e.g.
+ * {@link #computeIfAbsent(Object, Function)}). The views of an unmodified map
+ * are unmodifiable.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ *
+ * @since 5.1.1
+ */
+class CopyOnWriteCacheMap<K, V> implements Map<K, V> {
+
+    private Map<K, V> source = Collections.emptyMap();
+
+    private Map<K, V> copy;
+
+    private UnaryOperator<V> valueCopier = UnaryOperator.identity();
+
+    /**
+     * Share the specified map until this map is modified.
+     *
+     * @param map
+     *            the map to share
+     * @param copier
+     *            the function to copy the values with
+     */
+    void share(Map<K, V> map, UnaryOperator<V> copier) {
+        this.source = map instanceof CopyOnWriteCacheMap ? ((CopyOnWriteCacheMap<K, V>) map).read() : map;
+        this.valueCopier = copier;
+        this.copy = null;
+    }
+
+    /**
+     * @return if this map is not shared with an other map
+     */
+    boolean isCopied() {
+        return copy != null;
+    }
+
+    protected Map<K, V> read() {
+        return copy != null ? copy : source;
+    }
+
+    protected Map<K, V> write() {
+        if (copy == null) {
+            copy = createCopy(source, valueCopier);
+            source = Collections.emptyMap();
+        }
+        return copy;
+    }
+
+    protected Map<K, V> createCopy(Map<K, V> map, UnaryOperator<V> copier) {
+        Map<K, V> c = new HashMap<>(Math.max(16, (int) (map.size() / .75f) + 1));
+        map.forEach((k, v) -> c.put(k, copier.apply(v)));
+        return c;
+    }
+
+    @Override
+    public int size() {
+        return read().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read().isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return read().containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return read().containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return read().get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return read().getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        read().forEach(action);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return copy != null ? copy.keySet() : Collections.unmodifiableSet(source.keySet());
+    }
+
+    @Override
+    public Collection<V> values() {
+        return copy != null ? copy.values() : Collections.unmodifiableCollection(source.values());
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return copy != null ? copy.entrySet() : Collections.unmodifiableMap(source).entrySet();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return write().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return containsKey(key) ? write().remove(key) : null;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (!m.isEmpty()) {
+            write().putAll(m);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (copy != null) {
+            copy.clear();
+        } else {
+            copy = createCopy(Collections.emptyMap(), valueCopier);
+            source = Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return write().putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return write().remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return write().replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return write().replace(key, value);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        write().replaceAll(function);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return write().computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return write().computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return write().compute(key, remappingFunction);
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        return write().merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || read().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return read().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return read().toString();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Set of a {@link SnapshotCacheImpl} that shares the set of the snapshot it
+ * was copied from until it is modified for the first time. The iterator of an
+ * unmodified set does not support removal.
+ *
+ * @param <T>
+ *            the element type
+ *
+ * @since 5.1.1
+ */
+class CopyOnWriteCacheSet<T> implements Set<T> {
+
+    private Set<T> source = Collections.emptySet();
+
+    private Set<T> copy;
+
+    /**
+     * Share the specified set until this set is modified.
+     *
+     * @param set
+     *            the set to share
+     */
+    void share(Set<T> set) {
+        this.source = set instanceof CopyOnWriteCacheSet ? ((CopyOnWriteCacheSet<T>) set).read() : set;
+        this.copy = null;
+    }
+
+    private Set<T> read() {
+        return copy != null ? copy : source;
+    }
+
+    private Set<T> write() {
+        if (copy == null) {
+            copy = new HashSet<>(source);
+            source = Collections.emptySet();
+        }
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return read().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return read().isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return read().contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return read().containsAll(c);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return copy != null ? copy.iterator() : Collections.unmodifiableSet(source).iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        read().forEach(action);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return read().toArray();
+    }
+
+    @Override
+    public <A> A[] toArray(A[] a) {
+        return read().toArray(a);
+    }
+
+    @Override
+    public boolean add(T e) {
+        return !contains(e) && write().add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return contains(o) && write().remove(o);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return !c.isEmpty() && write().addAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return write().retainAll(c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return !c.isEmpty() && write().removeAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        return write().removeIf(filter);
+    }
+
+    @Override
+    public void clear() {
+        copy = new HashSet<>();
+        source = Collections.emptySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || read().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return read().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return read().toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only dictionary that maps identifiers to dense integer ids. Each
+ * identifier is stored only once, so relations of the cache can be kept as
+ * {@link IdentifierSet}s of integer ids instead of sets of strings. Ids are
+ * never reused, identifiers of removed entities are dropped when a complete
+ * cache update copies the relations into a new dictionary (see
+ * {@link InMemoryCacheImpl#InMemoryCacheImpl(InMemoryCacheImpl)}).
+ *
+ * @since 5.1.1
+ */
+public class IdentifierDictionary implements Serializable {
+
+    private static final long serialVersionUID = 2284376213596498321L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private transient Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private transient volatile String[] identifiers = new String[INITIAL_CAPACITY];
+
+    private transient int size;
+
+    /**
+     * Get the id of the identifier, add the identifier to the dictionary if
+     * it is not yet contained.
+     *
+     * @param identifier
+     *            the identifier
+     * @return the id
+     */
+    public int intern(String identifier) {
+        Integer id = ids.get(identifier);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(identifier);
+            if (id != null) {
+                return id;
+            }
+            String[] current = identifiers;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = identifier;
+            // publish the array before the id is visible to other threads
+            identifiers = current;
+            ids.put(identifier, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Get the id of the identifier without adding it to the dictionary.
+     *
+     * @param identifier
+     *            the identifier
+     * @return the id or {@code -1} if the identifier is not contained
+     */
+    public int lookup(Object identifier) {
+        if (identifier == null) {
+            return -1;
+        }
+        Integer id = ids.get(identifier);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Get the identifier of the id.
+     *
+     * @param id
+     *            the id
+     * @return the identifier
+     */
+    public String get(int id) {
+        return identifiers[id];
+    }
+
+    /**
+     * @return the number of identifiers in this dictionary
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeObject(identifiers[i]);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        String[] values = new String[Math.max(count, INITIAL_CAPACITY)];
+        Map<String, Integer> map = new ConcurrentHashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            values[i] = (String) in.readObject();
+            map.put(values[i], i);
+        }
+        this.ids = map;
+        this.size = count;
+        this.identifiers = values;
+    }
+
+}
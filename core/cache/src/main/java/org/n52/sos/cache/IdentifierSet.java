@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Set of identifiers that stores the ids of an {@link IdentifierDictionary} in
+ * a sorted {@code int} array. This set is not synchronized.
+ *
+ * @since 5.1.1
+ */
+public class IdentifierSet extends AbstractSet<String> implements Serializable {
+
+    private static final long serialVersionUID = -6109867322405634129L;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final IdentifierDictionary dictionary;
+
+    private int[] ids = EMPTY;
+
+    private int size;
+
+    private transient int modCount;
+
+    /**
+     * Creates a new empty set.
+     *
+     * @param dictionary
+     *            the dictionary of the identifiers
+     */
+    public IdentifierSet(IdentifierDictionary dictionary) {
+        this.dictionary = Objects.requireNonNull(dictionary, "dictionary");
+    }
+
+    /**
+     * Creates a new set containing the specified identifiers.
+     *
+     * @param dictionary
+     *            the dictionary of the identifiers
+     * @param identifiers
+     *            the identifiers
+     */
+    public IdentifierSet(IdentifierDictionary dictionary, Iterable<String> identifiers) {
+        this(dictionary);
+        if (identifiers instanceof IdentifierSet && ((IdentifierSet) identifiers).dictionary == dictionary) {
+            IdentifierSet other = (IdentifierSet) identifiers;
+            // the monitor of synchronized sets
+            synchronized (other) {
+                this.ids = Arrays.copyOf(other.ids, other.size);
+                this.size = other.size;
+            }
+        } else if (identifiers != null) {
+            for (String identifier : identifiers) {
+                add(identifier);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int id = dictionary.lookup(o);
+        return id >= 0 && indexOf(id) >= 0;
+    }
+
+    @Override
+    public boolean add(String identifier) {
+        Objects.requireNonNull(identifier, "identifier");
+        int id = dictionary.intern(identifier);
+        // ids are assigned in ascending order, so new identifiers are appended
+        if (size == 0 || ids[size - 1] < id) {
+            ensureCapacity(size + 1);
+            ids[size++] = id;
+            modCount++;
+            return true;
+        }
+        int index = indexOf(id);
+        if (index >= 0) {
+            return false;
+        }
+        int insertion = -(index + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(ids, insertion, ids, insertion + 1, size - insertion);
+        ids[insertion] = id;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends String> identifiers) {
+        if (identifiers.size() <= 1) {
+            return super.addAll(identifiers);
+        }
+        int[] added = new int[identifiers.size()];
+        int count = 0;
+        for (String identifier : identifiers) {
+            added[count++] = dictionary.intern(Objects.requireNonNull(identifier, "identifier"));
+        }
+        Arrays.sort(added);
+        int[] merged = new int[size + count];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < count) {
+            int next;
+            if (j == count || i < size && ids[i] <= added[j]) {
+                next = ids[i++];
+            } else {
+                next = added[j++];
+            }
+            if (k == 0 || merged[k - 1] != next) {
+                merged[k++] = next;
+            }
+        }
+        if (k == size) {
+            return false;
+        }
+        this.ids = merged;
+        this.size = k;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int id = dictionary.lookup(o);
+        int index = id < 0 ? -1 : indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        this.ids = EMPTY;
+        this.size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new IdentifierIterator();
+    }
+
+    private int indexOf(int id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+        modCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (ids.length < capacity) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, ids.length + (ids.length >> 1) + 1));
+        }
+    }
+
+    /**
+     * @return the dictionary of the identifiers
+     */
+    IdentifierDictionary getDictionary() {
+        return dictionary;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // write the used ids only without trimming the array of this set
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("dictionary", dictionary);
+        fields.put("ids", ids.length == size ? ids : Arrays.copyOf(ids, size));
+        fields.put("size", size);
+        out.writeFields();
+    }
+
+    private class IdentifierIterator implements Iterator<String> {
+        private int cursor;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public String next() {
+            checkForComodification();
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            last = cursor++;
+            return dictionary.get(ids[last]);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(last);
+            cursor = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+}
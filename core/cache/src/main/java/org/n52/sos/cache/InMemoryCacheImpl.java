@@ -28,17 +28,18 @@
  */
 package org.n52.sos.cache;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
 import org.locationtech.jts.geom.Envelope;
@@ -65,119 +66,119 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
 
     private static final long serialVersionUID = 3630601584420744019L;
 
-    private final Map<String, DateTime> maxPhenomenonTimeForOfferings = newSynchronizedMap();
+    private final Map<String, DateTime> maxPhenomenonTimeForOfferings = newCacheMap();
 
-    private final Map<String, DateTime> minPhenomenonTimeForOfferings = newSynchronizedMap();
+    private final Map<String, DateTime> minPhenomenonTimeForOfferings = newCacheMap();
 
-    private final Map<String, DateTime> maxResultTimeForOfferings = newSynchronizedMap();
+    private final Map<String, DateTime> maxResultTimeForOfferings = newCacheMap();
 
-    private final Map<String, DateTime> minResultTimeForOfferings = newSynchronizedMap();
+    private final Map<String, DateTime> minResultTimeForOfferings = newCacheMap();
 
-    private final Map<String, DateTime> maxPhenomenonTimeForProcedures = newSynchronizedMap();
+    private final Map<String, DateTime> maxPhenomenonTimeForProcedures = newCacheMap();
 
-    private final Map<String, DateTime> minPhenomenonTimeForProcedures = newSynchronizedMap();
+    private final Map<String, DateTime> minPhenomenonTimeForProcedures = newCacheMap();
 
-    private final Map<String, Set<String>> allowedObservationTypeForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> allowedObservationTypeForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> allowedFeatureOfInterestTypeForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> allowedFeatureOfInterestTypeForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> childFeaturesForFeatureOfInterest = newSynchronizedMap();
+    private final Map<String, Set<String>> childFeaturesForFeatureOfInterest = newCacheMap();
 
-    private final Map<String, Set<String>> childProceduresForProcedures = newSynchronizedMap();
+    private final Map<String, Set<String>> childProceduresForProcedures = newCacheMap();
 
-    private final Map<String, Set<String>> childOfferingsForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> childOfferingsForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> compositePhenomenonsForProcedure = newSynchronizedMap();
+    private final Map<String, Set<String>> compositePhenomenonsForProcedure = newCacheMap();
 
-    private final Map<String, Set<String>> compositePhenomenonsForOffering = newSynchronizedMap();
+    private final Map<String, Set<String>> compositePhenomenonsForOffering = newCacheMap();
 
-    private final Map<String, Set<String>> compositePhenomenonsForObservableProperty = newSynchronizedMap();
+    private final Map<String, Set<String>> compositePhenomenonsForObservableProperty = newCacheMap();
 
-    private final Map<String, Set<String>> featuresOfInterestForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> featuresOfInterestForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> offeringsForFeaturesOfInterest = newSynchronizedMap();
+    private final Map<String, Set<String>> offeringsForFeaturesOfInterest = newCacheMap();
 
-    private final Map<String, Set<String>> featuresOfInterestForResultTemplates = newSynchronizedMap();
+    private final Map<String, Set<String>> featuresOfInterestForResultTemplates = newCacheMap();
 
-    private final Map<String, Set<String>> observablePropertiesForCompositePhenomenons = newSynchronizedMap();
+    private final Map<String, Set<String>> observablePropertiesForCompositePhenomenons = newCacheMap();
 
-    private final Map<String, Set<String>> observablePropertiesForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> observablePropertiesForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> observablePropertiesForProcedures = newSynchronizedMap();
+    private final Map<String, Set<String>> observablePropertiesForProcedures = newCacheMap();
 
-    private final Map<String, Set<String>> observationTypesForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> observationTypesForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> featureOfInterestTypesForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> featureOfInterestTypesForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> observedPropertiesForResultTemplates = newSynchronizedMap();
+    private final Map<String, Set<String>> observedPropertiesForResultTemplates = newCacheMap();
 
-    private final Map<String, Set<String>> offeringsForObservableProperties = newSynchronizedMap();
+    private final Map<String, Set<String>> offeringsForObservableProperties = newCacheMap();
 
-    private final Map<String, Set<String>> offeringsForProcedures = newSynchronizedMap();
+    private final Map<String, Set<String>> offeringsForProcedures = newCacheMap();
 
-    private final Map<String, Set<String>> parentFeaturesForFeaturesOfInterest = newSynchronizedMap();
+    private final Map<String, Set<String>> parentFeaturesForFeaturesOfInterest = newCacheMap();
 
-    private final Map<String, Set<String>> parentProceduresForProcedures = newSynchronizedMap();
+    private final Map<String, Set<String>> parentProceduresForProcedures = newCacheMap();
 
-    private final Map<String, Set<String>> parentOfferingsForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> parentOfferingsForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> proceduresForFeaturesOfInterest = newSynchronizedMap();
+    private final Map<String, Set<String>> proceduresForFeaturesOfInterest = newCacheMap();
 
-    private final Map<String, Set<String>> proceduresForObservableProperties = newSynchronizedMap();
+    private final Map<String, Set<String>> proceduresForObservableProperties = newCacheMap();
 
-    private final Map<String, Set<String>> proceduresForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> proceduresForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> hiddenChildProceduresForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> hiddenChildProceduresForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> relatedFeaturesForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> relatedFeaturesForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> resultTemplatesForOfferings = newSynchronizedMap();
+    private final Map<String, Set<String>> resultTemplatesForOfferings = newCacheMap();
 
-    private final Map<String, Set<String>> rolesForRelatedFeatures = newSynchronizedMap();
+    private final Map<String, Set<String>> rolesForRelatedFeatures = newCacheMap();
 
-    private final Map<String, ReferencedEnvelope> envelopeForOfferings = newSynchronizedMap();
+    private final Map<String, ReferencedEnvelope> envelopeForOfferings = newCacheMap();
 
-    private final Map<String, String> nameForOfferings = newSynchronizedMap();
+    private final Map<String, String> nameForOfferings = newCacheMap();
 
-    private final Map<String, MultilingualString> i18nNameForOfferings = newSynchronizedMap();
+    private final Map<String, MultilingualString> i18nNameForOfferings = newCacheMap();
 
-    private final Map<String, MultilingualString> i18nDescriptionForOfferings = newSynchronizedMap();
+    private final Map<String, MultilingualString> i18nDescriptionForOfferings = newCacheMap();
 
-    private final Set<Integer> epsgCodes = newSynchronizedSet();
+    private final Set<Integer> epsgCodes = newCacheSet();
 
-    private final Set<String> featuresOfInterest = newSynchronizedSet();
+    private final Set<String> featuresOfInterest = newCacheSet();
 
-    private final Set<String> procedures = newSynchronizedSet();
+    private final Set<String> procedures = newCacheSet();
 
-    private final Set<String> resultTemplates = newSynchronizedSet();
+    private final Set<String> resultTemplates = newCacheSet();
 
-    private final Set<String> offerings = newSynchronizedSet();
+    private final Set<String> offerings = newCacheSet();
 
-    private final Set<String> compositePhenomenons = newSynchronizedSet();
+    private final Set<String> compositePhenomenons = newCacheSet();
 
     private final TimePeriod globalPhenomenonTimeEnvelope = new TimePeriod();
 
     private final TimePeriod globalResultTimeEnvelope = new TimePeriod();
 
-    private final Map<String, ReferencedEnvelope> spatialFilteringProfileEnvelopeForOfferings = newSynchronizedMap();
+    private final Map<String, ReferencedEnvelope> spatialFilteringProfileEnvelopeForOfferings = newCacheMap();
 
-    private final Set<Locale> supportedLanguages = newSynchronizedSet();
+    private final Set<Locale> supportedLanguages = newCacheSet();
 
-    private final Set<String> requestableProcedureDescriptionFormats = newSynchronizedSet();
+    private final Set<String> requestableProcedureDescriptionFormats = newCacheSet();
 
-    private final BiMap<String, String> featureOfInterestIdentifierHumanReadableName = newSynchronizedBiMap();
+    private final BiMap<String, String> featureOfInterestIdentifierHumanReadableName = newCacheBiMap();
 
-    private final BiMap<String, String> observablePropertyIdentifierHumanReadableName = newSynchronizedBiMap();
+    private final BiMap<String, String> observablePropertyIdentifierHumanReadableName = newCacheBiMap();
 
-    private final BiMap<String, String> procedureIdentifierHumanReadableName = newSynchronizedBiMap();
+    private final BiMap<String, String> procedureIdentifierHumanReadableName = newCacheBiMap();
 
-    private final BiMap<String, String> offeringIdentifierHumanReadableName = newSynchronizedBiMap();
+    private final BiMap<String, String> offeringIdentifierHumanReadableName = newCacheBiMap();
 
-    private final Map<TypeInstance, Set<String>> typeInstanceProcedures = newSynchronizedMap();
+    private final Map<TypeInstance, Set<String>> typeInstanceProcedures = newCacheMap();
 
-    private final Map<ComponentAggregation, Set<String>> componentAggregationProcedures = newSynchronizedMap();
+    private final Map<ComponentAggregation, Set<String>> componentAggregationProcedures = newCacheMap();
 
-    private final Map<String, Set<String>> typeOfProceduresMap = newSynchronizedMap();
+    private final Map<String, Set<String>> typeOfProceduresMap = newCacheMap();
 
     private int defaultEpsgCode = 4326;
 
@@ -185,15 +186,123 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
 
     private DateTime updateTime;
 
-    private final Map<String, Set<String>> procedureProcedureDescriptionFormats = newSynchronizedMap();
+    private final Map<String, Set<String>> procedureProcedureDescriptionFormats = newCacheMap();
 
-    private final Set<String> publishedFeatureOfInterest = newSynchronizedSet();
+    private final Set<String> publishedFeatureOfInterest = newCacheSet();
 
-    private final Set<String> publishedProcedure = newSynchronizedSet();
+    private final Set<String> publishedProcedure = newCacheSet();
 
-    private final Set<String> publishedOffering = newSynchronizedSet();
+    private final Set<String> publishedOffering = newCacheSet();
 
-    private final Set<String> publishedObservableProperty = newSynchronizedSet();
+    private final Set<String> publishedObservableProperty = newCacheSet();
+
+    private IdentifierDictionary identifiers;
+
+    public InMemoryCacheImpl() {
+        super();
+        this.identifiers = new IdentifierDictionary();
+    }
+
+    /**
+     * Creates a deep copy of the specified cache. The copy uses a new
+     * {@link IdentifierDictionary} that contains only the identifiers still
+     * contained in the relations, so identifiers of removed entities are
+     * dropped.
+     *
+     * @param source
+     *            the cache to copy
+     */
+    public InMemoryCacheImpl(InMemoryCacheImpl source) {
+        this(source, true, new IdentifierDictionary());
+    }
+
+    /**
+     * Creates a deep copy of the specified cache sharing the
+     * {@link IdentifierDictionary} of the source.
+     *
+     * @param source
+     *            the cache to copy
+     * @param synchronizedCollections
+     *            if the collections of the copy should be synchronized
+     */
+    protected InMemoryCacheImpl(InMemoryCacheImpl source, boolean synchronizedCollections) {
+        this(source, synchronizedCollections, source.getIdentifierDictionary());
+    }
+
+    private InMemoryCacheImpl(InMemoryCacheImpl source, boolean synchronizedCollections,
+            IdentifierDictionary identifiers) {
+        super(synchronizedCollections);
+        this.identifiers = identifiers;
+        setSupportedTypeRepository(source.getSupportedTypeRepository());
+        this.defaultEpsgCode = source.defaultEpsgCode;
+        this.globalEnvelope = copyOf(source.globalEnvelope);
+        this.updateTime = source.updateTime;
+        copy(source.maxPhenomenonTimeForOfferings, this.maxPhenomenonTimeForOfferings);
+        copy(source.minPhenomenonTimeForOfferings, this.minPhenomenonTimeForOfferings);
+        copy(source.maxResultTimeForOfferings, this.maxResultTimeForOfferings);
+        copy(source.minResultTimeForOfferings, this.minResultTimeForOfferings);
+        copy(source.maxPhenomenonTimeForProcedures, this.maxPhenomenonTimeForProcedures);
+        copy(source.minPhenomenonTimeForProcedures, this.minPhenomenonTimeForProcedures);
+        copyValues(source.allowedObservationTypeForOfferings, this.allowedObservationTypeForOfferings);
+        copyValues(source.allowedFeatureOfInterestTypeForOfferings, this.allowedFeatureOfInterestTypeForOfferings);
+        copyValues(source.childFeaturesForFeatureOfInterest, this.childFeaturesForFeatureOfInterest);
+        copyValues(source.childProceduresForProcedures, this.childProceduresForProcedures);
+        copyValues(source.childOfferingsForOfferings, this.childOfferingsForOfferings);
+        copyValues(source.compositePhenomenonsForProcedure, this.compositePhenomenonsForProcedure);
+        copyValues(source.compositePhenomenonsForOffering, this.compositePhenomenonsForOffering);
+        copyValues(source.compositePhenomenonsForObservableProperty, this.compositePhenomenonsForObservableProperty);
+        copyValues(source.featuresOfInterestForOfferings, this.featuresOfInterestForOfferings);
+        copyValues(source.offeringsForFeaturesOfInterest, this.offeringsForFeaturesOfInterest);
+        copyValues(source.featuresOfInterestForResultTemplates, this.featuresOfInterestForResultTemplates);
+        copyValues(source.observablePropertiesForCompositePhenomenons,
+                this.observablePropertiesForCompositePhenomenons);
+        copyValues(source.observablePropertiesForOfferings, this.observablePropertiesForOfferings);
+        copyValues(source.observablePropertiesForProcedures, this.observablePropertiesForProcedures);
+        copyValues(source.observationTypesForOfferings, this.observationTypesForOfferings);
+        copyValues(source.featureOfInterestTypesForOfferings, this.featureOfInterestTypesForOfferings);
+        copyValues(source.observedPropertiesForResultTemplates, this.observedPropertiesForResultTemplates);
+        copyValues(source.offeringsForObservableProperties, this.offeringsForObservableProperties);
+        copyValues(source.offeringsForProcedures, this.offeringsForProcedures);
+        copyValues(source.parentFeaturesForFeaturesOfInterest, this.parentFeaturesForFeaturesOfInterest);
+        copyValues(source.parentProceduresForProcedures, this.parentProceduresForProcedures);
+        copyValues(source.parentOfferingsForOfferings, this.parentOfferingsForOfferings);
+        copyValues(source.proceduresForFeaturesOfInterest, this.proceduresForFeaturesOfInterest);
+        copyValues(source.proceduresForObservableProperties, this.proceduresForObservableProperties);
+        copyValues(source.proceduresForOfferings, this.proceduresForOfferings);
+        copyValues(source.hiddenChildProceduresForOfferings, this.hiddenChildProceduresForOfferings);
+        copyValues(source.relatedFeaturesForOfferings, this.relatedFeaturesForOfferings);
+        copyValues(source.resultTemplatesForOfferings, this.resultTemplatesForOfferings);
+        copyValues(source.rolesForRelatedFeatures, this.rolesForRelatedFeatures);
+        copy(source.envelopeForOfferings, this.envelopeForOfferings);
+        copy(source.nameForOfferings, this.nameForOfferings);
+        copy(source.i18nNameForOfferings, this.i18nNameForOfferings);
+        copy(source.i18nDescriptionForOfferings, this.i18nDescriptionForOfferings);
+        copy(source.epsgCodes, this.epsgCodes);
+        copy(source.featuresOfInterest, this.featuresOfInterest);
+        copy(source.procedures, this.procedures);
+        copy(source.resultTemplates, this.resultTemplates);
+        copy(source.offerings, this.offerings);
+        copy(source.compositePhenomenons, this.compositePhenomenons);
+        this.globalPhenomenonTimeEnvelope.setStart(source.globalPhenomenonTimeEnvelope.getStart());
+        this.globalPhenomenonTimeEnvelope.setEnd(source.globalPhenomenonTimeEnvelope.getEnd());
+        this.globalResultTimeEnvelope.setStart(source.globalResultTimeEnvelope.getStart());
+        this.globalResultTimeEnvelope.setEnd(source.globalResultTimeEnvelope.getEnd());
+        copy(source.spatialFilteringProfileEnvelopeForOfferings, this.spatialFilteringProfileEnvelopeForOfferings);
+        copy(source.supportedLanguages, this.supportedLanguages);
+        copy(source.requestableProcedureDescriptionFormats, this.requestableProcedureDescriptionFormats);
+        copy(source.featureOfInterestIdentifierHumanReadableName, this.featureOfInterestIdentifierHumanReadableName);
+        copy(source.observablePropertyIdentifierHumanReadableName, this.observablePropertyIdentifierHumanReadableName);
+        copy(source.procedureIdentifierHumanReadableName, this.procedureIdentifierHumanReadableName);
+        copy(source.offeringIdentifierHumanReadableName, this.offeringIdentifierHumanReadableName);
+        copyValues(source.typeInstanceProcedures, this.typeInstanceProcedures);
+        copyValues(source.componentAggregationProcedures, this.componentAggregationProcedures);
+        copyValues(source.typeOfProceduresMap, this.typeOfProceduresMap);
+        copyValues(source.procedureProcedureDescriptionFormats, this.procedureProcedureDescriptionFormats);
+        copy(source.publishedFeatureOfInterest, this.publishedFeatureOfInterest);
+        copy(source.publishedProcedure, this.publishedProcedure);
+        copy(source.publishedOffering, this.publishedOffering);
+        copy(source.publishedObservableProperty, this.publishedObservableProperty);
+    }
 
     @Override
     public DateTime getLastUpdateTime() {
@@ -794,77 +903,77 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
 
     @Override
     public void setObservablePropertiesForOffering(String offering, Collection<String> observableProperties) {
-        final Set<String> newValue = newSynchronizedSet(observableProperties);
+        final Set<String> newValue = newIdentifierSet(observableProperties);
         LOG.trace("Setting ObservableProperties for Offering {} to {}", offering, observableProperties);
         this.observablePropertiesForOfferings.put(offering, newValue);
     }
 
     @Override
     public void setObservablePropertiesForProcedure(String procedure, final Collection<String> observableProperties) {
-        final Set<String> newValue = newSynchronizedSet(observableProperties);
+        final Set<String> newValue = newIdentifierSet(observableProperties);
         LOG.trace("Setting ObservableProperties for Procedure {} to {}", procedure, newValue);
         this.observablePropertiesForProcedures.put(procedure, newValue);
     }
 
     @Override
     public void setObservationTypesForOffering(String offering, Collection<String> observationTypes) {
-        final Set<String> newValue = newSynchronizedSet(observationTypes);
+        final Set<String> newValue = newIdentifierSet(observationTypes);
         LOG.trace("Setting ObservationTypes for Offering {} to {}", offering, newValue);
         this.observationTypesForOfferings.put(offering, newValue);
     }
 
     @Override
     public void setOfferingsForObservableProperty(String observableProperty, Collection<String> offerings) {
-        final Set<String> newValue = newSynchronizedSet(offerings);
+        final Set<String> newValue = newIdentifierSet(offerings);
         LOG.trace("Setting Offerings for ObservableProperty {} to {}", observableProperty, newValue);
         this.offeringsForObservableProperties.put(observableProperty, newValue);
     }
 
     @Override
     public void setOfferingsForProcedure(String procedure, Collection<String> offerings) {
-        final Set<String> newValue = newSynchronizedSet(offerings);
+        final Set<String> newValue = newIdentifierSet(offerings);
         LOG.trace("Setting Offerings for Procedure {} to {}", procedure, newValue);
         this.offeringsForProcedures.put(procedure, newValue);
     }
 
     @Override
     public void setProceduresForFeatureOfInterest(String featureOfInterest, Collection<String> procedures) {
-        final Set<String> newValue = newSynchronizedSet(procedures);
+        final Set<String> newValue = newIdentifierSet(procedures);
         LOG.trace("Setting Procedures for FeatureOfInterest {} to {}", featureOfInterest, newValue);
         this.proceduresForFeaturesOfInterest.put(featureOfInterest, newValue);
     }
 
     @Override
     public void setProceduresForObservableProperty(String observableProperty, Collection<String> procedures) {
-        final Set<String> newValue = newSynchronizedSet(procedures);
+        final Set<String> newValue = newIdentifierSet(procedures);
         LOG.trace("Setting Procedures for ObservableProperty {} to {}", observableProperty, procedures);
         this.proceduresForObservableProperties.put(observableProperty, newValue);
     }
 
     @Override
     public void setProceduresForOffering(String offering, Collection<String> procedures) {
-        final Set<String> newValue = newSynchronizedSet(procedures);
+        final Set<String> newValue = newIdentifierSet(procedures);
         LOG.trace("Setting Procedures for Offering {} to {}", offering, newValue);
         this.proceduresForOfferings.put(offering, newValue);
     }
 
     @Override
     public void setRelatedFeaturesForOffering(String offering, Collection<String> relatedFeatures) {
-        final Set<String> newValue = newSynchronizedSet(relatedFeatures);
+        final Set<String> newValue = newIdentifierSet(relatedFeatures);
         LOG.trace("Setting Related Features for Offering {} to {}", offering, newValue);
         this.relatedFeaturesForOfferings.put(offering, newValue);
     }
 
     @Override
     public void setResultTemplatesForOffering(String offering, Collection<String> resultTemplates) {
-        final Set<String> newValue = newSynchronizedSet(resultTemplates);
+        final Set<String> newValue = newIdentifierSet(resultTemplates);
         LOG.trace("Setting ResultTemplates for Offering {} to {}", offering, newValue);
         this.resultTemplatesForOfferings.put(offering, newValue);
     }
 
     @Override
     public void setRolesForRelatedFeature(String relatedFeature, Collection<String> roles) {
-        final Set<String> newValue = newSynchronizedSet(roles);
+        final Set<String> newValue = newIdentifierSet(roles);
         LOG.trace("Setting Roles for RelatedFeature {} to {}", relatedFeature, newValue);
         this.rolesForRelatedFeatures.put(relatedFeature, newValue);
     }
@@ -959,7 +1068,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(ALLOWED_OBSERVATION_TYPE, allowedObservationType);
         LOG.trace("Adding AllowedObservationType {} to Offering {}", allowedObservationType, offering);
-        this.allowedObservationTypeForOfferings.computeIfAbsent(offering, createSynchronizedSet())
+        this.allowedObservationTypeForOfferings.computeIfAbsent(offering, createCacheSet())
                 .add(allowedObservationType);
     }
 
@@ -968,7 +1077,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.noNullValues(ALLOWED_OBSERVATION_TYPES, allowedObservationTypes);
         LOG.trace("Adding AllowedObservationTypes {} to Offering {}", allowedObservationTypes, offering);
-        this.allowedObservationTypeForOfferings.computeIfAbsent(offering, createSynchronizedSet())
+        this.allowedObservationTypeForOfferings.computeIfAbsent(offering, createCacheSet())
                 .addAll(allowedObservationTypes);
     }
 
@@ -977,8 +1086,8 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         LOG.trace("Adding featureOfInterest {} to Offering {}", featureOfInterest, offering);
-        this.featuresOfInterestForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(featureOfInterest);
-        this.offeringsForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createSynchronizedSet()).add(offering);
+        this.featuresOfInterestForOfferings.computeIfAbsent(offering, createCacheSet()).add(featureOfInterest);
+        this.offeringsForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createCacheSet()).add(offering);
     }
 
     @Override
@@ -986,7 +1095,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         LOG.trace("Adding FeatureOfInterest {} to SosResultTemplate {}", featureOfInterest, resultTemplate);
-        this.featuresOfInterestForResultTemplates.computeIfAbsent(resultTemplate, createSynchronizedSet())
+        this.featuresOfInterestForResultTemplates.computeIfAbsent(resultTemplate, createCacheSet())
                 .add(featureOfInterest);
     }
 
@@ -995,7 +1104,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         CacheValidation.noNullValues(FEATURES_OF_INTEREST, featuresOfInterest);
         LOG.trace("Adding FeatureOfInterests {} to SosResultTemplate {}", featuresOfInterest, resultTemplate);
-        this.featuresOfInterestForResultTemplates.computeIfAbsent(resultTemplate, createSynchronizedSet())
+        this.featuresOfInterestForResultTemplates.computeIfAbsent(resultTemplate, createCacheSet())
                 .addAll(featuresOfInterest);
     }
 
@@ -1004,7 +1113,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Adding observableProperty {} to offering {}", observableProperty, offering);
-        this.observablePropertiesForOfferings.computeIfAbsent(offering, createSynchronizedSet())
+        this.observablePropertiesForOfferings.computeIfAbsent(offering, createCacheSet())
                 .add(observableProperty);
     }
 
@@ -1013,7 +1122,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Adding observableProperty {} to procedure {}", observableProperty, procedure);
-        this.observablePropertiesForProcedures.computeIfAbsent(procedure, createSynchronizedSet())
+        this.observablePropertiesForProcedures.computeIfAbsent(procedure, createCacheSet())
                 .add(observableProperty);
     }
 
@@ -1022,7 +1131,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Adding observableProperty {} to resultTemplate {}", observableProperty, resultTemplate);
-        this.observedPropertiesForResultTemplates.computeIfAbsent(resultTemplate, createSynchronizedSet())
+        this.observedPropertiesForResultTemplates.computeIfAbsent(resultTemplate, createCacheSet())
                 .add(observableProperty);
     }
 
@@ -1031,7 +1140,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(OBSERVATION_TYPE, observationType);
         LOG.trace("Adding observationType {} to offering {}", observationType, offering);
-        this.observationTypesForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(observationType);
+        this.observationTypesForOfferings.computeIfAbsent(offering, createCacheSet()).add(observationType);
     }
 
     @Override
@@ -1039,7 +1148,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         LOG.trace("Adding offering {} to observableProperty {}", offering, observableProperty);
-        this.offeringsForObservableProperties.computeIfAbsent(observableProperty, createSynchronizedSet())
+        this.offeringsForObservableProperties.computeIfAbsent(observableProperty, createCacheSet())
                 .add(offering);
     }
 
@@ -1048,7 +1157,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         LOG.trace("Adding offering {} to procedure {}", offering, procedure);
-        this.offeringsForProcedures.computeIfAbsent(procedure, createSynchronizedSet()).add(offering);
+        this.offeringsForProcedures.computeIfAbsent(procedure, createCacheSet()).add(offering);
     }
 
     @Override
@@ -1056,7 +1165,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Adding procedure {} to featureOfInterest {}", procedure, featureOfInterest);
-        this.proceduresForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createSynchronizedSet())
+        this.proceduresForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createCacheSet())
                 .add(procedure);
     }
 
@@ -1065,7 +1174,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, observableProperty);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Adding procedure {} to observableProperty {}", procedure, observableProperty);
-        this.proceduresForObservableProperties.computeIfAbsent(observableProperty, createSynchronizedSet())
+        this.proceduresForObservableProperties.computeIfAbsent(observableProperty, createCacheSet())
                 .add(procedure);
     }
 
@@ -1074,7 +1183,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Adding procedure {} to offering {}", procedure, offering);
-        this.proceduresForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(procedure);
+        this.proceduresForOfferings.computeIfAbsent(offering, createCacheSet()).add(procedure);
     }
 
     @Override
@@ -1082,7 +1191,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(RELATED_FEATURE, relatedFeature);
         LOG.trace("Adding relatedFeature {} to offering {}", relatedFeature, offering);
-        this.relatedFeaturesForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(relatedFeature);
+        this.relatedFeaturesForOfferings.computeIfAbsent(offering, createCacheSet()).add(relatedFeature);
     }
 
     @Override
@@ -1090,7 +1199,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.noNullValues(RELATED_FEATURE, relatedFeature);
         LOG.trace("Adding relatedFeatures {} to offering {}", relatedFeature, offering);
-        this.relatedFeaturesForOfferings.computeIfAbsent(offering, createSynchronizedSet()).addAll(relatedFeature);
+        this.relatedFeaturesForOfferings.computeIfAbsent(offering, createCacheSet()).addAll(relatedFeature);
     }
 
     @Override
@@ -1098,7 +1207,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         LOG.trace("Adding resultTemplate {} to offering {}", resultTemplate, offering);
-        this.resultTemplatesForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(resultTemplate);
+        this.resultTemplatesForOfferings.computeIfAbsent(offering, createCacheSet()).add(resultTemplate);
     }
 
     @Override
@@ -1106,7 +1215,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RELATED_FEATURE, relatedFeature);
         CacheValidation.notNullOrEmpty("role", role);
         LOG.trace("Adding role {} to relatedFeature {}", role, relatedFeature);
-        this.rolesForRelatedFeatures.computeIfAbsent(relatedFeature, createSynchronizedSet()).add(role);
+        this.rolesForRelatedFeatures.computeIfAbsent(relatedFeature, createCacheSet()).add(role);
     }
 
     @Override
@@ -1114,8 +1223,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty("allowedObservationType", allowedObservationType);
         LOG.trace("Removing allowedObservationType {} from offering {}", allowedObservationType, offering);
-        this.allowedObservationTypeForOfferings.getOrDefault(offering, Collections.emptySet())
-                .remove(allowedObservationType);
+        removeValue(this.allowedObservationTypeForOfferings, offering, allowedObservationType);
     }
 
     @Override
@@ -1137,8 +1245,8 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         LOG.trace("Removing featureOfInterest {} from offering {}", featureOfInterest, offering);
-        this.featuresOfInterestForOfferings.getOrDefault(offering, Collections.emptySet()).remove(featureOfInterest);
-        this.offeringsForFeaturesOfInterest.getOrDefault(featureOfInterest, Collections.emptySet()).remove(offering);
+        removeValue(this.featuresOfInterestForOfferings, offering, featureOfInterest);
+        removeValue(this.offeringsForFeaturesOfInterest, featureOfInterest, offering);
     }
 
     @Override
@@ -1146,8 +1254,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         LOG.trace("Removing featureOfInterest {} from resultTemplate {}", featureOfInterest, resultTemplate);
-        this.featuresOfInterestForResultTemplates.getOrDefault(resultTemplate, Collections.emptySet())
-                .remove(featureOfInterest);
+        removeValue(this.featuresOfInterestForResultTemplates, resultTemplate, featureOfInterest);
     }
 
     @Override
@@ -1230,8 +1337,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Removing observableProperty {} from offering {}", observableProperty, offering);
-        this.observablePropertiesForOfferings.getOrDefault(offering, Collections.emptySet())
-                .remove(observableProperty);
+        removeValue(this.observablePropertiesForOfferings, offering, observableProperty);
     }
 
     @Override
@@ -1239,8 +1345,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Removing observableProperty {} from procedure {}", observableProperty, procedure);
-        this.observablePropertiesForProcedures.getOrDefault(procedure, Collections.emptySet())
-                .remove(observableProperty);
+        removeValue(this.observablePropertiesForProcedures, procedure, observableProperty);
     }
 
     @Override
@@ -1248,8 +1353,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Removing observableProperty {} from resultTemplate {}", observableProperty, resultTemplate);
-        this.observedPropertiesForResultTemplates.getOrDefault(resultTemplate, Collections.emptySet())
-                .remove(observableProperty);
+        removeValue(this.observedPropertiesForResultTemplates, resultTemplate, observableProperty);
     }
 
     @Override
@@ -1257,7 +1361,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(OBSERVATION_TYPE, observationType);
         LOG.trace("Removing observationType {} from offering {}", observationType, offering);
-        this.observationTypesForOfferings.getOrDefault(offering, Collections.emptySet()).remove(observationType);
+        removeValue(this.observationTypesForOfferings, offering, observationType);
     }
 
     @Override
@@ -1272,8 +1376,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         LOG.trace("Removing offering {} from observableProperty {}", offering, observableProperty);
-        this.offeringsForObservableProperties.getOrDefault(observableProperty, Collections.emptySet())
-                .remove(offering);
+        removeValue(this.offeringsForObservableProperties, observableProperty, offering);
     }
 
     @Override
@@ -1281,7 +1384,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         LOG.trace("Removing offering {} from procedure {}", offering, procedure);
-        this.offeringsForProcedures.getOrDefault(procedure, Collections.emptySet()).remove(offering);
+        removeValue(this.offeringsForProcedures, procedure, offering);
     }
 
     @Override
@@ -1303,7 +1406,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Removing procedure {} from featureOfInterest {}", procedure, featureOfInterest);
-        this.proceduresForFeaturesOfInterest.getOrDefault(featureOfInterest, Collections.emptySet()).remove(procedure);
+        removeValue(this.proceduresForFeaturesOfInterest, featureOfInterest, procedure);
     }
 
     @Override
@@ -1311,8 +1414,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Removing procedure {} from observableProperty {}", procedure, observableProperty);
-        this.proceduresForObservableProperties.getOrDefault(observableProperty, Collections.emptySet())
-                .remove(procedure);
+        removeValue(this.proceduresForObservableProperties, observableProperty, procedure);
     }
 
     @Override
@@ -1320,7 +1422,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Removing procedure {} from offering {}", procedure, offering);
-        this.proceduresForOfferings.getOrDefault(offering, Collections.emptySet()).remove(procedure);
+        removeValue(this.proceduresForOfferings, offering, procedure);
     }
 
     @Override
@@ -1349,7 +1451,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(RELATED_FEATURE, relatedFeature);
         LOG.trace("Removing relatedFeature {} from offering {}", relatedFeature, offering);
-        this.relatedFeaturesForOfferings.getOrDefault(offering, Collections.emptySet()).remove(relatedFeature);
+        removeValue(this.relatedFeaturesForOfferings, offering, relatedFeature);
     }
 
     @Override
@@ -1364,7 +1466,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
         LOG.trace("Removing resultTemplate {} from offering {}", resultTemplate, offering);
-        this.resultTemplatesForOfferings.getOrDefault(offering, Collections.emptySet()).remove(resultTemplate);
+        removeValue(this.resultTemplatesForOfferings, offering, resultTemplate);
     }
 
     @Override
@@ -1379,7 +1481,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(RELATED_FEATURE, relatedFeature);
         CacheValidation.notNullOrEmpty(ROLE, role);
         LOG.trace("Removing role {} from relatedFeature {}", role, relatedFeature);
-        this.rolesForRelatedFeatures.getOrDefault(relatedFeature, Collections.emptySet()).remove(role);
+        removeValue(this.rolesForRelatedFeatures, relatedFeature, role);
     }
 
     @Override
@@ -1392,18 +1494,16 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     @Override
     public void removeRolesForRelatedFeatureNotIn(Collection<String> relatedFeatures) {
         Objects.requireNonNull(relatedFeatures, RELATED_FEATURES);
-        final Iterator<String> iter = this.rolesForRelatedFeatures.keySet().iterator();
-        while (iter.hasNext()) {
-            if (!relatedFeatures.contains(iter.next())) {
-                iter.remove();
-            }
-        }
+        this.rolesForRelatedFeatures.keySet().stream()
+                .filter(relatedFeature -> !relatedFeatures.contains(relatedFeature))
+                .collect(Collectors.toSet())
+                .forEach(this.rolesForRelatedFeatures::remove);
     }
 
     @Override
     public void setAllowedObservationTypeForOffering(String offering, Collection<String> observationTypes) {
         CacheValidation.notNullOrEmpty(OFFERING, offering);
-        final Set<String> newValue = newSynchronizedSet(observationTypes);
+        final Set<String> newValue = newIdentifierSet(observationTypes);
         LOG.trace("Setting allowedObservationTypes for offering {} to {}", offering, newValue);
         this.allowedObservationTypeForOfferings.put(offering, newValue);
     }
@@ -1411,7 +1511,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     @Override
     public void setAllowedFeatureOfInterestTypeForOffering(String offering, Collection<String> featureTypes) {
         CacheValidation.notNullOrEmpty(OFFERING, offering);
-        final Set<String> newValue = newSynchronizedSet(featureTypes);
+        final Set<String> newValue = newIdentifierSet(featureTypes);
         LOG.trace("Setting allowedFeatureOfInterestTypes for offering {} to {}", offering, newValue);
         this.allowedFeatureOfInterestTypeForOfferings.put(offering, newValue);
     }
@@ -1419,7 +1519,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     @Override
     public void setFeaturesOfInterestForOffering(String offering, Collection<String> featureOfInterest) {
         CacheValidation.notNullOrEmpty(OFFERING, offering);
-        final Set<String> newValue = newSynchronizedSet(featureOfInterest);
+        final Set<String> newValue = newIdentifierSet(featureOfInterest);
         LOG.trace("Setting featureOfInterest for offering {} to {}", offering, newValue);
         this.featuresOfInterestForOfferings.put(offering, newValue);
     }
@@ -1430,7 +1530,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.noNullOrEmptyValues(FEATURES_OF_INTEREST, featuresOfInterest);
         LOG.trace("Adding offering {} to featureOfInterest {}", offering, featuresOfInterest);
         for (final String featureOfInterest : featuresOfInterest) {
-            this.offeringsForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createSynchronizedSet())
+            this.offeringsForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createCacheSet())
                     .add(offering);
         }
     }
@@ -1439,7 +1539,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void setObservablePropertiesForResultTemplate(String resultTemplate,
             Collection<String> observableProperties) {
         CacheValidation.notNullOrEmpty(RESULT_TEMPLATE, resultTemplate);
-        final Set<String> newValue = newSynchronizedSet(observableProperties);
+        final Set<String> newValue = newIdentifierSet(observableProperties);
         LOG.trace("Setting observableProperties for resultTemplate {} to {}", resultTemplate, newValue);
         this.observedPropertiesForResultTemplates.put(resultTemplate, newValue);
     }
@@ -1449,9 +1549,9 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         CacheValidation.notNullOrEmpty(PARENT_FEATURE, parentFeature);
         LOG.trace("Adding parentFeature {} to featureOfInterest {}", parentFeature, featureOfInterest);
-        this.parentFeaturesForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createSynchronizedSet())
+        this.parentFeaturesForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createCacheSet())
                 .add(parentFeature);
-        this.childFeaturesForFeatureOfInterest.computeIfAbsent(parentFeature, createSynchronizedSet())
+        this.childFeaturesForFeatureOfInterest.computeIfAbsent(parentFeature, createCacheSet())
                 .add(featureOfInterest);
     }
 
@@ -1460,10 +1560,10 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST, featureOfInterest);
         CacheValidation.noNullOrEmptyValues(PARENT_FEATURES, parentFeatures);
         LOG.trace("Adding parentFeatures {} to featureOfInterest {}", parentFeatures, featureOfInterest);
-        this.parentFeaturesForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createSynchronizedSet())
+        this.parentFeaturesForFeaturesOfInterest.computeIfAbsent(featureOfInterest, createCacheSet())
                 .addAll(parentFeatures);
         parentFeatures.forEach(parentFeature -> this.childFeaturesForFeatureOfInterest
-                .computeIfAbsent(parentFeature, createSynchronizedSet()).add(featureOfInterest));
+                .computeIfAbsent(parentFeature, createCacheSet()).add(featureOfInterest));
     }
 
     @Override
@@ -1471,8 +1571,8 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.notNullOrEmpty(PARENT_PROCEDURE, parentProcedure);
         LOG.trace("Adding parentProcedure {} to procedure {}", parentProcedure, procedure);
-        this.parentProceduresForProcedures.computeIfAbsent(procedure, createSynchronizedSet()).add(parentProcedure);
-        this.childProceduresForProcedures.computeIfAbsent(parentProcedure, createSynchronizedSet()).add(procedure);
+        this.parentProceduresForProcedures.computeIfAbsent(procedure, createCacheSet()).add(parentProcedure);
+        this.childProceduresForProcedures.computeIfAbsent(parentProcedure, createCacheSet()).add(procedure);
     }
 
     @Override
@@ -1480,10 +1580,10 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.noNullOrEmptyValues(PARENT_PROCEDURES, parentProcedures);
         LOG.trace("Adding parentProcedures {} to procedure {}", parentProcedures, procedure);
-        this.parentProceduresForProcedures.computeIfAbsent(procedure, createSynchronizedSet())
+        this.parentProceduresForProcedures.computeIfAbsent(procedure, createCacheSet())
                 .addAll(parentProcedures);
         parentProcedures.forEach(parentProcedure -> this.childProceduresForProcedures
-                .computeIfAbsent(parentProcedure, createSynchronizedSet()).add(procedure));
+                .computeIfAbsent(parentProcedure, createCacheSet()).add(procedure));
     }
 
     @Override
@@ -1491,8 +1591,8 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(PARENT_OFFERING, parentOffering);
         LOG.trace("Adding parentOffering {} to offering {}", parentOffering, offering);
-        this.parentOfferingsForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(parentOffering);
-        this.childOfferingsForOfferings.computeIfAbsent(parentOffering, createSynchronizedSet()).add(offering);
+        this.parentOfferingsForOfferings.computeIfAbsent(offering, createCacheSet()).add(parentOffering);
+        this.childOfferingsForOfferings.computeIfAbsent(parentOffering, createCacheSet()).add(offering);
     }
 
     @Override
@@ -1500,9 +1600,9 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.noNullOrEmptyValues(PARENT_OFFERINGS, parentOfferings);
         LOG.trace("Adding parentOfferings {} to offering {}", parentOfferings, offering);
-        this.parentOfferingsForOfferings.computeIfAbsent(offering, createSynchronizedSet()).addAll(parentOfferings);
+        this.parentOfferingsForOfferings.computeIfAbsent(offering, createCacheSet()).addAll(parentOfferings);
         parentOfferings.forEach(parentOffering -> this.childOfferingsForOfferings
-                .computeIfAbsent(parentOffering, createSynchronizedSet()).add(offering));
+                .computeIfAbsent(parentOffering, createCacheSet()).add(offering));
     }
 
     @Override
@@ -1510,9 +1610,11 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         Objects.requireNonNull(envelope, ENVELOPE);
         if (hasEnvelopeForOffering(offering)) {
-            final ReferencedEnvelope offeringEnvelope = this.envelopeForOfferings.get(offering);
+            // the envelope may be shared with a previous snapshot
+            final ReferencedEnvelope offeringEnvelope = copyOf(this.envelopeForOfferings.get(offering));
             LOG.trace("Expanding envelope {} for offering {} to include {}", offeringEnvelope, offering, envelope);
             offeringEnvelope.expandToInclude(envelope);
+            this.envelopeForOfferings.put(offering, offeringEnvelope);
         } else {
             setEnvelopeForOffering(offering, new ReferencedEnvelope(envelope, getDefaultEPSGCode()));
         }
@@ -1766,7 +1868,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Adding hidden child procedure {} to offering {}", procedure, offering);
-        this.hiddenChildProceduresForOfferings.computeIfAbsent(offering, createSynchronizedSet()).add(procedure);
+        this.hiddenChildProceduresForOfferings.computeIfAbsent(offering, createCacheSet()).add(procedure);
     }
 
     @Override
@@ -1774,12 +1876,12 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         LOG.trace("Removing hidden chil procedure {} from offering {}", procedure, offering);
-        this.hiddenChildProceduresForOfferings.getOrDefault(offering, Collections.emptySet()).remove(procedure);
+        removeValue(this.hiddenChildProceduresForOfferings, offering, procedure);
     }
 
     @Override
     public void setHiddenChildProceduresForOffering(String offering, Collection<String> procedures) {
-        final Set<String> newValue = newSynchronizedSet(procedures);
+        final Set<String> newValue = newIdentifierSet(procedures);
         LOG.trace("Setting hidden child Procedures for Offering {} to {}", offering, newValue);
         this.hiddenChildProceduresForOfferings.put(offering, newValue);
     }
@@ -1808,10 +1910,13 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         Objects.requireNonNull(envelope, ENVELOPE);
         if (hasSpatialFilteringProfileEnvelopeForOffering(offering)) {
-            final ReferencedEnvelope offeringEnvelope = this.spatialFilteringProfileEnvelopeForOfferings.get(offering);
+            // the envelope may be shared with a previous snapshot
+            final ReferencedEnvelope offeringEnvelope =
+                    copyOf(this.spatialFilteringProfileEnvelopeForOfferings.get(offering));
             LOG.trace("Expanding Spatial Filtering Profile envelope {} for offering {} to include {}",
                     offeringEnvelope, offering, envelope);
             offeringEnvelope.expandToInclude(envelope);
+            this.spatialFilteringProfileEnvelopeForOfferings.put(offering, offeringEnvelope);
         } else {
             setSpatialFilteringProfileEnvelopeForOffering(offering,
                     new ReferencedEnvelope(envelope, getDefaultEPSGCode()));
@@ -1829,7 +1934,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST_TYPE, featureOfInterestType);
         LOG.trace("Adding featureOfInterestType {} to offering {}", featureOfInterestType, offering);
-        this.featureOfInterestTypesForOfferings.computeIfAbsent(offering, createSynchronizedSet())
+        this.featureOfInterestTypesForOfferings.computeIfAbsent(offering, createCacheSet())
                 .add(featureOfInterestType);
     }
 
@@ -1838,8 +1943,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST_TYPE, featureOfInterestType);
         LOG.trace("Removing featureOfInterestType {} from offering {}", featureOfInterestType, offering);
-        this.featureOfInterestTypesForOfferings.getOrDefault(offering, Collections.emptySet())
-                .remove(featureOfInterestType);
+        removeValue(this.featureOfInterestTypesForOfferings, offering, featureOfInterestType);
     }
 
     @Override
@@ -1851,7 +1955,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
 
     @Override
     public void setFeatureOfInterestTypesForOffering(String offering, Collection<String> featureOfInterestTypes) {
-        final Set<String> newValue = newSynchronizedSet(featureOfInterestTypes);
+        final Set<String> newValue = newIdentifierSet(featureOfInterestTypes);
         LOG.trace("Setting FeatureOfInterestTypes for Offering {} to {}", offering, newValue);
         this.featureOfInterestTypesForOfferings.put(offering, newValue);
     }
@@ -1861,7 +1965,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(ALLOWED_FEATURE_OF_INTEREST_TYPE, allowedFeatureOfInterestType);
         LOG.trace("Adding AllowedFeatureOfInterestType {} to Offering {}", allowedFeatureOfInterestType, offering);
-        this.allowedFeatureOfInterestTypeForOfferings.computeIfAbsent(offering, createSynchronizedSet())
+        this.allowedFeatureOfInterestTypeForOfferings.computeIfAbsent(offering, createCacheSet())
                 .add(allowedFeatureOfInterestType);
     }
 
@@ -1871,7 +1975,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.noNullValues(ALLOWED_FEATURE_OF_INTEREST_TYPES, allowedFeatureOfInterestTypes);
         LOG.trace("Adding AllowedFeatureOfInterestTypes {} to Offering {}", allowedFeatureOfInterestTypes, offering);
-        this.allowedFeatureOfInterestTypeForOfferings.computeIfAbsent(offering, createSynchronizedSet())
+        this.allowedFeatureOfInterestTypeForOfferings.computeIfAbsent(offering, createCacheSet())
                 .addAll(allowedFeatureOfInterestTypes);
     }
 
@@ -1946,7 +2050,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void removeFeatureOfInterestIdentifierForHumanReadableName(String humanReadableName) {
         CacheValidation.notNullOrEmpty(FEATURE_OF_INTEREST_NAME, humanReadableName);
         LOG.trace("Removing featuresOfInterest identifier for humanReadableName {}", humanReadableName);
-        featureOfInterestIdentifierHumanReadableName.inverse().remove(humanReadableName);
+        removeKey(featureOfInterestIdentifierHumanReadableName, humanReadableName);
     }
 
     @Override
@@ -1960,7 +2064,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void removeObservablePropertyIdentifierForHumanReadableName(String humanReadableName) {
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY_NAME, humanReadableName);
         LOG.trace("Removing observableProperty identifier for humanReadableName {}", humanReadableName);
-        observablePropertyIdentifierHumanReadableName.inverse().remove(humanReadableName);
+        removeKey(observablePropertyIdentifierHumanReadableName, humanReadableName);
     }
 
     @Override
@@ -1974,7 +2078,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void removeProcedureIdentifierForHumanReadableName(String humanReadableName) {
         CacheValidation.notNullOrEmpty(PROCEDURE_NAME, humanReadableName);
         LOG.trace("Removing procedure identifier for humanReadableName {}", humanReadableName);
-        procedureIdentifierHumanReadableName.inverse().remove(humanReadableName);
+        removeKey(procedureIdentifierHumanReadableName, humanReadableName);
     }
 
     @Override
@@ -1988,7 +2092,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void removeOfferingIdentifierForHumanReadableName(String humanReadableName) {
         CacheValidation.notNullOrEmpty(OFFERING_NAME, humanReadableName);
         LOG.trace("Removing offering identifier for humanReadableName {}", humanReadableName);
-        offeringIdentifierHumanReadableName.inverse().remove(humanReadableName);
+        removeKey(offeringIdentifierHumanReadableName, humanReadableName);
     }
 
     @Override
@@ -2098,7 +2202,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.notNullOrEmpty(COMPOSITE_PHENOMENON, compositePhenomenon);
         LOG.trace("Adding composite phenomenon {} to procedure {}", compositePhenomenon, procedure);
-        this.compositePhenomenonsForProcedure.computeIfAbsent(procedure, createSynchronizedSet())
+        this.compositePhenomenonsForProcedure.computeIfAbsent(procedure, createCacheSet())
                 .add(compositePhenomenon);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2108,7 +2212,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(PROCEDURE, procedure);
         CacheValidation.noNullOrEmptyValues(COMPOSITE_PHENOMENON, compositePhenomenon);
         LOG.trace("Adding composite phenomenons {} to procedure {}", compositePhenomenon, procedure);
-        this.compositePhenomenonsForProcedure.computeIfAbsent(procedure, createSynchronizedSet())
+        this.compositePhenomenonsForProcedure.computeIfAbsent(procedure, createCacheSet())
                 .addAll(compositePhenomenon);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2130,7 +2234,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.notNullOrEmpty(COMPOSITE_PHENOMENON, compositePhenomenon);
         LOG.trace("Adding composite phenomenon {} to offering {}", compositePhenomenon, offering);
-        this.compositePhenomenonsForOffering.computeIfAbsent(offering, createSynchronizedSet())
+        this.compositePhenomenonsForOffering.computeIfAbsent(offering, createCacheSet())
                 .add(compositePhenomenon);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2140,7 +2244,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OFFERING, offering);
         CacheValidation.noNullOrEmptyValues(COMPOSITE_PHENOMENON, compositePhenomenon);
         LOG.trace("Adding composite phenomenons {} to offering {}", compositePhenomenon, offering);
-        this.compositePhenomenonsForOffering.computeIfAbsent(offering, createSynchronizedSet())
+        this.compositePhenomenonsForOffering.computeIfAbsent(offering, createCacheSet())
                 .addAll(compositePhenomenon);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2163,7 +2267,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Adding composite phenomenon {} to to observable property {}", compositePhenomenon,
                 observableProperty);
-        this.compositePhenomenonsForObservableProperty.computeIfAbsent(observableProperty, createSynchronizedSet())
+        this.compositePhenomenonsForObservableProperty.computeIfAbsent(observableProperty, createCacheSet())
                 .add(compositePhenomenon);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2173,7 +2277,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(COMPOSITE_PHENOMENON, compositePhenomenon);
         CacheValidation.notNullOrEmpty(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Adding observable property {} to composite phenomenon {}", observableProperty, compositePhenomenon);
-        this.observablePropertiesForCompositePhenomenons.computeIfAbsent(compositePhenomenon, createSynchronizedSet())
+        this.observablePropertiesForCompositePhenomenons.computeIfAbsent(compositePhenomenon, createCacheSet())
                 .add(observableProperty);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2185,7 +2289,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.noNullOrEmptyValues(OBSERVABLE_PROPERTY, observableProperty);
         LOG.trace("Adding observable properties {} to composite phenomenon {}", observableProperty,
                 compositePhenomenon);
-        this.observablePropertiesForCompositePhenomenons.computeIfAbsent(compositePhenomenon, createSynchronizedSet())
+        this.observablePropertiesForCompositePhenomenons.computeIfAbsent(compositePhenomenon, createCacheSet())
                 .addAll(observableProperty);
         addCompositePhenomenon(compositePhenomenon);
     }
@@ -2272,11 +2376,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void addTypeInstanceProcedure(TypeInstance typeInstance, String identifier) {
         CacheValidation.notNullOrEmpty(TYPE_PROCEDURE, identifier);
         logAdding(TYPE_PROCEDURE, identifier);
-        if (typeInstanceProcedures.containsKey(typeInstance)) {
-            typeInstanceProcedures.get(typeInstance).add(identifier);
-        } else {
-            typeInstanceProcedures.put(typeInstance, Sets.newHashSet(identifier));
-        }
+        typeInstanceProcedures.computeIfAbsent(typeInstance, createCacheSet()).add(identifier);
     }
 
     @Override
@@ -2296,11 +2396,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
     public void addComponentAggregationProcedure(ComponentAggregation componentAggregation, String identifier) {
         CacheValidation.notNullOrEmpty(AGGREGATED_PROCEDURE, identifier);
         logAdding(AGGREGATED_PROCEDURE, identifier);
-        if (componentAggregationProcedures.containsKey(componentAggregation)) {
-            componentAggregationProcedures.get(componentAggregation).add(identifier);
-        } else {
-            componentAggregationProcedures.put(componentAggregation, Sets.newHashSet(identifier));
-        }
+        componentAggregationProcedures.computeIfAbsent(componentAggregation, createCacheSet()).add(identifier);
     }
 
     @Override
@@ -2321,11 +2417,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(TYPE_PROCEDURE, type);
         CacheValidation.notNullOrEmpty(PROCEDURE_INSTANCE, instance);
         LOG.trace("Adding instance '{}' to type '{}'", instance, type);
-        if (hasInstancesForProcedure(type)) {
-            typeOfProceduresMap.get(type).add(instance);
-        } else {
-            typeOfProceduresMap.put(type, Sets.newHashSet(instance));
-        }
+        typeOfProceduresMap.computeIfAbsent(type, createCacheSet()).add(instance);
     }
 
     @Override
@@ -2333,11 +2425,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(TYPE_PROCEDURE, type);
         CacheValidation.noNullValues(PROCEDURE_INSTANCES, instances);
         LOG.trace("Adding instances {} to type '{}'", instances, type);
-        if (hasInstancesForProcedure(type)) {
-            typeOfProceduresMap.get(type).addAll(instances);
-        } else {
-            typeOfProceduresMap.put(type, instances);
-        }
+        typeOfProceduresMap.computeIfAbsent(type, createCacheSet()).addAll(instances);
     }
 
     @Override
@@ -2356,9 +2444,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         CacheValidation.notNullOrEmpty(TYPE_PROCEDURE, type);
         CacheValidation.notNullOrEmpty(PROCEDURE_INSTANCE, instance);
         logRemoving(type, instance);
-        if (hasInstancesForProcedure(type)) {
-            typeOfProceduresMap.get(type).remove(instance);
-        }
+        removeValue(typeOfProceduresMap, type, instance);
     }
 
     @Override
@@ -2403,7 +2489,7 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
 
     @Override
     public void addProcedureDescriptionFormatsForProcedure(String procedure, Set<String> formats) {
-        this.procedureProcedureDescriptionFormats.computeIfAbsent(procedure, createSynchronizedSet()).addAll(formats);
+        this.procedureProcedureDescriptionFormats.computeIfAbsent(procedure, createCacheSet()).addAll(formats);
     }
 
     @Override
@@ -2772,8 +2858,166 @@ public class InMemoryCacheImpl extends AbstractStaticSosContentCache
         return true;
     }
 
-    private static <X, T> Function<X, Set<T>> createSynchronizedSet() {
-        return Suppliers.<X, Set<T>> asFunction(HashSet<T>::new).andThen(Collections::synchronizedSet);
+    /**
+     * Writes the values of this cache to, or reads them from, a binary
+     * snapshot. The ids identify the values in the snapshot and must not be
+     * changed or reused.
+     *
+     * @param fields
+     *            the fields of the snapshot
+     * @throws IOException
+     *             if the snapshot can not be written
+     * @see CacheSnapshotCodec
+     */
+    void snapshot(CacheSnapshotCodec.Fields fields) throws IOException {
+        this.defaultEpsgCode = fields.integer(1, this.defaultEpsgCode);
+        this.globalEnvelope = fields.envelope(2, this.globalEnvelope);
+        this.updateTime = fields.dateTime(3, this.updateTime);
+        fields.timePeriod(4, this.globalPhenomenonTimeEnvelope);
+        fields.timePeriod(5, this.globalResultTimeEnvelope);
+        fields.dateTimes(10, this.maxPhenomenonTimeForOfferings);
+        fields.dateTimes(11, this.minPhenomenonTimeForOfferings);
+        fields.dateTimes(12, this.maxResultTimeForOfferings);
+        fields.dateTimes(13, this.minResultTimeForOfferings);
+        fields.dateTimes(14, this.maxPhenomenonTimeForProcedures);
+        fields.dateTimes(15, this.minPhenomenonTimeForProcedures);
+        fields.relations(20, this.allowedObservationTypeForOfferings);
+        fields.relations(21, this.allowedFeatureOfInterestTypeForOfferings);
+        fields.relations(22, this.childFeaturesForFeatureOfInterest);
+        fields.relations(23, this.childProceduresForProcedures);
+        fields.relations(24, this.childOfferingsForOfferings);
+        fields.relations(25, this.compositePhenomenonsForProcedure);
+        fields.relations(26, this.compositePhenomenonsForOffering);
+        fields.relations(27, this.compositePhenomenonsForObservableProperty);
+        fields.relations(28, this.featuresOfInterestForOfferings);
+        fields.relations(29, this.offeringsForFeaturesOfInterest);
+        fields.relations(30, this.featuresOfInterestForResultTemplates);
+        fields.relations(31, this.observablePropertiesForCompositePhenomenons);
+        fields.relations(32, this.observablePropertiesForOfferings);
+        fields.relations(33, this.observablePropertiesForProcedures);
+        fields.relations(34, this.observationTypesForOfferings);
+        fields.relations(35, this.featureOfInterestTypesForOfferings);
+        fields.relations(36, this.observedPropertiesForResultTemplates);
+        fields.relations(37, this.offeringsForObservableProperties);
+        fields.relations(38, this.offeringsForProcedures);
+        fields.relations(39, this.parentFeaturesForFeaturesOfInterest);
+        fields.relations(40, this.parentProceduresForProcedures);
+        fields.relations(41, this.parentOfferingsForOfferings);
+        fields.relations(42, this.proceduresForFeaturesOfInterest);
+        fields.relations(43, this.proceduresForObservableProperties);
+        fields.relations(44, this.proceduresForOfferings);
+        fields.relations(45, this.hiddenChildProceduresForOfferings);
+        fields.relations(46, this.relatedFeaturesForOfferings);
+        fields.relations(47, this.resultTemplatesForOfferings);
+        fields.relations(48, this.rolesForRelatedFeatures);
+        fields.relations(49, this.typeOfProceduresMap);
+        fields.relations(50, this.procedureProcedureDescriptionFormats);
+        fields.relations(51, this.typeInstanceProcedures, TypeInstance::name, TypeInstance::valueOf);
+        fields.relations(52, this.componentAggregationProcedures, ComponentAggregation::name,
+                ComponentAggregation::valueOf);
+        fields.envelopes(60, this.envelopeForOfferings);
+        fields.envelopes(61, this.spatialFilteringProfileEnvelopeForOfferings);
+        fields.strings(62, this.nameForOfferings);
+        fields.multilingualStrings(63, this.i18nNameForOfferings);
+        fields.multilingualStrings(64, this.i18nDescriptionForOfferings);
+        fields.strings(65, this.featureOfInterestIdentifierHumanReadableName);
+        fields.strings(66, this.observablePropertyIdentifierHumanReadableName);
+        fields.strings(67, this.procedureIdentifierHumanReadableName);
+        fields.strings(68, this.offeringIdentifierHumanReadableName);
+        fields.integers(70, this.epsgCodes);
+        fields.locales(71, this.supportedLanguages);
+        fields.identifiers(72, this.featuresOfInterest);
+        fields.identifiers(73, this.procedures);
+        fields.identifiers(74, this.resultTemplates);
+        fields.identifiers(75, this.offerings);
+        fields.identifiers(76, this.compositePhenomenons);
+        fields.identifiers(77, this.requestableProcedureDescriptionFormats);
+        fields.identifiers(78, this.publishedFeatureOfInterest);
+        fields.identifiers(79, this.publishedProcedure);
+        fields.identifiers(80, this.publishedOffering);
+        fields.identifiers(81, this.publishedObservableProperty);
+    }
+
+    private <X> Function<X, Set<String>> createCacheSet() {
+        return Suppliers.<X, Set<String>> asFunction(this::newIdentifierSet);
+    }
+
+    /**
+     * Creates a new empty set of identifiers backed by the
+     * {@link IdentifierDictionary} of this cache, synchronized depending on
+     * {@link #isSynchronizedCollections()}.
+     *
+     * @return the set
+     */
+    protected Set<String> newIdentifierSet() {
+        return newIdentifierSet(null);
+    }
+
+    /**
+     * Creates a new set of identifiers from the specified elements backed by
+     * the {@link IdentifierDictionary} of this cache, synchronized depending on
+     * {@link #isSynchronizedCollections()}.
+     *
+     * @param elements
+     *            the elements
+     * @return the set
+     */
+    protected Set<String> newIdentifierSet(Iterable<String> elements) {
+        return isSynchronizedCollections()
+                ? new SynchronizedIdentifierSet(getIdentifierDictionary(), elements)
+                : new IdentifierSet(getIdentifierDictionary(), elements);
+    }
+
+    /**
+     * @return the dictionary of the identifiers contained in the relations of
+     *         this cache
+     */
+    protected IdentifierDictionary getIdentifierDictionary() {
+        return identifiers;
+    }
+
+    private static <K, V> void copy(Map<K, V> source, Map<K, V> target) {
+        if (source instanceof CopyOnWriteCacheMap && target instanceof CopyOnWriteCacheMap) {
+            // snapshots are not modified after they are published, the map is
+            // copied when the target is modified
+            ((CopyOnWriteCacheMap<K, V>) target).share(source, UnaryOperator.identity());
+            return;
+        }
+        synchronized (source) {
+            target.putAll(source);
+        }
+    }
+
+    private static <T> void copy(Set<T> source, Set<T> target) {
+        if (source instanceof CopyOnWriteCacheSet && target instanceof CopyOnWriteCacheSet) {
+            ((CopyOnWriteCacheSet<T>) target).share(source);
+            return;
+        }
+        synchronized (source) {
+            target.addAll(source);
+        }
+    }
+
+    private <K> void copyValues(Map<K, Set<String>> source, Map<K, Set<String>> target) {
+        if (source instanceof CopyOnWriteCacheMap && target instanceof CopyOnWriteCacheMap) {
+            ((CopyOnWriteCacheMap<K, Set<String>>) target).share(source, this::newIdentifierSet);
+            return;
+        }
+        synchronized (source) {
+            source.forEach((key, value) -> {
+                synchronized (value) {
+                    target.put(key, newIdentifierSet(value));
+                }
+            });
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (this.identifiers == null) {
+            // caches persisted by previous versions contain plain sets
+            this.identifiers = new IdentifierDictionary();
+        }
     }
 
 }
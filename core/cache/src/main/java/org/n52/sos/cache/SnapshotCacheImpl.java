@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.util.Optional;
+
+import org.n52.iceland.cache.ContentCache;
+
+/**
+ * Content cache snapshot for copy-on-write cache updates. The snapshot uses
+ * unsynchronized collections, so readers never block. A snapshot must not be
+ * modified after it is published to other threads, modifications are applied
+ * to a {@link #copy()} that replaces the published snapshot afterwards.
+ *
+ * A copy shares the collections of the snapshot it was copied from and copies
+ * a collection only when it is modified for the first time, so a partial
+ * update copies only the collections it touches.
+ *
+ * @since 5.1.1
+ */
+public class SnapshotCacheImpl extends InMemoryCacheImpl {
+
+    private static final long serialVersionUID = -4826391657380117548L;
+
+    /**
+     * Creates a snapshot of the specified cache.
+     *
+     * @param source
+     *            the cache to copy
+     */
+    public SnapshotCacheImpl(InMemoryCacheImpl source) {
+        super(source, false);
+    }
+
+    /**
+     * @return a modifiable copy of this snapshot, sharing the collections of
+     *         this snapshot until they are modified
+     */
+    public SnapshotCacheImpl copy() {
+        return new SnapshotCacheImpl(this);
+    }
+
+    /**
+     * Creates a snapshot of the specified cache, if it is an
+     * {@link InMemoryCacheImpl}.
+     *
+     * @param cache
+     *            the cache to copy
+     * @return the snapshot or empty, if the cache can not be copied
+     */
+    public static Optional<SnapshotCacheImpl> of(ContentCache cache) {
+        if (cache instanceof InMemoryCacheImpl) {
+            return Optional.of(new SnapshotCacheImpl((InMemoryCacheImpl) cache));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Snapshots are persisted as synchronized {@link InMemoryCacheImpl}, so
+     * that a loaded cache can be modified in place if copy-on-write is
+     * disabled.
+     *
+     * @return the object to serialize
+     */
+    protected Object writeReplace() {
+        return new InMemoryCacheImpl(this, true);
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Synchronized {@link IdentifierSet} used by synchronized caches. In contrast
+ * to {@link java.util.Collections#synchronizedSet(java.util.Set)} copies of
+ * this set with the same {@link IdentifierDictionary} copy the int array of
+ * the ids instead of adding each identifier. As for synchronized collections,
+ * the set has to be synchronized manually when it is iterated.
+ *
+ * @since 5.1.1
+ */
+public class SynchronizedIdentifierSet extends IdentifierSet {
+
+    private static final long serialVersionUID = 1754280341956437816L;
+
+    /**
+     * Creates a new set containing the specified identifiers.
+     *
+     * @param dictionary
+     *            the dictionary of the identifiers
+     * @param identifiers
+     *            the identifiers, may be <code>null</code>
+     */
+    public SynchronizedIdentifierSet(IdentifierDictionary dictionary, Iterable<String> identifiers) {
+        super(dictionary, identifiers);
+    }
+
+    @Override
+    public synchronized int size() {
+        return super.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return super.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return super.contains(o);
+    }
+
+    @Override
+    public synchronized boolean containsAll(Collection<?> c) {
+        return super.containsAll(c);
+    }
+
+    @Override
+    public synchronized boolean add(String identifier) {
+        return super.add(identifier);
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends String> identifiers) {
+        return super.addAll(identifiers);
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        return super.remove(o);
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection<?> c) {
+        return super.removeAll(c);
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection<?> c) {
+        return super.retainAll(c);
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super String> filter) {
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+    }
+
+    @Override
+    public synchronized void forEach(Consumer<? super String> action) {
+        super.forEach(action);
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a) {
+        return super.toArray(a);
+    }
+
+    @Override
+    public synchronized boolean equals(Object o) {
+        return super.equals(o);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return super.toString();
+    }
+
+    /**
+     * Serialize a copy created while holding the monitor of this set.
+     *
+     * @return the copy to serialize
+     */
+    protected synchronized Object writeReplace() {
+        return new SynchronizedIdentifierSet(getDictionary(), this);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache.ctrl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.n52.iceland.cache.ContentCacheController;
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.sos.cache.ctrl.action.CoalescedCacheUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects partial cache updates and applies them as one
+ * {@link CoalescedCacheUpdate} in a background thread after the coalescing
+ * window elapsed. If the batch size is reached before, the submitting thread
+ * applies the queued updates itself, so the queue never grows beyond the batch
+ * size. Updates are applied in the order they were submitted.
+ *
+ * @since 5.1.1
+ */
+public class ContentCacheUpdateCoalescer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentCacheUpdateCoalescer.class);
+
+    private static final String THREAD_NAME = "cache-update-coalescer";
+
+    private final ContentCacheController controller;
+    private final long window;
+    private final int batchSize;
+    private final Queue<ContentCacheUpdate> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param controller
+     *            the controller to apply the updates to
+     * @param window
+     *            the maximum time in milliseconds an update is queued
+     * @param batchSize
+     *            the maximum number of queued updates
+     */
+    public ContentCacheUpdateCoalescer(ContentCacheController controller, long window, int batchSize) {
+        this.controller = Objects.requireNonNull(controller, "controller");
+        this.window = window;
+        this.batchSize = Math.max(1, batchSize);
+        ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // queued updates are applied by shutdown()
+        scheduledExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = scheduledExecutor;
+    }
+
+    /**
+     * Queue the update. If the batch size is reached, the queued updates are
+     * applied in the calling thread.
+     *
+     * @param update
+     *            the partial update
+     */
+    public void submit(ContentCacheUpdate update) {
+        queue.offer(Objects.requireNonNull(update, "update"));
+        if (queueDepth.incrementAndGet() >= batchSize) {
+            flushQuietly();
+            return;
+        }
+        try {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.schedule(this::flushQuietly, window, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Coalescer is shut down, applying update immediately");
+            flushQuietly();
+        }
+    }
+
+    /**
+     * Apply all queued updates in the calling thread.
+     *
+     * @throws OwsExceptionReport
+     *             if the cache update fails
+     */
+    public void flush() throws OwsExceptionReport {
+        flushLock.lock();
+        try {
+            // reset before draining, updates queued from now on schedule a
+            // new flush
+            scheduled.set(false);
+            List<ContentCacheUpdate> batch = new ArrayList<>();
+            ContentCacheUpdate update;
+            while ((update = queue.poll()) != null) {
+                batch.add(update);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            queueDepth.addAndGet(-batch.size());
+            CoalescedCacheUpdate coalesced = new CoalescedCacheUpdate(batch);
+            LOGGER.debug("Applying {}, queue depth {}", coalesced, queueDepth.get());
+            controller.update(coalesced);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (OwsExceptionReport | RuntimeException e) {
+            LOGGER.error("Error while applying coalesced cache updates", e);
+        }
+    }
+
+    /**
+     * Apply all queued updates and stop the background thread.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        flushQuietly();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [window=%d, batchSize=%d, queueDepth=%d]", getClass().getSimpleName(), window,
+                batchSize, queueDepth.get());
+    }
+}
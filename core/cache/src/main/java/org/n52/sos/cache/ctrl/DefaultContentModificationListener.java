@@ -33,12 +33,17 @@ import java.util.Set;
 
 import javax.inject.Inject;
 
+import org.n52.faroe.Validation;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
 import org.n52.iceland.cache.ContentCacheController;
 import org.n52.iceland.cache.ContentCacheUpdate;
 import org.n52.iceland.coding.SupportedTypeRepository;
 import org.n52.iceland.convert.ConverterRepository;
 import org.n52.janmayen.event.Event;
 import org.n52.janmayen.event.EventListener;
+import org.n52.janmayen.lifecycle.Constructable;
+import org.n52.janmayen.lifecycle.Destroyable;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.sos.cache.ctrl.action.CompleteCacheUpdate;
 import org.n52.sos.cache.ctrl.action.DeleteObservationUpdate;
@@ -59,6 +64,7 @@ import org.n52.sos.event.events.SensorDeletion;
 import org.n52.sos.event.events.SensorInsertion;
 import org.n52.sos.event.events.UpdateCache;
 import org.n52.sos.event.events.DeleteObservationEvent;
+import org.n52.sos.service.SosSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,10 +74,13 @@ import com.google.common.collect.Sets;
  * @author <a href="mailto:c.autermann@52north.org">Christian Autermann</a>
  * @since 4.0.0
  */
+@Configurable
 public class DefaultContentModificationListener
-        implements EventListener {
+        implements EventListener, Constructable, Destroyable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultContentModificationListener.class);
 
+    private static final int DEFAULT_COALESCING_BATCH_SIZE = 1000;
+
     @SuppressWarnings("unchecked")
     private static final Set<Class<? extends Event>> TYPES = Sets
             .<Class<? extends Event>> newHashSet(
@@ -89,6 +98,9 @@ public class DefaultContentModificationListener
     private final ContentCacheController controller;
     private SupportedTypeRepository supportedTypeRepository;
     private ConverterRepository converterRepository;
+    private int coalescingWindow;
+    private int coalescingBatchSize = DEFAULT_COALESCING_BATCH_SIZE;
+    private ContentCacheUpdateCoalescer coalescer;
 
     @Inject
     public DefaultContentModificationListener(CacheFeederHandler handler, ContentCacheController controller) {
@@ -101,17 +113,64 @@ public class DefaultContentModificationListener
         return Collections.unmodifiableSet(TYPES);
     }
 
+    /**
+     * Set the time in milliseconds, for which updates of inserted observations
+     * and results are collected and applied together. {@code 0} disables the
+     * coalescing.
+     *
+     * @param window
+     *            the coalescing window
+     */
+    @Setting(SosSettings.CACHE_UPDATE_COALESCING_WINDOW)
+    public void setCoalescingWindow(int window) {
+        this.coalescingWindow = Math.max(0, window);
+    }
+
+    @Setting(SosSettings.CACHE_UPDATE_COALESCING_BATCH_SIZE)
+    public void setCoalescingBatchSize(int batchSize) {
+        Validation.greaterZero("Cache update coalescing batch size", batchSize);
+        this.coalescingBatchSize = batchSize;
+    }
+
+    @Override
+    public void init() {
+        if (coalescingWindow > 0) {
+            this.coalescer = new ContentCacheUpdateCoalescer(controller, coalescingWindow, coalescingBatchSize);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (this.coalescer != null) {
+            LOGGER.debug("Shutting down {}", this.coalescer);
+            this.coalescer.shutdown();
+        }
+    }
+
     @Override
     public void handle(Event event) {
         ContentCacheUpdate update = createUpdate(event);
-        LOGGER.debug("Updating Cache after content modification: {}", update);
         try {
+            if (coalescer != null) {
+                if (isCoalescable(event)) {
+                    LOGGER.debug("Queueing Cache update after content modification: {}", update);
+                    coalescer.submit(update);
+                    return;
+                }
+                // keep the order of the updates
+                coalescer.flush();
+            }
+            LOGGER.debug("Updating Cache after content modification: {}", update);
             this.controller.update(update);
         } catch (OwsExceptionReport ex) {
             LOGGER.error("Error processing Event", ex);
         }
     }
 
+    private boolean isCoalescable(Event event) {
+        return event instanceof ObservationInsertion || event instanceof ResultInsertion;
+    }
+
     private ContentCacheUpdate createUpdate(Event event) {
         if (event instanceof SensorInsertion) {
             return createUpdate((SensorInsertion) event);
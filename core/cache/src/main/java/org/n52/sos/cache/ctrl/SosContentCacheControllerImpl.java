@@ -54,21 +54,29 @@ import java.util.concurrent.locks.ReentrantLock;
 import javax.inject.Inject;
 
 import org.joda.time.DateTime;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
 import org.n52.iceland.cache.ContentCacheController;
 import org.n52.iceland.cache.ContentCachePersistenceStrategy;
 import org.n52.iceland.cache.ContentCacheUpdate;
 import org.n52.iceland.cache.WritableContentCache;
 import org.n52.iceland.cache.ctrl.CompleteCacheUpdateFactory;
 import org.n52.iceland.cache.ctrl.ContentCacheFactory;
+import org.n52.janmayen.event.EventBus;
 import org.n52.janmayen.lifecycle.Constructable;
 import org.n52.janmayen.lifecycle.Destroyable;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.sos.cache.AbstractStaticSosContentCache;
 import org.n52.sos.cache.ContentCacheFactoryImpl;
+import org.n52.sos.cache.InMemoryCacheImpl;
+import org.n52.sos.cache.SnapshotCacheImpl;
+import org.n52.sos.event.events.CompleteCacheUpdateFinished;
+import org.n52.sos.service.SosSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
+@Configurable
 public class SosContentCacheControllerImpl implements ContentCacheController, Constructable, Destroyable {
     private static final Logger LOGGER = LoggerFactory.getLogger(SosContentCacheControllerImpl.class);
 
@@ -81,10 +89,13 @@ public class SosContentCacheControllerImpl implements ContentCacheController, Co
     private CompleteUpdate next;
     private volatile WritableContentCache cache;
     private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock partialUpdateLock = new ReentrantLock();
+    private boolean copyOnWrite;
 
     private ContentCachePersistenceStrategy persistenceStrategy;
     private ContentCacheFactory cacheFactory;
     private CompleteCacheUpdateFactory completeCacheUpdateFactory;
+    private EventBus serviceEventBus;
 
     @Inject
     public void setCacheFactory(ContentCacheFactory cacheFactory) {
@@ -101,6 +112,27 @@ public class SosContentCacheControllerImpl implements ContentCacheController, Co
         this.completeCacheUpdateFactory = factory;
     }
 
+    @Inject
+    public void setServiceEventBus(EventBus serviceEventBus) {
+        this.serviceEventBus = serviceEventBus;
+    }
+
+    /**
+     * Set whether partial updates should be applied to a copy of the cache
+     * that replaces the current cache afterwards.
+     *
+     * @param copyOnWrite
+     *            the copy-on-write flag
+     */
+    @Setting(SosSettings.CACHE_COPY_ON_WRITE)
+    public void setCopyOnWrite(boolean copyOnWrite) {
+        this.copyOnWrite = copyOnWrite;
+    }
+
+    public boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
     @Override
     public void init() {
         loadOrCreateCache();
@@ -182,9 +214,16 @@ public class SosContentCacheControllerImpl implements ContentCacheController, Co
         } finally {
             unlock();
         }
+        if (serviceEventBus != null) {
+            serviceEventBus.submit(new CompleteCacheUpdateFinished());
+        }
     }
 
     private void executePartial(PartialUpdate update) throws OwsExceptionReport {
+        if (isCopyOnWrite() && getCache() instanceof InMemoryCacheImpl) {
+            executePartialOnSnapshot(update);
+            return;
+        }
         update.execute(getCache());
         lock();
         try {
@@ -198,6 +237,63 @@ public class SosContentCacheControllerImpl implements ContentCacheController, Co
         }
     }
 
+    /**
+     * Execute the partial update on a copy of the current cache and publish
+     * the copy afterwards. Readers keep using the previous snapshot until the
+     * copy is published. Partial updates are serialized; if a complete update
+     * replaced the cache in the meantime, the update is executed again on a
+     * copy of the new cache.
+     *
+     * @param update
+     *            the partial update
+     * @throws OwsExceptionReport
+     *             if the update fails, the current cache remains unchanged
+     */
+    private void executePartialOnSnapshot(PartialUpdate update) throws OwsExceptionReport {
+        partialUpdateLock.lock();
+        try {
+            boolean published = false;
+            while (!published) {
+                WritableContentCache base = getCache();
+                SnapshotCacheImpl snapshot = base instanceof SnapshotCacheImpl
+                        ? ((SnapshotCacheImpl) base).copy()
+                        : new SnapshotCacheImpl((InMemoryCacheImpl) base);
+                update.execute(snapshot);
+                lock();
+                try {
+                    if (getCache() == base) {
+                        setCache(snapshot);
+                        if (this.current != null) {
+                            this.current.addUpdate(update);
+                        } else {
+                            persistenceStrategy.persistOnPartialUpdate(snapshot);
+                        }
+                        published = true;
+                    }
+                } finally {
+                    unlock();
+                }
+            }
+        } finally {
+            partialUpdateLock.unlock();
+        }
+    }
+
+    /**
+     * Prepare the result of a complete update for publishing. If copy-on-write
+     * is enabled, the cache is converted to a {@link SnapshotCacheImpl}.
+     *
+     * @param cache
+     *            the cache
+     * @return the cache to publish
+     */
+    private WritableContentCache toPublishable(WritableContentCache cache) {
+        if (isCopyOnWrite() && !(cache instanceof SnapshotCacheImpl)) {
+            return SnapshotCacheImpl.of(cache).map(WritableContentCache.class::cast).orElse(cache);
+        }
+        return cache;
+    }
+
     private void executeComplete(CompleteUpdate update) throws OwsExceptionReport {
         boolean isCurrent = false;
         boolean isNext = false;
@@ -364,7 +460,13 @@ public class SosContentCacheControllerImpl implements ContentCacheController, Co
         }
 
         void execute() throws OwsExceptionReport {
-            setCache(execute(getCache()));
+            WritableContentCache cc = toPublishable(execute(getCache()));
+            SosContentCacheControllerImpl.this.lock();
+            try {
+                setCache(cc);
+            } finally {
+                SosContentCacheControllerImpl.this.unlock();
+            }
         }
 
         WritableContentCache execute(WritableContentCache cache) throws OwsExceptionReport {
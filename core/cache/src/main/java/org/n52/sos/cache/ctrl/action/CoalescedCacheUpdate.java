@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache.ctrl.action;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.sos.cache.SosContentCacheUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a batch of partial cache updates as one update. A failing update
+ * does not prevent the other updates of the batch from being applied.
+ *
+ * @since 5.1.1
+ */
+public class CoalescedCacheUpdate extends SosContentCacheUpdate {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescedCacheUpdate.class);
+
+    private final List<ContentCacheUpdate> updates;
+
+    public CoalescedCacheUpdate(Collection<? extends ContentCacheUpdate> updates) {
+        this.updates = new ArrayList<>(updates);
+    }
+
+    public List<ContentCacheUpdate> getUpdates() {
+        return Collections.unmodifiableList(updates);
+    }
+
+    @Override
+    public void execute() {
+        for (ContentCacheUpdate update : updates) {
+            update.reset();
+            update.setCache(getCache());
+            try {
+                update.execute();
+                if (update.failed()) {
+                    LOGGER.error("Error while applying {}", update, update.getFailureCause());
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Error while applying {}", update, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s [updates=%d]", getClass().getSimpleName(), updates.size());
+    }
+}
@@ -52,6 +52,15 @@ public class CompleteCacheUpdate
     @Override
     public void execute() {
         try {
+            if (getCacheFeederDAO().isDeltaUpdateAvailable() && getCache() instanceof InMemoryCacheImpl) {
+                // apply the delta to a copy to keep the current cache consistent
+                InMemoryCacheImpl copy = new InMemoryCacheImpl((InMemoryCacheImpl) getCache());
+                copy.setSupportedTypeRepository(supportedTypeRepository);
+                if (getCacheFeederDAO().updateCacheDelta(copy)) {
+                    setCache(copy);
+                    return;
+                }
+            }
             SosWritableContentCache cache = (SosWritableContentCache) new InMemoryCacheImpl()
                     .setSupportedTypeRepository(supportedTypeRepository);
             getCacheFeederDAO().updateCache(cache);
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache.ctrl.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.iceland.cache.ContentCache;
+import org.n52.iceland.cache.ContentCachePersistenceStrategy;
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.janmayen.ConfigLocationProvider;
+import org.n52.janmayen.lifecycle.Constructable;
+import org.n52.sos.cache.CacheSnapshotCodec;
+import org.n52.sos.cache.InMemoryCacheImpl;
+import org.n52.sos.service.SosSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistence strategy that stores the cache as binary snapshot (see
+ * {@link CacheSnapshotCodec}). The snapshot is written to a temporary file that
+ * atomically replaces the previous snapshot and is memory mapped when the cache
+ * is loaded. Partial updates are persisted asynchronously after the configured
+ * delay, complete updates immediately in the background and the cache is
+ * written synchronously on shutdown.
+ * <p>
+ * If no snapshot exists, a cache file written by the Java serialization based
+ * strategies is loaded once. Snapshots of an unknown version or corrupt
+ * snapshots are ignored, so that the cache is reloaded from the datasource.
+ *
+ * @since 5.1.1
+ */
+@Configurable
+public class BinaryCachePersistenceStrategy implements ContentCachePersistenceStrategy, Constructable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryCachePersistenceStrategy.class);
+
+    private static final String CACHE_FILE = "cache.bin";
+
+    private static final String LEGACY_CACHE_FILE = "cache.tmp";
+
+    private static final String TMP_SUFFIX = ".part";
+
+    private static final String THREAD_NAME = "cache-persister";
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object scheduleLock = new Object();
+
+    private ConfigLocationProvider configLocationProvider;
+
+    private File cacheFileFolder;
+
+    private long delay = 30;
+
+    private Path cacheFile;
+
+    private Path legacyCacheFile;
+
+    private ScheduledFuture<?> scheduled;
+
+    private volatile ContentCache pending;
+
+    @Inject
+    public void setConfigLocationProvider(ConfigLocationProvider configLocationProvider) {
+        this.configLocationProvider = configLocationProvider;
+    }
+
+    @Setting(value = SosSettings.CACHE_FILE_FOLDER, required = false)
+    public void setCacheFileFolder(File cacheFileFolder) {
+        this.cacheFileFolder = cacheFileFolder;
+    }
+
+    @Setting(SosSettings.CACHE_PERSISTENCE_DELAY)
+    public void setDelay(int delay) {
+        this.delay = Math.max(1, delay);
+    }
+
+    @Override
+    public void init() {
+        Path folder;
+        if (cacheFileFolder != null) {
+            folder = cacheFileFolder.toPath();
+        } else {
+            folder = Paths.get(configLocationProvider.get(), "WEB-INF", "tmp");
+        }
+        this.cacheFile = folder.resolve(CACHE_FILE);
+        this.legacyCacheFile = folder.resolve(LEGACY_CACHE_FILE);
+        LOGGER.debug("Cache snapshot file: {}", cacheFile);
+    }
+
+    /**
+     * @return the file containing the snapshot
+     */
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    @Override
+    public Optional<WritableContentCache> load() {
+        if (Files.isReadable(cacheFile)) {
+            long start = System.currentTimeMillis();
+            try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.READ)) {
+                InMemoryCacheImpl cache = CacheSnapshotCodec.read(
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                LOGGER.info("Loaded cache snapshot {} in {} ms", cacheFile, System.currentTimeMillis() - start);
+                return Optional.of(cache);
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring cache snapshot {}, the cache is reloaded from the datasource: {}", cacheFile,
+                        e.getMessage());
+                LOGGER.debug("Error reading cache snapshot", e);
+                return Optional.empty();
+            }
+        }
+        return loadLegacy();
+    }
+
+    private Optional<WritableContentCache> loadLegacy() {
+        if (Files.isReadable(legacyCacheFile)) {
+            try (InputStream in = Files.newInputStream(legacyCacheFile);
+                    ObjectInputStream ois = new ObjectInputStream(in)) {
+                Object cache = ois.readObject();
+                if (cache instanceof WritableContentCache) {
+                    LOGGER.info("Loaded serialized cache {}", legacyCacheFile);
+                    return Optional.of((WritableContentCache) cache);
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                LOGGER.warn("Error reading serialized cache {}", legacyCacheFile, e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void persistOnPartialUpdate(ContentCache cache) {
+        synchronized (scheduleLock) {
+            this.pending = cache;
+            if (scheduled == null || scheduled.isDone()) {
+                this.scheduled = executor.schedule(this::persistPending, delay, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void persistOnCompleteUpdate(ContentCache cache) {
+        synchronized (scheduleLock) {
+            this.pending = cache;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            this.scheduled = executor.schedule(this::persistPending, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public void persistOnShutdown(ContentCache cache) {
+        synchronized (scheduleLock) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            this.pending = null;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(delay, TimeUnit.SECONDS)) {
+                LOGGER.warn("Pending cache persistence did not finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist(cache);
+    }
+
+    @Override
+    public void remove() {
+        try {
+            Files.deleteIfExists(cacheFile);
+            Files.deleteIfExists(legacyCacheFile);
+        } catch (IOException e) {
+            LOGGER.error("Error removing cache file", e);
+        }
+    }
+
+    private void persistPending() {
+        ContentCache cache;
+        synchronized (scheduleLock) {
+            cache = this.pending;
+            this.pending = null;
+        }
+        if (cache != null) {
+            persist(cache);
+        }
+    }
+
+    /**
+     * Writes the snapshot of the cache and replaces the previous snapshot.
+     *
+     * @param cache
+     *            the cache
+     */
+    protected synchronized void persist(ContentCache cache) {
+        if (!(cache instanceof InMemoryCacheImpl)) {
+            LOGGER.warn("Can not persist cache of type {}", cache == null ? null : cache.getClass());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + TMP_SUFFIX);
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                CacheSnapshotCodec.write((InMemoryCacheImpl) cache, channel);
+                channel.force(false);
+            }
+            try {
+                Files.move(tmp, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(legacyCacheFile);
+            LOGGER.debug("Persisted cache snapshot {} in {} ms", cacheFile, System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            LOGGER.error("Error persisting cache snapshot {}", cacheFile, e);
+        }
+    }
+
+}
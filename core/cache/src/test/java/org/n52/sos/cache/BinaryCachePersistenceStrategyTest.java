@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.n52.sos.cache.ctrl.CompleteCacheUpdateFactoryImpl;
+import org.n52.sos.cache.ctrl.SosContentCacheControllerImpl;
+import org.n52.sos.cache.ctrl.persistence.BinaryCachePersistenceStrategy;
+import org.n52.sos.ds.CacheFeederHandler;
+
+public class BinaryCachePersistenceStrategyTest {
+    private static final String OFFERING = "offering";
+    private static final String PROCEDURE = "procedure";
+    private static final String RELOADED = "reloaded";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicInteger completeUpdates = new AtomicInteger();
+
+    private final CacheFeederHandler cacheFeederHandler = new NoOpCacheFeederHandler() {
+        @Override
+        public void updateCache(SosWritableContentCache cache) {
+            completeUpdates.incrementAndGet();
+            cache.addOffering(RELOADED);
+        }
+    };
+
+    private InMemoryCacheImpl cache;
+
+    @Before
+    public void init() {
+        cache = new InMemoryCacheImpl();
+        cache.addOffering(OFFERING);
+        cache.addProcedure(PROCEDURE);
+        cache.addProcedureForOffering(OFFERING, PROCEDURE);
+    }
+
+    @Test
+    public void should_load_persisted_cache() {
+        BinaryCachePersistenceStrategy strategy = createStrategy();
+        assertThat(strategy.load().isPresent(), is(false));
+        strategy.persistOnShutdown(cache);
+        assertThat(strategy.load().get(), is(cache));
+        strategy.remove();
+        assertThat(strategy.load().isPresent(), is(false));
+    }
+
+    @Test
+    public void should_use_persisted_cache_without_complete_update() {
+        createStrategy().persistOnShutdown(cache);
+        SosContentCacheControllerImpl controller = createController(createStrategy());
+        assertThat(completeUpdates.get(), is(0));
+        assertThat(((SosContentCache) controller.getCache()).getOfferings(), contains(OFFERING));
+        controller.destroy();
+    }
+
+    @Test
+    public void should_reload_cache_if_snapshot_is_corrupt() throws IOException {
+        BinaryCachePersistenceStrategy strategy = createStrategy();
+        strategy.persistOnShutdown(cache);
+        Path file = strategy.getCacheFile();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2]++;
+        Files.write(file, bytes);
+        assertReloaded();
+    }
+
+    @Test
+    public void should_reload_cache_if_snapshot_version_is_outdated() throws IOException {
+        BinaryCachePersistenceStrategy strategy = createStrategy();
+        strategy.persistOnShutdown(cache);
+        Path file = strategy.getCacheFile();
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        bytes.putInt(4, CacheSnapshotCodec.VERSION - 1);
+        Files.write(file, bytes.array());
+        assertReloaded();
+    }
+
+    @Test
+    public void should_migrate_legacy_cache_file() throws IOException {
+        BinaryCachePersistenceStrategy strategy = createStrategy();
+        Path legacyFile = strategy.getCacheFile().resolveSibling("cache.tmp");
+        Files.createDirectories(legacyFile.getParent());
+        try (OutputStream out = Files.newOutputStream(legacyFile);
+                ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(cache);
+        }
+        SosContentCacheControllerImpl controller = createController(strategy);
+        assertThat(completeUpdates.get(), is(0));
+        assertThat(controller.getCache(), is(cache));
+        controller.destroy();
+        assertThat(Files.exists(legacyFile), is(false));
+        assertThat(createStrategy().load().get(), is(cache));
+    }
+
+    private void assertReloaded() {
+        SosContentCacheControllerImpl controller = createController(createStrategy());
+        assertThat(completeUpdates.get(), is(1));
+        assertThat(((SosContentCache) controller.getCache()).getOfferings(), contains(RELOADED));
+        controller.destroy();
+        // the reloaded cache replaces the unreadable snapshot
+        assertThat(((SosContentCache) createStrategy().load().get()).getOfferings(), contains(RELOADED));
+    }
+
+    private BinaryCachePersistenceStrategy createStrategy() {
+        BinaryCachePersistenceStrategy strategy = new BinaryCachePersistenceStrategy();
+        strategy.setConfigLocationProvider(tempFolder.getRoot()::getAbsolutePath);
+        strategy.init();
+        return strategy;
+    }
+
+    private SosContentCacheControllerImpl createController(BinaryCachePersistenceStrategy strategy) {
+        CompleteCacheUpdateFactoryImpl cacheUpdateFactory = new CompleteCacheUpdateFactoryImpl();
+        cacheUpdateFactory.setCacheFeederHandler(cacheFeederHandler);
+        SosContentCacheControllerImpl controller = new SosContentCacheControllerImpl();
+        controller.setCacheFactory(InMemoryCacheImpl::new);
+        controller.setPersistenceStrategy(strategy);
+        controller.setCompleteCacheUpdateFactory(cacheUpdateFactory);
+        controller.init();
+        return controller;
+    }
+
+}
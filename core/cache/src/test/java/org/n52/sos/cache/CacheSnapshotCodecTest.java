@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Locale;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.n52.janmayen.i18n.MultilingualString;
+import org.n52.shetland.util.ReferencedEnvelope;
+import org.n52.sos.cache.SosContentCache.TypeInstance;
+
+public class CacheSnapshotCodecTest {
+    private static final String OFFERING = "offering";
+    private static final String PROCEDURE = "procedure";
+    private static final String FEATURE = "feature";
+    private static final String OBSERVABLE_PROPERTY = "observableProperty";
+    private static final DateTime TIME = new DateTime(2020, 1, 1, 0, 0, DateTimeZone.UTC);
+
+    private InMemoryCacheImpl cache;
+
+    @Before
+    public void init() {
+        cache = new InMemoryCacheImpl();
+        cache.addOffering(OFFERING);
+        cache.addProcedure(PROCEDURE);
+        cache.addProcedureForOffering(OFFERING, PROCEDURE);
+        cache.addFeatureOfInterest(FEATURE);
+        cache.addFeatureOfInterestForOffering(OFFERING, FEATURE);
+        cache.addObservablePropertyForProcedure(PROCEDURE, OBSERVABLE_PROPERTY);
+        cache.addTypeInstanceProcedure(TypeInstance.INSTANCE, PROCEDURE);
+        cache.setMaxPhenomenonTimeForOffering(OFFERING, TIME);
+        cache.setMinPhenomenonTime(TIME);
+        cache.setMaxResultTime(TIME.plusDays(1));
+        cache.setLastUpdateTime(TIME);
+        cache.setEnvelopeForOffering(OFFERING, new ReferencedEnvelope(new Envelope(1, 2, 3, 4), 4326));
+        cache.setNameForOffering(OFFERING, "offeringName");
+        cache.setI18nNameForOffering(OFFERING, new MultilingualString().addLocalization(Locale.GERMAN, "Name"));
+        cache.setDefaultEPSGCode(31467);
+        cache.addSupportedLanguage(Locale.ENGLISH);
+        cache.addFeatureOfInterestIdentifierHumanReadableName(FEATURE, "featureName");
+    }
+
+    @Test
+    public void should_read_written_cache() throws IOException {
+        InMemoryCacheImpl read = CacheSnapshotCodec.read(write(cache));
+        assertThat(read, is(cache));
+        assertThat(read.getProceduresForOffering(OFFERING), contains(PROCEDURE));
+        assertThat(read.getMaxPhenomenonTimeForOffering(OFFERING), is(TIME));
+        assertThat(read.getEnvelopeForOffering(OFFERING), is(cache.getEnvelopeForOffering(OFFERING)));
+        assertThat(read.getI18nNameForOffering(OFFERING, Locale.GERMAN).getText(), is("Name"));
+        assertThat(read.getFeatureOfInterestIdentifierForHumanReadableName("featureName"), is(FEATURE));
+        assertThat(read.getTypeInstanceProcedure(TypeInstance.INSTANCE), contains(PROCEDURE));
+    }
+
+    @Test
+    public void should_read_empty_cache() throws IOException {
+        InMemoryCacheImpl empty = new InMemoryCacheImpl();
+        assertThat(CacheSnapshotCodec.read(write(empty)), is(empty));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_corrupt_snapshot() throws IOException {
+        ByteBuffer buffer = write(cache);
+        buffer.put(buffer.limit() - 1, (byte) (buffer.get(buffer.limit() - 1) + 1));
+        CacheSnapshotCodec.read(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_unknown_version() throws IOException {
+        ByteBuffer buffer = write(cache);
+        buffer.putInt(4, CacheSnapshotCodec.VERSION + 1);
+        CacheSnapshotCodec.read(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_previous_version() throws IOException {
+        ByteBuffer buffer = write(cache);
+        buffer.putInt(4, CacheSnapshotCodec.VERSION - 1);
+        CacheSnapshotCodec.read(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_other_content() throws IOException {
+        CacheSnapshotCodec.read(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+    }
+
+    private static ByteBuffer write(InMemoryCacheImpl cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CacheSnapshotCodec.write(cache, Channels.newChannel(out));
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+}
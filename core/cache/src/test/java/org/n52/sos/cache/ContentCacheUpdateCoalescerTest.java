@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.faroe.ConfigurationError;
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.iceland.cache.ctrl.ContentCacheControllerImpl;
+import org.n52.iceland.cache.ctrl.persistence.NoOpCachePersistenceStrategy;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.sos.cache.ctrl.CompleteCacheUpdateFactoryImpl;
+import org.n52.sos.cache.ctrl.ContentCacheUpdateCoalescer;
+
+public class ContentCacheUpdateCoalescerTest {
+    private static final long WINDOW = 100;
+
+    private static final long TIMEOUT = 10;
+
+    private final CountDownLatch applied = new CountDownLatch(1);
+
+    private ContentCacheControllerImpl controller;
+
+    private ContentCacheUpdateCoalescer coalescer;
+
+    @Before
+    public void init() throws ConfigurationError {
+        CompleteCacheUpdateFactoryImpl cacheUpdateFactory = new CompleteCacheUpdateFactoryImpl();
+        cacheUpdateFactory.setCacheFeederHandler(new NoOpCacheFeederHandler());
+        controller = new ContentCacheControllerImpl() {
+            @Override
+            public void update(ContentCacheUpdate update) throws OwsExceptionReport {
+                super.update(update);
+                applied.countDown();
+            }
+        };
+        controller.setCacheFactory(InMemoryCacheImpl::new);
+        controller.setPersistenceStrategy(new NoOpCachePersistenceStrategy());
+        controller.setCompleteCacheUpdateFactory(cacheUpdateFactory);
+        controller.setUpdateInterval(0);
+        controller.init();
+    }
+
+    @After
+    public void shutdown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+
+    @Test
+    public void should_apply_updates_after_window() throws Exception {
+        coalescer = new ContentCacheUpdateCoalescer(controller, WINDOW, 1000);
+        long start = System.nanoTime();
+        coalescer.submit(new AddOfferingUpdate("offering1"));
+        coalescer.submit(new AddOfferingUpdate("offering2"));
+        assertThat(getCache().getOfferings(), is(empty()));
+        assertThat(applied.await(TIMEOUT, TimeUnit.SECONDS), is(true));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(greaterThanOrEqualTo(WINDOW)));
+        assertThat(getCache().getOfferings(), containsInAnyOrder("offering1", "offering2"));
+    }
+
+    @Test
+    public void should_apply_updates_on_flush() throws Exception {
+        coalescer = new ContentCacheUpdateCoalescer(controller, Long.MAX_VALUE / 2, 1000);
+        coalescer.submit(new AddOfferingUpdate("offering1"));
+        coalescer.flush();
+        assertThat(getCache().getOfferings(), containsInAnyOrder("offering1"));
+    }
+
+    @Test
+    public void should_apply_updates_in_calling_thread_when_batch_is_full() {
+        coalescer = new ContentCacheUpdateCoalescer(controller, Long.MAX_VALUE / 2, 2);
+        coalescer.submit(new AddOfferingUpdate("offering1"));
+        assertThat(getCache().getOfferings(), is(empty()));
+        coalescer.submit(new AddOfferingUpdate("offering2"));
+        assertThat(getCache().getOfferings(), containsInAnyOrder("offering1", "offering2"));
+        coalescer.submit(new AddOfferingUpdate("offering3"));
+        assertThat(getCache().getOfferings(), containsInAnyOrder("offering1", "offering2"));
+    }
+
+    private SosWritableContentCache getCache() {
+        return (SosWritableContentCache) controller.getCache();
+    }
+
+    private static class AddOfferingUpdate extends SosContentCacheUpdate {
+        private final String offering;
+
+        AddOfferingUpdate(String offering) {
+            this.offering = offering;
+        }
+
+        @Override
+        public void execute() {
+            getCache().addOffering(offering);
+        }
+    }
+
+}
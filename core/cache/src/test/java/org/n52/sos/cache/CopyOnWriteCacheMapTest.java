@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CopyOnWriteCacheMapTest {
+
+    private CopyOnWriteCacheMap<String, Set<String>> source;
+
+    private CopyOnWriteCacheMap<String, Set<String>> map;
+
+    @Before
+    public void init() {
+        source = new CopyOnWriteCacheMap<>();
+        source.put("a", new HashSet<>(Collections.singleton("1")));
+        source.put("b", new HashSet<>(Collections.singleton("2")));
+        map = new CopyOnWriteCacheMap<>();
+        map.share(source, HashSet::new);
+    }
+
+    @Test
+    public void should_share_values_until_modified() {
+        assertThat(map.isCopied(), is(false));
+        assertThat(map.get("a"), is(sameInstance(source.get("a"))));
+        assertThat(map.keySet(), containsInAnyOrder("a", "b"));
+        assertThat(map.equals(source), is(true));
+    }
+
+    @Test
+    public void should_copy_map_and_values_when_modified() {
+        map.computeIfAbsent("a", k -> new HashSet<>()).add("3");
+
+        assertThat(map.isCopied(), is(true));
+        assertThat(map.get("a"), containsInAnyOrder("1", "3"));
+        assertThat(map.get("b"), is(not(sameInstance(source.get("b")))));
+        assertThat(source.get("a"), contains("1"));
+    }
+
+    @Test
+    public void should_not_copy_for_removal_of_missing_key() {
+        map.remove("c");
+        assertThat(map.isCopied(), is(false));
+    }
+
+    @Test
+    public void should_not_modify_source_when_cleared() {
+        map.clear();
+        assertThat(map.isEmpty(), is(true));
+        assertThat(source.size(), is(2));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void should_not_allow_modifications_of_shared_views() {
+        map.keySet().remove("a");
+    }
+
+    @Test
+    public void should_share_set_until_modified() {
+        CopyOnWriteCacheSet<String> set = new CopyOnWriteCacheSet<>();
+        set.add("a");
+        CopyOnWriteCacheSet<String> copy = new CopyOnWriteCacheSet<>();
+        copy.share(set);
+        copy.add("b");
+        copy.remove("a");
+
+        assertThat(copy, contains("b"));
+        assertThat(set, contains("a"));
+    }
+
+    @Test
+    public void should_not_modify_source_bimap_when_modified() {
+        CopyOnWriteCacheBiMap<String, String> bimap = new CopyOnWriteCacheBiMap<>();
+        bimap.put("a", "1");
+        CopyOnWriteCacheBiMap<String, String> copy = new CopyOnWriteCacheBiMap<>();
+        copy.share(bimap, s -> s);
+        copy.forcePut("b", "1");
+
+        assertThat(copy.inverse().get("1"), is("b"));
+        assertThat(bimap.inverse().get("1"), is("a"));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdentifierSetTest {
+    private static final String ONE = "urn:ogc:def:one";
+    private static final String TWO = "urn:ogc:def:two";
+    private static final String THREE = "urn:ogc:def:three";
+
+    private IdentifierDictionary dictionary;
+
+    @Before
+    public void init() {
+        dictionary = new IdentifierDictionary();
+    }
+
+    @Test
+    public void should_intern_identifiers_once() {
+        assertThat(dictionary.intern(ONE), is(0));
+        assertThat(dictionary.intern(TWO), is(1));
+        assertThat(dictionary.intern(new String(ONE)), is(0));
+        assertThat(dictionary.lookup(THREE), is(-1));
+        assertThat(dictionary.size(), is(2));
+    }
+
+    @Test
+    public void should_add_and_remove_identifiers() {
+        dictionary.intern(THREE);
+        IdentifierSet set = new IdentifierSet(dictionary);
+        assertThat(set.add(TWO), is(true));
+        assertThat(set.add(THREE), is(true));
+        assertThat(set.add(ONE), is(true));
+        assertThat(set.add(TWO), is(false));
+        assertThat(set.size(), is(3));
+        assertThat(set, contains(THREE, TWO, ONE));
+        assertThat(set.remove(TWO), is(true));
+        assertThat(set.remove(TWO), is(false));
+        assertThat(set.contains(TWO), is(false));
+        assertThat(set.contains(ONE), is(true));
+        assertThat(set.contains(null), is(false));
+    }
+
+    @Test
+    public void should_merge_added_collections() {
+        IdentifierSet set = new IdentifierSet(dictionary, Arrays.asList(TWO));
+        assertThat(set.addAll(Arrays.asList(THREE, ONE, TWO)), is(true));
+        assertThat(set.addAll(Arrays.asList(ONE, THREE)), is(false));
+        assertThat(set, containsInAnyOrder(ONE, TWO, THREE));
+        assertThat(new IdentifierSet(dictionary, set), is(set));
+    }
+
+    @Test
+    public void should_remove_with_iterator() {
+        IdentifierSet set = new IdentifierSet(dictionary, Arrays.asList(ONE, TWO, THREE));
+        Iterator<String> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().equals(TWO)) {
+                iterator.remove();
+            }
+        }
+        assertThat(set, contains(ONE, THREE));
+    }
+
+    @Test
+    public void should_be_serializable() throws IOException, ClassNotFoundException {
+        IdentifierSet set = new IdentifierSet(dictionary, Arrays.asList(ONE, THREE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(set);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            IdentifierSet read = (IdentifierSet) ois.readObject();
+            assertThat(read, contains(ONE, THREE));
+            assertThat(read.add(TWO), is(true));
+            assertThat(read, containsInAnyOrder(ONE, TWO, THREE));
+        }
+    }
+
+    @Test
+    public void should_not_invalidate_iterator_when_serialized() throws IOException, ClassNotFoundException {
+        IdentifierSet set = new IdentifierSet(dictionary, Arrays.asList(ONE, TWO, THREE));
+        set.remove(THREE);
+        Iterator<String> iterator = set.iterator();
+        assertThat(iterator.next(), is(ONE));
+        IdentifierSet read = (IdentifierSet) serializeAndDeserialize(set);
+        assertThat(iterator.next(), is(TWO));
+        assertThat(iterator.hasNext(), is(false));
+        assertThat(read, contains(ONE, TWO));
+    }
+
+    @Test
+    public void should_copy_synchronized_sets() throws IOException, ClassNotFoundException {
+        SynchronizedIdentifierSet set = new SynchronizedIdentifierSet(dictionary, Arrays.asList(THREE, ONE));
+        IdentifierSet copy = new IdentifierSet(dictionary, set);
+        assertThat(copy, is(set));
+        assertThat(copy.add(TWO), is(true));
+        assertThat(set.contains(TWO), is(false));
+
+        Object read = serializeAndDeserialize(set);
+        assertThat(read.getClass().equals(SynchronizedIdentifierSet.class), is(true));
+        assertThat((SynchronizedIdentifierSet) read, containsInAnyOrder(ONE, THREE));
+    }
+
+    private Object serializeAndDeserialize(Object object) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(object);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            return ois.readObject();
+        }
+    }
+
+}
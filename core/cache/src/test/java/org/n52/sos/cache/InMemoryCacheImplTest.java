@@ -94,6 +94,22 @@ public class InMemoryCacheImplTest {
         Assert.assertTrue("right class", instance instanceof InMemoryCacheImpl);
     }
 
+    @Test
+    public void should_compact_identifiers_of_copy() {
+        InMemoryCacheImpl cache = new InMemoryCacheImpl();
+        cache.addProcedureForOffering(OFFERING_IDENTIFIER, "procedure1");
+        cache.addProcedureForOffering(OFFERING_IDENTIFIER, "procedure2");
+        cache.removeProcedureForOffering(OFFERING_IDENTIFIER, "procedure2");
+
+        InMemoryCacheImpl copy = new InMemoryCacheImpl(cache);
+
+        MatcherAssert.assertThat(copy.getProceduresForOffering(OFFERING_IDENTIFIER),
+                Is.is(Collections.singleton("procedure1")));
+        MatcherAssert.assertThat(copy.getIdentifierDictionary().size(), Is.is(1));
+        MatcherAssert.assertThat(copy.getIdentifierDictionary().lookup("procedure2"), Is.is(-1));
+        MatcherAssert.assertThat(cache.getIdentifierDictionary().size(), Is.is(2));
+    }
+
     @Test
     public void equalsWithNewInstances() {
         Assert.assertEquals("equals failed", new InMemoryCacheImpl(), new InMemoryCacheImpl());
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.n52.shetland.util.ReferencedEnvelope;
+import org.n52.sos.cache.SosContentCache.TypeInstance;
+
+public class SnapshotCacheImplTest {
+    private static final String OFFERING = "offering";
+    private static final String OFFERING_OTHER = "offeringOther";
+    private static final String PROCEDURE = "procedure";
+    private static final String PROCEDURE_OTHER = "procedureOther";
+    private static final String FEATURE = "feature";
+    private static final DateTime TIME = new DateTime(2020, 1, 1, 0, 0, DateTimeZone.UTC);
+
+    private InMemoryCacheImpl cache;
+
+    @Before
+    public void init() {
+        cache = new InMemoryCacheImpl();
+        cache.addOffering(OFFERING);
+        cache.addProcedureForOffering(OFFERING, PROCEDURE);
+        cache.addFeatureOfInterest(FEATURE);
+        cache.setMaxPhenomenonTimeForOffering(OFFERING, TIME);
+        cache.setMinPhenomenonTime(TIME);
+        cache.addFeatureOfInterestIdentifierHumanReadableName(FEATURE, "featureName");
+    }
+
+    @Test
+    public void should_contain_values_of_source() {
+        SnapshotCacheImpl snapshot = new SnapshotCacheImpl(cache);
+        assertThat(snapshot.getOfferings(), contains(OFFERING));
+        assertThat(snapshot.getProceduresForOffering(OFFERING), contains(PROCEDURE));
+        assertThat(snapshot.getFeaturesOfInterest(), contains(FEATURE));
+        assertThat(snapshot.getMaxPhenomenonTimeForOffering(OFFERING), is(TIME));
+        assertThat(snapshot.getMinPhenomenonTime(), is(TIME));
+        assertThat(snapshot.getFeatureOfInterestIdentifierForHumanReadableName("featureName"), is(FEATURE));
+    }
+
+    @Test
+    public void should_not_modify_source_when_copy_is_modified() {
+        SnapshotCacheImpl snapshot = new SnapshotCacheImpl(cache);
+        SnapshotCacheImpl copy = snapshot.copy();
+        copy.addOffering(OFFERING_OTHER);
+        copy.addProcedureForOffering(OFFERING, PROCEDURE_OTHER);
+
+        assertThat(copy.getOfferings(), containsInAnyOrder(OFFERING, OFFERING_OTHER));
+        assertThat(copy.getProceduresForOffering(OFFERING), containsInAnyOrder(PROCEDURE, PROCEDURE_OTHER));
+        assertThat(snapshot.getOfferings(), contains(OFFERING));
+        assertThat(snapshot.getProceduresForOffering(OFFERING), contains(PROCEDURE));
+        assertThat(cache.getOfferings(), contains(OFFERING));
+        assertThat(cache.getProceduresForOffering(OFFERING), contains(PROCEDURE));
+    }
+
+    @Test
+    public void should_not_modify_source_when_values_are_removed_from_copy() {
+        cache.addRoleForRelatedFeature(FEATURE, "role");
+        cache.addTypeInstanceProcedure(TypeInstance.INSTANCE, PROCEDURE);
+        SnapshotCacheImpl snapshot = new SnapshotCacheImpl(cache);
+        SnapshotCacheImpl copy = snapshot.copy();
+        copy.removeProcedureForOffering(OFFERING, PROCEDURE);
+        copy.removeRolesForRelatedFeatureNotIn(Collections.emptySet());
+        copy.removeTypeInstanceProcedure(PROCEDURE);
+        copy.removeFeatureOfInterestIdentifierForHumanReadableName("featureName");
+
+        assertThat(copy.getProceduresForOffering(OFFERING), is(empty()));
+        assertThat(copy.getRolesForRelatedFeature(FEATURE), is(empty()));
+        assertThat(copy.getTypeInstanceProcedure(TypeInstance.INSTANCE), is(empty()));
+        assertThat(copy.getFeatureOfInterestIdentifierForHumanReadableName("featureName"), is("featureName"));
+        assertThat(snapshot.getProceduresForOffering(OFFERING), contains(PROCEDURE));
+        assertThat(snapshot.getRolesForRelatedFeature(FEATURE), contains("role"));
+        assertThat(snapshot.getTypeInstanceProcedure(TypeInstance.INSTANCE), contains(PROCEDURE));
+        assertThat(snapshot.getFeatureOfInterestIdentifierForHumanReadableName("featureName"), is(FEATURE));
+    }
+
+    @Test
+    public void should_not_modify_envelope_of_source_when_copy_is_updated() {
+        cache.setEnvelopeForOffering(OFFERING, new ReferencedEnvelope(new Envelope(0, 1, 0, 1), 4326));
+        SnapshotCacheImpl snapshot = new SnapshotCacheImpl(cache);
+        SnapshotCacheImpl copy = snapshot.copy();
+        copy.updateEnvelopeForOffering(OFFERING, new Envelope(5, 6, 5, 6));
+
+        assertThat(copy.getEnvelopeForOffering(OFFERING).getEnvelope(), is(new Envelope(0, 6, 0, 6)));
+        assertThat(snapshot.getEnvelopeForOffering(OFFERING).getEnvelope(), is(new Envelope(0, 1, 0, 1)));
+    }
+
+    @Test
+    public void should_be_equal_to_source() {
+        SnapshotCacheImpl snapshot = new SnapshotCacheImpl(cache);
+        SnapshotCacheImpl copy = snapshot.copy();
+        assertThat(copy.equals(snapshot), is(true));
+        copy.addOffering(OFFERING_OTHER);
+        assertThat(copy.equals(snapshot), is(false));
+    }
+
+    @Test
+    public void should_be_persisted_as_synchronized_cache() throws IOException, ClassNotFoundException {
+        SnapshotCacheImpl snapshot = new SnapshotCacheImpl(cache);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(snapshot);
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            Object read = ois.readObject();
+            assertThat(read.getClass().equals(InMemoryCacheImpl.class), is(true));
+            assertThat(((InMemoryCacheImpl) read).isSynchronizedCollections(), is(true));
+            assertThat(((InMemoryCacheImpl) read).getProceduresForOffering(OFFERING), contains(PROCEDURE));
+        }
+    }
+
+}
@@ -29,8 +29,10 @@
 package org.n52.sos.ds;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -50,7 +52,9 @@ import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.shetland.ogc.filter.TemporalFilter;
 import org.n52.shetland.ogc.gml.ReferenceType;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
 import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.NamedValue;
 import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.ows.extension.Extension;
@@ -66,6 +70,7 @@ import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityResponse.ObservationForma
 import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityResponse.ProcedureDescriptionFormatDescriptor;
 import org.n52.sos.ds.dao.GetDataAvailabilityDao;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -122,16 +127,29 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
         try {
             GDARequestContext context = new GDARequestContext(request);
             boolean gdaV20 = checkForGDAv20(request);
+            Map<Long, DataAvailability> dataAvailabilities = new LinkedHashMap<>();
+            Map<String, OfferingEntity> offerings = new LinkedHashMap<>();
             for (final DatasetEntity entity : new DatasetDao<>(session).getAllInstances(createDbQuery(request))) {
-                if (gdaV20) {
-                    processDataAvailabilityV2(entity, context, session);
-                } else {
-                    processDataAvailability(entity, context, session);
+                DataAvailability dataAvailability = defaultProcessDataAvailability(entity, context);
+                if (dataAvailability != null) {
+                    if (gdaV20) {
+                        dataAvailability.setFormatDescriptor(getFormatDescriptor(context, entity));
+                    }
+                    dataAvailabilities.put(entity.getId(), dataAvailability);
+                }
+                if (entity.isSetOffering()) {
+                    offerings.putIfAbsent(entity.getOffering().getIdentifier(), entity.getOffering());
                 }
             }
+            addResultTimes(dataAvailabilities, context, session);
+            if (gdaV20) {
+                addMetadata(dataAvailabilities, session);
+            }
+            context.addDataAvailabilities(dataAvailabilities.values());
             if (!gdaV20) {
                 return checkForDuplictation(context.getDataAvailabilityList());
             }
+            checkForParentOfferings(context, offerings.values());
             return context.getDataAvailabilityList();
         } catch (DataAccessException e) {
             throw new NoApplicableCodeException().causedBy(e)
@@ -159,8 +177,7 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
         return new DbQuery(IoParameters.createFromSingleValueMap(map));
     }
 
-    private DataAvailability defaultProcessDataAvailability(DatasetEntity entity, GDARequestContext context,
-            Session session) throws OwsExceptionReport {
+    private DataAvailability defaultProcessDataAvailability(DatasetEntity entity, GDARequestContext context) {
         TimePeriod timePeriod = createTimePeriod(entity);
         if (timePeriod != null && !timePeriod.isEmpty()) {
             DataAvailability dataAvailability =
@@ -171,20 +188,17 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
             if (isShowCount(context.getRequest()) && entity.getObservationCount() >= 0) {
                 dataAvailability.setCount(entity.getObservationCount());
             }
-            if (isIncludeResultTime(context.getRequest()) && dao.isPresent()) {
-                dataAvailability.setResultTimes(dao.get().getResultTimes(dataAvailability, context.getRequest()));
-            }
             return dataAvailability;
         }
         return null;
     }
 
     /**
-     * Get {@link DataAvailability}s for each series
+     * Add the result times to the {@link DataAvailability}s, queried for all
+     * datasets at once.
      *
-     * @param entity
-     *            the {@link DatasetEntity} to get
-     *            {@link DataAvailability}s for
+     * @param dataAvailabilities
+     *            the {@link DataAvailability}s per dataset id
      * @param context
      *            Request context to get {@link DataAvailability}s
      * @param session
@@ -192,47 +206,60 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
      * @throws OwsExceptionReport
      *             If an error occurs
      */
-    private void processDataAvailability(DatasetEntity entity, GDARequestContext context, Session session)
-            throws OwsExceptionReport {
-        DataAvailability dataAvailability = defaultProcessDataAvailability(entity, context, session);
-        if (dataAvailability != null) {
-            context.addDataAvailability(dataAvailability);
+    private void addResultTimes(Map<Long, DataAvailability> dataAvailabilities, GDARequestContext context,
+            Session session) throws OwsExceptionReport {
+        if (dao.isPresent() && !dataAvailabilities.isEmpty() && isIncludeResultTime(context.getRequest())) {
+            Map<Long, List<TimeInstant>> resultTimes =
+                    dao.get().getResultTimes(dataAvailabilities.keySet(), context.getRequest(), session);
+            for (Entry<Long, DataAvailability> entry : dataAvailabilities.entrySet()) {
+                entry.getValue().setResultTimes(resultTimes.getOrDefault(entry.getKey(), Lists.newArrayList()));
+            }
         }
     }
 
     /**
-     * Get {@link DataAvailability}s for each offering of a series
+     * Add the metadata to the {@link DataAvailability}s, queried for all
+     * datasets at once.
      *
-     * @param entity
-     *            the {@link DatasetEntity} to get
-     *            {@link DataAvailability}s for
-     * @param context
-     *            Request context to get {@link DataAvailability}s
+     * @param dataAvailabilities
+     *            the {@link DataAvailability}s per dataset id
+     * @param session
+     *            Hibernate session
      * @throws OwsExceptionReport
      *             If an error occurs
      */
-    private void processDataAvailabilityV2(DatasetEntity entity, GDARequestContext context, Session session)
+    private void addMetadata(Map<Long, DataAvailability> dataAvailabilities, Session session)
             throws OwsExceptionReport {
-        DataAvailability dataAvailability = defaultProcessDataAvailability(entity, context, session);
-        if (dataAvailability != null) {
-            dataAvailability.setFormatDescriptor(getFormatDescriptor(context, entity));
-            if (dao.isPresent()) {
-                dataAvailability.setMetadata(dao.get().getMetadata(dataAvailability));
+        if (dao.isPresent() && !dataAvailabilities.isEmpty()) {
+            Map<Long, Map<String, NamedValue<?>>> metadata =
+                    dao.get().getMetadata(dataAvailabilities.keySet(), session);
+            for (Entry<Long, DataAvailability> entry : dataAvailabilities.entrySet()) {
+                entry.getValue().setMetadata(metadata.getOrDefault(entry.getKey(), new HashMap<>()));
             }
-            context.addDataAvailability(dataAvailability);
         }
-        checkForParentOfferings(context, entity.getOffering());
     }
 
     private TimePeriod createTimePeriod(DatasetEntity entity) {
         return new TimePeriod(entity.getFirstValueAt(), entity.getLastValueAt());
     }
 
-    private void checkForParentOfferings(GDARequestContext context, OfferingEntity offeringEntity) {
-        if (context.isSetDataAvailabilityList()) {
+    /**
+     * Merge the {@link DataAvailability}s of child offerings into the
+     * requested parent offerings, once for the children of all offerings.
+     *
+     * @param context
+     *            Request context to get {@link DataAvailability}s
+     * @param offeringEntities
+     *            the distinct offerings of the datasets
+     */
+    private void checkForParentOfferings(GDARequestContext context, Collection<OfferingEntity> offeringEntities) {
+        if (context.isSetDataAvailabilityList() && context.getRequest().isSetOfferings()) {
+            Set<String> childOfferings = Sets.newTreeSet();
+            for (OfferingEntity offeringEntity : offeringEntities) {
+                childOfferings.addAll(getChildOfferings(offeringEntity));
+            }
             List<String> requestedOfferings = context.getRequest().getOfferings();
             for (String requestedOffering : requestedOfferings) {
-                Set<String> childOfferings = getChildOfferings(offeringEntity);
                 if (!childOfferings.isEmpty()) {
                     if (context.hasDataAvailability(requestedOffering)) {
                         Set<DataAvailability> parentDataAvailabilities =
@@ -281,27 +308,54 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
                 || GetDataAvailabilityConstants.NS_GDA_20.equals(request.getNamespace()) || isForceGDAv20Response();
     }
 
-    private List<DataAvailability> checkForDuplictation(List<DataAvailability> dataAvailabilityValues) {
+    /**
+     * Merge equal {@link DataAvailability}s, e.g. of the same constellation in
+     * different offerings. The phenomenon time is extended and the result
+     * times of the datasets are united.
+     *
+     * @param dataAvailabilityValues
+     *            the {@link DataAvailability}s to check
+     * @return the distinct {@link DataAvailability}s
+     */
+    @VisibleForTesting
+    List<DataAvailability> checkForDuplictation(List<DataAvailability> dataAvailabilityValues) {
         List<DataAvailability> checked = Lists.newLinkedList();
+        // equal data availabilities share the constellation, so only those have to be compared
+        Map<String, List<DataAvailability>> checkedForConstellation = new HashMap<>();
         for (DataAvailability dataAvailability : dataAvailabilityValues) {
-            if (checked.isEmpty()) {
-                checked.add(dataAvailability);
-            } else {
-                boolean notDuplicated = true;
-                for (DataAvailability checkedDA : checked) {
-                    if (dataAvailability.equals(checkedDA)) {
-                        checkedDA.getPhenomenonTime().extendToContain(dataAvailability.getPhenomenonTime());
-                        notDuplicated = false;
-                    }
-                }
-                if (notDuplicated) {
-                    checked.add(dataAvailability);
+            List<DataAvailability> candidates = checkedForConstellation
+                    .computeIfAbsent(getConstellationKey(dataAvailability), k -> Lists.newArrayList());
+            boolean notDuplicated = true;
+            for (DataAvailability checkedDA : candidates) {
+                if (dataAvailability.equals(checkedDA)) {
+                    checkedDA.getPhenomenonTime().extendToContain(dataAvailability.getPhenomenonTime());
+                    mergeResultTimes(checkedDA, dataAvailability);
+                    notDuplicated = false;
                 }
             }
+            if (notDuplicated) {
+                checked.add(dataAvailability);
+                candidates.add(dataAvailability);
+            }
         }
         return checked;
     }
 
+    private void mergeResultTimes(DataAvailability checked, DataAvailability duplicate) {
+        if (duplicate.getResultTimes() != null && !duplicate.getResultTimes().isEmpty()) {
+            Set<TimeInstant> resultTimes = Sets.newTreeSet(duplicate.getResultTimes());
+            if (checked.getResultTimes() != null) {
+                resultTimes.addAll(checked.getResultTimes());
+            }
+            checked.setResultTimes(Lists.newArrayList(resultTimes));
+        }
+    }
+
+    private String getConstellationKey(DataAvailability dataAvailability) {
+        return String.join("|", dataAvailability.getProcedure().getHref(),
+                dataAvailability.getObservedProperty().getHref(), dataAvailability.getFeatureOfInterest().getHref());
+    }
+
     private ReferenceType getProcedureReference(DatasetEntity entity, Map<String, ReferenceType> procedures) {
         String identifier = entity.getProcedure().getIdentifier();
         if (!procedures.containsKey(identifier)) {
@@ -426,8 +480,9 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
             observationTypes.add(getObservationType(entity));
         }
         for (String observationType : observationTypes) {
-            Set<String> responseFormats = getResponseFormatsForObservationType(observationType,
-                    context.getRequest().getService(), context.getRequest().getVersion());
+            Set<String> responseFormats = context.getResponseFormats().computeIfAbsent(observationType,
+                    type -> getResponseFormatsForObservationType(type, context.getRequest().getService(),
+                            context.getRequest().getVersion()));
             for (String responseFormat : responseFormats) {
                 if (responsFormatObservationTypesMap.containsKey(responseFormat)) {
                     responsFormatObservationTypesMap.get(responseFormat).add(observationType);
@@ -462,6 +517,8 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
 
         private List<DataAvailability> dataAvailabilityValues = Lists.newArrayList();
 
+        private Map<String, List<DataAvailability>> dataAvailabilityForOffering = new HashMap<>();
+
         private Map<String, ReferenceType> procedures = new HashMap<>();
 
         private Map<String, ReferenceType> observableProperties = new HashMap<>();
@@ -470,6 +527,8 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
 
         private Map<String, ReferenceType> offerings = new HashMap<>();
 
+        private Map<String, Set<String>> responseFormats = new HashMap<>();
+
         public GDARequestContext(GetDataAvailabilityRequest request) {
             this.request = request;
         }
@@ -494,21 +553,34 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
             return offerings;
         }
 
+        /**
+         * @return the response formats per observation type
+         */
+        public Map<String, Set<String>> getResponseFormats() {
+            return responseFormats;
+        }
+
         public GDARequestContext setDataAvailabilityList(List<DataAvailability> dataAvailabilityValues) {
             this.dataAvailabilityValues.clear();
+            this.dataAvailabilityForOffering.clear();
             return addDataAvailabilities(dataAvailabilityValues);
         }
 
         public GDARequestContext addDataAvailability(DataAvailability dataAvailability) {
             if (dataAvailability != null) {
                 this.dataAvailabilityValues.add(dataAvailability);
+                if (dataAvailability.getOfferingString() != null) {
+                    this.dataAvailabilityForOffering
+                            .computeIfAbsent(dataAvailability.getOfferingString(), k -> Lists.newArrayList())
+                            .add(dataAvailability);
+                }
             }
             return this;
         }
 
         public GDARequestContext addDataAvailabilities(Collection<DataAvailability> dataAvailabilityValues) {
             if (dataAvailabilityValues != null) {
-                this.dataAvailabilityValues.addAll(dataAvailabilityValues);
+                dataAvailabilityValues.forEach(this::addDataAvailability);
             }
             return this;
         }
@@ -518,26 +590,15 @@ public class GetDataAvailabilityHandler extends AbstractGetDataAvailabilityHandl
         }
 
         public boolean hasDataAvailability(String requestedOffering) {
-            for (DataAvailability dataAvailability : dataAvailabilityValues) {
-                if (requestedOffering.equals(dataAvailability.getOfferingString())) {
-                    return true;
-                }
-            }
-            return false;
+            return dataAvailabilityForOffering.containsKey(requestedOffering);
         }
 
         public Set<DataAvailability> getDataAvailability(String offering) {
-            Set<DataAvailability> das = Sets.newHashSet();
-            for (DataAvailability dataAvailability : dataAvailabilityValues) {
-                if (offering.equals(dataAvailability.getOfferingString())) {
-                    das.add(dataAvailability);
-                }
-            }
-            return das;
+            return Sets.newHashSet(dataAvailabilityForOffering.getOrDefault(offering, Collections.emptyList()));
         }
 
         public boolean isSetDataAvailabilityList() {
-            return getDataAvailabilityList() != null && !getDataAvailabilityList().isEmpty();
+            return !dataAvailabilityValues.isEmpty();
         }
 
     }
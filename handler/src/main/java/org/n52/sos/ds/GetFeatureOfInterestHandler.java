@@ -33,23 +33,37 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
+import org.hibernate.Criteria;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
+import org.hibernate.spatial.SpatialDialect;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.n52.io.request.IoParameters;
 import org.n52.series.db.HibernateSessionStore;
 import org.n52.series.db.beans.AbstractFeatureEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.PhenomenonEntity;
+import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.dataset.DatasetType;
 import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
@@ -71,8 +85,14 @@ import org.n52.shetland.ogc.sos.request.GetFeatureOfInterestRequest;
 import org.n52.shetland.ogc.sos.response.GetFeatureOfInterestResponse;
 import org.n52.shetland.util.EnvelopeOrGeometry;
 import org.n52.sos.ds.dao.GetFeatureOfInterestDao;
+import org.n52.sos.ds.hibernate.util.HibernateHelper;
+import org.n52.sos.ds.hibernate.util.ScrollableIterable;
+import org.n52.sos.ds.hibernate.util.SpatialRestrictions;
 import org.n52.sos.util.GeometryHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -80,6 +100,18 @@ import com.google.common.collect.Maps;
 
 public class GetFeatureOfInterestHandler extends AbstractGetFeatureOfInterestHandler implements ApiQueryHelper {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GetFeatureOfInterestHandler.class);
+
+    private static final int MAX_IN_VALUES = 1000;
+
+    private static final String ID = ".id";
+
+    private static final String PROCEDURE_ALIAS = "p";
+
+    private static final String PHENOMENON_ALIAS = "ph";
+
+    private static final String PARENT_ALIAS = "pf";
+
     private HibernateSessionStore sessionStore;
 
     private GetFeatureOfInterestDao dao;
@@ -159,6 +191,28 @@ public class GetFeatureOfInterestHandler extends AbstractGetFeatureOfInterestHan
      */
     private FeatureCollection getFeatures(GetFeatureOfInterestRequest request, Session session)
             throws OwsExceptionReport {
+        if (isDatabaseQuerySupported(request, session)) {
+            return queryFeatures(request, session);
+        }
+        return queryFeatureEntities(request, session);
+    }
+
+    /**
+     * Query the features by loading the matching datasets and features as
+     * entities. Used for spatial filters on non-spatial datasources or
+     * dialects.
+     *
+     * @param request
+     *            GetFeatureOfInterest request
+     * @param session
+     *            Hibernate session
+     * @return Feature collection with requested featuresOfInterest
+     * @throws OwsExceptionReport
+     *             If an error occurs during processing
+     */
+    @VisibleForTesting
+    FeatureCollection queryFeatureEntities(GetFeatureOfInterestRequest request, Session session)
+            throws OwsExceptionReport {
         Set<AbstractFeatureEntity> featureEntities = new HashSet<>(queryFeaturesForParameter(request, session));
         if (featureEntities.isEmpty()) {
             return new FeatureCollection();
@@ -171,6 +225,211 @@ public class GetFeatureOfInterestHandler extends AbstractGetFeatureOfInterestHan
         return new FeatureCollection(createFeatures(featureEntities));
     }
 
+    /**
+     * Check if the features can be queried with a single query in the
+     * datasource. Spatial filters require a spatial datasource and a spatial
+     * dialect.
+     *
+     * @param request
+     *            GetFeatureOfInterest request
+     * @param session
+     *            Hibernate session
+     * @return <code>true</code>, if the features can be queried in the
+     *         datasource
+     */
+    private boolean isDatabaseQuerySupported(GetFeatureOfInterestRequest request, Session session) {
+        return !request.isSetSpatialFilters() || (getGeometryHandler().isSpatialDatasource()
+                && HibernateHelper.getDialect(session) instanceof SpatialDialect);
+    }
+
+    /**
+     * Query the features with a single query for the feature identifier,
+     * procedure, observed property and spatial filter constraints. Only the
+     * columns required for the response are projected and scrolled, the
+     * parent features are resolved with one query per hierarchy level.
+     *
+     * @param request
+     *            GetFeatureOfInterest request
+     * @param session
+     *            Hibernate session
+     * @return Feature collection with requested featuresOfInterest
+     * @throws OwsExceptionReport
+     *             If an error occurs during processing
+     */
+    @SuppressWarnings("unchecked")
+    @VisibleForTesting
+    FeatureCollection queryFeatures(GetFeatureOfInterestRequest request, Session session)
+            throws OwsExceptionReport {
+        Criteria criteria = createFeatureCriteria(request, session);
+        if (dao != null) {
+            criteria.setProjection(Projections.property(AbstractFeatureEntity.PROPERTY_IDENTIFIER));
+            LOGGER.trace("QUERY queryFeatureIdentifiers(): {}", HibernateHelper.getSqlString(criteria));
+            Set<String> identifiers = new HashSet<>(criteria.list());
+            if (identifiers.isEmpty()) {
+                return new FeatureCollection();
+            }
+            request.setFeatureIdentifiers(identifiers);
+            return new FeatureCollection(dao.getFeatureOfInterest(request, session));
+        }
+        criteria.setProjection(getFeatureProjection(""));
+        LOGGER.trace("QUERY queryFeatures(): {}", HibernateHelper.getSqlString(criteria));
+        Map<Long, SamplingFeature> features = new LinkedHashMap<>();
+        try (ScrollableIterable<Object[]> rows = ScrollableIterable.fromProjection(criteria)) {
+            for (Object[] row : rows) {
+                features.put((Long) row[0], createFeature(row, 0));
+            }
+        }
+        addSampledFeatures(features, session);
+        Map<String, AbstractFeature> map = new LinkedHashMap<>(features.size());
+        for (SamplingFeature feature : features.values()) {
+            map.put(feature.getIdentifier(), feature);
+        }
+        return new FeatureCollection(map);
+    }
+
+    private Criteria createFeatureCriteria(GetFeatureOfInterestRequest req, Session session)
+            throws OwsExceptionReport {
+        Criteria criteria = session.createCriteria(FeatureEntity.class);
+        if (req.isSetFeatureOfInterestIdentifiers()) {
+            criteria.add(getInRestriction(AbstractFeatureEntity.PROPERTY_IDENTIFIER, req.getFeatureIdentifiers()));
+        }
+        if (req.isSetSpatialFilters()) {
+            boolean indexFilter = ((SpatialDialect) HibernateHelper.getDialect(session)).supportsFiltering();
+            Disjunction disjunction = Restrictions.disjunction();
+            for (SpatialFilter spatialFilter : req.getSpatialFilters()) {
+                disjunction.add(getSpatialRestriction(spatialFilter, indexFilter));
+            }
+            criteria.add(disjunction);
+        }
+        // features of visible datasets matching the procedures and observed
+        // properties
+        DetachedCriteria visible = DetachedCriteria.forClass(DatasetEntity.class)
+                .add(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false))
+                .add(Restrictions.or(Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED, true),
+                        Restrictions.eq(DatasetEntity.PROPERTY_DATASET_TYPE, DatasetType.not_initialized)))
+                .setProjection(Projections.property(DatasetEntity.PROPERTY_FEATURE + ID));
+        if (req.isSetProcedures()) {
+            visible.createAlias(DatasetEntity.PROPERTY_PROCEDURE, PROCEDURE_ALIAS)
+                    .add(getInRestriction(PROCEDURE_ALIAS + "." + ProcedureEntity.IDENTIFIER, req.getProcedures()));
+        }
+        if (req.isSetObservableProperties()) {
+            visible.createAlias(DatasetEntity.PROPERTY_PHENOMENON, PHENOMENON_ALIAS).add(getInRestriction(
+                    PHENOMENON_ALIAS + "." + PhenomenonEntity.IDENTIFIER, req.getObservedProperties()));
+        }
+        if (req.isSetProcedures() || req.isSetObservableProperties()) {
+            criteria.add(Subqueries.propertyIn(AbstractFeatureEntity.PROPERTY_ID, visible));
+        } else {
+            // features without datasets are included if they are not
+            // referenced by deleted or unpublished datasets
+            DetachedCriteria notVisible = DetachedCriteria.forClass(DatasetEntity.class)
+                    .add(Restrictions.isNotNull(DatasetEntity.PROPERTY_FEATURE))
+                    .add(Restrictions.or(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, true),
+                            Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED, false)))
+                    .setProjection(Projections.property(DatasetEntity.PROPERTY_FEATURE + ID));
+            criteria.add(Restrictions.or(Subqueries.propertyIn(AbstractFeatureEntity.PROPERTY_ID, visible),
+                    Subqueries.propertyNotIn(AbstractFeatureEntity.PROPERTY_ID, notVisible)));
+        }
+        return criteria;
+    }
+
+    /**
+     * Create an in restriction, split into a disjunction of at most
+     * {@value #MAX_IN_VALUES} values each (Oracle expression limit).
+     */
+    private Criterion getInRestriction(String propertyName, Collection<?> values) {
+        if (values.size() <= MAX_IN_VALUES) {
+            return Restrictions.in(propertyName, values);
+        }
+        Disjunction disjunction = Restrictions.disjunction();
+        for (List<?> partition : Lists.partition(new ArrayList<>(values), MAX_IN_VALUES)) {
+            disjunction.add(Restrictions.in(propertyName, partition));
+        }
+        return disjunction;
+    }
+
+    private Criterion getSpatialRestriction(SpatialFilter spatialFilter, boolean indexFilter)
+            throws OwsExceptionReport {
+        Geometry geometry =
+                getGeometryHandler().switchCoordinateAxisFromToDatasourceIfNeeded(spatialFilter.getGeometry());
+        Criterion criterion =
+                SpatialRestrictions.filter(AbstractFeatureEntity.GEOMETRY, spatialFilter.getOperator(), geometry);
+        if (indexFilter && SpatialOperator.BBOX.equals(spatialFilter.getOperator())) {
+            // let the spatial index preselect the candidates
+            return Restrictions.and(SpatialRestrictions.indexFilter(AbstractFeatureEntity.GEOMETRY, geometry),
+                    criterion);
+        }
+        return criterion;
+    }
+
+    private ProjectionList getFeatureProjection(String prefix) {
+        return Projections.projectionList()
+                .add(Projections.property(prefix + AbstractFeatureEntity.PROPERTY_ID))
+                .add(Projections.property(prefix + AbstractFeatureEntity.PROPERTY_IDENTIFIER))
+                .add(Projections.property(prefix + AbstractFeatureEntity.PROPERTY_NAME))
+                .add(Projections.property(prefix + AbstractFeatureEntity.DESCRIPTION))
+                .add(Projections.property(prefix + AbstractFeatureEntity.GEOMETRY));
+    }
+
+    /**
+     * Create the feature from the projected id, identifier, name, description
+     * and geometry starting at the offset.
+     */
+    private SamplingFeature createFeature(Object[] row, int offset) throws OwsExceptionReport {
+        SamplingFeature sampFeat = new SamplingFeature(new CodeWithAuthority((String) row[offset + 1]));
+        if (!Strings.isNullOrEmpty((String) row[offset + 2])) {
+            sampFeat.addName((String) row[offset + 2]);
+        }
+        if (!Strings.isNullOrEmpty((String) row[offset + 3])) {
+            sampFeat.setDescription((String) row[offset + 3]);
+        }
+        Geometry geometry = (Geometry) row[offset + 4];
+        if (geometry != null && !geometry.isEmpty()) {
+            if (geometry.getSRID() <= 0) {
+                geometry.setSRID(getGeometryHandler().getStorageEPSG());
+            }
+            sampFeat.setGeometry(getGeometryHandler().switchCoordinateAxisFromToDatasourceIfNeeded(geometry));
+        }
+        return sampFeat;
+    }
+
+    /**
+     * Add the parent features as sampled features, each level of the feature
+     * hierarchy is queried once for all features of the level.
+     */
+    private void addSampledFeatures(Map<Long, SamplingFeature> features, Session session)
+            throws OwsExceptionReport {
+        Map<Long, SamplingFeature> known = new HashMap<>(features);
+        Map<Long, List<AbstractFeature>> sampledFeatures = new HashMap<>();
+        Set<Long> level = new HashSet<>(features.keySet());
+        while (!level.isEmpty()) {
+            Set<Long> nextLevel = new HashSet<>();
+            for (List<Long> ids : Lists.partition(new ArrayList<>(level), MAX_IN_VALUES)) {
+                Criteria criteria = session.createCriteria(FeatureEntity.class)
+                        .createAlias(AbstractFeatureEntity.PROPERTY_PARENTS, PARENT_ALIAS)
+                        .add(Restrictions.in(AbstractFeatureEntity.PROPERTY_ID, ids))
+                        .setProjection(getFeatureProjection(PARENT_ALIAS + ".")
+                                .add(Projections.property(AbstractFeatureEntity.PROPERTY_ID)));
+                LOGGER.trace("QUERY queryParentFeatures(): {}", HibernateHelper.getSqlString(criteria));
+                try (ScrollableIterable<Object[]> rows = ScrollableIterable.fromProjection(criteria)) {
+                    for (Object[] row : rows) {
+                        Long parentId = (Long) row[0];
+                        SamplingFeature parent = known.get(parentId);
+                        if (parent == null) {
+                            parent = createFeature(row, 0);
+                            known.put(parentId, parent);
+                            nextLevel.add(parentId);
+                        }
+                        sampledFeatures.computeIfAbsent((Long) row[5], id -> new ArrayList<>()).add(parent);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        for (Entry<Long, List<AbstractFeature>> entry : sampledFeatures.entrySet()) {
+            known.get(entry.getKey()).setSampledFeatures(entry.getValue());
+        }
+    }
+
     private Map<String, AbstractFeature> createFeatures(Set<AbstractFeatureEntity> featureEntities)
             throws InvalidSridException, OwsExceptionReport {
         final Map<String, AbstractFeature> map = new HashMap<>(featureEntities.size());
@@ -28,9 +28,11 @@
  */
 package org.n52.sos.ds;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
 
 import javax.inject.Inject;
 
@@ -53,6 +55,9 @@ import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.util.CollectionHelper;
 import org.n52.sos.cache.SosWritableContentCache;
 import org.n52.sos.ds.cache.CacheFeederSettingDefinitionProvider;
+import org.n52.sos.ds.cache.DatasetChangeTracker;
+import org.n52.sos.ds.cache.DatasetChangeTracker.DatasetChanges;
+import org.n52.sos.ds.cache.DeltaCacheUpdate;
 import org.n52.sos.ds.cache.InitialCacheUpdate;
 import org.n52.sos.ds.cache.base.OfferingCacheUpdate;
 import org.n52.sos.util.GeometryHandler;
@@ -84,6 +89,9 @@ public class SosCacheFeederHandler implements CacheFeederHandler {
     private OwsServiceMetadataRepository serviceMetadataRepository;
     private HibernateSessionStore sessionStore;
     private GeometryHandler geometryHandler;
+    private boolean deltaUpdate;
+    private Duration completeUpdateInterval = Duration.ZERO;
+    private final DatasetChangeTracker datasetChangeTracker = new DatasetChangeTracker();
 
     @Inject
     public void setConnectionProvider(HibernateSessionStore sessionStore) {
@@ -116,6 +124,19 @@ public class SosCacheFeederHandler implements CacheFeederHandler {
         this.cacheThreadCount = threads;
     }
 
+    @Setting(CacheFeederSettingDefinitionProvider.CACHE_DELTA_UPDATE)
+    public void setDeltaUpdate(boolean deltaUpdate) {
+        this.deltaUpdate = deltaUpdate;
+        if (!deltaUpdate) {
+            datasetChangeTracker.reset();
+        }
+    }
+
+    @Setting(CacheFeederSettingDefinitionProvider.CACHE_COMPLETE_UPDATE_INTERVAL)
+    public void setCompleteUpdateInterval(int minutes) {
+        this.completeUpdateInterval = Duration.ofMinutes(minutes);
+    }
+
     @Override
     public void updateCache(SosWritableContentCache cache) throws OwsExceptionReport {
         checkCacheNotNull(cache);
@@ -137,6 +158,12 @@ public class SosCacheFeederHandler implements CacheFeederHandler {
             LOGGER.info("Starting cache update");
             long cacheUpdateStartTime = System.currentTimeMillis();
 
+            if (deltaUpdate) {
+                // record before the update, changes made during the update
+                // are applied again by the next delta update
+                datasetChangeTracker.record(session);
+            }
+
             update.execute();
 
             logCacheLoadTime(cacheUpdateStartTime);
@@ -144,17 +171,69 @@ public class SosCacheFeederHandler implements CacheFeederHandler {
             LOGGER.error(ERROR_UPDATE_CACHE, e);
             errors.add(new NoApplicableCodeException().causedBy(e).withMessage(ERROR_UPDATE_CACHE));
         } finally {
-            try {
-                this.sessionStore.returnSession(session);
-            } catch (Exception e2) {
-                // TODO check why this is necessary
-                LOGGER.error(ERROR_RETURNING_CONNECTION, e2);
+            returnSession(session);
+        }
+        if (!errors.isEmpty()) {
+            datasetChangeTracker.reset();
+            throw new CompositeOwsException(errors);
+        }
+
+    }
+
+    @Override
+    public boolean isDeltaUpdateAvailable() {
+        return deltaUpdate && datasetChangeTracker.isInitialized()
+                && !datasetChangeTracker.isCompleteUpdateDue(completeUpdateInterval);
+    }
+
+    @Override
+    public boolean updateCacheDelta(SosWritableContentCache cache) throws OwsExceptionReport {
+        checkCacheNotNull(cache);
+        if (!isDeltaUpdateAvailable()) {
+            return false;
+        }
+        List<OwsExceptionReport> errors = CollectionHelper.synchronizedList();
+        Session session = null;
+        try {
+            session = this.sessionStore.getSession();
+            Optional<DatasetChanges> changes = datasetChangeTracker.detectChanges(session);
+            if (!changes.isPresent()) {
+                LOGGER.info("Delta cache update not possible, executing complete cache update");
+                return false;
+            }
+            LOGGER.info("Starting delta cache update for {}", changes.get());
+            long cacheUpdateStartTime = System.currentTimeMillis();
+            if (!changes.get().isEmpty()) {
+                DeltaCacheUpdate update = new DeltaCacheUpdate(
+                        this.cacheThreadCount,
+                        this.defaultLocale,
+                        this.sessionStore,
+                        this.geometryHandler,
+                        changes.get());
+                update.setCache(cache);
+                update.setErrors(errors);
+                update.setSession(session);
+                update.execute();
+            }
+            logCacheLoadTime(cacheUpdateStartTime);
+            if (errors.isEmpty()) {
+                datasetChangeTracker.commit(changes.get());
             }
+        } catch (Exception e) {
+            LOGGER.error(ERROR_UPDATE_CACHE, e);
+            errors.add(new NoApplicableCodeException().causedBy(e).withMessage(ERROR_UPDATE_CACHE));
+        } finally {
+            returnSession(session);
         }
         if (!errors.isEmpty()) {
             throw new CompositeOwsException(errors);
         }
+        return true;
+    }
 
+    @Override
+    public void resetDeltaUpdate() {
+        datasetChangeTracker.reset();
     }
 
     @Override
@@ -184,12 +263,7 @@ public class SosCacheFeederHandler implements CacheFeederHandler {
             LOGGER.error(ERROR_UPDATE_CACHE, e);
             errors.add(new NoApplicableCodeException().causedBy(e).withMessage(ERROR_UPDATE_CACHE));
         } finally {
-            try {
-                this.sessionStore.returnSession(session);
-            } catch (Exception e2) {
-                // TODO check why this is necessary
-                LOGGER.error(ERROR_RETURNING_CONNECTION, e2);
-            }
+            returnSession(session);
         }
 
         logCacheLoadTime(cacheUpdateStartTime);
@@ -199,6 +273,15 @@ public class SosCacheFeederHandler implements CacheFeederHandler {
         }
     }
 
+    private void returnSession(Session session) {
+        try {
+            this.sessionStore.returnSession(session);
+        } catch (Exception e) {
+            // TODO check why this is necessary
+            LOGGER.error(ERROR_RETURNING_CONNECTION, e);
+        }
+    }
+
     private void checkCacheNotNull(WritableContentCache cache) {
         if (cache == null) {
             throw new NullPointerException("cache is null");
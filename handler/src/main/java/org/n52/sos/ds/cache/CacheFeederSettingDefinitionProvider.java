@@ -36,4 +36,8 @@ package org.n52.sos.ds.cache;
 public interface CacheFeederSettingDefinitionProvider {
 
     String CACHE_THREAD_COUNT = "service.cacheThreadCount";
+
+    String CACHE_DELTA_UPDATE = "service.cacheDeltaUpdate";
+
+    String CACHE_COMPLETE_UPDATE_INTERVAL = "service.cacheCompleteUpdateInterval";
 }
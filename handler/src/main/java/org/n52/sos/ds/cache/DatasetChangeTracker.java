@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.n52.series.db.beans.DatasetEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the state of the datasets between cache updates to detect the
+ * offerings, procedures, features and observable properties that have to be
+ * updated by a delta cache update. A dataset is changed if it was added, if its
+ * references or published flag changed or if its first or last value changed.
+ * The changes are detected from the columns of the dataset table only, the
+ * observation table is not queried. Observations that do not change the first
+ * or last value of a dataset, e.g. backfilled data, are applied by the
+ * insertion events or the scheduled complete cache update.
+ *
+ * @since 5.1.1
+ */
+public class DatasetChangeTracker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetChangeTracker.class);
+
+    private static final String ID = ".id";
+
+    private static final String FIRST_OBSERVATION = "firstObservation";
+
+    private static final String LAST_OBSERVATION = "lastObservation";
+
+    private final Clock clock;
+
+    private volatile Map<Long, DatasetState> states;
+
+    private volatile Instant recorded;
+
+    public DatasetChangeTracker() {
+        this(Clock.systemUTC());
+    }
+
+    DatasetChangeTracker(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return if the state of a previous update is available
+     */
+    public boolean isInitialized() {
+        return states != null;
+    }
+
+    /**
+     * Checks if the state was recorded by a complete cache update that is older
+     * than the specified interval. Delta updates do not refresh related
+     * features, result templates and translations, so a complete update has to
+     * be executed from time to time.
+     *
+     * @param interval
+     *            the interval between complete updates, zero or negative to
+     *            disable complete updates
+     * @return if a complete cache update is due
+     */
+    public boolean isCompleteUpdateDue(Duration interval) {
+        Instant time = this.recorded;
+        if (time == null) {
+            return true;
+        }
+        return !interval.isZero() && !interval.isNegative() && !clock.instant().isBefore(time.plus(interval));
+    }
+
+    /**
+     * Discard the recorded state.
+     */
+    public void reset() {
+        this.states = null;
+        this.recorded = null;
+    }
+
+    /**
+     * Record the current state of all datasets, e.g. after a complete cache
+     * update.
+     *
+     * @param session
+     *            Hibernate session
+     */
+    public void record(Session session) {
+        this.recorded = clock.instant();
+        this.states = queryStates(session);
+    }
+
+    /**
+     * Detect the datasets that changed since the state was recorded.
+     *
+     * @param session
+     *            Hibernate session
+     * @return the changes or empty, if no state was recorded or datasets were
+     *         removed
+     */
+    public Optional<DatasetChanges> detectChanges(Session session) {
+        Map<Long, DatasetState> previous = this.states;
+        if (previous == null) {
+            return Optional.empty();
+        }
+        Map<Long, DatasetState> current = queryStates(session);
+        if (!current.keySet().containsAll(previous.keySet())) {
+            LOGGER.debug("Datasets were removed since the last cache update");
+            return Optional.empty();
+        }
+        DatasetChanges changes = new DatasetChanges(current);
+        current.forEach((id, state) -> {
+            DatasetState old = previous.get(id);
+            if (!state.equals(old)) {
+                changes.add(state);
+                if (old != null) {
+                    // update the entities the dataset referenced before
+                    changes.add(old);
+                }
+            }
+        });
+        return Optional.of(changes);
+    }
+
+    /**
+     * Record the state of the detected changes after they were applied to the
+     * cache.
+     *
+     * @param changes
+     *            the applied changes
+     */
+    public void commit(DatasetChanges changes) {
+        this.states = changes.states;
+    }
+
+    private Map<Long, DatasetState> queryStates(Session session) {
+        List<Object[]> rows = queryDatasets(session);
+        Map<Long, DatasetState> map = new HashMap<>(rows.size());
+        for (Object[] row : rows) {
+            DatasetState state = new DatasetState(row);
+            map.put(state.id, state);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> queryDatasets(Session session) {
+        return session.createCriteria(DatasetEntity.class)
+                .add(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false))
+                .setProjection(Projections.projectionList()
+                        .add(Projections.id())
+                        .add(Projections.property(DatasetEntity.PROPERTY_OFFERING + ID))
+                        .add(Projections.property(DatasetEntity.PROPERTY_PROCEDURE + ID))
+                        .add(Projections.property(DatasetEntity.PROPERTY_FEATURE + ID))
+                        .add(Projections.property(DatasetEntity.PROPERTY_PHENOMENON + ID))
+                        .add(Projections.property(DatasetEntity.PROPERTY_PUBLISHED))
+                        .add(Projections.property(DatasetEntity.PROPERTY_FIRST_VALUE_AT))
+                        .add(Projections.property(DatasetEntity.PROPERTY_LAST_VALUE_AT))
+                        .add(Projections.property(FIRST_OBSERVATION + ID))
+                        .add(Projections.property(LAST_OBSERVATION + ID)))
+                .list();
+    }
+
+    /**
+     * The entities referenced by changed datasets.
+     */
+    public static class DatasetChanges {
+        private final Map<Long, DatasetState> states;
+        private final Set<Long> offerings = new HashSet<>();
+        private final Set<Long> procedures = new HashSet<>();
+        private final Set<Long> features = new HashSet<>();
+        private final Set<Long> phenomena = new HashSet<>();
+
+        DatasetChanges(Map<Long, DatasetState> states) {
+            this.states = states;
+        }
+
+        private void add(DatasetState state) {
+            addIfNotNull(offerings, state.offering);
+            addIfNotNull(procedures, state.procedure);
+            addIfNotNull(features, state.feature);
+            addIfNotNull(phenomena, state.phenomenon);
+        }
+
+        private static void addIfNotNull(Set<Long> set, Long id) {
+            if (id != null) {
+                set.add(id);
+            }
+        }
+
+        public Set<Long> getOfferings() {
+            return Collections.unmodifiableSet(offerings);
+        }
+
+        public Set<Long> getProcedures() {
+            return Collections.unmodifiableSet(procedures);
+        }
+
+        public Set<Long> getFeatures() {
+            return Collections.unmodifiableSet(features);
+        }
+
+        public Set<Long> getPhenomena() {
+            return Collections.unmodifiableSet(phenomena);
+        }
+
+        public boolean isEmpty() {
+            return offerings.isEmpty() && procedures.isEmpty() && features.isEmpty() && phenomena.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [offerings=%d, procedures=%d, features=%d, phenomena=%d]",
+                    getClass().getSimpleName(), offerings.size(), procedures.size(), features.size(),
+                    phenomena.size());
+        }
+    }
+
+    private static final class DatasetState {
+        private final Long id;
+        private final Long offering;
+        private final Long procedure;
+        private final Long feature;
+        private final Long phenomenon;
+        private final Boolean published;
+        private final Date firstValueAt;
+        private final Date lastValueAt;
+        private final Long firstObservation;
+        private final Long lastObservation;
+
+        DatasetState(Object[] row) {
+            this.id = (Long) row[0];
+            this.offering = (Long) row[1];
+            this.procedure = (Long) row[2];
+            this.feature = (Long) row[3];
+            this.phenomenon = (Long) row[4];
+            this.published = (Boolean) row[5];
+            this.firstValueAt = toDate(row[6]);
+            this.lastValueAt = toDate(row[7]);
+            this.firstObservation = (Long) row[8];
+            this.lastObservation = (Long) row[9];
+        }
+
+        private static Date toDate(Object value) {
+            // java.sql.Timestamp does not equal java.util.Date
+            return value instanceof Date ? new Date(((Date) value).getTime()) : null;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, offering, procedure, feature, phenomenon, published, firstValueAt, lastValueAt,
+                    firstObservation, lastObservation);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DatasetState)) {
+                return false;
+            }
+            DatasetState other = (DatasetState) obj;
+            return Objects.equals(id, other.id) && Objects.equals(offering, other.offering)
+                    && Objects.equals(procedure, other.procedure) && Objects.equals(feature, other.feature)
+                    && Objects.equals(phenomenon, other.phenomenon) && Objects.equals(published, other.published)
+                    && Objects.equals(firstValueAt, other.firstValueAt)
+                    && Objects.equals(lastValueAt, other.lastValueAt)
+                    && Objects.equals(firstObservation, other.firstObservation)
+                    && Objects.equals(lastObservation, other.lastObservation);
+        }
+    }
+}
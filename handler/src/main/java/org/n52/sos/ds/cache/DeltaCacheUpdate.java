@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.sos.ds.cache.DatasetChangeTracker.DatasetChanges;
+import org.n52.sos.ds.cache.base.FeatureOfInterestCacheUpdate;
+import org.n52.sos.ds.cache.base.ObservablePropertiesCacheUpdate;
+import org.n52.sos.ds.cache.base.ObservationTimeCacheUpdate;
+import org.n52.sos.ds.cache.base.OfferingCacheUpdateTask;
+import org.n52.sos.ds.cache.base.ProcedureCacheUpdateTask;
+import org.n52.sos.util.GeometryHandler;
+
+/**
+ * Updates the cache entries of the offerings, procedures, features and
+ * observable properties referenced by changed datasets and the global time
+ * extrema.
+ *
+ * @see DatasetChangeTracker
+ * @see InitialCacheUpdate
+ *
+ * @since 5.1.1
+ */
+public class DeltaCacheUpdate extends CompositeCacheUpdate {
+
+    public DeltaCacheUpdate(int threadCount,
+                            Locale defaultLocale,
+                            HibernateSessionStore sessionStore,
+                            GeometryHandler geometryHandler,
+                            DatasetChanges changes) {
+        super(new ParallelCacheUpdate(threadCount,
+                                      sessionStore,
+                                      new ObservablePropertiesCacheUpdate(changes.getPhenomena()),
+                                      new FeatureOfInterestCacheUpdate(changes.getFeatures()),
+                                      new ObservationTimeCacheUpdate()),
+              new ParallelCacheUpdate(threadCount,
+                                      sessionStore,
+                                      createTasks(defaultLocale, geometryHandler, changes)));
+    }
+
+    private static AbstractThreadableDatasourceCacheUpdate[] createTasks(Locale defaultLocale,
+            GeometryHandler geometryHandler, DatasetChanges changes) {
+        List<AbstractThreadableDatasourceCacheUpdate> tasks = new ArrayList<>();
+        for (Long offering : changes.getOfferings()) {
+            tasks.add(new OfferingCacheUpdateTask(offering, defaultLocale, geometryHandler));
+        }
+        for (Long procedure : changes.getProcedures()) {
+            tasks.add(new ProcedureCacheUpdateTask(procedure));
+        }
+        return tasks.toArray(new AbstractThreadableDatasourceCacheUpdate[tasks.size()]);
+    }
+
+}
@@ -28,26 +28,43 @@
  */
 package org.n52.sos.ds.cache.base;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.hibernate.Criteria;
 import org.hibernate.HibernateException;
-import org.n52.io.request.IoParameters;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.sql.JoinType;
+import org.n52.series.db.beans.AbstractFeatureEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.dataset.DatasetType;
-import org.n52.series.db.dao.DatasetDao;
-import org.n52.series.db.dao.DbQuery;
-import org.n52.series.db.dao.FeatureDao;
 import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
 import org.n52.sos.ds.cache.AbstractThreadableDatasourceCacheUpdate;
+import org.n52.sos.ds.hibernate.util.HibernateHelper;
+import org.n52.sos.ds.hibernate.util.ScrollableIterable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
+ * Updates the featureOfInterest cache from projections of the features, the
+ * feature hierarchy and the datasets, so the number of queries does not
+ * depend on the number of features.
  *
  * @author <a href="mailto:c.autermann@52north.org">Christian Autermann</a>
  *
@@ -56,34 +73,56 @@ import com.google.common.collect.Sets;
 public class FeatureOfInterestCacheUpdate extends AbstractThreadableDatasourceCacheUpdate {
     private static final Logger LOGGER = LoggerFactory.getLogger(FeatureOfInterestCacheUpdate.class);
 
+    private static final int MAX_IN_VALUES = 1000;
+
+    private static final String ID = ".id";
+
+    private static final String PROCEDURE_ALIAS = "p";
+
+    private static final String PARENT_ALIAS = "pf";
+
+    private final Collection<Long> featureIds;
+
+    public FeatureOfInterestCacheUpdate() {
+        this(null);
+    }
+
+    /**
+     * @param featureIds
+     *            the ids of the features to update or {@code null} to update
+     *            all features
+     */
+    public FeatureOfInterestCacheUpdate(Collection<Long> featureIds) {
+        this.featureIds = featureIds;
+    }
+
     @Override
     public void execute() {
         LOGGER.debug("Executing FeatureOfInterestCacheUpdate");
         startStopwatch();
         try {
-            Collection<FeatureEntity> features =
-                    new FeatureDao(getSession()).get(new DbQuery(IoParameters.createDefaults()));
-            for (FeatureEntity featureEntity : features) {
-                String identifier = featureEntity.getIdentifier();
-                getCache().addFeatureOfInterest(identifier);
-                Collection<DatasetEntity> datasets =
-                        new DatasetDao<>(getSession()).get(createDatasetDbQuery(featureEntity));
-                if (datasets != null && !datasets.isEmpty()) {
-                    if (datasets.stream().anyMatch(
-                        d -> d.isPublished() || d.getDatasetType().equals(DatasetType.not_initialized))) {
+            Map<Long, String> features = getFeatures();
+            Map<Long, FeatureDatasets> datasets = getDatasets();
+            Map<String, Set<String>> parents = getParents();
+            Map<String, Set<String>> ancestors = new HashMap<>();
+            features.forEach((id, identifier) -> {
+                FeatureDatasets featureDatasets = datasets.get(id);
+                if (featureDatasets != null) {
+                    if (featureDatasets.published) {
                         getCache().addPublishedFeatureOfInterest(identifier);
+                    } else {
+                        // a delta update refreshes features whose datasets were unpublished
+                        getCache().removePublishedFeatureOfInterest(identifier);
                     }
-                    getCache().setProceduresForFeatureOfInterest(identifier, getProcedures(datasets));
+                    getCache().setProceduresForFeatureOfInterest(identifier, featureDatasets.procedures);
                 } else {
                     getCache().addPublishedFeatureOfInterest(identifier);
                 }
-                if (featureEntity.isSetName()) {
-                    getCache().addFeatureOfInterestIdentifierHumanReadableName(identifier, featureEntity.getName());
-                }
-                if (featureEntity.hasParents()) {
-                    getCache().addParentFeatures(identifier, getParents(featureEntity));
+                if (parents.containsKey(identifier)) {
+                    getCache().addParentFeatures(identifier,
+                            getAncestors(identifier, parents, ancestors, new HashSet<>()));
                 }
-            }
+            });
         } catch (HibernateException he) {
             getErrors().add(new NoApplicableCodeException().causedBy(he)
                     .withMessage("Error while updating featureOfInterest cache!"));
@@ -91,22 +130,6 @@ public class FeatureOfInterestCacheUpdate extends AbstractThreadableDatasourceCa
         LOGGER.debug("Finished executing FeatureOfInterestCacheUpdate ({})", getStopwatchResult());
     }
 
-    private Collection<String> getProcedures(Collection<DatasetEntity> datasets) {
-        return datasets.stream().filter(d -> d.getProcedure() != null).map(d -> d.getProcedure().getIdentifier())
-                .collect(Collectors.toSet());
-    }
-
-    private Collection<String> getParents(FeatureEntity featureEntity) {
-        Set<String> parentFeatures = Sets.newTreeSet();
-        if (featureEntity.hasParents()) {
-            for (FeatureEntity parentEntity : featureEntity.getParents()) {
-                parentFeatures.add(parentEntity.getIdentifier());
-                parentFeatures.addAll(getParents(parentEntity));
-            }
-        }
-        return parentFeatures;
-    }
-
     /**
      * Get identifiers from featureOfInterest entities
      *
@@ -118,9 +141,142 @@ public class FeatureOfInterestCacheUpdate extends AbstractThreadableDatasourceCa
         return features.stream().map(FeatureEntity::getIdentifier).collect(Collectors.toSet());
     }
 
-    private DbQuery createDatasetDbQuery(FeatureEntity feature) {
-        IoParameters parameters = IoParameters.createDefaults();
-        parameters.extendWith(IoParameters.FEATURES, Long.toString(feature.getId()));
-        return new DbQuery(parameters);
+    /**
+     * Adds the features and their names to the cache.
+     *
+     * @return the feature identifiers by feature id
+     */
+    private Map<Long, String> getFeatures() {
+        Map<Long, String> features = new HashMap<>();
+        scroll(() -> getSession().createCriteria(FeatureEntity.class)
+                .setProjection(Projections.projectionList()
+                        .add(Projections.id())
+                        .add(Projections.property(AbstractFeatureEntity.PROPERTY_IDENTIFIER))
+                        .add(Projections.property(AbstractFeatureEntity.PROPERTY_NAME))),
+                AbstractFeatureEntity.PROPERTY_ID, row -> {
+                    String identifier = (String) row[1];
+                    features.put((Long) row[0], identifier);
+                    getCache().addFeatureOfInterest(identifier);
+                    if (!Strings.isNullOrEmpty((String) row[2])) {
+                        getCache().addFeatureOfInterestIdentifierHumanReadableName(identifier, (String) row[2]);
+                    }
+                });
+        return features;
+    }
+
+    /**
+     * Collects the procedures and the published flag of the datasets per
+     * feature.
+     *
+     * @return the datasets by feature id
+     */
+    private Map<Long, FeatureDatasets> getDatasets() {
+        Map<Long, FeatureDatasets> datasets = new HashMap<>();
+        scroll(() -> getSession().createCriteria(DatasetEntity.class)
+                .createAlias(DatasetEntity.PROPERTY_PROCEDURE, PROCEDURE_ALIAS, JoinType.LEFT_OUTER_JOIN)
+                .add(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false))
+                .setProjection(Projections.projectionList()
+                        .add(Projections.property(DatasetEntity.PROPERTY_FEATURE + ID))
+                        .add(Projections.property(PROCEDURE_ALIAS + "." + ProcedureEntity.IDENTIFIER))
+                        .add(Projections.property(DatasetEntity.PROPERTY_PUBLISHED))
+                        .add(Projections.property(DatasetEntity.PROPERTY_DATASET_TYPE))),
+                DatasetEntity.PROPERTY_FEATURE + ID, row -> {
+                    if (row[0] != null) {
+                        FeatureDatasets featureDatasets =
+                                datasets.computeIfAbsent((Long) row[0], id -> new FeatureDatasets());
+                        if (row[1] != null) {
+                            featureDatasets.procedures.add((String) row[1]);
+                        }
+                        if (Boolean.TRUE.equals(row[2]) || DatasetType.not_initialized.equals(row[3])) {
+                            featureDatasets.published = true;
+                        }
+                    }
+                });
+        return datasets;
+    }
+
+    /**
+     * Get the direct parents of the features to update. For a delta update
+     * the parents of the updated features are queried and then the parents of
+     * their parents, until all ancestors are known.
+     *
+     * @return the identifiers of the direct parents by feature identifier
+     */
+    private Map<String, Set<String>> getParents() {
+        Supplier<Criteria> criteria = () -> getSession().createCriteria(FeatureEntity.class)
+                .createAlias(AbstractFeatureEntity.PROPERTY_PARENTS, PARENT_ALIAS)
+                .setProjection(Projections.projectionList()
+                        .add(Projections.property(AbstractFeatureEntity.PROPERTY_IDENTIFIER))
+                        .add(Projections.property(PARENT_ALIAS + "." + AbstractFeatureEntity.PROPERTY_IDENTIFIER)));
+        Map<String, Set<String>> parents = new HashMap<>();
+        Consumer<Object[]> consumer =
+                row -> parents.computeIfAbsent((String) row[0], identifier -> new HashSet<>()).add((String) row[1]);
+        scroll(criteria, AbstractFeatureEntity.PROPERTY_ID, consumer);
+        if (featureIds != null) {
+            Set<String> queried = new HashSet<>(parents.keySet());
+            Set<String> unresolved = getUnresolvedParents(parents, queried);
+            while (!unresolved.isEmpty()) {
+                queried.addAll(unresolved);
+                for (List<String> identifiers : Lists.partition(new ArrayList<>(unresolved), MAX_IN_VALUES)) {
+                    scroll(criteria.get()
+                            .add(Restrictions.in(AbstractFeatureEntity.PROPERTY_IDENTIFIER, identifiers)), consumer);
+                }
+                unresolved = getUnresolvedParents(parents, queried);
+            }
+        }
+        return parents;
+    }
+
+    private Set<String> getUnresolvedParents(Map<String, Set<String>> parents, Set<String> queried) {
+        return parents.values().stream().flatMap(Set::stream).filter(parent -> !queried.contains(parent))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Get the transitive parents of a feature, each feature hierarchy is only
+     * resolved once.
+     */
+    private Set<String> getAncestors(String identifier, Map<String, Set<String>> parents,
+            Map<String, Set<String>> ancestors, Set<String> visiting) {
+        Set<String> resolved = ancestors.get(identifier);
+        if (resolved != null) {
+            return resolved;
+        }
+        Set<String> result = Sets.newTreeSet();
+        if (visiting.add(identifier)) {
+            for (String parent : parents.getOrDefault(identifier, Collections.emptySet())) {
+                result.add(parent);
+                result.addAll(getAncestors(parent, parents, ancestors, visiting));
+            }
+            visiting.remove(identifier);
+            ancestors.put(identifier, result);
+        }
+        return result;
+    }
+
+    /**
+     * Scrolls the rows of the criteria, restricted to the features to update
+     * if present.
+     */
+    private void scroll(Supplier<Criteria> criteria, String featureIdProperty, Consumer<Object[]> consumer) {
+        if (featureIds == null) {
+            scroll(criteria.get(), consumer);
+        } else {
+            for (List<Long> ids : Lists.partition(new ArrayList<>(featureIds), MAX_IN_VALUES)) {
+                scroll(criteria.get().add(Restrictions.in(featureIdProperty, ids)), consumer);
+            }
+        }
+    }
+
+    private void scroll(Criteria criteria, Consumer<Object[]> consumer) {
+        LOGGER.trace("QUERY FeatureOfInterestCacheUpdate: {}", HibernateHelper.getSqlString(criteria));
+        try (ScrollableIterable<Object[]> rows = ScrollableIterable.fromProjection(criteria)) {
+            rows.forEach(consumer);
+        }
+    }
+
+    private static final class FeatureDatasets {
+        private final Set<String> procedures = new HashSet<>();
+        private boolean published;
     }
 }
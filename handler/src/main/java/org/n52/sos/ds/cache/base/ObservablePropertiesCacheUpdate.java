@@ -29,6 +29,8 @@
 package org.n52.sos.ds.cache.base;
 
 import java.util.Collection;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.hibernate.HibernateException;
 import org.n52.io.request.IoParameters;
@@ -54,13 +56,27 @@ public class ObservablePropertiesCacheUpdate extends AbstractThreadableDatasourc
         implements DatasourceCacheUpdateHelper {
     private static final Logger LOGGER = LoggerFactory.getLogger(ObservablePropertiesCacheUpdate.class);
 
+    private final Collection<Long> phenomenonIds;
+
+    public ObservablePropertiesCacheUpdate() {
+        this(null);
+    }
+
+    /**
+     * @param phenomenonIds
+     *            the ids of the observable properties to update or
+     *            {@code null} to update all observable properties
+     */
+    public ObservablePropertiesCacheUpdate(Collection<Long> phenomenonIds) {
+        this.phenomenonIds = phenomenonIds;
+    }
+
     @Override
     public void execute() {
         LOGGER.debug("Executing ObservablePropertiesCacheUpdate");
         startStopwatch();
         try {
-            Collection<PhenomenonEntity> observableProperties =
-                    new PhenomenonDao(getSession()).get(new DbQuery(IoParameters.createDefaults()));
+            Collection<PhenomenonEntity> observableProperties = getObservableProperties();
             for (PhenomenonEntity observableProperty : observableProperties) {
                 Collection<DatasetEntity> datasets =
                         new DatasetDao<>(getSession()).get(createDatasetDbQuery(observableProperty));
@@ -81,11 +97,16 @@ public class ObservablePropertiesCacheUpdate extends AbstractThreadableDatasourc
                     if (datasets.stream().anyMatch(
                         d -> d.isPublished() || d.getDatasetType().equals(DatasetType.not_initialized))) {
                         getCache().addPublishedObservableProperty(identifier);
+                    } else {
+                        // a delta update refreshes observable properties whose datasets were unpublished
+                        getCache().removePublishedObservableProperty(identifier);
                     }
                     getCache().setOfferingsForObservableProperty(identifier,
                             getAllOfferingIdentifiersFromDatasets(datasets));
                     getCache().setProceduresForObservableProperty(identifier,
                             getAllProcedureIdentifiersFromDatasets(datasets));
+                } else {
+                    getCache().removePublishedObservableProperty(identifier);
                 }
             }
         } catch (HibernateException he) {
@@ -99,4 +120,12 @@ public class ObservablePropertiesCacheUpdate extends AbstractThreadableDatasourc
         IoParameters parameters = IoParameters.createDefaults();
         return new DbQuery(parameters.extendWith(IoParameters.PHENOMENA, Long.toString(observableProperty.getId())));
     }
+
+    private Collection<PhenomenonEntity> getObservableProperties() {
+        if (phenomenonIds == null) {
+            return new PhenomenonDao(getSession()).get(new DbQuery(IoParameters.createDefaults()));
+        }
+        return phenomenonIds.stream().map(id -> getSession().get(PhenomenonEntity.class, id)).filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 }
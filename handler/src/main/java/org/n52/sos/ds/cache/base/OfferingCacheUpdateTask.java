@@ -125,6 +125,9 @@ public class OfferingCacheUpdateTask extends AbstractThreadableDatasourceCacheUp
                 .anyMatch(d -> d.isPublished() || d.getDatasetType()
                         .equals(DatasetType.not_initialized) && !d.isDeleted())) {
             getCache().addPublishedOffering(identifier);
+        } else {
+            // a delta update refreshes offerings whose datasets were unpublished
+            getCache().removePublishedOffering(identifier);
         }
         addOfferingNamesAndDescriptionsToCache(offering, session);
 
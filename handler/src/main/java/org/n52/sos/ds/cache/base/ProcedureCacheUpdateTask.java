@@ -73,7 +73,7 @@ class ProcedureCacheUpdateTask extends AbstractThreadableDatasourceCacheUpdate i
      * @param procedureId
      *            Procedure id
      */
-    ProcedureCacheUpdateTask(Long procedureId) {
+    public ProcedureCacheUpdateTask(Long procedureId) {
         this.procedureId = procedureId;
         this.datasets.clear();
     }
@@ -93,6 +93,9 @@ class ProcedureCacheUpdateTask extends AbstractThreadableDatasourceCacheUpdate i
             if (!datasets.isEmpty() && datasets.stream().anyMatch(d -> d.isPublished()
                     || d.getDatasetType().equals(DatasetType.not_initialized) && !d.isDeleted())) {
                 getCache().addPublishedProcedure(identifier);
+            } else {
+                // a delta update refreshes procedures whose datasets were unpublished
+                getCache().removePublishedProcedure(identifier);
             }
             if (procedure.isSetName()) {
                 getCache().addProcedureIdentifierHumanReadableName(identifier, procedure.getName());
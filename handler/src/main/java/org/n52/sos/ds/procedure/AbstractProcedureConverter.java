@@ -30,12 +30,22 @@ package org.n52.sos.ds.procedure;
 
 import java.util.Locale;
 
+import javax.inject.Inject;
+
 import org.hibernate.Session;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.sos.SosProcedureDescription;
 
 public abstract class AbstractProcedureConverter<T> {
 
+    private ProcedureDescriptionCache descriptionCache;
+
+    @Inject
+    public void setProcedureDescriptionCache(ProcedureDescriptionCache descriptionCache) {
+        this.descriptionCache = descriptionCache;
+    }
+
     /**
      * Create procedure description from file, single XML text or generate
      *
@@ -80,4 +90,32 @@ public abstract class AbstractProcedureConverter<T> {
         return createSosProcedureDescription(procedure, requestedDescriptionFormat, requestedServiceVersion, null,
                 session);
     }
+
+    /**
+     * Get the description from the {@link ProcedureDescriptionCache} or create
+     * it, if it is not cached or no cache is set.
+     *
+     * @param identifier
+     *            the procedure identifier
+     * @param format
+     *            the requested procedure description format
+     * @param version
+     *            the requested service version
+     * @param i18n
+     *            the requested language
+     * @param validTime
+     *            the valid time of the description or {@code null}
+     * @param creator
+     *            the creator of the description
+     * @return the description
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     */
+    protected SosProcedureDescription<?> getCachedOrCreate(String identifier, String format, String version,
+            Locale i18n, TimePeriod validTime, ProcedureDescriptionCache.Creator creator) throws OwsExceptionReport {
+        if (descriptionCache == null) {
+            return creator.create();
+        }
+        return descriptionCache.get(identifier, format, version, i18n, validTime, creator);
+    }
 }
@@ -90,6 +90,14 @@ public class ProcedureConverter extends AbstractProcedureConverter<ProcedureEnti
                     .causedBy(new IllegalArgumentException("Parameter 'procedure' should not be null!"))
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
         }
+        return getCachedOrCreate(procedure.getIdentifier(), requestedDescriptionFormat, requestedServiceVersion,
+                i18n, null, () -> createDescription(procedure, requestedDescriptionFormat, requestedServiceVersion,
+                        i18n, session));
+    }
+
+    private SosProcedureDescription<?> createDescription(ProcedureEntity procedure,
+            String requestedDescriptionFormat, String requestedServiceVersion, Locale i18n, Session session)
+            throws OwsExceptionReport {
         checkOutputFormatWithDescriptionFormat(procedure.getIdentifier(), requestedDescriptionFormat);
         SosProcedureDescription<?> desc = create(procedure, requestedDescriptionFormat, i18n, session).orNull();
         if (desc != null) {
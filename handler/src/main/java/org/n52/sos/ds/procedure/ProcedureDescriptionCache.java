@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.procedure;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.apache.xmlbeans.XmlObject;
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.janmayen.event.Event;
+import org.n52.janmayen.event.EventListener;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+import org.n52.sos.event.events.CompleteCacheUpdateFinished;
+import org.n52.sos.event.events.DeleteObservationEvent;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.sos.event.events.ResultInsertion;
+import org.n52.sos.event.events.SensorDeletion;
+import org.n52.sos.event.events.SensorInsertion;
+import org.n52.sos.event.events.SensorModification;
+import org.n52.sos.event.events.UpdateCache;
+import org.n52.sos.service.SosSettings;
+import org.n52.svalbard.decode.Decoder;
+import org.n52.svalbard.decode.DecoderRepository;
+import org.n52.svalbard.decode.exception.DecodingException;
+import org.n52.svalbard.encode.Encoder;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.EncodingContext;
+import org.n52.svalbard.encode.XmlBeansEncodingFlags;
+import org.n52.svalbard.encode.XmlEncoderKey;
+import org.n52.svalbard.encode.exception.EncodingException;
+import org.n52.svalbard.util.CodingHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Bounded cache of created and enriched procedure descriptions, keyed by
+ * procedure, description format, service version, language and valid time.
+ *
+ * The enrichments use the content cache, so the descriptions of a procedure
+ * are removed if observations of it are inserted or deleted. Descriptions of
+ * parent procedures embed their children and are removed together with them.
+ * Sensor insertions, updates and deletions as well as requested and finished
+ * complete content cache updates clear the cache.
+ *
+ * The responses modify the descriptions, e.g. by transforming positions or
+ * changing identifiers, and the object model of the descriptions can not be
+ * copied. The descriptions are therefore cached as encoded documents that are
+ * never modified, and every lookup, including the one that created the
+ * description, returns a copy decoded from it. Descriptions that can not be
+ * encoded and decoded are not cached. A size of {@code 0} disables the cache.
+ *
+ * @since 5.1.1
+ */
+@Configurable
+public class ProcedureDescriptionCache implements EventListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcedureDescriptionCache.class);
+
+    private static final Set<Class<? extends Event>> EVENT_TYPES =
+            ImmutableSet.of(SensorInsertion.class, SensorModification.class, SensorDeletion.class,
+                    ObservationInsertion.class, ResultInsertion.class, DeleteObservationEvent.class,
+                    UpdateCache.class, CompleteCacheUpdateFinished.class);
+
+    private static final Joiner KEY_JOINER = Joiner.on('|').useForNull("");
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Set<String>> keysForProcedure = new HashMap<>();
+
+    /**
+     * The procedures of the descriptions that are currently created by this
+     * thread, to track the children embedded in parent descriptions.
+     */
+    private final ThreadLocal<Deque<Set<String>>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private volatile int maxSize;
+
+    private EncoderRepository encoderRepository;
+
+    private DecoderRepository decoderRepository;
+
+    @Inject
+    public void setEncoderRepository(EncoderRepository encoderRepository) {
+        this.encoderRepository = encoderRepository;
+    }
+
+    @Inject
+    public void setDecoderRepository(DecoderRepository decoderRepository) {
+        this.decoderRepository = decoderRepository;
+    }
+
+    /**
+     * Set the maximum number of cached descriptions, {@code 0} disables the
+     * cache.
+     *
+     * @param maxSize
+     *            the maximum number of descriptions
+     */
+    @Setting(SosSettings.PROCEDURE_DESCRIPTION_CACHE_SIZE)
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        evict();
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Get a copy of the cached description or create and cache it.
+     *
+     * @param procedure
+     *            the procedure identifier
+     * @param format
+     *            the requested procedure description format
+     * @param version
+     *            the requested service version
+     * @param language
+     *            the requested language
+     * @param validTime
+     *            the valid time of the description or {@code null}
+     * @param creator
+     *            the creator of descriptions that are not cached
+     * @return the description, which is not shared with other lookups
+     * @throws OwsExceptionReport
+     *             if the creation fails
+     */
+    public SosProcedureDescription<?> get(String procedure, String format, String version, Locale language,
+            TimePeriod validTime, Creator creator) throws OwsExceptionReport {
+        if (!isEnabled() || procedure == null) {
+            return creator.create();
+        }
+        String key = KEY_JOINER.join(procedure, format, version, language,
+                validTime != null ? validTime.getStart() : null, validTime != null ? validTime.getEnd() : null);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            SosProcedureDescription<?> copy = decode(entry);
+            if (copy != null) {
+                addToParent(entry.procedures);
+                return copy;
+            }
+        }
+        Deque<Set<String>> stack = creating.get();
+        Set<String> procedures = new HashSet<>();
+        procedures.add(procedure);
+        stack.push(procedures);
+        SosProcedureDescription<?> description;
+        try {
+            description = creator.create();
+        } finally {
+            stack.pop();
+        }
+        addToParent(procedures);
+        if (description != null) {
+            XmlObject xml = encode(description);
+            if (xml != null) {
+                entry = new Entry(xml, description, procedures);
+                SosProcedureDescription<?> copy = decode(entry);
+                if (copy != null) {
+                    put(key, entry);
+                    return copy;
+                }
+            }
+        }
+        return description;
+    }
+
+    /**
+     * Encode the description, the encoded form is independent of later
+     * modifications of the created description.
+     */
+    private XmlObject encode(SosProcedureDescription<?> description) {
+        AbstractFeature feature = description.getProcedureDescription();
+        if (encoderRepository == null || decoderRepository == null || feature == null) {
+            return null;
+        }
+        try {
+            Encoder<XmlObject, AbstractFeature> encoder =
+                    encoderRepository.getEncoder(new XmlEncoderKey(description.getDescriptionFormat(),
+                            feature.getClass()));
+            if (encoder != null) {
+                return encoder.encode(feature, EncodingContext.of(XmlBeansEncodingFlags.DOCUMENT, true));
+            }
+        } catch (EncodingException e) {
+            LOGGER.debug("Procedure description is not cached, it can not be encoded", e);
+        }
+        return null;
+    }
+
+    /**
+     * Decode a copy of the description. The decoders only read the document,
+     * which is synchronized by XMLBeans, so the cached document is shared by
+     * concurrent lookups without being copied itself.
+     */
+    private SosProcedureDescription<?> decode(Entry entry) {
+        try {
+            Decoder<AbstractFeature, XmlObject> decoder =
+                    decoderRepository.getDecoder(CodingHelper.getDecoderKey(entry.xml));
+            if (decoder != null) {
+                SosProcedureDescription<?> copy =
+                        new SosProcedureDescription<AbstractFeature>(decoder.decode(entry.xml))
+                                .add(entry.metadata);
+                copy.setDescriptionFormat(entry.metadata.getDescriptionFormat());
+                return copy;
+            }
+        } catch (DecodingException e) {
+            LOGGER.debug("Cached procedure description can not be decoded", e);
+        }
+        return null;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        keysForProcedure.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Set<Class<? extends Event>> getTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public void handle(Event event) {
+        if (event instanceof ObservationInsertion) {
+            invalidate(((ObservationInsertion) event).getRequest().getObservations());
+        } else if (event instanceof ResultInsertion) {
+            invalidate(((ResultInsertion) event).getResponse().getObservations());
+        } else if (event instanceof DeleteObservationEvent
+                && ((DeleteObservationEvent) event).isSetDeletedObservation()) {
+            invalidate(((DeleteObservationEvent) event).getDeletedObservation());
+        } else {
+            // sensor changes and complete cache updates may affect parents,
+            // children and offerings
+            clear();
+        }
+    }
+
+    private void invalidate(Collection<OmObservation> observations) {
+        if (observations != null) {
+            observations.forEach(this::invalidate);
+        }
+    }
+
+    private synchronized void invalidate(OmObservation observation) {
+        if (observation.getObservationConstellation() != null
+                && observation.getObservationConstellation().isSetProcedure()) {
+            Set<String> keys =
+                    keysForProcedure.remove(observation.getObservationConstellation().getProcedureIdentifier());
+            if (keys != null) {
+                keys.forEach(this::remove);
+            }
+        }
+    }
+
+    private void addToParent(Set<String> procedures) {
+        Deque<Set<String>> stack = creating.get();
+        if (!stack.isEmpty()) {
+            stack.peek().addAll(procedures);
+        }
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        remove(key);
+        entries.put(key, entry);
+        entry.procedures.forEach(p -> keysForProcedure.computeIfAbsent(p, k -> new HashSet<>()).add(key));
+        evict();
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            for (String procedure : entry.procedures) {
+                Set<String> keys = keysForProcedure.get(procedure);
+                if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                    keysForProcedure.remove(procedure);
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            remove(it.next());
+            it = entries.keySet().iterator();
+        }
+    }
+
+    /**
+     * Creates a description that is not yet cached.
+     */
+    @FunctionalInterface
+    public interface Creator {
+        SosProcedureDescription<?> create() throws OwsExceptionReport;
+    }
+
+    private static class Entry {
+        private final XmlObject xml;
+
+        /**
+         * The metadata of the description, e.g. offerings and related
+         * procedures, which is not part of the encoded form.
+         */
+        private final SosProcedureDescription<?> metadata;
+
+        private final Set<String> procedures;
+
+        Entry(XmlObject xml, SosProcedureDescription<?> description, Set<String> procedures) {
+            this.xml = xml;
+            this.metadata = new SosProcedureDescription<AbstractFeature>(description.getProcedureDescription())
+                    .add(description);
+            this.metadata.setDescriptionFormat(description.getDescriptionFormat());
+            this.procedures = procedures;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.ReferenceType;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityResponse.DataAvailability;
+
+import com.google.common.collect.Lists;
+
+public class GetDataAvailabilityHandlerTest {
+
+    private static final ReferenceType PROCEDURE = new ReferenceType("procedure");
+
+    private static final ReferenceType OBSERVED_PROPERTY = new ReferenceType("observedProperty");
+
+    private static final ReferenceType FEATURE = new ReferenceType("feature");
+
+    private final GetDataAvailabilityHandler handler = new GetDataAvailabilityHandler();
+
+    @Test
+    public void should_unite_result_times_of_merged_data_availabilities() {
+        DataAvailability first = createDataAvailability("offering-1", time(1), time(2));
+        first.setResultTimes(Lists.newArrayList(new TimeInstant(time(1)), new TimeInstant(time(2))));
+        DataAvailability second = createDataAvailability("offering-2", time(2), time(4));
+        second.setResultTimes(Lists.newArrayList(new TimeInstant(time(2)), new TimeInstant(time(4))));
+
+        List<DataAvailability> checked = handler.checkForDuplictation(Arrays.asList(first, second));
+
+        assertThat(checked, hasSize(1));
+        DataAvailability merged = checked.get(0);
+        assertThat(merged.getPhenomenonTime().getStart(), is(time(1)));
+        assertThat(merged.getPhenomenonTime().getEnd(), is(time(4)));
+        assertThat(merged.getResultTimes(), contains(new TimeInstant(time(1)), new TimeInstant(time(2)),
+                new TimeInstant(time(4))));
+    }
+
+    @Test
+    public void should_keep_result_times_if_duplicates_have_none() {
+        DataAvailability first = createDataAvailability("offering-1", time(1), time(2));
+        first.setResultTimes(Lists.newArrayList(new TimeInstant(time(1))));
+        DataAvailability second = createDataAvailability("offering-2", time(2), time(4));
+
+        List<DataAvailability> checked = handler.checkForDuplictation(Arrays.asList(first, second));
+
+        assertThat(checked, hasSize(1));
+        assertThat(checked.get(0).getResultTimes(), contains(new TimeInstant(time(1))));
+    }
+
+    @Test
+    public void should_not_merge_different_constellations() {
+        DataAvailability first = createDataAvailability("offering-1", time(1), time(2));
+        DataAvailability second = new DataAvailability(PROCEDURE, OBSERVED_PROPERTY, new ReferenceType("other"),
+                new ReferenceType("offering-1"), new TimePeriod(time(2), time(4)));
+
+        List<DataAvailability> checked = handler.checkForDuplictation(Arrays.asList(first, second));
+
+        assertThat(checked, contains(first, second));
+        assertThat(first.getPhenomenonTime().getEnd(), is(time(2)));
+    }
+
+    private DataAvailability createDataAvailability(String offering, DateTime start, DateTime end) {
+        return new DataAvailability(PROCEDURE, OBSERVED_PROPERTY, FEATURE, new ReferenceType(offering),
+                new TimePeriod(start, end));
+    }
+
+    private static DateTime time(int hour) {
+        return new DateTime(2020, 1, 1, hour, 0, DateTimeZone.UTC);
+    }
+}
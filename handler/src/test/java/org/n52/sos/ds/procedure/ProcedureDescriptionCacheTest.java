@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.procedure;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.xmlbeans.XmlOptions;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sensorML.SensorML;
+import org.n52.shetland.ogc.sensorML.SensorMLConstants;
+import org.n52.shetland.ogc.sensorML.System;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+import org.n52.shetland.ogc.sos.request.InsertObservationRequest;
+import org.n52.shetland.ogc.sos.request.UpdateSensorRequest;
+import org.n52.shetland.ogc.sos.response.InsertObservationResponse;
+import org.n52.shetland.ogc.sos.response.UpdateSensorResponse;
+import org.n52.sos.event.events.CompleteCacheUpdateFinished;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.sos.event.events.SensorModification;
+import org.n52.svalbard.decode.DecoderRepository;
+import org.n52.svalbard.decode.GmlDecoderv311;
+import org.n52.svalbard.decode.SensorMLDecoderV101;
+import org.n52.svalbard.decode.SweCommonDecoderV101;
+import org.n52.svalbard.encode.EncoderRepository;
+import org.n52.svalbard.encode.GmlEncoderv311;
+import org.n52.svalbard.encode.SensorMLEncoderv101;
+import org.n52.svalbard.encode.SweCommonEncoderv101;
+
+public class ProcedureDescriptionCacheTest {
+
+    private static final String FORMAT = SensorMLConstants.NS_SML;
+
+    private static final String UNSUPPORTED_FORMAT = "http://www.opengis.net/unsupported";
+
+    private static final String VERSION = "2.0.0";
+
+    private static final String PROCEDURE = "procedure";
+
+    private static final String OTHER = "other";
+
+    private final ProcedureDescriptionCache cache = new ProcedureDescriptionCache();
+
+    private final EncoderRepository encoderRepository = new EncoderRepository();
+
+    private final DecoderRepository decoderRepository = new DecoderRepository();
+
+    private final Map<String, Integer> created = new HashMap<>();
+
+    @Before
+    public void init() {
+        GmlEncoderv311 gmlEncoderv311 = new GmlEncoderv311();
+        gmlEncoderv311.setEncoderRepository(encoderRepository);
+        gmlEncoderv311.setXmlOptions(XmlOptions::new);
+
+        SensorMLEncoderv101 sensorMLEncoderv101 = new SensorMLEncoderv101();
+        sensorMLEncoderv101.setXmlOptions(XmlOptions::new);
+        sensorMLEncoderv101.setEncoderRepository(encoderRepository);
+
+        SweCommonEncoderv101 sweCommonEncoderv101 = new SweCommonEncoderv101();
+        sweCommonEncoderv101.setEncoderRepository(encoderRepository);
+        sweCommonEncoderv101.setXmlOptions(XmlOptions::new);
+
+        encoderRepository.setEncoders(Arrays.asList(gmlEncoderv311, sensorMLEncoderv101, sweCommonEncoderv101));
+        encoderRepository.init();
+
+        GmlDecoderv311 gmlDecoderv311 = new GmlDecoderv311();
+
+        SensorMLDecoderV101 sensorMLDecoderv101 = new SensorMLDecoderV101();
+        sensorMLDecoderv101.setXmlOptions(XmlOptions::new);
+        sensorMLDecoderv101.setDecoderRepository(decoderRepository);
+
+        SweCommonDecoderV101 sweCommonDecoderv101 = new SweCommonDecoderV101();
+        sweCommonDecoderv101.setDecoderRepository(decoderRepository);
+        sweCommonDecoderv101.setXmlOptions(XmlOptions::new);
+
+        decoderRepository.setDecoders(Arrays.asList(gmlDecoderv311, sensorMLDecoderv101, sweCommonDecoderv101));
+        decoderRepository.init();
+
+        cache.setEncoderRepository(encoderRepository);
+        cache.setDecoderRepository(decoderRepository);
+        cache.setMaxSize(10);
+    }
+
+    @Test
+    public void should_return_decoded_copies_of_cached_descriptions() throws OwsExceptionReport {
+        SosProcedureDescription<?> miss = get(PROCEDURE);
+        SosProcedureDescription<?> hit = get(PROCEDURE);
+        SosProcedureDescription<?> other = get(PROCEDURE);
+
+        assertThat(created.get(PROCEDURE), is(1));
+        assertThat(cache.size(), is(1));
+        assertThat(hit, not(sameInstance(miss)));
+        assertThat(hit, not(sameInstance(other)));
+        assertThat(hit.getProcedureDescription(), not(sameInstance(miss.getProcedureDescription())));
+        assertThat(hit.getProcedureDescription(), not(sameInstance(other.getProcedureDescription())));
+        assertThat(getSystem(hit), not(sameInstance(getSystem(miss))));
+        assertThat(getSystem(hit), not(sameInstance(getSystem(other))));
+        for (SosProcedureDescription<?> description : Arrays.asList(miss, hit, other)) {
+            assertThat(description.getDescriptionFormat(), is(FORMAT));
+            assertThat(getSystem(description).getIdentifier(), is(PROCEDURE));
+        }
+    }
+
+    @Test
+    public void should_not_share_modifications_of_returned_descriptions() throws OwsExceptionReport {
+        getSystem(get(PROCEDURE)).setIdentifier("modified");
+        SosProcedureDescription<?> hit = get(PROCEDURE);
+
+        assertThat(getSystem(hit).getIdentifier(), is(PROCEDURE));
+
+        getSystem(hit).setIdentifier("modified");
+
+        assertThat(getSystem(get(PROCEDURE)).getIdentifier(), is(PROCEDURE));
+        assertThat(created.get(PROCEDURE), is(1));
+    }
+
+    @Test
+    public void should_not_cache_descriptions_that_can_not_be_encoded() throws OwsExceptionReport {
+        SosProcedureDescription<?> description = create(PROCEDURE, UNSUPPORTED_FORMAT);
+        ProcedureDescriptionCache.Creator creator = () -> {
+            created.merge(PROCEDURE, 1, Integer::sum);
+            return description;
+        };
+
+        assertThat(cache.get(PROCEDURE, UNSUPPORTED_FORMAT, VERSION, Locale.ENGLISH, null, creator),
+                is(sameInstance(description)));
+        assertThat(cache.get(PROCEDURE, UNSUPPORTED_FORMAT, VERSION, Locale.ENGLISH, null, creator),
+                is(sameInstance(description)));
+        assertThat(created.get(PROCEDURE), is(2));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void should_remove_descriptions_of_inserted_observations() throws OwsExceptionReport {
+        get(PROCEDURE);
+        get(OTHER);
+        cache.handle(createInsertion(PROCEDURE));
+        get(PROCEDURE);
+        get(OTHER);
+
+        assertThat(created.get(PROCEDURE), is(2));
+        assertThat(created.get(OTHER), is(1));
+    }
+
+    @Test
+    public void should_remove_parents_with_their_children() throws OwsExceptionReport {
+        cache.get(PROCEDURE, FORMAT, VERSION, Locale.ENGLISH, null, () -> {
+            get(OTHER);
+            return create(PROCEDURE);
+        });
+        cache.handle(createInsertion(OTHER));
+        get(PROCEDURE);
+
+        assertThat(created.get(PROCEDURE), is(2));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void should_clear_the_descriptions_after_complete_cache_updates() throws OwsExceptionReport {
+        get(PROCEDURE);
+        get(OTHER);
+        cache.handle(new CompleteCacheUpdateFinished());
+
+        assertThat(cache.size(), is(0));
+
+        get(PROCEDURE);
+
+        assertThat(created.get(PROCEDURE), is(2));
+    }
+
+    @Test
+    public void should_clear_the_descriptions_after_sensor_updates() throws OwsExceptionReport {
+        get(PROCEDURE);
+        get(OTHER);
+        cache.handle(new SensorModification(new UpdateSensorRequest(), new UpdateSensorResponse()));
+
+        assertThat(cache.size(), is(0));
+    }
+
+    private SosProcedureDescription<?> get(String procedure) throws OwsExceptionReport {
+        return cache.get(procedure, FORMAT, VERSION, Locale.ENGLISH, null, () -> create(procedure));
+    }
+
+    private SosProcedureDescription<?> create(String procedure) {
+        created.merge(procedure, 1, Integer::sum);
+        return create(procedure, FORMAT);
+    }
+
+    private SosProcedureDescription<?> create(String procedure, String format) {
+        System system = new System();
+        system.setIdentifier(procedure);
+        SosProcedureDescription<?> description =
+                new SosProcedureDescription<AbstractFeature>(new SensorML().addMember(system));
+        description.setDescriptionFormat(format);
+        return description;
+    }
+
+    private System getSystem(SosProcedureDescription<?> description) {
+        assertThat(description.getProcedureDescription(), is(instanceOf(SensorML.class)));
+        SensorML sensorML = (SensorML) description.getProcedureDescription();
+        assertThat(sensorML.getMembers().size(), is(1));
+        assertThat(sensorML.getMembers().get(0), is(instanceOf(System.class)));
+        return (System) sensorML.getMembers().get(0);
+    }
+
+    private ObservationInsertion createInsertion(String procedure) {
+        SensorML sensorML = new SensorML();
+        sensorML.setIdentifier(procedure);
+        OmObservation observation = new OmObservation();
+        observation.setObservationConstellation(new OmObservationConstellation()
+                .setProcedure(new SosProcedureDescription<AbstractFeature>(sensorML))
+                .setObservableProperty(new OmObservableProperty("property")));
+        InsertObservationRequest request = new InsertObservationRequest();
+        request.setObservation(Collections.singletonList(observation));
+        return new ObservationInsertion(request, new InsertObservationResponse());
+    }
+}
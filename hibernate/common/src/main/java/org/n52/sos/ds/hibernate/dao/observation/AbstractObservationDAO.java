@@ -28,7 +28,6 @@
  */
 package org.n52.sos.ds.hibernate.dao.observation;
 
-import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.Date;
@@ -47,7 +46,6 @@ import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projection;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
-import org.hibernate.criterion.Subqueries;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.spatial.criterion.SpatialProjections;
@@ -66,13 +64,10 @@ import org.n52.series.db.beans.UnitEntity;
 import org.n52.series.db.beans.parameter.ParameterEntity;
 import org.n52.shetland.ogc.UoM;
 import org.n52.shetland.ogc.filter.Filter;
-import org.n52.shetland.ogc.filter.FilterConstants.TimeOperator;
-import org.n52.shetland.ogc.filter.TemporalFilter;
 import org.n52.shetland.ogc.gml.time.IndeterminateValue;
 import org.n52.shetland.ogc.gml.time.Time;
 import org.n52.shetland.ogc.gml.time.TimeInstant;
 import org.n52.shetland.ogc.gml.time.TimePeriod;
-import org.n52.shetland.ogc.om.NamedValue;
 import org.n52.shetland.ogc.om.OmObservation;
 import org.n52.shetland.ogc.om.SingleObservationValue;
 import org.n52.shetland.ogc.ows.exception.CodedException;
@@ -91,6 +86,7 @@ import org.n52.sos.ds.hibernate.dao.AbstractIdentifierNameDescriptionDAO;
 import org.n52.sos.ds.hibernate.dao.CodespaceDAO;
 import org.n52.sos.ds.hibernate.dao.DaoFactory;
 import org.n52.sos.ds.hibernate.dao.UnitDAO;
+import org.n52.sos.ds.hibernate.dao.observation.series.SeriesFirstLastValueUpdates;
 import org.n52.sos.ds.hibernate.util.HibernateConstants;
 import org.n52.sos.ds.hibernate.util.HibernateHelper;
 import org.n52.sos.ds.hibernate.util.ParameterFactory;
@@ -98,7 +94,6 @@ import org.n52.sos.ds.hibernate.util.ResultFilterClasses;
 import org.n52.sos.ds.hibernate.util.ResultFilterRestrictions;
 import org.n52.sos.ds.hibernate.util.ResultFilterRestrictions.SubQueryIdentifier;
 import org.n52.sos.ds.hibernate.util.ScrollableIterable;
-import org.n52.sos.ds.hibernate.util.SosTemporalRestrictions;
 import org.n52.sos.ds.hibernate.util.SpatialRestrictions;
 import org.n52.sos.ds.hibernate.util.TimeExtrema;
 import org.n52.sos.ds.hibernate.util.observation.ObservationUnfolder;
@@ -106,7 +101,6 @@ import org.n52.sos.util.GeometryHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -127,9 +121,6 @@ public abstract class AbstractObservationDAO extends AbstractIdentifierNameDescr
     private static final String ERROR_ADDING_RESULT_TIME_LOG =
             "Error while adding result time to Hibernate Observation entitiy!";
 
-    private static final String ERROR_CREATING_RESULT_TIME_LOG =
-            "Error while creating result time filter for querying observations!";
-
     private static final String INETERMINATE_POSITION_XPATH =
             "gml:TimeInstant/gml:timePosition[@indeterminatePosition]";
 
@@ -591,11 +582,50 @@ public abstract class AbstractObservationDAO extends AbstractIdentifierNameDescr
             AbstractFeatureEntity feature, OmObservation containerObservation,
             Map<String, CodespaceEntity> codespaceCache, Map<UoM, UnitEntity> unitCache,
             Map<String, FormatEntity> formatCache, Session session) throws OwsExceptionReport {
+        return insertObservationMultiValue(observationConstellation, feature, containerObservation, codespaceCache,
+                unitCache, formatCache, null, null, session);
+    }
+
+    /**
+     * Insert a multi value observation for observation constellations and
+     * featureOfInterest and collect the first/latest values of the series
+     * instead of updating the series for each value
+     *
+     * @param observationConstellation
+     *            Observation constellation objects
+     * @param feature
+     *            FeatureOfInterest object
+     * @param containerObservation
+     *            SOS observation
+     * @param codespaceCache
+     *            Map based codespace object cache to prevent redundant queries
+     * @param unitCache
+     *            Map based unit object cache to prevent redundant queries
+     * @param formatCache
+     *            Map cache for format objects (to prevent redundant querying)
+     * @param seriesUpdates
+     *            Collector for the first/latest series values, if
+     *            <code>null</code> the series is updated for each value
+     * @param duplicateChecker
+     *            Checker for already existing observations, if
+     *            <code>null</code> duplicates are rejected by the database
+     * @param session
+     *            Hibernate session
+     * @return The {@link DatasetEntity}
+     *
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     */
+    public DatasetEntity insertObservationMultiValue(DatasetEntity observationConstellation,
+            AbstractFeatureEntity feature, OmObservation containerObservation,
+            Map<String, CodespaceEntity> codespaceCache, Map<UoM, UnitEntity> unitCache,
+            Map<String, FormatEntity> formatCache, SeriesFirstLastValueUpdates seriesUpdates,
+            ObservationDuplicateChecker duplicateChecker, Session session) throws OwsExceptionReport {
         List<OmObservation> unfoldObservations = new ObservationUnfolder(containerObservation,
                 getDaoFactory().getSweHelper(), getDaoFactory().getGeometryHandler()).unfold();
         for (OmObservation sosObservation : unfoldObservations) {
             DatasetEntity dataset = insertObservationSingleValue(observationConstellation, feature, sosObservation,
-                    codespaceCache, unitCache, formatCache, session);
+                    codespaceCache, unitCache, formatCache, seriesUpdates, duplicateChecker, session);
             if (!dataset.equals(observationConstellation)) {
                 return dataset;
             }
@@ -655,10 +685,52 @@ public abstract class AbstractObservationDAO extends AbstractIdentifierNameDescr
             AbstractFeatureEntity hFeature, OmObservation sosObservation, Map<String, CodespaceEntity> codespaceCache,
             Map<UoM, UnitEntity> unitCache, Map<String, FormatEntity> formatCache, Session session)
             throws OwsExceptionReport {
+        return insertObservationSingleValue(hObservationConstellation, hFeature, sosObservation, codespaceCache,
+                unitCache, formatCache, null, null, session);
+    }
+
+    /**
+     * Insert a single observation for observation constellations and
+     * featureOfInterest with local caching for codespaces and units and
+     * collect the first/latest values of the series
+     *
+     * @param hObservationConstellation
+     *            Observation constellation objects
+     * @param hFeature
+     *            FeatureOfInterest object
+     * @param sosObservation
+     *            SOS observation to insert
+     * @param codespaceCache
+     *            Map cache for codespace objects (to prevent redundant
+     *            querying)
+     * @param unitCache
+     *            Map cache for unit objects (to prevent redundant querying)
+     * @param formatCache
+     *            Map cache for format objects (to prevent redundant querying)
+     * @param seriesUpdates
+     *            Collector for the first/latest series values, if
+     *            <code>null</code> the series is updated immediately
+     * @param duplicateChecker
+     *            Checker for already existing observations, if
+     *            <code>null</code> duplicates are rejected by the database
+     * @param session
+     *            Hibernate session
+     * @return The {@link DatasetEntity}
+     *
+     * @throws OwsExceptionReport
+     *             If an error occurs
+     */
+    @SuppressWarnings("rawtypes")
+    public DatasetEntity insertObservationSingleValue(DatasetEntity hObservationConstellation,
+            AbstractFeatureEntity hFeature, OmObservation sosObservation, Map<String, CodespaceEntity> codespaceCache,
+            Map<UoM, UnitEntity> unitCache, Map<String, FormatEntity> formatCache,
+            SeriesFirstLastValueUpdates seriesUpdates, ObservationDuplicateChecker duplicateChecker, Session session)
+            throws OwsExceptionReport {
         SingleObservationValue<?> value = (SingleObservationValue) sosObservation.getValue();
         ObservationPersister persister =
                 new ObservationPersister(getDaoFactory(), this, sosObservation, hObservationConstellation, hFeature,
-                        codespaceCache, unitCache, formatCache, getOfferings(hObservationConstellation), session);
+                        codespaceCache, unitCache, formatCache, seriesUpdates, duplicateChecker,
+                        getOfferings(hObservationConstellation), session);
         return value.getValue().accept(persister).getDataset();
     }
 
@@ -1360,54 +1432,6 @@ public abstract class AbstractObservationDAO extends AbstractIdentifierNameDescr
 
     protected abstract Criteria addAdditionalObservationIdentification(Criteria c, OmObservation sosObservation);
 
-    /**
-     * @param sosObservation
-     *            {@link OmObservation} to check
-     * @param session
-     *            Hibernate {@link Session}
-     *
-     * @throws OwsExceptionReport
-     *             If an error occurs
-     */
-    public void checkForDuplicatedObservations(OmObservation sosObservation, DatasetEntity observationConstellation,
-            Session session) throws OwsExceptionReport {
-        Criteria c = getTemoralReferencedObservationCriteriaFor(sosObservation, observationConstellation, session);
-        // add times check (start/end phen, result)
-        List<TemporalFilter> filters = Lists.newArrayListWithCapacity(2);
-        filters.add(getPhenomeonTimeFilter(c, sosObservation.getPhenomenonTime()));
-        filters.add(getResultTimeFilter(c, sosObservation.getResultTime(), sosObservation.getPhenomenonTime()));
-        c.add(SosTemporalRestrictions.filter(filters));
-        if (sosObservation.isSetHeightDepthParameter()) {
-            NamedValue<BigDecimal> hdp = sosObservation.getHeightDepthParameter();
-            addParameterRestriction(c, hdp);
-        }
-        c.setMaxResults(1);
-        LOGGER.trace("QUERY checkForDuplicatedObservations(): {}", HibernateHelper.getSqlString(c));
-        if (!c.list().isEmpty()) {
-            StringBuilder builder = new StringBuilder();
-            builder.append("procedure=").append(sosObservation.getObservationConstellation().getProcedureIdentifier());
-            builder.append("observedProperty=")
-                    .append(sosObservation.getObservationConstellation().getObservablePropertyIdentifier());
-            builder.append("featureOfInter=")
-                    .append(sosObservation.getObservationConstellation().getFeatureOfInterestIdentifier());
-            builder.append("phenomenonTime=").append(sosObservation.getPhenomenonTime().toString());
-            builder.append("resultTime=").append(sosObservation.getResultTime().toString());
-            // TODO for e-Reporting SampligPoint should be added.
-            if (sosObservation.isSetHeightDepthParameter()) {
-                NamedValue<BigDecimal> hdp = sosObservation.getHeightDepthParameter();
-                builder.append("height/depth=").append(hdp.getName().getHref()).append("/")
-                        .append(hdp.getValue().getValue());
-            }
-            throw new NoApplicableCodeException().withMessage("The observation for %s already exists in the database!",
-                    builder.toString());
-        }
-    }
-
-    private void addParameterRestriction(Criteria c, NamedValue<?> hdp) throws OwsExceptionReport {
-        c.add(Subqueries.propertyIn(DataEntity.PROPERTY_PARAMETERS, getParameterRestriction(c, hdp.getName().getHref(),
-                hdp.getValue().getValue(), hdp.getValue().accept(getParameterFactory()).getClass())));
-    }
-
     protected DetachedCriteria getParameterRestriction(Criteria c, String name, Object value, Class<?> clazz) {
         DetachedCriteria detachedCriteria = DetachedCriteria.forClass(clazz);
         addParameterNameRestriction(detachedCriteria, name);
@@ -1426,30 +1450,6 @@ public abstract class AbstractObservationDAO extends AbstractIdentifierNameDescr
         return detachedCriteria;
     }
 
-    private TemporalFilter getPhenomeonTimeFilter(Criteria c, Time phenomenonTime) {
-        return new TemporalFilter(TimeOperator.TM_Equals, phenomenonTime, Sos2Constants.EN_PHENOMENON_TIME);
-    }
-
-    private TemporalFilter getResultTimeFilter(Criteria c, TimeInstant resultTime, Time phenomenonTime)
-            throws OwsExceptionReport {
-        String valueReferencep = Sos2Constants.EN_RESULT_TIME;
-        if (resultTime != null) {
-            if (resultTime.getValue() != null) {
-                return new TemporalFilter(TimeOperator.TM_Equals, resultTime, valueReferencep);
-            } else if (phenomenonTime instanceof TimeInstant) {
-                return new TemporalFilter(TimeOperator.TM_Equals, phenomenonTime, valueReferencep);
-            } else {
-                throw new NoApplicableCodeException().withMessage(ERROR_CREATING_RESULT_TIME_LOG);
-            }
-        } else {
-            if (phenomenonTime instanceof TimeInstant) {
-                return new TemporalFilter(TimeOperator.TM_Equals, phenomenonTime, valueReferencep);
-            } else {
-                throw new NoApplicableCodeException().withMessage(ERROR_CREATING_RESULT_TIME_LOG);
-            }
-        }
-    }
-
     public ParameterFactory getParameterFactory() {
         return ParameterFactory.getInstance();
     }
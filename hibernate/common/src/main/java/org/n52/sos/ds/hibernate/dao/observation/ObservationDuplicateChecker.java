@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.joda.time.DateTime;
+import org.n52.janmayen.http.HTTPStatus;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.shetland.ogc.gml.time.Time;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.gml.time.TimePeriod;
+import org.n52.shetland.ogc.om.AbstractPhenomenon;
+import org.n52.shetland.ogc.om.OmCompositePhenomenon;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.sos.ds.hibernate.util.HibernateHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+
+/**
+ * Transaction scoped duplicate check for inserted observations. For each
+ * series the identities (phenomenon time, result time, height/depth) of the
+ * existing observations within the time span of the series' observations in
+ * the request are loaded with a single query and each inserted observation is
+ * checked in memory. Observations outside of the preloaded time span are
+ * queried individually.
+ *
+ * Duplicates either abort the insertion or are skipped, depending on
+ * {@link #isSkipDuplicates()}.
+ *
+ * @since 5.1.1
+ */
+public class ObservationDuplicateChecker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObservationDuplicateChecker.class);
+
+    private static final String PROPERTY_VERTICAL_FROM = "verticalFrom";
+
+    private static final String PROPERTY_VERTICAL_TO = "verticalTo";
+
+    private static final Joiner KEY_JOINER = Joiner.on('|').useForNull("");
+
+    private final Map<Long, Set<ObservationIdentity>> existing = new HashMap<>();
+
+    private final Map<Long, TimeSpan> preloaded = new HashMap<>();
+
+    private final Map<String, TimeSpan> timeSpans = new HashMap<>();
+
+    private final boolean skipDuplicates;
+
+    private int skipped;
+
+    public ObservationDuplicateChecker(boolean skipDuplicates) {
+        this.skipDuplicates = skipDuplicates;
+    }
+
+    /**
+     * Extend the time spans to preload by the phenomenon times of the
+     * observations. The time spans are collected per series, so sparse
+     * requests for several series do not preload the gaps between them.
+     *
+     * @param observations
+     *            the observations to insert
+     * @return this
+     */
+    public ObservationDuplicateChecker addTimeSpan(Collection<OmObservation> observations) {
+        for (OmObservation observation : observations) {
+            OmObservationConstellation constellation = observation.getObservationConstellation();
+            if (observation.getValue() != null && constellation != null) {
+                String feature = constellation.isSetFeatureOfInterest()
+                        ? constellation.getFeatureOfInterestIdentifier()
+                        : null;
+                String procedure = constellation.isSetProcedure() ? constellation.getProcedureIdentifier() : null;
+                AbstractPhenomenon phenomenon = constellation.getObservableProperty();
+                if (phenomenon != null) {
+                    addTimeSpan(getKey(procedure, phenomenon.getIdentifier(), feature),
+                            observation.getPhenomenonTime());
+                    if (phenomenon instanceof OmCompositePhenomenon) {
+                        // composite observations are stored in the series of
+                        // the components
+                        for (OmObservableProperty component : ((OmCompositePhenomenon) phenomenon)
+                                .getPhenomenonComponents()) {
+                            addTimeSpan(getKey(procedure, component.getIdentifier(), feature),
+                                    observation.getPhenomenonTime());
+                        }
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    private void addTimeSpan(String key, Time time) {
+        if (time instanceof TimeInstant) {
+            addTimeSpan(key, ((TimeInstant) time).getValue(), ((TimeInstant) time).getValue());
+        } else if (time instanceof TimePeriod) {
+            addTimeSpan(key, ((TimePeriod) time).getStart(), ((TimePeriod) time).getEnd());
+        }
+    }
+
+    private void addTimeSpan(String key, DateTime from, DateTime to) {
+        if (from != null && to != null) {
+            timeSpans.computeIfAbsent(key, k -> new TimeSpan()).extend(from.toDate(), to.toDate());
+        }
+    }
+
+    private String getKey(String procedure, String observableProperty, String feature) {
+        return KEY_JOINER.join(procedure, observableProperty, feature);
+    }
+
+    private String getKey(DatasetEntity dataset) {
+        return getKey(getIdentifier(dataset.getProcedure()), getIdentifier(dataset.getObservableProperty()),
+                getIdentifier(dataset.getFeature()));
+    }
+
+    public boolean isSkipDuplicates() {
+        return skipDuplicates;
+    }
+
+    /**
+     * @return the number of skipped duplicates
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Check if the observation already exists in the series.
+     *
+     * @param dataset
+     *            the series of the observation
+     * @param observation
+     *            the observation to persist
+     * @param session
+     *            Hibernate session
+     * @return <code>true</code> if the observation should be persisted,
+     *         <code>false</code> if the observation is a duplicate and should
+     *         be skipped
+     * @throws OwsExceptionReport
+     *             If the observation is a duplicate and duplicates should not
+     *             be skipped
+     */
+    public boolean check(DatasetEntity dataset, DataEntity<?> observation, Session session)
+            throws OwsExceptionReport {
+        if (dataset.getId() == null || observation.getSamplingTimeStart() == null
+                || observation.getSamplingTimeEnd() == null) {
+            return true;
+        }
+        ObservationIdentity identity = new ObservationIdentity(observation.getSamplingTimeStart(),
+                observation.getSamplingTimeEnd(), observation.getResultTime(), observation.getVerticalFrom(),
+                observation.getVerticalTo());
+        Set<ObservationIdentity> identities = getExisting(dataset, session);
+        if (!isPreloaded(dataset, observation)) {
+            identities.addAll(query(dataset, observation.getSamplingTimeStart(), observation.getSamplingTimeEnd(),
+                    session));
+        }
+        if (identities.add(identity)) {
+            return true;
+        }
+        if (isSkipDuplicates()) {
+            skipped++;
+            LOGGER.debug("Skip already existing observation for series {} and {}", dataset.getId(), identity);
+            return false;
+        }
+        throw new NoApplicableCodeException()
+                .withMessage("The observation for procedure=%s observedProperty=%s featureOfInterest=%s %s "
+                        + "already exists in the database!", getIdentifier(dataset.getProcedure()),
+                        getIdentifier(dataset.getObservableProperty()), getIdentifier(dataset.getFeature()),
+                        identity)
+                .setStatus(HTTPStatus.BAD_REQUEST);
+    }
+
+    private String getIdentifier(DescribableEntity entity) {
+        return entity != null ? entity.getIdentifier() : null;
+    }
+
+    private boolean isPreloaded(DatasetEntity dataset, DataEntity<?> observation) {
+        TimeSpan timeSpan = preloaded.get(dataset.getId());
+        return timeSpan != null && timeSpan.contains(observation.getSamplingTimeStart(),
+                observation.getSamplingTimeEnd());
+    }
+
+    private Set<ObservationIdentity> getExisting(DatasetEntity dataset, Session session) {
+        Set<ObservationIdentity> identities = existing.get(dataset.getId());
+        if (identities == null) {
+            TimeSpan timeSpan = timeSpans.get(getKey(dataset));
+            if (timeSpan != null) {
+                identities = query(dataset, timeSpan.start, timeSpan.end, session);
+                preloaded.put(dataset.getId(), timeSpan);
+            } else {
+                identities = new HashSet<>();
+            }
+            existing.put(dataset.getId(), identities);
+        }
+        return identities;
+    }
+
+    private Set<ObservationIdentity> query(DatasetEntity dataset, Date from, Date to, Session session) {
+        List<Object[]> results = queryIdentities(dataset, from, to, session);
+        Set<ObservationIdentity> identities = new HashSet<>(results.size());
+        for (Object[] result : results) {
+            if (result[0] != null && result[1] != null) {
+                identities.add(new ObservationIdentity((Date) result[0], (Date) result[1], (Date) result[2],
+                        (BigDecimal) result[3], (BigDecimal) result[4]));
+            }
+        }
+        return identities;
+    }
+
+    /**
+     * Query the sampling time start/end, result time and vertical from/to of
+     * the observations of the series within the time span.
+     *
+     * @param dataset
+     *            the series
+     * @param from
+     *            start of the time span
+     * @param to
+     *            end of the time span
+     * @param session
+     *            Hibernate session
+     * @return the identity columns of the existing observations
+     */
+    protected List<Object[]> queryIdentities(DatasetEntity dataset, Date from, Date to, Session session) {
+        // deleted observations are included because they are still part of
+        // the unique constraint
+        Criteria c = session.createCriteria(DataEntity.class)
+                .add(Restrictions.eq(DataEntity.PROPERTY_DATASET_ID, dataset.getId()))
+                .add(Restrictions.ge(DataEntity.PROPERTY_SAMPLING_TIME_START, from))
+                .add(Restrictions.le(DataEntity.PROPERTY_SAMPLING_TIME_END, to))
+                .setProjection(Projections.projectionList()
+                        .add(Projections.property(DataEntity.PROPERTY_SAMPLING_TIME_START))
+                        .add(Projections.property(DataEntity.PROPERTY_SAMPLING_TIME_END))
+                        .add(Projections.property(DataEntity.PROPERTY_RESULT_TIME))
+                        .add(Projections.property(PROPERTY_VERTICAL_FROM))
+                        .add(Projections.property(PROPERTY_VERTICAL_TO)));
+        LOGGER.trace("QUERY ObservationDuplicateChecker.query(): {}", HibernateHelper.getSqlString(c));
+        @SuppressWarnings("unchecked")
+        List<Object[]> results = c.list();
+        return results;
+    }
+
+    /**
+     * Phenomenon time span of the observations of a series
+     */
+    private static final class TimeSpan {
+
+        private Date start;
+
+        private Date end;
+
+        void extend(Date from, Date to) {
+            if (start == null || start.after(from)) {
+                start = from;
+            }
+            if (end == null || end.before(to)) {
+                end = to;
+            }
+        }
+
+        boolean contains(Date from, Date to) {
+            return !start.after(from) && !end.before(to);
+        }
+    }
+
+    /**
+     * Identity of an observation within a series
+     */
+    private static final class ObservationIdentity {
+
+        private final long samplingTimeStart;
+
+        private final long samplingTimeEnd;
+
+        private final Long resultTime;
+
+        private final BigDecimal verticalFrom;
+
+        private final BigDecimal verticalTo;
+
+        ObservationIdentity(Date samplingTimeStart, Date samplingTimeEnd, Date resultTime, BigDecimal verticalFrom,
+                BigDecimal verticalTo) {
+            this.samplingTimeStart = samplingTimeStart.getTime();
+            this.samplingTimeEnd = samplingTimeEnd.getTime();
+            this.resultTime = resultTime != null ? resultTime.getTime() : null;
+            this.verticalFrom = normalize(verticalFrom);
+            this.verticalTo = normalize(verticalTo);
+        }
+
+        private static BigDecimal normalize(BigDecimal value) {
+            return value != null ? value.stripTrailingZeros() : null;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(samplingTimeStart, samplingTimeEnd, resultTime, verticalFrom, verticalTo);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ObservationIdentity)) {
+                return false;
+            }
+            ObservationIdentity other = (ObservationIdentity) obj;
+            return samplingTimeStart == other.samplingTimeStart && samplingTimeEnd == other.samplingTimeEnd
+                    && Objects.equals(resultTime, other.resultTime)
+                    && Objects.equals(verticalFrom, other.verticalFrom)
+                    && Objects.equals(verticalTo, other.verticalTo);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("phenomenonTime=").append(new DateTime(samplingTimeStart));
+            if (samplingTimeEnd != samplingTimeStart) {
+                builder.append("/").append(new DateTime(samplingTimeEnd));
+            }
+            if (resultTime != null) {
+                builder.append(" resultTime=").append(new DateTime(resultTime.longValue()));
+            }
+            if (verticalFrom != null || verticalTo != null) {
+                builder.append(" height/depth=").append(verticalFrom).append("/").append(verticalTo);
+            }
+            return builder.toString();
+        }
+    }
+}
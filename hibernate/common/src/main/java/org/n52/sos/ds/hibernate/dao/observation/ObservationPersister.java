@@ -120,6 +120,7 @@ import org.n52.sos.ds.hibernate.dao.PlatformDAO;
 import org.n52.sos.ds.hibernate.dao.UnitDAO;
 import org.n52.sos.ds.hibernate.dao.VerticalMetadataDAO;
 import org.n52.sos.ds.hibernate.dao.observation.series.AbstractSeriesDAO;
+import org.n52.sos.ds.hibernate.dao.observation.series.SeriesFirstLastValueUpdates;
 import org.n52.sos.util.GeometryHandler;
 
 public class ObservationPersister
@@ -152,8 +153,28 @@ public class ObservationPersister
             Map<String, CodespaceEntity> codespaceCache, Map<UoM, UnitEntity> unitCache,
             Map<String, FormatEntity> formatCache, Set<OfferingEntity> hOfferings, Session session)
             throws OwsExceptionReport {
-        this(daoFactory, new DAOs(observationDao, daoFactory), new Caches(codespaceCache, unitCache, formatCache),
-                sosObservation, hDataset, hFeature, null, hOfferings, session, null);
+        this(daoFactory, observationDao, sosObservation, hDataset, hFeature, codespaceCache, unitCache, formatCache,
+                null, hOfferings, session);
+    }
+
+    public ObservationPersister(DaoFactory daoFactory, AbstractObservationDAO observationDao,
+            OmObservation sosObservation, DatasetEntity hDataset, AbstractFeatureEntity<?> hFeature,
+            Map<String, CodespaceEntity> codespaceCache, Map<UoM, UnitEntity> unitCache,
+            Map<String, FormatEntity> formatCache, SeriesFirstLastValueUpdates seriesUpdates,
+            Set<OfferingEntity> hOfferings, Session session) throws OwsExceptionReport {
+        this(daoFactory, observationDao, sosObservation, hDataset, hFeature, codespaceCache, unitCache, formatCache,
+                seriesUpdates, null, hOfferings, session);
+    }
+
+    public ObservationPersister(DaoFactory daoFactory, AbstractObservationDAO observationDao,
+            OmObservation sosObservation, DatasetEntity hDataset, AbstractFeatureEntity<?> hFeature,
+            Map<String, CodespaceEntity> codespaceCache, Map<UoM, UnitEntity> unitCache,
+            Map<String, FormatEntity> formatCache, SeriesFirstLastValueUpdates seriesUpdates,
+            ObservationDuplicateChecker duplicateChecker, Set<OfferingEntity> hOfferings, Session session)
+            throws OwsExceptionReport {
+        this(daoFactory, new DAOs(observationDao, daoFactory),
+                new Caches(codespaceCache, unitCache, formatCache, seriesUpdates, duplicateChecker), sosObservation,
+                hDataset, hFeature, null, hOfferings, session, null);
     }
 
     private ObservationPersister(DaoFactory daoFactory, DAOs daos, Caches caches, OmObservation observation,
@@ -664,13 +685,43 @@ public class ObservationPersister
 
         DatasetEntity persitedDataset =
                 daos.observation().addObservationContextToObservation(observationContext, observation, session);
+        if (isCheckForDuplicate(observation)
+                && !caches.duplicateChecker().check(persitedDataset, observation, session)) {
+            // skip the already existing observation
+            return observation;
+        }
         session.save(observation);
-        session.flush();
-        session.refresh(observation);
-        daos.dataset.updateSeriesWithFirstLatestValues(persitedDataset, observation, session);
+        if (!isBulkInsertion(observation)) {
+            session.flush();
+            session.refresh(observation);
+        }
+        if (caches.seriesUpdates() != null && persitedDataset.getId() != null) {
+            // the series is updated once before the transaction is committed
+            caches.seriesUpdates().add(persitedDataset, observation);
+        } else {
+            daos.dataset.updateSeriesWithFirstLatestValues(persitedDataset, observation, session);
+        }
         return observation;
     }
 
+    private boolean isCheckForDuplicate(DataEntity<?> observation) {
+        // complex observations are checked by the database constraints
+        return caches.duplicateChecker() != null && isSimpleObservation(observation);
+    }
+
+    /**
+     * Simple observations of bulk insertions are flushed by the insertion
+     * handlers in batches, the series are updated before the commit.
+     */
+    private boolean isBulkInsertion(DataEntity<?> observation) {
+        return caches.seriesUpdates() != null && isSimpleObservation(observation);
+    }
+
+    private boolean isSimpleObservation(DataEntity<?> observation) {
+        return parent == null && !(observation instanceof ComplexDataEntity)
+                && !(observation instanceof ProfileDataEntity) && !(observation instanceof DataArrayDataEntity);
+    }
+
     private FormatEntity getObservationType(String observationType, Session session) {
         if (!caches.formats.containsKey(observationType)) {
             caches.formats.put(observationType,
@@ -805,11 +856,18 @@ public class ObservationPersister
 
         private final Map<String, FormatEntity> formats;
 
+        private final SeriesFirstLastValueUpdates seriesUpdates;
+
+        private final ObservationDuplicateChecker duplicateChecker;
+
         Caches(Map<String, CodespaceEntity> codespaces, Map<UoM, UnitEntity> units,
-                Map<String, FormatEntity> formats) {
+                Map<String, FormatEntity> formats, SeriesFirstLastValueUpdates seriesUpdates,
+                ObservationDuplicateChecker duplicateChecker) {
             this.codespaces = codespaces;
             this.units = units;
             this.formats = formats;
+            this.seriesUpdates = seriesUpdates;
+            this.duplicateChecker = duplicateChecker;
         }
 
         public Map<String, CodespaceEntity> codespaces() {
@@ -824,6 +882,14 @@ public class ObservationPersister
             return formats;
         }
 
+        public SeriesFirstLastValueUpdates seriesUpdates() {
+            return seriesUpdates;
+        }
+
+        public ObservationDuplicateChecker duplicateChecker() {
+            return duplicateChecker;
+        }
+
     }
 
     private static class DAOs {
@@ -390,30 +390,32 @@ public abstract class AbstractSeriesDAO extends AbstractIdentifierNameDescriptio
         }
     }
 
-    private void updateSta(DatasetEntity dataset, DataEntity<?> observation, Session session) {
+    private void updateSta(DatasetEntity dataset, SeriesFirstLastValues values, Session session, boolean flush) {
         if (HibernateHelper.isEntitySupported(DatastreamEntity.class)) {
             if (dataset.getPlatform() != null) {
                 DatastreamEntity datastream = existsDatastream(dataset, session);
                 if (datastream != null) {
                     if (datastream.getSamplingTimeStart() == null || (datastream.getSamplingTimeStart() != null
-                            && datastream.getSamplingTimeStart().after(observation.getSamplingTimeStart()))) {
-                        datastream.setSamplingTimeStart(observation.getSamplingTimeStart());
+                            && datastream.getSamplingTimeStart().after(values.getSamplingTimeStart()))) {
+                        datastream.setSamplingTimeStart(values.getSamplingTimeStart());
                     }
                     if (datastream.getSamplingTimeEnd() == null || (datastream.getSamplingTimeEnd() != null
-                            && datastream.getSamplingTimeEnd().before(observation.getSamplingTimeEnd()))) {
-                        datastream.setSamplingTimeEnd(observation.getSamplingTimeEnd());
+                            && datastream.getSamplingTimeEnd().before(values.getSamplingTimeEnd()))) {
+                        datastream.setSamplingTimeEnd(values.getSamplingTimeEnd());
                     }
                     if (datastream.getResultTimeStart() == null || (datastream.getResultTimeStart() != null
-                            && datastream.getResultTimeStart().after(observation.getResultTime()))) {
-                        datastream.setResultTimeStart(observation.getResultTime());
+                            && datastream.getResultTimeStart().after(values.getResultTimeStart()))) {
+                        datastream.setResultTimeStart(values.getResultTimeStart());
                     }
                     if (datastream.getResultTimeEnd() == null || (datastream.getResultTimeEnd() != null
-                            && datastream.getResultTimeEnd().before(observation.getResultTime()))) {
-                        datastream.setResultTimeEnd(observation.getResultTime());
+                            && datastream.getResultTimeEnd().before(values.getResultTimeEnd()))) {
+                        datastream.setResultTimeEnd(values.getResultTimeEnd());
                     }
                     datastream.addDataset(dataset);
                     session.saveOrUpdate(datastream);
-                    session.flush();
+                    if (flush) {
+                        session.flush();
+                    }
                 }
             }
         }
@@ -919,32 +921,52 @@ public abstract class AbstractSeriesDAO extends AbstractIdentifierNameDescriptio
      *            Hibernate session
      */
     public void updateSeriesWithFirstLatestValues(DatasetEntity dataset, DataEntity<?> hObservation, Session session) {
-        boolean minChanged = false;
-        boolean maxChanged = false;
-        if (!dataset.isSetFirstValueAt() || (dataset.isSetFirstValueAt()
-                && dataset.getFirstValueAt().after(hObservation.getSamplingTimeStart()))) {
-            minChanged = true;
-            dataset.setFirstValueAt(hObservation.getSamplingTimeStart());
-            dataset.setFirstObservation(hObservation);
+        SeriesFirstLastValues values = new SeriesFirstLastValues(hObservation);
+        setFirstLatestValues(dataset, values);
+        session.saveOrUpdate(dataset);
+        session.flush();
+        session.refresh(dataset);
+        updateSta(dataset, values, session, true);
+    }
+
+    /**
+     * Update series values with the first and latest values collected during
+     * a bulk insertion. The changes are not flushed, the caller is
+     * responsible to flush the session once after all series are updated.
+     *
+     * @param dataset
+     *            Series object
+     * @param values
+     *            Collected first and latest values of the series
+     * @param session
+     *            Hibernate session
+     */
+    public void updateSeriesWithFirstLatestValues(DatasetEntity dataset, SeriesFirstLastValues values,
+            Session session) {
+        setFirstLatestValues(dataset, values);
+        session.saveOrUpdate(dataset);
+        updateSta(dataset, values, session, false);
+    }
+
+    private void setFirstLatestValues(DatasetEntity dataset, SeriesFirstLastValues values) {
+        DataEntity<?> first = values.getFirst();
+        DataEntity<?> last = values.getLast();
+        if (!dataset.isSetFirstValueAt()
+                || (dataset.isSetFirstValueAt() && dataset.getFirstValueAt().after(first.getSamplingTimeStart()))) {
+            dataset.setFirstValueAt(first.getSamplingTimeStart());
+            dataset.setFirstObservation(first);
+            if (first instanceof QuantityDataEntity) {
+                dataset.setFirstQuantityValue(((QuantityDataEntity) first).getValue());
+            }
         }
         if (!dataset.isSetLastValueAt()
-                || (dataset.isSetLastValueAt() && dataset.getLastValueAt().before(hObservation.getSamplingTimeEnd()))) {
-            maxChanged = true;
-            dataset.setLastValueAt(hObservation.getSamplingTimeEnd());
-            dataset.setLastObservation(hObservation);
-        }
-        if (hObservation instanceof QuantityDataEntity) {
-            if (minChanged) {
-                dataset.setFirstQuantityValue(((QuantityDataEntity) hObservation).getValue());
-            }
-            if (maxChanged) {
-                dataset.setLastQuantityValue(((QuantityDataEntity) hObservation).getValue());
+                || (dataset.isSetLastValueAt() && dataset.getLastValueAt().before(last.getSamplingTimeEnd()))) {
+            dataset.setLastValueAt(last.getSamplingTimeEnd());
+            dataset.setLastObservation(last);
+            if (last instanceof QuantityDataEntity) {
+                dataset.setLastQuantityValue(((QuantityDataEntity) last).getValue());
             }
         }
-        session.saveOrUpdate(dataset);
-        session.flush();
-        session.refresh(dataset);
-        updateSta(dataset, hObservation, session);
     }
 
     /**
@@ -28,6 +28,9 @@
  */
 package org.n52.sos.ds.hibernate.dao.observation.series;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -232,6 +235,107 @@ public abstract class AbstractSeriesValueDAO extends AbstractValueDAO {
         }
     }
 
+    /**
+     * Query streaming value for parameter as chunk {@link List} using keyset
+     * (seek) pagination. Instead of skipping the already queried rows with an
+     * offset, the next chunk starts directly after the last value of the
+     * previous chunk, ordered by order column and id. The cost of a query is
+     * therefore independent of the position in the series.
+     *
+     * @param request
+     *            {@link AbstractObservationRequest}
+     * @param series
+     *            Datasource series id
+     * @param temporalFilterCriterion
+     *            Temporal filter {@link Criterion}, may be <code>null</code>
+     * @param chunkSize
+     *            chunk size
+     * @param lastValue
+     *            Last value of the previous chunk or <code>null</code> for
+     *            the first chunk
+     * @param session
+     *            Hibernate Session
+     * @return Resulting chunk {@link List}
+     * @throws OwsExceptionReport
+     *             If an error occurs when querying
+     */
+    @SuppressWarnings("unchecked")
+    public List<DataEntity<?>> getStreamingSeriesValuesAfter(AbstractObservationRequest request, long series,
+            Criterion temporalFilterCriterion, int chunkSize, DataEntity<?> lastValue, Session session)
+            throws OwsExceptionReport {
+        if (request instanceof GetObservationRequest && ((GetObservationRequest) request).hasResultFilter()) {
+            List<DataEntity<?>> list = new ArrayList<>();
+            for (SubQueryIdentifier identifier : ResultFilterRestrictions
+                    .getSubQueryIdentifier(getResultFilterClasses())) {
+                StringBuilder logArgs = new StringBuilder();
+                Criteria c = getSeriesValueCriteriaFor(request, series, temporalFilterCriterion, session, logArgs);
+                addKeysetValuesToCriteria(c, chunkSize, lastValue, request, logArgs);
+                checkAndAddResultFilterCriterion(c, (GetObservationRequest) request, identifier, session, logArgs);
+                LOGGER.trace(QUERY_STREAMING_SERIES_VALUE, logArgs.toString(),
+                        HibernateHelper.getSqlString(c));
+                list.addAll(c.list());
+            }
+            // each sub query returns its own chunk, the merged chunk has to
+            // be ordered and limited so that the last value is a valid key
+            list.sort(getKeysetComparator(request));
+            if (chunkSize > 0 && list.size() > chunkSize) {
+                return new ArrayList<>(list.subList(0, chunkSize));
+            }
+            return list;
+        } else {
+            StringBuilder logArgs = new StringBuilder();
+            Criteria c = getSeriesValueCriteriaFor(request, series, temporalFilterCriterion, session, logArgs);
+            addKeysetValuesToCriteria(c, chunkSize, lastValue, request, logArgs);
+            LOGGER.trace(QUERY_STREAMING_SERIES_VALUE, logArgs.toString(), HibernateHelper.getSqlString(c));
+            return (List<DataEntity<?>>) c.list();
+        }
+    }
+
+    /**
+     * Add keyset restriction, secondary id order and chunk size to
+     * {@link Criteria}
+     *
+     * @param c
+     *            {@link Criteria} to add information
+     * @param chunkSize
+     *            Chunk size
+     * @param lastValue
+     *            Last value of the previous chunk, may be <code>null</code>
+     * @param request
+     *            the request
+     * @param logArgs
+     *            log arguments
+     */
+    private void addKeysetValuesToCriteria(Criteria c, int chunkSize, DataEntity<?> lastValue,
+            AbstractObservationRequest request, StringBuilder logArgs) {
+        String orderColumn = getOrderColumn(request);
+        c.addOrder(Order.asc(DataEntity.PROPERTY_ID));
+        if (lastValue != null) {
+            Date lastTime = getOrderValue(orderColumn, lastValue);
+            c.add(Restrictions.or(Restrictions.gt(orderColumn, lastTime),
+                    Restrictions.and(Restrictions.eq(orderColumn, lastTime),
+                            Restrictions.gt(DataEntity.PROPERTY_ID, lastValue.getId()))));
+            logArgs.append(", after(" + lastValue.getId() + ")");
+        }
+        if (chunkSize > 0) {
+            c.setMaxResults(chunkSize);
+            logArgs.append(", chunk(" + chunkSize + ")");
+        }
+    }
+
+    private Comparator<DataEntity<?>> getKeysetComparator(AbstractObservationRequest request) {
+        String orderColumn = getOrderColumn(request);
+        return Comparator.<DataEntity<?>, Date> comparing(v -> getOrderValue(orderColumn, v))
+                .thenComparing(DataEntity::getId);
+    }
+
+    private Date getOrderValue(String orderColumn, DataEntity<?> value) {
+        if (DataEntity.PROPERTY_RESULT_TIME.equals(orderColumn)) {
+            return value.getResultTime();
+        }
+        return value.getSamplingTimeStart();
+    }
+
     /**
      * Get {@link Criteria} for parameter
      *
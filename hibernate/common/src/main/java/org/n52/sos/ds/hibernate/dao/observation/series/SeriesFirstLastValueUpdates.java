@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation.series;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.hibernate.Session;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transaction scoped collector of the first and latest observations per
+ * series. Instead of updating, flushing and refreshing the
+ * {@link DatasetEntity} for each inserted observation, the insertion
+ * handlers collect the values during the transaction and write each touched
+ * series once before the commit.
+ *
+ * @since 5.1.1
+ */
+public class SeriesFirstLastValueUpdates {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeriesFirstLastValueUpdates.class);
+
+    private final Map<Long, SeriesFirstLastValues> values = new LinkedHashMap<>();
+
+    /**
+     * Collect the observation for the series.
+     *
+     * @param dataset
+     *            the persisted series of the observation
+     * @param observation
+     *            the persisted observation
+     */
+    public void add(DatasetEntity dataset, DataEntity<?> observation) {
+        SeriesFirstLastValues seriesValues = values.get(dataset.getId());
+        if (seriesValues == null) {
+            values.put(dataset.getId(), new SeriesFirstLastValues(observation));
+        } else {
+            seriesValues.add(observation);
+        }
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Write the collected first and latest values to the series and flush the
+     * session once. The series are reloaded from the session because they may
+     * be detached by intermediate session clearing.
+     *
+     * @param seriesDAO
+     *            the series DAO
+     * @param session
+     *            Hibernate session
+     */
+    public void apply(AbstractSeriesDAO seriesDAO, Session session) {
+        if (isEmpty()) {
+            return;
+        }
+        LOGGER.debug("Update first/latest values of {} series.", values.size());
+        for (Entry<Long, SeriesFirstLastValues> entry : values.entrySet()) {
+            DatasetEntity dataset = session.get(DatasetEntity.class, entry.getKey());
+            if (dataset != null) {
+                seriesDAO.updateSeriesWithFirstLatestValues(dataset, entry.getValue(), session);
+            }
+        }
+        values.clear();
+        session.flush();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation.series;
+
+import java.util.Date;
+
+import org.n52.series.db.beans.DataEntity;
+
+/**
+ * First and latest observation of a series collected from inserted
+ * observations, used to update the first/last value columns of the
+ * {@link org.n52.series.db.beans.DatasetEntity}.
+ *
+ * @since 5.1.1
+ */
+public class SeriesFirstLastValues {
+
+    private DataEntity<?> first;
+
+    private DataEntity<?> last;
+
+    private Date resultTimeStart;
+
+    private Date resultTimeEnd;
+
+    public SeriesFirstLastValues(DataEntity<?> observation) {
+        add(observation);
+    }
+
+    /**
+     * Add an observation and keep it if it is before the first or after the
+     * latest observation.
+     *
+     * @param observation
+     *            the inserted observation
+     * @return this
+     */
+    public SeriesFirstLastValues add(DataEntity<?> observation) {
+        if (first == null || first.getSamplingTimeStart().after(observation.getSamplingTimeStart())) {
+            first = observation;
+        }
+        if (last == null || last.getSamplingTimeEnd().before(observation.getSamplingTimeEnd())) {
+            last = observation;
+        }
+        Date resultTime = observation.getResultTime();
+        if (resultTime != null) {
+            if (resultTimeStart == null || resultTimeStart.after(resultTime)) {
+                resultTimeStart = resultTime;
+            }
+            if (resultTimeEnd == null || resultTimeEnd.before(resultTime)) {
+                resultTimeEnd = resultTime;
+            }
+        }
+        return this;
+    }
+
+    public DataEntity<?> getFirst() {
+        return first;
+    }
+
+    public DataEntity<?> getLast() {
+        return last;
+    }
+
+    public Date getSamplingTimeStart() {
+        return first.getSamplingTimeStart();
+    }
+
+    public Date getSamplingTimeEnd() {
+        return last.getSamplingTimeEnd();
+    }
+
+    public Date getResultTimeStart() {
+        return resultTimeStart;
+    }
+
+    public Date getResultTimeEnd() {
+        return resultTimeEnd;
+    }
+}
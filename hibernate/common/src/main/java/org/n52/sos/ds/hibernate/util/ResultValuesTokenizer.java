@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.google.common.base.Strings;
+
+/**
+ * Splits text encoded result values into blocks of tokens in a single pass.
+ * The separators are matched literally, an optional leading count value (a
+ * first block without token separator) and empty blocks are skipped.
+ * <p>
+ * The tokens are not copied while splitting, each {@link Block} only stores
+ * the offsets of its tokens in the result values. Numeric and boolean tokens
+ * can be parsed directly from these offsets, other tokens are created as
+ * strings when they are accessed.
+ *
+ * @since 5.1.1
+ */
+public class ResultValuesTokenizer {
+
+    private final String tokenSeparator;
+
+    private final String blockSeparator;
+
+    public ResultValuesTokenizer(String tokenSeparator, String blockSeparator) {
+        if (Strings.isNullOrEmpty(tokenSeparator) || Strings.isNullOrEmpty(blockSeparator)) {
+            throw new IllegalArgumentException("The token and block separator must not be empty!");
+        }
+        this.tokenSeparator = tokenSeparator;
+        this.blockSeparator = blockSeparator;
+    }
+
+    /**
+     * Splits the result values into blocks of tokens.
+     *
+     * @param values
+     *            the result values
+     * @return the blocks, each block is a {@link Block}
+     */
+    public List<List<String>> tokenize(CharSequence values) {
+        if (values == null || values.length() == 0) {
+            return new ArrayList<>();
+        }
+        List<List<String>> blocks = new ArrayList<>();
+        // start and end offsets of the tokens of the current block
+        int[] bounds = new int[16];
+        int tokens = 0;
+        boolean first = true;
+        int length = values.length();
+        int start = 0;
+        int i = 0;
+        while (i <= length) {
+            boolean endOfBlock = i == length || matches(values, i, blockSeparator);
+            if (endOfBlock || matches(values, i, tokenSeparator)) {
+                if (bounds.length < 2 * tokens + 2) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[2 * tokens] = start;
+                bounds[2 * tokens + 1] = i;
+                tokens++;
+                if (endOfBlock) {
+                    // a first block without token separator is the count value
+                    if (!(first && tokens == 1) && !(tokens == 1 && start == i)) {
+                        blocks.add(new Block(values, Arrays.copyOf(bounds, 2 * tokens)));
+                    }
+                    tokens = 0;
+                    first = false;
+                    i += blockSeparator.length();
+                } else {
+                    i += tokenSeparator.length();
+                }
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        return blocks;
+    }
+
+    private static boolean matches(CharSequence values, int index, String separator) {
+        if (index + separator.length() > values.length()) {
+            return false;
+        }
+        for (int j = 0; j < separator.length(); j++) {
+            if (values.charAt(index + j) != separator.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The tokens of a block, backed by the result values. The string of a
+     * token is only created when it is accessed, {@link #getDouble(int)},
+     * {@link #getInt(int)} and {@link #getBoolean(int)} parse the token
+     * without creating it.
+     */
+    public static final class Block extends AbstractList<String> implements RandomAccess {
+
+        /**
+         * Decimals with up to 15 digits are exactly representable as long and
+         * as double, as are the powers of ten up to 10^15, so that a single
+         * division yields the correctly rounded value.
+         */
+        private static final int MAX_DECIMAL_DIGITS = 15;
+
+        private static final int MAX_INT_DIGITS = 9;
+
+        private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+        private static final String TRUE = "true";
+
+        private final CharSequence values;
+
+        private final int[] bounds;
+
+        private String[] tokens;
+
+        Block(CharSequence values, int[] bounds) {
+            this.values = values;
+            this.bounds = bounds;
+        }
+
+        @Override
+        public int size() {
+            return bounds.length / 2;
+        }
+
+        @Override
+        public String get(int index) {
+            checkIndex(index);
+            if (tokens == null) {
+                tokens = new String[size()];
+            }
+            if (tokens[index] == null) {
+                tokens[index] = values.subSequence(start(index), end(index)).toString();
+            }
+            return tokens[index];
+        }
+
+        /**
+         * Parses the token like {@link Double#parseDouble(String)}.
+         *
+         * @param index
+         *            the index of the token
+         * @return the value
+         * @throws NumberFormatException
+         *             if the token is not a number
+         */
+        public double getDouble(int index) {
+            checkIndex(index);
+            int i = start(index);
+            int end = end(index);
+            boolean negative = i < end && values.charAt(i) == '-';
+            if (i < end && (negative || values.charAt(i) == '+')) {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean point = false;
+            for (; i < end; i++) {
+                char c = values.charAt(i);
+                if (c >= '0' && c <= '9' && digits < MAX_DECIMAL_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (point) {
+                        scale++;
+                    }
+                } else if (c == '.' && !point) {
+                    point = true;
+                } else {
+                    // exponents, whitespace, special values or too many digits
+                    return Double.parseDouble(get(index));
+                }
+            }
+            if (digits == 0) {
+                return Double.parseDouble(get(index));
+            }
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses the token like {@link Integer#parseInt(String)}.
+         *
+         * @param index
+         *            the index of the token
+         * @return the value
+         * @throws NumberFormatException
+         *             if the token is not an integer
+         */
+        public int getInt(int index) {
+            checkIndex(index);
+            int i = start(index);
+            int end = end(index);
+            boolean negative = i < end && values.charAt(i) == '-';
+            if (i < end && (negative || values.charAt(i) == '+')) {
+                i++;
+            }
+            if (i == end || end - i > MAX_INT_DIGITS) {
+                return Integer.parseInt(get(index));
+            }
+            int value = 0;
+            for (; i < end; i++) {
+                char c = values.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Integer.parseInt(get(index));
+                }
+                value = value * 10 + (c - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses the token like {@link Boolean#parseBoolean(String)}.
+         *
+         * @param index
+         *            the index of the token
+         * @return the value
+         */
+        public boolean getBoolean(int index) {
+            checkIndex(index);
+            int start = start(index);
+            if (end(index) - start != TRUE.length()) {
+                return false;
+            }
+            for (int i = 0; i < TRUE.length(); i++) {
+                if (Character.toLowerCase(values.charAt(start + i)) != TRUE.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int start(int index) {
+            return bounds[2 * index];
+        }
+
+        private int end(int index) {
+            return bounds[2 * index + 1];
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size()));
+            }
+        }
+    }
+
+}
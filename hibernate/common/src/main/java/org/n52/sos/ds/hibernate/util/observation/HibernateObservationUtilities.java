@@ -151,6 +151,15 @@ public final class HibernateObservationUtilities {
         return new SeriesOmObservationCreator(dataset, r, l, pdf, ctx, session).create();
     }
 
+    public static ObservationStream createSosObservationFromSeries(DatasetEntity dataset, AbstractObservationRequest r,
+            Locale l, String pdf, OmObservationCreatorContext ctx, ObservationTemplateCache cache, Session session)
+            throws OwsExceptionReport, ConverterException {
+        if (dataset.hasEreportingProfile()) {
+            return createSosObservationFromEReportingSeries(dataset, r, l, pdf, ctx, session);
+        }
+        return new SeriesOmObservationCreator(dataset, r, l, pdf, ctx, cache, session).create();
+    }
+
     public static ObservationStream createSosObservationFromEReportingSeries(DatasetEntity dataset,
             AbstractObservationRequest r, String pdf, OmObservationCreatorContext ctx, Session session)
             throws OwsExceptionReport, ConverterException {
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util.observation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.n52.iceland.convert.ConverterException;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+
+/**
+ * Cache for the values shared by the observation templates of the series of a
+ * single request. Procedures, features and units are only created once per
+ * request. The cached objects are shared by the templates and must not be
+ * modified. The only exception is the response transformation, which
+ * replaces the geometry of a feature with a transformed copy once for all
+ * observations of the response, as they share the target CRS.
+ *
+ * @since 5.1.1
+ */
+public class ObservationTemplateCache {
+
+    private final Map<String, SosProcedureDescription<?>> procedures = new HashMap<>();
+
+    private final Map<String, AbstractFeature> features = new HashMap<>();
+
+    private final Map<List<String>, Optional<String>> units = new HashMap<>();
+
+    /**
+     * @param identifier
+     *            the procedure identifier
+     * @param creator
+     *            creates the procedure if it is not cached
+     * @return the cached or created procedure
+     * @throws OwsExceptionReport
+     *             if the creation fails
+     * @throws ConverterException
+     *             if the creation fails
+     */
+    public SosProcedureDescription<?> getProcedure(String identifier,
+            Creator<SosProcedureDescription<?>> creator) throws OwsExceptionReport, ConverterException {
+        return get(procedures, identifier, creator);
+    }
+
+    /**
+     * @param identifier
+     *            the feature identifier
+     * @param creator
+     *            creates the feature if it is not cached
+     * @return the cached or created feature
+     * @throws OwsExceptionReport
+     *             if the creation fails
+     * @throws ConverterException
+     *             if the creation fails
+     */
+    public AbstractFeature getFeature(String identifier, Creator<AbstractFeature> creator)
+            throws OwsExceptionReport, ConverterException {
+        return get(features, identifier, creator);
+    }
+
+    /**
+     * @param observableProperty
+     *            the observable property identifier
+     * @param procedure
+     *            the procedure identifier
+     * @param creator
+     *            queries the unit if it is not cached, may return
+     *            {@code null}
+     * @return the cached or queried unit, may be {@code null}
+     * @throws OwsExceptionReport
+     *             if the query fails
+     * @throws ConverterException
+     *             if the query fails
+     */
+    public String getUnit(String observableProperty, String procedure, Creator<String> creator)
+            throws OwsExceptionReport, ConverterException {
+        List<String> key = Arrays.asList(observableProperty, procedure);
+        Optional<String> unit = units.get(key);
+        if (unit == null) {
+            unit = Optional.ofNullable(creator.create());
+            units.put(key, unit);
+        }
+        return unit.orElse(null);
+    }
+
+    private static <T> T get(Map<String, T> map, String key, Creator<T> creator)
+            throws OwsExceptionReport, ConverterException {
+        T value = map.get(key);
+        if (value == null) {
+            value = creator.create();
+            map.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Creates a value that is not yet cached.
+     *
+     * @param <T>
+     *            the value type
+     */
+    @FunctionalInterface
+    public interface Creator<T> {
+        T create() throws OwsExceptionReport, ConverterException;
+    }
+
+}
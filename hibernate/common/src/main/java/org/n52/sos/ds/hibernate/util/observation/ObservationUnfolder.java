@@ -99,6 +99,7 @@ import org.n52.shetland.ogc.swe.simpleType.SweTimeRange;
 import org.n52.shetland.util.DateTimeHelper;
 import org.n52.shetland.util.JTSHelper;
 import org.n52.sos.ds.hibernate.dao.observation.ValueCreatingSweDataComponentVisitor;
+import org.n52.sos.ds.hibernate.util.ResultValuesTokenizer;
 import org.n52.sos.util.GeometryHandler;
 import org.n52.sos.util.IncDecInteger;
 import org.n52.svalbard.util.SweHelper;
@@ -131,6 +132,9 @@ public class ObservationUnfolder {
 
     private static final String SWE_FIELD_NULL = "sweField is null";
 
+    private static final String[] RESERVED_TEXT_DEFINITIONS =
+            { "om:featureOfInterest", "om:procedure", "gml:identifier", "gml:name", "gml:description" };
+
     private final OmObservation multiObservation;
 
     private final SweHelper helper;
@@ -169,6 +173,9 @@ public class ObservationUnfolder {
                                     ? arrayValue.getValue().getElementType().getClass().getName()
                                     : NULL);
                 }
+                if (isSimpleStructure(elementType)) {
+                    return unfoldSimpleStructure(elementType, values);
+                }
 
                 for (final List<String> block : values) {
                     IncDecInteger tokenIndex = new IncDecInteger();
@@ -192,39 +199,13 @@ public class ObservationUnfolder {
                          * get phenomenon time
                          */
                         if (dataComponent instanceof SweTime) {
-                            try {
-                                if (dataComponent.isSetDefinition()
-                                        && OmConstants.RESULT_TIME.equals(dataComponent.getDefinition())) {
-                                    resultTime = new TimeInstant(DateTimeHelper.parseIsoString2DateTime(token));
-                                } else {
-                                    if (phenomenonTime == null) {
-                                        phenomenonTime =
-                                                new TimeInstant(DateTimeHelper.parseIsoString2DateTime(token));
-                                    }
-                                }
-                            } catch (final Exception e) {
-                                /*
-                                 * FIXME what is the valid exception code if the
-                                 * result is not correct?
-                                 */
-                                throw new NoApplicableCodeException().causedBy(e).withMessage(ERROR_PARSING_TIME_LOG);
+                            if (isResultTime(dataComponent)) {
+                                resultTime = parseTimeInstant(token);
+                            } else if (phenomenonTime == null) {
+                                phenomenonTime = parseTimeInstant(token);
                             }
                         } else if (dataComponent instanceof SweTimeRange) {
-                            if (!token.contains("/")) {
-                                throw new NoApplicableCodeException().withMessage(
-                                        ERROR_PARSING_TIME_LOG + " A time range is expected instead of an instance!");
-                            }
-                            try {
-                                final String[] subTokens = token.split("/");
-                                phenomenonTime = new TimePeriod(DateTimeHelper.parseIsoString2DateTime(subTokens[0]),
-                                        DateTimeHelper.parseIsoString2DateTime(subTokens[1]));
-                            } catch (final Exception e) {
-                                /*
-                                 * FIXME what is the valid exception code if the
-                                 * result is not correct?
-                                 */
-                                throw new NoApplicableCodeException().causedBy(e).withMessage(ERROR_PARSING_TIME_LOG);
-                            }
+                            phenomenonTime = parseTimeRange(token);
                         } else if (dataComponent instanceof SweAbstractSimpleType) {
                             if (dataComponent instanceof SweText
                                     && dataComponent.getDefinition().contains("om:featureOfInterest")) {
@@ -368,6 +349,124 @@ public class ObservationUnfolder {
         }
     }
 
+    /**
+     * Checks if the observations can be unfolded without per block handling
+     * of features, procedures, parameters, geometries or nested components.
+     * This is the case for records that only contain times and simple values.
+     *
+     * @param elementType
+     *            the element type of the data array
+     * @return if the structure is simple
+     */
+    protected boolean isSimpleStructure(SweDataRecord elementType) {
+        if (multiObservation.isSetParameter() || isProfileObservations()) {
+            return false;
+        }
+        boolean value = false;
+        for (SweField field : elementType.getFields()) {
+            SweAbstractDataComponent dataComponent = field.getElement();
+            if (dataComponent instanceof SweTime || dataComponent instanceof SweTimeRange) {
+                continue;
+            }
+            if (!(dataComponent instanceof SweQuantity || dataComponent instanceof SweCount
+                    || dataComponent instanceof SweBoolean || dataComponent instanceof SweCategory
+                    || dataComponent instanceof SweText) || checkDefinitionForDephtHeight(field)) {
+                return false;
+            }
+            if (dataComponent instanceof SweText && dataComponent.isSetDefinition()) {
+                for (String definition : RESERVED_TEXT_DEFINITIONS) {
+                    if (dataComponent.getDefinition().contains(definition)) {
+                        return false;
+                    }
+                }
+            }
+            value = true;
+        }
+        return value;
+    }
+
+    /**
+     * Unfolds the blocks of a simple structure (see
+     * {@link #isSimpleStructure(SweDataRecord)}). The observations share a
+     * single observation constellation and the field types are only evaluated
+     * once. Numeric and boolean values of tokenized blocks are parsed without
+     * creating a string for each token, see {@link ResultValuesTokenizer}.
+     *
+     * @param elementType
+     *            the element type of the data array
+     * @param values
+     *            the blocks
+     * @return the single value observations
+     * @throws OwsExceptionReport
+     *             if a value can not be parsed
+     */
+    private List<OmObservation> unfoldSimpleStructure(SweDataRecord elementType, List<List<String>> values)
+            throws OwsExceptionReport {
+        final SweAbstractDataComponent[] components = elementType.getFields().stream().map(SweField::getElement)
+                .toArray(SweAbstractDataComponent[]::new);
+        final OmObservationConstellation observationConstellation = getObservationConstellation(multiObservation);
+        final List<OmObservation> observationCollection = new ArrayList<>(values.size());
+        final List<Value<?>> observedValues = new ArrayList<>(components.length);
+        for (final List<String> block : values) {
+            Time phenomenonTime = null;
+            TimeInstant resultTime = null;
+            observedValues.clear();
+            for (int i = 0; i < components.length; i++) {
+                final SweAbstractDataComponent dataComponent = components[i];
+                if (dataComponent instanceof SweTime) {
+                    if (isResultTime(dataComponent)) {
+                        resultTime = parseTimeInstant(block.get(i));
+                    } else if (phenomenonTime == null) {
+                        phenomenonTime = parseTimeInstant(block.get(i));
+                    }
+                } else if (dataComponent instanceof SweTimeRange) {
+                    phenomenonTime = parseTimeRange(block.get(i));
+                } else {
+                    observedValues.add(parseSweAbstractSimpleType(dataComponent, block, i));
+                }
+            }
+            for (final Value<?> observedValue : observedValues) {
+                observationCollection.add(createSingleValueObservation(multiObservation, phenomenonTime, resultTime,
+                        observationConstellation, observedValue));
+            }
+        }
+        return observationCollection;
+    }
+
+    private boolean isResultTime(SweAbstractDataComponent dataComponent) {
+        return dataComponent.isSetDefinition() && OmConstants.RESULT_TIME.equals(dataComponent.getDefinition());
+    }
+
+    private TimeInstant parseTimeInstant(String token) throws CodedException {
+        try {
+            return new TimeInstant(DateTimeHelper.parseIsoString2DateTime(token));
+        } catch (final Exception e) {
+            /*
+             * FIXME what is the valid exception code if the result is not
+             * correct?
+             */
+            throw new NoApplicableCodeException().causedBy(e).withMessage(ERROR_PARSING_TIME_LOG);
+        }
+    }
+
+    private TimePeriod parseTimeRange(String token) throws CodedException {
+        if (!token.contains("/")) {
+            throw new NoApplicableCodeException()
+                    .withMessage(ERROR_PARSING_TIME_LOG + " A time range is expected instead of an instance!");
+        }
+        try {
+            final String[] subTokens = token.split("/");
+            return new TimePeriod(DateTimeHelper.parseIsoString2DateTime(subTokens[0]),
+                    DateTimeHelper.parseIsoString2DateTime(subTokens[1]));
+        } catch (final Exception e) {
+            /*
+             * FIXME what is the valid exception code if the result is not
+             * correct?
+             */
+            throw new NoApplicableCodeException().causedBy(e).withMessage(ERROR_PARSING_TIME_LOG);
+        }
+    }
+
     private List<OmObservation> toList(ObservationStream stream) throws NoSuchElementException, OwsExceptionReport {
         List<OmObservation> observations = new ArrayList<>();
         while (stream.hasNext()) {
@@ -417,6 +516,23 @@ public class ObservationUnfolder {
         return map;
     }
 
+    private Value<?> parseSweAbstractSimpleType(SweAbstractDataComponent dataComponent, List<String> block,
+            int index) throws CodedException {
+        if (block instanceof ResultValuesTokenizer.Block) {
+            ResultValuesTokenizer.Block tokens = (ResultValuesTokenizer.Block) block;
+            if (dataComponent instanceof SweQuantity) {
+                Value<?> observedValue = new QuantityValue(tokens.getDouble(index));
+                observedValue.setUnit(((SweQuantity) dataComponent).getUom());
+                return observedValue;
+            } else if (dataComponent instanceof SweCount) {
+                return new CountValue(tokens.getInt(index));
+            } else if (dataComponent instanceof SweBoolean) {
+                return new BooleanValue(tokens.getBoolean(index));
+            }
+        }
+        return parseSweAbstractSimpleType(dataComponent, block.get(index));
+    }
+
     private Value<?> parseSweAbstractSimpleType(SweAbstractDataComponent dataComponent, String token)
             throws CodedException {
         Value<?> observedValue = null;
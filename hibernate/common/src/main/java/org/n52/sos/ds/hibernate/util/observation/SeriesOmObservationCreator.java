@@ -34,6 +34,7 @@ import org.hibernate.Session;
 import org.hibernate.query.Query;
 import org.n52.iceland.convert.ConverterException;
 import org.n52.janmayen.http.MediaType;
+import org.n52.series.db.beans.AbstractFeatureEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.shetland.ogc.gml.AbstractFeature;
 import org.n52.shetland.ogc.gml.time.TimeInstant;
@@ -44,6 +45,7 @@ import org.n52.shetland.ogc.om.OmObservationConstellation;
 import org.n52.shetland.ogc.om.SingleObservationValue;
 import org.n52.shetland.ogc.om.values.NilTemplateValue;
 import org.n52.shetland.ogc.ows.exception.CodedException;
+import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.sos.SosProcedureDescription;
 import org.n52.shetland.ogc.sos.request.AbstractObservationRequest;
@@ -66,10 +68,39 @@ public class SeriesOmObservationCreator extends AbstractOmObservationCreator {
 
     protected final DatasetEntity dataset;
 
+    private final ObservationTemplateCache templateCache;
+
     public SeriesOmObservationCreator(DatasetEntity series, AbstractObservationRequest request, Locale i18n,
             String pdf, OmObservationCreatorContext creatorContext, Session session) {
+        this(series, request, i18n, pdf, creatorContext, null, session);
+    }
+
+    /**
+     * Constructor for the creation of the templates of multiple series of a
+     * request, which share the procedures, features and units of the
+     * {@link ObservationTemplateCache}.
+     *
+     * @param series
+     *            the series
+     * @param request
+     *            the request
+     * @param i18n
+     *            the requested locale
+     * @param pdf
+     *            the procedure description format
+     * @param creatorContext
+     *            the creator context
+     * @param templateCache
+     *            the request scoped template cache, may be {@code null}
+     * @param session
+     *            Hibernate session
+     */
+    public SeriesOmObservationCreator(DatasetEntity series, AbstractObservationRequest request, Locale i18n,
+            String pdf, OmObservationCreatorContext creatorContext, ObservationTemplateCache templateCache,
+            Session session) {
         super(request, i18n, pdf, creatorContext, session);
         this.dataset = series;
+        this.templateCache = templateCache;
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -171,10 +202,43 @@ public class SeriesOmObservationCreator extends AbstractOmObservationCreator {
         }
     }
 
-    private String queryUnit() {
+    @Override
+    protected SosProcedureDescription<?> createProcedure(String identifier)
+            throws ConverterException, OwsExceptionReport {
+        if (templateCache == null) {
+            return super.createProcedure(identifier);
+        }
+        return templateCache.getProcedure(identifier, () -> {
+            // the procedure is fetched with the dataset
+            if (dataset.getProcedure() != null && identifier.equals(dataset.getProcedure().getIdentifier())) {
+                return createProcedure(dataset.getProcedure());
+            }
+            return super.createProcedure(identifier);
+        });
+    }
+
+    @Override
+    protected AbstractFeature createFeatureOfInterest(AbstractFeatureEntity foi) throws OwsExceptionReport {
+        if (templateCache == null) {
+            return super.createFeatureOfInterest(foi);
+        }
+        try {
+            return templateCache.getFeature(foi.getIdentifier(), () -> super.createFeatureOfInterest(foi));
+        } catch (ConverterException e) {
+            throw new NoApplicableCodeException().causedBy(e);
+        }
+    }
+
+    private String queryUnit() throws OwsExceptionReport, ConverterException {
         String property = dataset.getObservableProperty().getIdentifier();
         String procedure = dataset.getProcedure().getIdentifier();
+        if (templateCache == null) {
+            return queryUnit(property, procedure);
+        }
+        return templateCache.getUnit(property, procedure, () -> queryUnit(property, procedure));
+    }
 
+    private String queryUnit(String property, String procedure) {
         if (HibernateHelper.isNamedQuerySupported(SQL_QUERY_GET_UNIT_FOR_OBSERVABLE_PROPERTY_PROCEDURE_SERIES,
                 getSession())) {
             Query namedQuery = getSession().getNamedQuery(SQL_QUERY_GET_UNIT_FOR_OBSERVABLE_PROPERTY_PROCEDURE_SERIES);
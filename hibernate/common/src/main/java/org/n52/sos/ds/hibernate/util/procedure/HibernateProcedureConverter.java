@@ -124,6 +124,12 @@ public class HibernateProcedureConverter extends AbstractProcedureConverter<Proc
                     .causedBy(new IllegalArgumentException("Parameter 'procedure' should not be null!"))
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
         }
+        return getCachedOrCreate(procedure.getIdentifier(), requestedDescriptionFormat, version, i18n, null,
+                () -> createDescription(procedure, requestedDescriptionFormat, version, i18n, session));
+    }
+
+    private SosProcedureDescription<?> createDescription(ProcedureEntity procedure, String requestedDescriptionFormat,
+            String version, Locale i18n, Session session) throws OwsExceptionReport {
         if (procedure.hasProcedureHistory()) {
             return createSosProcedureDescriptionFromValidProcedureTime(procedure, requestedDescriptionFormat,
                     procedure.getProcedureHistory().stream().filter(h -> h.getEndTime() == null).findFirst().get(),
@@ -168,6 +174,15 @@ public class HibernateProcedureConverter extends AbstractProcedureConverter<Proc
     public SosProcedureDescription<?> createSosProcedureDescriptionFromValidProcedureTime(ProcedureEntity procedure,
             String requestedDescriptionFormat, ProcedureHistoryEntity vpt, String version, Locale i18n,
             Session session) throws OwsExceptionReport {
+        return getCachedOrCreate(procedure.getIdentifier(), requestedDescriptionFormat, version, i18n,
+                vpt != null ? getValidTime(vpt) : null,
+                () -> createDescriptionFromValidProcedureTime(procedure, requestedDescriptionFormat, vpt, version, i18n,
+                        session));
+    }
+
+    private SosProcedureDescription<?> createDescriptionFromValidProcedureTime(ProcedureEntity procedure,
+            String requestedDescriptionFormat, ProcedureHistoryEntity vpt, String version, Locale i18n,
+            Session session) throws OwsExceptionReport {
         if (vpt != null) {
             checkOutputFormatWithDescriptionFormat(procedure.getIdentifier(), vpt, requestedDescriptionFormat,
                     getFormat(vpt));
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.util.DateTimeHelper;
+import org.n52.sos.ds.cache.DatasetChangeTracker.DatasetChanges;
+import org.n52.sos.ds.hibernate.ExtendedHibernateTestCase;
+import org.n52.sos.ds.hibernate.H2Configuration;
+import org.n52.sos.ds.hibernate.util.HibernateMetadataCache;
+import org.n52.sos.ds.hibernate.util.HibernateObservationBuilder;
+
+/**
+ * Test the change detection of {@link DatasetChangeTracker}.
+ */
+public class DatasetChangeTrackerTest extends ExtendedHibernateTestCase {
+
+    private static final DateTime TIME = DateTimeHelper.parseIsoString2DateTime("2019-10-01T12:00:00.000Z");
+
+    private final MutableClock clock = new MutableClock();
+
+    private final DatasetChangeTracker tracker = new DatasetChangeTracker(clock);
+
+    @Before
+    public void initMetadata() {
+        Session session = getSession();
+        try {
+            HibernateMetadataCache.init(session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @After
+    public void clearDatasets() throws OwsExceptionReport {
+        Session session = getSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            for (Object o : session.createCriteria(DatasetEntity.class).list()) {
+                ((DatasetEntity) o).setFirstObservation(null);
+                ((DatasetEntity) o).setLastObservation(null);
+            }
+            session.flush();
+            for (Object o : session.createCriteria(getObservationClass()).list()) {
+                session.delete(o);
+            }
+            for (Object o : session.createCriteria(DatasetEntity.class).list()) {
+                session.delete(o);
+            }
+            session.flush();
+            transaction.commit();
+        } catch (HibernateException he) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw he;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        H2Configuration.recreate();
+    }
+
+    @Test
+    public void should_not_detect_changes_without_recorded_state() {
+        assertThat(tracker.isInitialized(), is(false));
+        assertThat(tracker.isCompleteUpdateDue(Duration.ZERO), is(true));
+        assertThat(detectChanges().isPresent(), is(false));
+    }
+
+    @Test
+    public void should_detect_no_changes_of_unchanged_datasets() throws OwsExceptionReport {
+        insertObservations("1", TIME);
+        record();
+        assertThat(tracker.isInitialized(), is(true));
+        assertThat(detectChanges().get().isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_detect_added_datasets() throws OwsExceptionReport {
+        record();
+        insertObservations("1", TIME);
+        DatasetChanges changes = detectChanges().get();
+        assertThat(changes.getOfferings(), hasSize(2));
+        assertThat(changes.getProcedures(), hasSize(1));
+        assertThat(changes.getFeatures(), hasSize(1));
+        assertThat(changes.getPhenomena(), hasSize(1));
+    }
+
+    @Test
+    public void should_detect_changed_value_times() throws OwsExceptionReport {
+        insertObservations("1", TIME);
+        setValueTimes(TIME, TIME);
+        record();
+        insertObservations("2", TIME.plusHours(1));
+        setValueTimes(TIME, TIME.plusHours(1));
+        assertThat(detectChanges().get().getOfferings(), hasSize(2));
+    }
+
+    @Test
+    public void should_detect_changed_last_observation() throws OwsExceptionReport {
+        List<DataEntity<?>> observations = insertObservations("1", TIME);
+        record();
+        updateDataset(observations.get(0).getDataset().getId(),
+                dataset -> dataset.setLastObservation(observations.get(0)));
+        DatasetChanges changes = detectChanges().get();
+        assertThat(changes.getOfferings(), hasSize(1));
+        assertThat(changes.getProcedures(), hasSize(1));
+    }
+
+    @Test
+    public void should_not_detect_backfilled_observations() throws OwsExceptionReport {
+        insertObservations("1", TIME);
+        insertObservations("3", TIME.plusHours(2));
+        setValueTimes(TIME, TIME.plusHours(2));
+        record();
+        // backfilled observations do not change the dataset, the complete update applies them
+        insertObservations("2", TIME.plusHours(1));
+        assertThat(detectChanges().get().isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_detect_changed_published_flag() throws OwsExceptionReport {
+        List<DataEntity<?>> observations = insertObservations("1", TIME);
+        record();
+        updateDataset(observations.get(0).getDataset().getId(), dataset -> dataset.setPublished(false));
+        DatasetChanges changes = detectChanges().get();
+        assertThat(changes.getOfferings(), hasSize(1));
+        assertThat(changes.getProcedures(), hasSize(1));
+    }
+
+    @Test
+    public void should_not_detect_changes_if_datasets_were_removed() throws OwsExceptionReport {
+        List<DataEntity<?>> observations = insertObservations("1", TIME);
+        record();
+        updateDataset(observations.get(0).getDataset().getId(), dataset -> dataset.setDeleted(true));
+        assertThat(detectChanges().isPresent(), is(false));
+    }
+
+    @Test
+    public void should_detect_changes_since_last_commit() throws OwsExceptionReport {
+        insertObservations("1", TIME);
+        record();
+        insertObservations("2", TIME.plusHours(1));
+        setValueTimes(TIME, TIME.plusHours(1));
+        DatasetChanges changes = detectChanges().get();
+        assertThat(changes.isEmpty(), is(false));
+        tracker.commit(changes);
+        assertThat(detectChanges().get().isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_require_complete_update_after_interval() {
+        Duration interval = Duration.ofMinutes(60);
+        record();
+        assertThat(tracker.isCompleteUpdateDue(interval), is(false));
+        clock.advance(Duration.ofMinutes(59));
+        assertThat(tracker.isCompleteUpdateDue(interval), is(false));
+        assertThat(tracker.isCompleteUpdateDue(Duration.ZERO), is(false));
+        clock.advance(Duration.ofMinutes(1));
+        assertThat(tracker.isCompleteUpdateDue(interval), is(true));
+        assertThat(tracker.isCompleteUpdateDue(Duration.ZERO), is(false));
+        record();
+        assertThat(tracker.isCompleteUpdateDue(interval), is(false));
+        tracker.reset();
+        assertThat(tracker.isInitialized(), is(false));
+        assertThat(tracker.isCompleteUpdateDue(interval), is(true));
+    }
+
+    private void record() {
+        Session session = getSession();
+        try {
+            tracker.record(session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private Optional<DatasetChanges> detectChanges() {
+        Session session = getSession();
+        try {
+            return tracker.detectChanges(session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private List<DataEntity<?>> insertObservations(String id, DateTime time) throws OwsExceptionReport {
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            List<DataEntity<?>> observations =
+                    new HibernateObservationBuilder(session, getDaoFactory()).createObservation(id, time);
+            transaction.commit();
+            return observations;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private void setValueTimes(DateTime first, DateTime last) {
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            for (Object o : session.createCriteria(DatasetEntity.class).list()) {
+                DatasetEntity dataset = (DatasetEntity) o;
+                dataset.setFirstValueAt(first.toDate());
+                dataset.setLastValueAt(last.toDate());
+                session.update(dataset);
+            }
+            transaction.commit();
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private void updateDataset(Long id, Consumer<DatasetEntity> update) {
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            DatasetEntity dataset = session.get(DatasetEntity.class, id);
+            update.accept(dataset);
+            session.update(dataset);
+            transaction.commit();
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.parse("2019-10-01T12:00:00Z");
+
+        void advance(Duration duration) {
+            this.instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
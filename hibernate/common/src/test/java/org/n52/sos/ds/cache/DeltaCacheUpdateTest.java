@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.cache;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.n52.sos.ds.hibernate.util.HibernateObservationBuilder.FEATURE_OF_INTEREST;
+import static org.n52.sos.ds.hibernate.util.HibernateObservationBuilder.OBSERVABLE_PROPERTY;
+import static org.n52.sos.ds.hibernate.util.HibernateObservationBuilder.OFFERING_1;
+import static org.n52.sos.ds.hibernate.util.HibernateObservationBuilder.OFFERING_2;
+import static org.n52.sos.ds.hibernate.util.HibernateObservationBuilder.PROCEDURE;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.dataset.DatasetType;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.util.CollectionHelper;
+import org.n52.shetland.util.DateTimeHelper;
+import org.n52.sos.cache.SosWritableContentCache;
+import org.n52.sos.ds.cache.DatasetChangeTracker.DatasetChanges;
+import org.n52.sos.ds.hibernate.ExtendedHibernateTestCase;
+import org.n52.sos.ds.hibernate.H2Configuration;
+import org.n52.sos.ds.hibernate.util.HibernateMetadataCache;
+import org.n52.sos.ds.hibernate.util.HibernateObservationBuilder;
+import org.n52.sos.util.GeometryHandler;
+
+/**
+ * Test that {@link DeltaCacheUpdate} only updates the cache entries referenced
+ * by changed datasets.
+ */
+public class DeltaCacheUpdateTest extends ExtendedHibernateTestCase {
+
+    private static final DateTime TIME = DateTimeHelper.parseIsoString2DateTime("2019-10-01T12:00:00.000Z");
+
+    private final DatasetChangeTracker tracker = new DatasetChangeTracker();
+
+    private final HibernateSessionStore sessionStore = new HibernateSessionStore() {
+        @Override
+        public Session getSession() {
+            return ExtendedHibernateTestCase.getSession();
+        }
+
+        @Override
+        public void returnSession(Session session) {
+            ExtendedHibernateTestCase.returnSession(session);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    };
+
+    private GeometryHandler geometryHandler;
+
+    private SosWritableContentCache cache;
+
+    @Before
+    public void init() {
+        Session session = getSession();
+        try {
+            HibernateMetadataCache.init(session);
+        } finally {
+            returnSession(session);
+        }
+        geometryHandler = new GeometryHandler();
+        geometryHandler.setAuthority("EPSG");
+        geometryHandler.setStorageEpsg(4326);
+        geometryHandler.setSpatialDatasource(true);
+        geometryHandler.init();
+        cache = mock(SosWritableContentCache.class);
+    }
+
+    @After
+    public void clearDatasets() throws OwsExceptionReport {
+        Session session = getSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            for (Object o : session.createCriteria(getObservationClass()).list()) {
+                session.delete(o);
+            }
+            for (Object o : session.createCriteria(DatasetEntity.class).list()) {
+                session.delete(o);
+            }
+            session.flush();
+            transaction.commit();
+        } catch (HibernateException he) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw he;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        H2Configuration.recreate();
+    }
+
+    @Test
+    public void should_update_entities_of_added_datasets() throws OwsExceptionReport {
+        record();
+        insertObservations("1", TIME);
+        execute(detectChanges());
+        verify(cache).addOffering(OFFERING_1);
+        verify(cache).addOffering(OFFERING_2);
+        verify(cache).addProcedure(PROCEDURE);
+        verify(cache).addFeatureOfInterest(FEATURE_OF_INTEREST);
+        verify(cache).addPublishedObservableProperty(OBSERVABLE_PROPERTY);
+        verify(cache).setMinPhenomenonTime(notNull());
+        verify(cache).setMaxPhenomenonTime(notNull());
+    }
+
+    @Test
+    public void should_only_update_offerings_of_changed_datasets() throws OwsExceptionReport {
+        List<DataEntity<?>> observations = insertObservations("1", TIME);
+        record();
+        DataEntity<?> changed = observations.stream()
+                .filter(o -> OFFERING_1.equals(o.getDataset().getOffering().getIdentifier()))
+                .findFirst().get();
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            DatasetEntity dataset = session.get(DatasetEntity.class, changed.getDataset().getId());
+            dataset.setPublished(false);
+            session.update(dataset);
+            transaction.commit();
+        } finally {
+            returnSession(session);
+        }
+        execute(detectChanges());
+        verify(cache).addOffering(OFFERING_1);
+        verify(cache, never()).addOffering(OFFERING_2);
+        verify(cache).addProcedure(PROCEDURE);
+    }
+
+    @Test
+    public void should_remove_published_flags_of_unpublished_datasets() throws OwsExceptionReport {
+        insertObservations("1", TIME);
+        record();
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            for (Object o : session.createCriteria(DatasetEntity.class).list()) {
+                DatasetEntity dataset = (DatasetEntity) o;
+                dataset.setDatasetType(DatasetType.timeseries);
+                dataset.setPublished(false);
+                session.update(dataset);
+            }
+            transaction.commit();
+        } finally {
+            returnSession(session);
+        }
+        execute(detectChanges());
+        verify(cache).removePublishedOffering(OFFERING_1);
+        verify(cache).removePublishedOffering(OFFERING_2);
+        verify(cache).removePublishedProcedure(PROCEDURE);
+        verify(cache).removePublishedFeatureOfInterest(FEATURE_OF_INTEREST);
+        verify(cache).removePublishedObservableProperty(OBSERVABLE_PROPERTY);
+        verify(cache, never()).addPublishedOffering(anyString());
+        verify(cache, never()).addPublishedProcedure(anyString());
+        verify(cache, never()).addPublishedFeatureOfInterest(anyString());
+        verify(cache, never()).addPublishedObservableProperty(anyString());
+    }
+
+    @Test
+    public void should_not_update_entities_without_changes() throws OwsExceptionReport {
+        insertObservations("1", TIME);
+        record();
+        execute(detectChanges());
+        verify(cache, never()).addOffering(anyString());
+        verify(cache, never()).addProcedure(anyString());
+        verify(cache, never()).addFeatureOfInterest(anyString());
+        verify(cache, never()).addPublishedObservableProperty(anyString());
+    }
+
+    private void execute(DatasetChanges changes) {
+        List<OwsExceptionReport> errors = CollectionHelper.synchronizedList();
+        Session session = getSession();
+        try {
+            DeltaCacheUpdate update = new DeltaCacheUpdate(2, Locale.ENGLISH, sessionStore, geometryHandler, changes);
+            update.setCache(cache);
+            update.setErrors(errors);
+            update.setSession(session);
+            update.execute();
+        } finally {
+            returnSession(session);
+        }
+        assertThat(errors, is(empty()));
+    }
+
+    private void record() {
+        Session session = getSession();
+        try {
+            tracker.record(session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private DatasetChanges detectChanges() {
+        Session session = getSession();
+        try {
+            return tracker.detectChanges(session).get();
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private List<DataEntity<?>> insertObservations(String id, DateTime time) throws OwsExceptionReport {
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            List<DataEntity<?>> observations =
+                    new HibernateObservationBuilder(session, getDaoFactory()).createObservation(id, time);
+            transaction.commit();
+            return observations;
+        } finally {
+            returnSession(session);
+        }
+    }
+}
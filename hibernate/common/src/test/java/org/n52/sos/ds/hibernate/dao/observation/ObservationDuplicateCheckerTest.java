@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.PhenomenonEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.gml.time.TimeInstant;
+import org.n52.shetland.ogc.om.AbstractPhenomenon;
+import org.n52.shetland.ogc.om.OmCompositePhenomenon;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.om.SingleObservationValue;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.om.values.QuantityValue;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.SosProcedureDescriptionUnknownType;
+
+public class ObservationDuplicateCheckerTest {
+
+    private static final String PROCEDURE = "procedure";
+
+    private static final String FEATURE = "feature";
+
+    private static final String PROPERTY_1 = "property1";
+
+    private static final String PROPERTY_2 = "property2";
+
+    private final Session session = Mockito.mock(Session.class);
+
+    @Test
+    public void should_preload_each_series_with_its_own_time_span() throws OwsExceptionReport {
+        DatasetEntity first = createDataset(1L, PROPERTY_1);
+        DatasetEntity second = createDataset(2L, PROPERTY_2);
+        RecordingChecker checker = new RecordingChecker(false);
+        checker.addTimeSpan(Arrays.asList(createObservation(PROPERTY_1, 2000L), createObservation(PROPERTY_2, 90000L),
+                createObservation(PROPERTY_1, 1000L)));
+
+        assertThat(checker.check(first, createData(1000L), session), is(true));
+        assertThat(checker.check(first, createData(2000L), session), is(true));
+        assertThat(checker.check(second, createData(90000L), session), is(true));
+
+        assertThat(checker.queries, contains("1:1000-2000", "2:90000-90000"));
+    }
+
+    @Test
+    public void should_query_observations_outside_of_the_preloaded_time_span() throws OwsExceptionReport {
+        DatasetEntity first = createDataset(1L, PROPERTY_1);
+        RecordingChecker checker = new RecordingChecker(false);
+        checker.addTimeSpan(Collections.singletonList(createObservation(PROPERTY_1, 1000L)));
+
+        assertThat(checker.check(first, createData(1000L), session), is(true));
+        assertThat(checker.check(first, createData(5000L), session), is(true));
+
+        assertThat(checker.queries, contains("1:1000-1000", "1:5000-5000"));
+    }
+
+    @Test
+    public void should_query_each_observation_of_series_without_time_span() throws OwsExceptionReport {
+        DatasetEntity second = createDataset(2L, PROPERTY_2);
+        RecordingChecker checker = new RecordingChecker(false);
+        checker.addTimeSpan(Collections.singletonList(createObservation(PROPERTY_1, 1000L)));
+
+        assertThat(checker.check(second, createData(1000L), session), is(true));
+        assertThat(checker.check(second, createData(2000L), session), is(true));
+
+        assertThat(checker.queries, contains("2:1000-1000", "2:2000-2000"));
+    }
+
+    @Test
+    public void should_preload_component_series_of_composite_phenomenon() throws OwsExceptionReport {
+        OmCompositePhenomenon composite = new OmCompositePhenomenon("composite");
+        composite.addPhenomenonComponent(new OmObservableProperty(PROPERTY_1));
+        composite.addPhenomenonComponent(new OmObservableProperty(PROPERTY_2));
+        RecordingChecker checker = new RecordingChecker(false);
+        checker.addTimeSpan(Collections.singletonList(createObservation(composite, 3000L)));
+
+        assertThat(checker.check(createDataset(2L, PROPERTY_2), createData(3000L), session), is(true));
+
+        assertThat(checker.queries, contains("2:3000-3000"));
+    }
+
+    @Test
+    public void should_skip_existing_observations() throws OwsExceptionReport {
+        DatasetEntity first = createDataset(1L, PROPERTY_1);
+        RecordingChecker checker = new RecordingChecker(true);
+        checker.existing.add(new Object[] { new Date(1000L), new Date(1000L), new Date(1000L), null, null });
+        checker.addTimeSpan(Arrays.asList(createObservation(PROPERTY_1, 1000L), createObservation(PROPERTY_1, 2000L)));
+
+        assertThat(checker.check(first, createData(1000L), session), is(false));
+        assertThat(checker.check(first, createData(2000L), session), is(true));
+        assertThat(checker.getSkipped(), is(1));
+    }
+
+    @Test
+    public void should_skip_duplicates_within_the_request() throws OwsExceptionReport {
+        DatasetEntity first = createDataset(1L, PROPERTY_1);
+        RecordingChecker checker = new RecordingChecker(true);
+        checker.addTimeSpan(Collections.singletonList(createObservation(PROPERTY_1, 1000L)));
+
+        assertThat(checker.check(first, createData(1000L), session), is(true));
+        assertThat(checker.check(first, createData(1000L), session), is(false));
+        assertThat(checker.getSkipped(), is(1));
+        assertThat(checker.queries.size(), is(1));
+    }
+
+    @Test(expected = OwsExceptionReport.class)
+    public void should_throw_exception_for_duplicates_if_not_skipped() throws OwsExceptionReport {
+        DatasetEntity first = createDataset(1L, PROPERTY_1);
+        RecordingChecker checker = new RecordingChecker(false);
+        checker.addTimeSpan(Collections.singletonList(createObservation(PROPERTY_1, 1000L)));
+
+        checker.check(first, createData(1000L), session);
+        checker.check(first, createData(1000L), session);
+    }
+
+    @Test
+    public void should_compare_heights_independent_of_scale() throws OwsExceptionReport {
+        DatasetEntity first = createDataset(1L, PROPERTY_1);
+        RecordingChecker checker = new RecordingChecker(true);
+        checker.existing.add(new Object[] { new Date(1000L), new Date(1000L), new Date(1000L),
+            new BigDecimal("10.0"), new BigDecimal("10.0") });
+        checker.addTimeSpan(Collections.singletonList(createObservation(PROPERTY_1, 1000L)));
+
+        DataEntity<?> sameHeight = createData(1000L);
+        sameHeight.setVerticalFrom(new BigDecimal("10.00"));
+        sameHeight.setVerticalTo(BigDecimal.TEN);
+        DataEntity<?> otherHeight = createData(1000L);
+        otherHeight.setVerticalFrom(new BigDecimal("20"));
+        otherHeight.setVerticalTo(new BigDecimal("20"));
+
+        assertThat(checker.check(first, sameHeight, session), is(false));
+        assertThat(checker.check(first, otherHeight, session), is(true));
+    }
+
+    @Test
+    public void should_not_check_unpersisted_series() throws OwsExceptionReport {
+        RecordingChecker checker = new RecordingChecker(false);
+        checker.addTimeSpan(Collections.singletonList(createObservation(PROPERTY_1, 1000L)));
+
+        assertThat(checker.check(createDataset(null, PROPERTY_1), createData(1000L), session), is(true));
+        assertThat(checker.queries, is(empty()));
+    }
+
+    private DatasetEntity createDataset(Long id, String observableProperty) {
+        ProcedureEntity procedure = new ProcedureEntity();
+        procedure.setIdentifier(PROCEDURE);
+        PhenomenonEntity phenomenon = new PhenomenonEntity();
+        phenomenon.setIdentifier(observableProperty);
+        FeatureEntity feature = new FeatureEntity();
+        feature.setIdentifier(FEATURE);
+        DatasetEntity dataset = new DatasetEntity();
+        dataset.setId(id);
+        dataset.setProcedure(procedure);
+        dataset.setObservableProperty(phenomenon);
+        dataset.setFeature(feature);
+        return dataset;
+    }
+
+    private DataEntity<?> createData(long time) {
+        QuantityDataEntity observation = new QuantityDataEntity();
+        observation.setSamplingTimeStart(new Date(time));
+        observation.setSamplingTimeEnd(new Date(time));
+        observation.setResultTime(new Date(time));
+        observation.setValue(BigDecimal.ONE);
+        return observation;
+    }
+
+    private OmObservation createObservation(String observableProperty, long time) {
+        return createObservation(new OmObservableProperty(observableProperty), time);
+    }
+
+    private OmObservation createObservation(AbstractPhenomenon observableProperty, long time) {
+        OmObservationConstellation constellation = new OmObservationConstellation();
+        constellation.setProcedure(new SosProcedureDescriptionUnknownType(PROCEDURE, "format", "xml"));
+        constellation.setObservableProperty(observableProperty);
+        constellation.setFeatureOfInterest(new SamplingFeature(new CodeWithAuthority(FEATURE)));
+        OmObservation observation = new OmObservation();
+        observation.setObservationConstellation(constellation);
+        observation.setValue(new SingleObservationValue<>(new TimeInstant(new DateTime(time)),
+                new QuantityValue(1.0)));
+        return observation;
+    }
+
+    private static class RecordingChecker extends ObservationDuplicateChecker {
+
+        private final List<String> queries = new ArrayList<>();
+
+        private final List<Object[]> existing = new ArrayList<>();
+
+        RecordingChecker(boolean skipDuplicates) {
+            super(skipDuplicates);
+        }
+
+        @Override
+        protected List<Object[]> queryIdentities(DatasetEntity dataset, Date from, Date to, Session session) {
+            queries.add(dataset.getId() + ":" + from.getTime() + "-" + to.getTime());
+            return existing;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation.series;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.hibernate.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+
+public class SeriesFirstLastValueUpdatesTest {
+
+    private final Session session = Mockito.mock(Session.class);
+
+    private final AbstractSeriesDAO seriesDAO = Mockito.mock(AbstractSeriesDAO.class);
+
+    private DatasetEntity first;
+
+    private DatasetEntity second;
+
+    @Before
+    public void init() {
+        first = createDataset(1L);
+        second = createDataset(2L);
+        Mockito.when(session.get(DatasetEntity.class, 1L)).thenReturn(first);
+        Mockito.when(session.get(DatasetEntity.class, 2L)).thenReturn(second);
+    }
+
+    @Test
+    public void should_update_each_series_once_with_out_of_order_values() {
+        QuantityDataEntity firstMiddle = createObservation(2000L);
+        QuantityDataEntity firstEarliest = createObservation(1000L);
+        QuantityDataEntity firstLatest = createObservation(3000L);
+        QuantityDataEntity secondLatest = createObservation(9000L);
+        QuantityDataEntity secondEarliest = createObservation(5000L);
+
+        SeriesFirstLastValueUpdates updates = new SeriesFirstLastValueUpdates();
+        updates.add(first, firstMiddle);
+        updates.add(second, secondLatest);
+        updates.add(first, firstLatest);
+        updates.add(second, secondEarliest);
+        updates.add(first, firstEarliest);
+        assertThat(updates.size(), is(2));
+
+        updates.apply(seriesDAO, session);
+
+        SeriesFirstLastValues firstValues = captureValues(first);
+        assertThat(firstValues.getFirst(), sameInstance(firstEarliest));
+        assertThat(firstValues.getLast(), sameInstance(firstLatest));
+        assertThat(firstValues.getSamplingTimeStart(), equalTo(new Date(1000L)));
+        assertThat(firstValues.getSamplingTimeEnd(), equalTo(new Date(3000L)));
+        assertThat(firstValues.getResultTimeStart(), equalTo(new Date(1000L)));
+        assertThat(firstValues.getResultTimeEnd(), equalTo(new Date(3000L)));
+
+        SeriesFirstLastValues secondValues = captureValues(second);
+        assertThat(secondValues.getFirst(), sameInstance(secondEarliest));
+        assertThat(secondValues.getLast(), sameInstance(secondLatest));
+        assertThat(secondValues.getSamplingTimeStart(), equalTo(new Date(5000L)));
+        assertThat(secondValues.getSamplingTimeEnd(), equalTo(new Date(9000L)));
+
+        Mockito.verify(session, Mockito.times(1)).flush();
+        assertThat(updates.isEmpty(), is(true));
+    }
+
+    @Test
+    public void should_skip_series_which_do_not_exist() {
+        SeriesFirstLastValueUpdates updates = new SeriesFirstLastValueUpdates();
+        updates.add(createDataset(3L), createObservation(1000L));
+        updates.add(first, createObservation(2000L));
+
+        updates.apply(seriesDAO, session);
+
+        Mockito.verify(seriesDAO, Mockito.times(1)).updateSeriesWithFirstLatestValues(
+                ArgumentMatchers.any(DatasetEntity.class), ArgumentMatchers.any(SeriesFirstLastValues.class),
+                ArgumentMatchers.eq(session));
+        captureValues(first);
+    }
+
+    @Test
+    public void should_not_flush_without_updates() {
+        new SeriesFirstLastValueUpdates().apply(seriesDAO, session);
+        Mockito.verify(session, Mockito.never()).flush();
+        Mockito.verify(seriesDAO, Mockito.never()).updateSeriesWithFirstLatestValues(
+                ArgumentMatchers.any(DatasetEntity.class), ArgumentMatchers.any(SeriesFirstLastValues.class),
+                ArgumentMatchers.any(Session.class));
+    }
+
+    private SeriesFirstLastValues captureValues(DatasetEntity dataset) {
+        ArgumentCaptor<SeriesFirstLastValues> captor = ArgumentCaptor.forClass(SeriesFirstLastValues.class);
+        Mockito.verify(seriesDAO).updateSeriesWithFirstLatestValues(ArgumentMatchers.same(dataset), captor.capture(),
+                ArgumentMatchers.eq(session));
+        return captor.getValue();
+    }
+
+    private DatasetEntity createDataset(long id) {
+        DatasetEntity dataset = new DatasetEntity();
+        dataset.setId(id);
+        return dataset;
+    }
+
+    private QuantityDataEntity createObservation(long time) {
+        QuantityDataEntity observation = new QuantityDataEntity();
+        observation.setSamplingTimeStart(new Date(time));
+        observation.setSamplingTimeEnd(new Date(time));
+        observation.setResultTime(new Date(time));
+        observation.setValue(BigDecimal.valueOf(time));
+        return observation;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation.series;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.junit.Test;
+import org.n52.series.db.beans.QuantityDataEntity;
+
+public class SeriesFirstLastValuesTest {
+
+    @Test
+    public void should_keep_first_and_last_observation() {
+        QuantityDataEntity second = createObservation(2000L);
+        QuantityDataEntity first = createObservation(1000L);
+        QuantityDataEntity third = createObservation(3000L);
+        SeriesFirstLastValues values = new SeriesFirstLastValues(second).add(first).add(third);
+        assertThat(values.getFirst(), sameInstance(first));
+        assertThat(values.getLast(), sameInstance(third));
+        assertThat(values.getSamplingTimeStart(), equalTo(new Date(1000L)));
+        assertThat(values.getSamplingTimeEnd(), equalTo(new Date(3000L)));
+        assertThat(values.getResultTimeStart(), equalTo(new Date(1000L)));
+        assertThat(values.getResultTimeEnd(), equalTo(new Date(3000L)));
+    }
+
+    @Test
+    public void should_keep_first_added_observation_for_equal_times() {
+        QuantityDataEntity first = createObservation(1000L);
+        QuantityDataEntity duplicate = createObservation(1000L);
+        SeriesFirstLastValues values = new SeriesFirstLastValues(first).add(duplicate);
+        assertThat(values.getFirst(), sameInstance(first));
+        assertThat(values.getLast(), sameInstance(first));
+    }
+
+    private QuantityDataEntity createObservation(long time) {
+        QuantityDataEntity observation = new QuantityDataEntity();
+        observation.setSamplingTimeStart(new Date(time));
+        observation.setSamplingTimeEnd(new Date(time));
+        observation.setResultTime(new Date(time));
+        observation.setValue(BigDecimal.valueOf(time));
+        return observation;
+    }
+}
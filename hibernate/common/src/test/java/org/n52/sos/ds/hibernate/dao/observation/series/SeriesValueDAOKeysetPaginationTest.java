@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.dao.observation.series;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.request.GetObservationRequest;
+import org.n52.shetland.util.DateTimeHelper;
+import org.n52.sos.ds.hibernate.ExtendedHibernateTestCase;
+import org.n52.sos.ds.hibernate.H2Configuration;
+import org.n52.sos.ds.hibernate.dao.DaoFactory;
+import org.n52.sos.ds.hibernate.util.HibernateMetadataCache;
+import org.n52.sos.ds.hibernate.util.HibernateObservationBuilder;
+import org.n52.sos.ds.hibernate.util.ScrollableIterable;
+
+/**
+ * Test the keyset pagination of
+ * {@link AbstractSeriesValueDAO#getStreamingSeriesValuesAfter} at chunk
+ * boundaries with equal phenomenon times.
+ */
+public class SeriesValueDAOKeysetPaginationTest extends ExtendedHibernateTestCase {
+
+    private static final int[] HOURS = { 0, 0, 0, 1, 1, 1, 1, 2, 3, 3 };
+
+    private final GetObservationRequest request = new GetObservationRequest();
+
+    private DaoFactory daoFactory;
+
+    private List<Long> expected;
+
+    private long series;
+
+    @Before
+    public void fillObservations() throws OwsExceptionReport {
+        Session session = getSession();
+        HibernateMetadataCache.init(session);
+        Transaction transaction = null;
+        try {
+            daoFactory = getDaoFactory();
+            transaction = session.beginTransaction();
+            HibernateObservationBuilder b = new HibernateObservationBuilder(session, daoFactory);
+            DateTime begin = DateTimeHelper.parseIsoString2DateTime("2019-10-01T12:00:00.000Z");
+            expected = new ArrayList<>();
+            // insert in reverse order so that the ids do not follow the
+            // phenomenon times
+            for (int i = HOURS.length - 1; i >= 0; --i) {
+                DataEntity<?> observation = b.createObservation(String.valueOf(i), begin.plusHours(HOURS[i])).get(0);
+                series = observation.getDataset().getId();
+                expected.add(observation.getId());
+            }
+            expected.sort((a, c) -> compare(session, a, c));
+            session.flush();
+            transaction.commit();
+        } catch (HibernateException he) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw he;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @After
+    public void clearObservations() throws OwsExceptionReport {
+        Session session = null;
+        Transaction transaction = null;
+        try {
+            session = getSession();
+            transaction = session.beginTransaction();
+            try (ScrollableIterable<DataEntity<?>> i =
+                    ScrollableIterable.fromCriteria(session.createCriteria(getObservationClass()))) {
+                for (DataEntity<?> o : i) {
+                    session.delete(o);
+                }
+            }
+            session.flush();
+            transaction.commit();
+        } catch (HibernateException he) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw he;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        H2Configuration.recreate();
+    }
+
+    @Test
+    public void should_return_each_value_once_for_chunk_sizes_splitting_equal_times() throws OwsExceptionReport {
+        for (int chunkSize = 1; chunkSize <= HOURS.length + 1; chunkSize++) {
+            assertThat("chunk size " + chunkSize, queryAll(chunkSize), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void should_return_empty_chunk_after_last_value() throws OwsExceptionReport {
+        Session session = getSession();
+        try {
+            AbstractSeriesValueDAO valueDAO = daoFactory.getValueDAO();
+            List<DataEntity<?>> all =
+                    valueDAO.getStreamingSeriesValuesAfter(request, series, null, HOURS.length, null, session);
+            assertThat(all.size(), is(HOURS.length));
+            assertThat(valueDAO.getStreamingSeriesValuesAfter(request, series, null, HOURS.length,
+                    all.get(all.size() - 1), session).isEmpty(), is(true));
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private List<Long> queryAll(int chunkSize) throws OwsExceptionReport {
+        Session session = getSession();
+        try {
+            AbstractSeriesValueDAO valueDAO = daoFactory.getValueDAO();
+            List<Long> ids = new ArrayList<>();
+            DataEntity<?> lastValue = null;
+            List<DataEntity<?>> chunk;
+            do {
+                chunk = valueDAO.getStreamingSeriesValuesAfter(request, series, null, chunkSize, lastValue,
+                        session);
+                assertThat(chunk.size(), lessThanOrEqualTo(chunkSize));
+                for (DataEntity<?> value : chunk) {
+                    ids.add(value.getId());
+                    lastValue = value;
+                }
+            } while (chunk.size() == chunkSize);
+            return ids;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private int compare(Session session, Long a, Long b) {
+        DataEntity<?> first = session.get(DataEntity.class, a);
+        DataEntity<?> second = session.get(DataEntity.class, b);
+        int compare = first.getSamplingTimeStart().compareTo(second.getSamplingTimeStart());
+        return compare != 0 ? compare : a.compareTo(b);
+    }
+}
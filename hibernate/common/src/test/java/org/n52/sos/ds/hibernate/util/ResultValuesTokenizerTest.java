@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ResultValuesTokenizerTest {
+
+    private final ResultValuesTokenizer tokenizer = new ResultValuesTokenizer(",", "@@");
+
+    @Test
+    public void should_split_blocks_and_tokens() {
+        assertThat(tokenizer.tokenize("2@@2020-01-01T00:00:00Z,1.0@@2020-01-01T01:00:00Z,2.0"),
+                contains(Arrays.asList("2020-01-01T00:00:00Z", "1.0"), Arrays.asList("2020-01-01T01:00:00Z", "2.0")));
+    }
+
+    @Test
+    public void should_keep_blocks_without_count() {
+        assertThat(tokenizer.tokenize("a,1@@b,2"), contains(Arrays.asList("a", "1"), Arrays.asList("b", "2")));
+    }
+
+    @Test
+    public void should_skip_empty_blocks_and_keep_empty_tokens() {
+        assertThat(tokenizer.tokenize("1@@a,@@@@"), contains(Arrays.asList("a", "")));
+    }
+
+    @Test
+    public void should_match_separators_literally() {
+        ResultValuesTokenizer regex = new ResultValuesTokenizer(".", "|");
+        assertThat(regex.tokenize("a.1|b.2"), contains(Arrays.asList("a", "1"), Arrays.asList("b", "2")));
+    }
+
+    @Test
+    public void should_parse_numbers_like_the_jdk() {
+        String[] doubles = { "0", "-0", "1.5", "-273.15", "+42", ".5", "1.", "0.1", "123456789.012345",
+            "1234567890.1234567", "1e-3", " 2.5 ", "NaN", "-Infinity", "4.9E-324" };
+        ResultValuesTokenizer.Block block = tokenize(doubles);
+        for (int i = 0; i < doubles.length; i++) {
+            assertThat(doubles[i], block.getDouble(i), is(Double.parseDouble(doubles[i])));
+        }
+        String[] ints = { "0", "-7", "+12", "123456789", "2147483647", "-2147483648" };
+        block = tokenize(ints);
+        for (int i = 0; i < ints.length; i++) {
+            assertThat(ints[i], block.getInt(i), is(Integer.parseInt(ints[i])));
+        }
+    }
+
+    @Test
+    public void should_parse_booleans_like_the_jdk() {
+        String[] booleans = { "true", "TRUE", "True", "false", "1", "", "truth" };
+        ResultValuesTokenizer.Block block = tokenize(booleans);
+        for (int i = 0; i < booleans.length; i++) {
+            assertThat(booleans[i], block.getBoolean(i), is(Boolean.parseBoolean(booleans[i])));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void should_reject_invalid_doubles() {
+        tokenize(new String[] { "1", "1.2.3" }).getDouble(1);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void should_reject_invalid_ints() {
+        tokenize(new String[] { "1", "1.5" }).getInt(1);
+    }
+
+    @Test
+    public void should_return_empty_list() {
+        assertThat(tokenizer.tokenize(""), empty());
+    }
+
+    private ResultValuesTokenizer.Block tokenize(String[] tokens) {
+        List<List<String>> blocks = tokenizer.tokenize(String.join(",", tokens));
+        assertThat(blocks.size(), is(1));
+        return (ResultValuesTokenizer.Block) blocks.get(0);
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util.observation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.n52.iceland.convert.ConverterException;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+import org.n52.shetland.ogc.sos.SosProcedureDescriptionUnknownType;
+
+public class ObservationTemplateCacheTest {
+
+    private final ObservationTemplateCache cache = new ObservationTemplateCache();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    @Test
+    public void should_create_procedure_once_per_identifier() throws OwsExceptionReport, ConverterException {
+        SosProcedureDescription<?> first = cache.getProcedure("p1", () -> procedure("p1"));
+        SosProcedureDescription<?> second = cache.getProcedure("p1", () -> procedure("p1"));
+        SosProcedureDescription<?> other = cache.getProcedure("p2", () -> procedure("p2"));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(other, is(not(sameInstance(first))));
+        assertThat(created.get(), is(2));
+    }
+
+    @Test
+    public void should_create_feature_once_per_identifier() throws OwsExceptionReport, ConverterException {
+        AbstractFeature first = cache.getFeature("f1", () -> feature("f1"));
+        AbstractFeature second = cache.getFeature("f1", () -> feature("f1"));
+        AbstractFeature other = cache.getFeature("f2", () -> feature("f2"));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(other, is(not(sameInstance(first))));
+        assertThat(created.get(), is(2));
+    }
+
+    @Test
+    public void should_query_unit_once_per_property_and_procedure() throws OwsExceptionReport, ConverterException {
+        assertThat(cache.getUnit("op", "p1", () -> unit("m")), is("m"));
+        assertThat(cache.getUnit("op", "p1", () -> unit("km")), is("m"));
+        assertThat(cache.getUnit("op", "p2", () -> unit("km")), is("km"));
+        assertThat(cache.getUnit("op2", "p1", () -> unit("s")), is("s"));
+        assertThat(created.get(), is(3));
+    }
+
+    @Test
+    public void should_cache_missing_unit() throws OwsExceptionReport, ConverterException {
+        assertThat(cache.getUnit("op", "p1", () -> unit(null)), is(nullValue()));
+        assertThat(cache.getUnit("op", "p1", () -> unit("m")), is(nullValue()));
+        assertThat(created.get(), is(1));
+    }
+
+    @Test
+    public void should_not_cache_failed_creation() throws OwsExceptionReport, ConverterException {
+        try {
+            cache.getProcedure("p1", () -> {
+                throw new NoApplicableCodeException();
+            });
+            fail("exception expected");
+        } catch (NoApplicableCodeException e) {
+            // expected
+        }
+        SosProcedureDescription<?> procedure = cache.getProcedure("p1", () -> procedure("p1"));
+        assertThat(procedure.getIdentifier(), is("p1"));
+        assertThat(created.get(), is(1));
+    }
+
+    private SosProcedureDescription<?> procedure(String identifier) {
+        created.incrementAndGet();
+        return new SosProcedureDescriptionUnknownType(identifier, "format", null);
+    }
+
+    private AbstractFeature feature(String identifier) {
+        created.incrementAndGet();
+        return new SamplingFeature(new CodeWithAuthority(identifier));
+    }
+
+    private String unit(String unit) {
+        created.incrementAndGet();
+        return unit;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util.observation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.MultiObservationValues;
+import org.n52.shetland.ogc.om.OmConstants;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.om.values.SweDataArrayValue;
+import org.n52.shetland.ogc.om.values.Value;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sensorML.SensorML;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+import org.n52.shetland.ogc.swe.SweDataArray;
+import org.n52.shetland.ogc.swe.SweDataRecord;
+import org.n52.shetland.ogc.swe.SweField;
+import org.n52.shetland.ogc.swe.encoding.SweTextEncoding;
+import org.n52.shetland.ogc.swe.simpleType.SweBoolean;
+import org.n52.shetland.ogc.swe.simpleType.SweCategory;
+import org.n52.shetland.ogc.swe.simpleType.SweCount;
+import org.n52.shetland.ogc.swe.simpleType.SweQuantity;
+import org.n52.shetland.ogc.swe.simpleType.SweText;
+import org.n52.shetland.ogc.swe.simpleType.SweTime;
+import org.n52.shetland.ogc.swe.simpleType.SweTimeRange;
+import org.n52.sos.util.GeometryHandler;
+import org.n52.svalbard.util.SweHelper;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Test that the unfolding of simple structures returns the same observations
+ * as the generic unfolding.
+ */
+public class ObservationUnfolderTest {
+
+    private static final String PROPERTY = "http://www.52north.org/test/observableProperty/";
+
+    private final SweHelper sweHelper = new SweHelper();
+
+    private final GeometryHandler geometryHandler = mock(GeometryHandler.class);
+
+    @Test
+    public void should_unfold_simple_values_like_generic_path() throws OwsExceptionReport {
+        SweDataRecord elementType = new SweDataRecord();
+        elementType.addField(new SweField("phenomenonTime",
+                new SweTime().setUom(OmConstants.PHEN_UOM_ISO8601).setDefinition(OmConstants.PHENOMENON_TIME)));
+        elementType.addField(new SweField("resultTime",
+                new SweTime().setUom(OmConstants.PHEN_UOM_ISO8601).setDefinition(OmConstants.RESULT_TIME)));
+        elementType.addField(new SweField("quantity", new SweQuantity().setUom("m").setDefinition(PROPERTY + 1)));
+        elementType.addField(new SweField("count", new SweCount().setDefinition(PROPERTY + 2)));
+        elementType.addField(new SweField("boolean", new SweBoolean().setDefinition(PROPERTY + 3)));
+        elementType.addField(
+                new SweField("category", new SweCategory().setCodeSpace("codespace").setDefinition(PROPERTY + 4)));
+        elementType.addField(new SweField("text", new SweText().setDefinition(PROPERTY + 5)));
+        OmObservation observation = createObservation(elementType,
+                Lists.newArrayList("2018-11-30T10:00:00Z", "2018-11-30T10:05:00Z", "1.5", "1", "true", "a", "x"),
+                Lists.newArrayList("2018-11-30T11:00:00Z", "2018-11-30T11:05:00Z", "2.5", "2", "false", "b", "y"));
+
+        assertUnfoldedEqually(observation, elementType, 10);
+    }
+
+    @Test
+    public void should_unfold_time_ranges_like_generic_path() throws OwsExceptionReport {
+        SweDataRecord elementType = new SweDataRecord();
+        elementType.addField(new SweField("phenomenonTime", new SweTimeRange().setUom(OmConstants.PHEN_UOM_ISO8601)
+                .setDefinition(OmConstants.PHENOMENON_TIME)));
+        elementType.addField(new SweField("quantity", new SweQuantity().setUom("m").setDefinition(PROPERTY)));
+        OmObservation observation = createObservation(elementType,
+                Lists.newArrayList("2018-11-30T10:00:00Z/2018-11-30T11:00:00Z", "1.5"),
+                Lists.newArrayList("2018-11-30T11:00:00Z/2018-11-30T12:00:00Z", "2.5"),
+                Lists.newArrayList("2018-11-30T12:00:00Z/2018-11-30T13:00:00Z", "3.5"));
+
+        assertUnfoldedEqually(observation, elementType, 3);
+    }
+
+    private void assertUnfoldedEqually(OmObservation observation, SweDataRecord elementType, int count)
+            throws OwsExceptionReport {
+        ObservationUnfolder unfolder = new ObservationUnfolder(observation, sweHelper, geometryHandler);
+        assertThat(unfolder.isSimpleStructure(elementType), is(true));
+
+        List<OmObservation> simple = unfolder.unfold();
+        List<OmObservation> generic = new GenericObservationUnfolder(observation).unfold();
+
+        assertThat(simple.size(), is(count));
+        assertThat(generic.size(), is(count));
+        for (int i = 0; i < count; i++) {
+            OmObservation expected = generic.get(i);
+            OmObservation actual = simple.get(i);
+            assertThat(actual.getPhenomenonTime(), is(equalTo(expected.getPhenomenonTime())));
+            assertThat(actual.getResultTime(), is(equalTo(expected.getResultTime())));
+            assertThat(actual.getValidTime(), is(equalTo(expected.getValidTime())));
+            Value<?> expectedValue = expected.getValue().getValue();
+            Value<?> actualValue = actual.getValue().getValue();
+            assertThat(actualValue, is(instanceOf(expectedValue.getClass())));
+            assertThat(actualValue.getValue(), is(equalTo(expectedValue.getValue())));
+            assertThat(actualValue.getUnit(), is(equalTo(expectedValue.getUnit())));
+            OmObservationConstellation expectedConstellation = expected.getObservationConstellation();
+            OmObservationConstellation actualConstellation = actual.getObservationConstellation();
+            assertThat(actualConstellation.getObservablePropertyIdentifier(),
+                    is(equalTo(expectedConstellation.getObservablePropertyIdentifier())));
+            assertThat(actualConstellation.getProcedureIdentifier(),
+                    is(equalTo(expectedConstellation.getProcedureIdentifier())));
+            assertThat(actualConstellation.getFeatureOfInterestIdentifier(),
+                    is(equalTo(expectedConstellation.getFeatureOfInterestIdentifier())));
+            assertThat(actualConstellation.getObservationType(),
+                    is(equalTo(expectedConstellation.getObservationType())));
+        }
+    }
+
+    @SafeVarargs
+    private final OmObservation createObservation(SweDataRecord elementType, List<String>... blocks) {
+        OmObservationConstellation constellation = new OmObservationConstellation();
+        constellation.setObservationType(OmConstants.OBS_TYPE_SWE_ARRAY_OBSERVATION);
+        constellation.setObservableProperty(new OmObservableProperty(PROPERTY));
+        constellation.setProcedure(new SosProcedureDescription<>(new SensorML().setIdentifier("procedure")));
+        constellation.setFeatureOfInterest(new SamplingFeature(new CodeWithAuthority("feature")));
+
+        SweDataArray dataArray = new SweDataArray();
+        for (List<String> block : blocks) {
+            dataArray.add(block);
+        }
+        dataArray.setElementType(elementType);
+        dataArray.setEncoding(new SweTextEncoding());
+
+        SweDataArrayValue arrayValue = new SweDataArrayValue();
+        arrayValue.setValue(dataArray);
+        MultiObservationValues<SweDataArray> value = new MultiObservationValues<>();
+        value.setValue(arrayValue);
+
+        OmObservation observation = new OmObservation();
+        observation.setObservationConstellation(constellation);
+        observation.setValue(value);
+        return observation;
+    }
+
+    private class GenericObservationUnfolder extends ObservationUnfolder {
+        GenericObservationUnfolder(OmObservation observation) {
+            super(observation, sweHelper, geometryHandler);
+        }
+
+        @Override
+        protected boolean isSimpleStructure(SweDataRecord elementType) {
+            return false;
+        }
+    }
+}
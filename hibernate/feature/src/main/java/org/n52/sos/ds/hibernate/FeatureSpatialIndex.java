@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.index.strtree.STRtree;
+
+/**
+ * Immutable in-memory spatial index of the feature geometries in storage EPSG
+ * for non spatial datasources. The geometries are stored in an
+ * {@link STRtree}. Features inserted or changed after the tree was built are
+ * kept as overrides that are checked linearly, until the index is rebuilt.
+ *
+ * @since 5.1.1
+ */
+public final class FeatureSpatialIndex {
+
+    private static final int MIN_REBUILD_THRESHOLD = 1000;
+
+    private final STRtree tree;
+
+    private final int size;
+
+    private final Map<String, Geometry> overrides;
+
+    private FeatureSpatialIndex(STRtree tree, int size, Map<String, Geometry> overrides) {
+        this.tree = tree;
+        this.size = size;
+        this.overrides = overrides;
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param geometries
+     *            the feature geometries by feature identifier
+     * @return the index
+     */
+    public static FeatureSpatialIndex build(Map<String, Geometry> geometries) {
+        STRtree tree = new STRtree();
+        int size = 0;
+        for (Map.Entry<String, Geometry> entry : geometries.entrySet()) {
+            if (isIndexable(entry.getValue())) {
+                tree.insert(entry.getValue().getEnvelopeInternal(), new Entry(entry.getKey(), entry.getValue()));
+                size++;
+            }
+        }
+        tree.build();
+        return new FeatureSpatialIndex(tree, size, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a copy of this index with updated features.
+     *
+     * @param identifiers
+     *            the identifiers of the updated features
+     * @param geometries
+     *            the current geometries of the updated features, features
+     *            without geometry are removed from the index
+     * @return the updated index
+     */
+    public FeatureSpatialIndex update(Collection<String> identifiers, Map<String, Geometry> geometries) {
+        Map<String, Geometry> updated = new HashMap<>(this.overrides);
+        for (String identifier : identifiers) {
+            Geometry geometry = geometries.get(identifier);
+            updated.put(identifier, isIndexable(geometry) ? geometry : null);
+        }
+        return new FeatureSpatialIndex(tree, size, Collections.unmodifiableMap(updated));
+    }
+
+    /**
+     * @return if the overrides are too many to be checked linearly
+     */
+    public boolean needsRebuild() {
+        return overrides.size() > Math.max(MIN_REBUILD_THRESHOLD, size / 10);
+    }
+
+    /**
+     * Get the features whose geometry is contained in any of the filter
+     * geometries.
+     *
+     * @param filters
+     *            the filter geometries in storage EPSG
+     * @return the feature identifiers
+     */
+    public Set<String> getContained(Collection<Geometry> filters) {
+        return query(filters, (filter, geometry) -> filter.contains(geometry));
+    }
+
+    /**
+     * Get the features whose geometry envelope intersects the envelope of any
+     * of the filter geometries.
+     *
+     * @param filters
+     *            the filter geometries in storage EPSG
+     * @return the feature identifiers
+     */
+    public Set<String> getCandidates(Collection<Geometry> filters) {
+        return query(filters, (filter, geometry) -> filter.getEnvelopeInternal()
+                .intersects(geometry.getEnvelopeInternal()));
+    }
+
+    private Set<String> query(Collection<Geometry> filters, BiPredicate<Geometry, Geometry> predicate) {
+        Set<String> identifiers = new LinkedHashSet<>();
+        for (Geometry filter : filters) {
+            Envelope envelope = filter.getEnvelopeInternal();
+            for (Object item : tree.query(envelope)) {
+                Entry entry = (Entry) item;
+                if (!overrides.containsKey(entry.identifier) && predicate.test(filter, entry.geometry)) {
+                    identifiers.add(entry.identifier);
+                }
+            }
+            overrides.forEach((identifier, geometry) -> {
+                if (geometry != null && predicate.test(filter, geometry)) {
+                    identifiers.add(identifier);
+                }
+            });
+        }
+        return identifiers;
+    }
+
+    private static boolean isIndexable(Geometry geometry) {
+        return geometry != null && !geometry.isEmpty();
+    }
+
+    private static final class Entry {
+        private final String identifier;
+        private final Geometry geometry;
+
+        Entry(String identifier, Geometry geometry) {
+            this.identifier = identifier;
+            this.geometry = geometry;
+        }
+    }
+}
@@ -36,6 +36,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
@@ -52,9 +54,12 @@ import org.locationtech.jts.geom.Geometry;
 import org.n52.faroe.annotation.Configurable;
 import org.n52.faroe.annotation.Setting;
 import org.n52.iceland.cache.ContentCacheController;
+import org.n52.iceland.ds.ConnectionProvider;
 import org.n52.iceland.exception.ows.concrete.NotYetSupportedException;
 import org.n52.iceland.i18n.I18NDAORepository;
 import org.n52.iceland.i18n.I18NSettings;
+import org.n52.janmayen.event.Event;
+import org.n52.janmayen.event.EventListener;
 import org.n52.janmayen.i18n.LocaleHelper;
 import org.n52.series.db.beans.AbstractFeatureEntity;
 import org.n52.series.db.beans.FeatureEntity;
@@ -80,19 +85,29 @@ import org.n52.sos.ds.hibernate.util.HibernateConstants;
 import org.n52.sos.ds.hibernate.util.HibernateHelper;
 import org.n52.sos.ds.hibernate.util.QueryHelper;
 import org.n52.sos.ds.hibernate.util.SpatialRestrictions;
+import org.n52.sos.event.events.CompleteCacheUpdateFinished;
+import org.n52.sos.event.events.DeleteObservationEvent;
+import org.n52.sos.event.events.FeatureInsertion;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.sos.event.events.SensorDeletion;
 import org.n52.sos.service.SosSettings;
 import org.n52.sos.util.GeometryHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 
 @Configurable
 public class HibernateFeatureQueryHandler
-        implements FeatureQueryHandler, HibernateSqlQueryConstants {
+        implements FeatureQueryHandler, HibernateSqlQueryConstants, EventListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HibernateFeatureQueryHandler.class);
 
+    private static final Set<Class<? extends Event>> EVENT_TYPES =
+            ImmutableSet.of(FeatureInsertion.class, ObservationInsertion.class, CompleteCacheUpdateFinished.class,
+                    SensorDeletion.class, DeleteObservationEvent.class);
+
     private Locale defaultLocale;
 
     private boolean showAllLanguages;
@@ -109,11 +124,20 @@ public class HibernateFeatureQueryHandler
 
     private ContentCacheController contentCacheController;
 
+    private HibernateSessionHolder sessionHolder;
+
+    private volatile FeatureSpatialIndex spatialIndex;
+
     @Inject
     public void setDaoFactory(DaoFactory daoFactory) {
         this.daoFactory = daoFactory;
     }
 
+    @Inject
+    public void setConnectionProvider(ConnectionProvider connectionProvider) {
+        this.sessionHolder = new HibernateSessionHolder(connectionProvider);
+    }
+
     @Inject
     public void setI18NDAORepository(I18NDAORepository i18NDAORepository) {
         this.i18NDAORepository = i18NDAORepository;
@@ -175,24 +199,15 @@ public class HibernateFeatureQueryHandler
                 }
                 return c.list();
             } else {
-                Criteria c = session.createCriteria(FeatureEntity.class);
-                if (queryObject.isSetFeatures()) {
-                    c.add(Restrictions.in(FeatureEntity.IDENTIFIER, queryObject.getFeatures()));
-                }
                 List<String> identifiers = new LinkedList<>();
                 if (queryObject.isSetSpatialFilters()) {
                     SpatialFilter filter = queryObject.getSpatialFitler();
-                    final List<AbstractFeatureEntity> features = daoFactory.getFeatureDAO().getFeatures(session);
                     final Geometry envelope = getGeometryHandler().getFilterForNonSpatialDatasource(filter);
                     FeatureVisitorContext context = getDefaultContext()
                             .setSession(session)
                             .setRequestedLanguage(queryObject.getI18N());
-                    for (final AbstractFeatureEntity feature : features) {
-                        final Geometry geom = new HibernateGeometryVisitor(context).visit(feature);
-                        if (geom != null && !geom.isEmpty() && envelope.contains(geom)) {
-                            identifiers.add(feature.getIdentifier());
-                        }
-                    }
+                    identifiers.addAll(getSpatialIndex(session, context)
+                            .getContained(Collections.singleton(envelope)));
                 }
                 return identifiers;
             }
@@ -426,8 +441,23 @@ public class HibernateFeatureQueryHandler
                 envelopes.add(getGeometryHandler().getFilterForNonSpatialDatasource(filter));
             }
         }
+        Collection<String> identifiers = queryObject.getFeatures();
+        if (hasSpatialFilter) {
+            // only create the features whose geometry may match the filter
+            FeatureVisitorContext context = getDefaultContext()
+                    .setSession(session)
+                    .setRequestedLanguage(queryObject.getI18N());
+            Set<String> candidates = getSpatialIndex(session, context).getCandidates(envelopes);
+            if (queryObject.isSetFeatures()) {
+                candidates.retainAll(queryObject.getFeatures());
+            }
+            if (candidates.isEmpty()) {
+                return featureMap;
+            }
+            identifiers = candidates;
+        }
         final List<AbstractFeatureEntity> featuresOfInterest =
-                daoFactory.getFeatureDAO().getFeatureOfInterestObjects(queryObject.getFeatures(), session);
+                daoFactory.getFeatureDAO().getFeatureOfInterestObjects(identifiers, session);
         for (final AbstractFeatureEntity feature : featuresOfInterest) {
             final AbstractSamplingFeature sosAbstractFeature =
                     (AbstractSamplingFeature) createSosAbstractFeature(feature, queryObject, session);
@@ -469,6 +499,125 @@ public class HibernateFeatureQueryHandler
         return geometryHandler;
     }
 
+    @Override
+    public Set<Class<? extends Event>> getTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public void handle(Event event) {
+        if (sessionHolder == null || getGeometryHandler().isSpatialDatasource()) {
+            return;
+        }
+        if (event instanceof CompleteCacheUpdateFinished || event instanceof SensorDeletion) {
+            // features may have been deleted
+            updateSpatialIndex(null);
+        } else if (event instanceof DeleteObservationEvent) {
+            DeleteObservationEvent deletion = (DeleteObservationEvent) event;
+            String identifier = deletion.isSetDeletedObservation()
+                    ? deletion.getDeletedObservation().getObservationConstellation().getFeatureOfInterestIdentifier()
+                    : null;
+            // features that no longer exist are removed from the index
+            updateSpatialIndex(identifier != null ? Collections.singleton(identifier) : null);
+        } else if (event instanceof FeatureInsertion) {
+            updateSpatialIndex(((FeatureInsertion) event).getRequest().getFeatureMembers().stream()
+                    .map(AbstractFeature::getIdentifier).collect(Collectors.toSet()));
+        } else if (event instanceof ObservationInsertion) {
+            updateSpatialIndex(((ObservationInsertion) event).getRequest().getObservations().stream()
+                    .map(o -> o.getObservationConstellation().getFeatureOfInterestIdentifier())
+                    .filter(identifier -> identifier != null).collect(Collectors.toSet()));
+        }
+    }
+
+    /**
+     * Update the spatial index with the current geometries of the changed
+     * features and replace the current index with the result. The index is
+     * rebuilt if it does not exist yet, if the changed features are unknown or
+     * if the index collected too many changes.
+     *
+     * @param changed
+     *            the identifiers of the changed features or {@code null} to
+     *            rebuild the index
+     */
+    private void updateSpatialIndex(Collection<String> changed) {
+        if (changed != null && changed.isEmpty()) {
+            return;
+        }
+        Session session = null;
+        try {
+            session = sessionHolder.getSession();
+            FeatureVisitorContext context = getDefaultContext().setSession(session);
+            synchronized (this) {
+                FeatureSpatialIndex index = this.spatialIndex;
+                if (index != null && changed != null) {
+                    index = index.update(changed, getGeometries(
+                            daoFactory.getFeatureDAO().getFeatureOfInterestObjects(changed, session), context));
+                }
+                if (index == null || changed == null || index.needsRebuild()) {
+                    index = buildSpatialIndex(session, context);
+                }
+                this.spatialIndex = index;
+            }
+        } catch (OwsExceptionReport | HibernateException e) {
+            LOGGER.warn("Error updating the spatial feature index, it is rebuilt on next use", e);
+            this.spatialIndex = null;
+        } finally {
+            sessionHolder.returnSession(session);
+        }
+    }
+
+    /**
+     * Get the spatial index of the feature geometries for non spatial
+     * datasources. The index is maintained by the event listener: it is
+     * rebuilt after complete cache updates and sensor deletions, inserted,
+     * changed or deleted features are updated in a copy of the current index,
+     * which then replaces it. Only if no index exists yet, e.g. if the cache
+     * was loaded from a persisted file, it is built for the current query.
+     *
+     * @param session
+     *            Hibernate session
+     * @param context
+     *            the context to create the geometries
+     * @return the spatial index
+     * @throws OwsExceptionReport
+     *             If an error occurs while creating the geometries
+     */
+    protected FeatureSpatialIndex getSpatialIndex(Session session, FeatureVisitorContext context)
+            throws OwsExceptionReport {
+        FeatureSpatialIndex index = this.spatialIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            if (this.spatialIndex == null) {
+                this.spatialIndex = buildSpatialIndex(session, context);
+            }
+            return this.spatialIndex;
+        }
+    }
+
+    private FeatureSpatialIndex buildSpatialIndex(Session session, FeatureVisitorContext context)
+            throws OwsExceptionReport {
+        long start = System.currentTimeMillis();
+        FeatureSpatialIndex index =
+                FeatureSpatialIndex.build(getGeometries(daoFactory.getFeatureDAO().getFeatures(session), context));
+        LOGGER.debug("Built spatial feature index in {} ms", System.currentTimeMillis() - start);
+        return index;
+    }
+
+    private Map<String, Geometry> getGeometries(List<AbstractFeatureEntity> features, FeatureVisitorContext context)
+            throws OwsExceptionReport {
+        Map<String, Geometry> geometries = new HashMap<>(features.size());
+        HibernateGeometryVisitor visitor = new HibernateGeometryVisitor(context);
+        for (AbstractFeatureEntity feature : features) {
+            Geometry geometry = visitor.visit(feature);
+            if (geometry != null && !geometry.isEmpty()) {
+                geometries.put(feature.getIdentifier(), geometry);
+            }
+        }
+        return geometries;
+    }
+
     @Setting(SosSettings.CREATE_FOI_GEOM_FROM_SAMPLING_GEOMS)
     public void setCreateFeatureGeometryFromSamplingGeometries(boolean createFeatureGeometryFromSamplingGeometries) {
         this.createFeatureGeometryFromSamplingGeometries = createFeatureGeometryFromSamplingGeometries;
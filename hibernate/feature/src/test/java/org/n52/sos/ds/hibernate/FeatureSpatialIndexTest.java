@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+public class FeatureSpatialIndexTest {
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    private FeatureSpatialIndex index;
+
+    @Before
+    public void init() {
+        Map<String, Geometry> geometries = new HashMap<>();
+        geometries.put("a", point(1, 1));
+        geometries.put("b", point(5, 5));
+        geometries.put("c", factory.createLineString(
+                new Coordinate[] { new Coordinate(8, 8), new Coordinate(12, 12) }));
+        geometries.put("d", factory.createPoint());
+        index = FeatureSpatialIndex.build(geometries);
+    }
+
+    @Test
+    public void should_return_contained_features() {
+        assertThat(index.getContained(Collections.singleton(box(0, 0, 6, 6))), containsInAnyOrder("a", "b"));
+        assertThat(index.getContained(Collections.singleton(box(4, 4, 10, 10))), containsInAnyOrder("b"));
+        assertThat(index.getContained(Arrays.asList(box(0, 0, 2, 2), box(7, 7, 13, 13))),
+                containsInAnyOrder("a", "c"));
+        assertThat(index.getContained(Collections.singleton(box(20, 20, 30, 30))), is(empty()));
+    }
+
+    @Test
+    public void should_return_intersecting_candidates() {
+        assertThat(index.getCandidates(Collections.singleton(box(4, 4, 10, 10))), containsInAnyOrder("b", "c"));
+    }
+
+    @Test
+    public void should_apply_updates() {
+        Map<String, Geometry> geometries = new HashMap<>();
+        geometries.put("a", point(20, 20));
+        geometries.put("e", point(2, 2));
+        FeatureSpatialIndex updated = index.update(Arrays.asList("a", "b", "e"), geometries);
+
+        assertThat(updated.getContained(Collections.singleton(box(0, 0, 6, 6))), containsInAnyOrder("e"));
+        assertThat(updated.getContained(Collections.singleton(box(15, 15, 25, 25))), containsInAnyOrder("a"));
+        assertThat(index.getContained(Collections.singleton(box(0, 0, 6, 6))), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void should_remove_deleted_features() {
+        // deleted features have no geometry in the datasource anymore
+        FeatureSpatialIndex updated = index.update(Arrays.asList("a", "c"), Collections.emptyMap());
+
+        assertThat(updated.getContained(Collections.singleton(box(0, 0, 20, 20))), containsInAnyOrder("b"));
+        assertThat(updated.getCandidates(Collections.singleton(box(0, 0, 20, 20))), containsInAnyOrder("b"));
+
+        Map<String, Geometry> geometries = new HashMap<>();
+        geometries.put("a", point(1, 1));
+        FeatureSpatialIndex reinserted = updated.update(Collections.singleton("a"), geometries);
+        assertThat(reinserted.getContained(Collections.singleton(box(0, 0, 20, 20))), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void should_need_rebuild_after_many_updates() {
+        Map<String, Geometry> geometries = new HashMap<>();
+        for (int i = 0; i <= 1000; i++) {
+            geometries.put("f" + i, point(i, i));
+        }
+        assertThat(index.update(geometries.keySet(), geometries).needsRebuild(), is(true));
+        assertThat(index.update(Collections.singleton("f1"), geometries).needsRebuild(), is(false));
+    }
+
+    private Geometry point(double x, double y) {
+        return factory.createPoint(new Coordinate(x, y));
+    }
+
+    private Geometry box(double minX, double minY, double maxX, double maxY) {
+        return factory.toGeometry(new Envelope(minX, maxX, minY, maxY));
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeType;
+import org.n52.shetland.ogc.om.AbstractPhenomenon;
+import org.n52.shetland.ogc.om.NamedValue;
+import org.n52.shetland.ogc.om.OmCompositePhenomenon;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.om.values.Value;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * Striped locks for transactional insertions. Instead of serializing all
+ * insertions JVM-wide, only requests that write into the same dataset
+ * (procedure, observable property, feature of interest, offering) or create
+ * the same feature of interest are serialized. Requests for distinct datasets
+ * are executed and committed in parallel.
+ *
+ * Entities shared between datasets (procedures, observable properties,
+ * offerings, units, codespaces, observation types and parameters) are created
+ * on the fly, so requests are serialized on their natural keys, too. Once a
+ * request that used a shared entity is committed, the entity exists and its
+ * key is no longer locked.
+ *
+ * The locks of a request are always acquired in stripe order, so concurrent
+ * requests with overlapping datasets can not deadlock.
+ *
+ * @since 5.1.1
+ */
+public class DatasetInsertionLocks {
+
+    private static final int DEFAULT_STRIPES = 256;
+
+    private static final String DATASET_PREFIX = "dataset:";
+
+    private static final String FEATURE_PREFIX = "feature:";
+
+    private static final String PROCEDURE_PREFIX = "procedure:";
+
+    private static final String PROPERTY_PREFIX = "property:";
+
+    private static final String OFFERING_PREFIX = "offering:";
+
+    private static final String UNIT_PREFIX = "unit:";
+
+    private static final String CODESPACE_PREFIX = "codespace:";
+
+    private static final String OBSERVATION_TYPE_PREFIX = "observationType:";
+
+    private static final String PARAMETER_PREFIX = "parameter:";
+
+    private static final int MAX_COMMITTED_KEYS = 100000;
+
+    private static final Joiner KEY_JOINER = Joiner.on('|').useForNull("");
+
+    private final Striped<Lock> stripes;
+
+    private final Set<String> committedKeys = ConcurrentHashMap.newKeySet();
+
+    public DatasetInsertionLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public DatasetInsertionLocks(int stripes) {
+        this.stripes = Striped.lock(stripes);
+    }
+
+    /**
+     * Lock all datasets and features the observations would be inserted into.
+     * The returned {@link Lease} has to be released after the transaction is
+     * committed or rolled back.
+     *
+     * @param observations
+     *            the observations to insert
+     * @return the acquired locks
+     */
+    public Lease lock(Collection<OmObservation> observations) {
+        Set<String> keys = new LinkedHashSet<>();
+        Set<String> sharedKeys = new LinkedHashSet<>();
+        for (OmObservation observation : observations) {
+            if (observation.getObservationConstellation() != null) {
+                keys.addAll(getKeys(observation.getObservationConstellation()));
+            }
+            for (String key : getSharedEntityKeys(observation)) {
+                if (!committedKeys.contains(key)) {
+                    sharedKeys.add(key);
+                }
+            }
+        }
+        keys.addAll(sharedKeys);
+        Lease lease = lockKeys(keys);
+        lease.sharedKeys.addAll(sharedKeys);
+        return lease;
+    }
+
+    /**
+     * Lock the stripes of the keys in a deadlock free order.
+     *
+     * @param keys
+     *            the keys to lock
+     * @return the acquired locks
+     */
+    public Lease lockKeys(Iterable<String> keys) {
+        Deque<Lock> acquired = new LinkedList<>();
+        try {
+            // bulkGet returns the locks in stripe order and without duplicates
+            for (Lock lock : stripes.bulkGet(keys)) {
+                lock.lock();
+                acquired.push(lock);
+            }
+        } catch (RuntimeException e) {
+            new Lease(acquired, this).release();
+            throw e;
+        }
+        return new Lease(acquired, this);
+    }
+
+    protected Set<String> getKeys(OmObservationConstellation constellation) {
+        Set<String> keys = new LinkedHashSet<>();
+        String procedure = constellation.isSetProcedure() ? constellation.getProcedureIdentifier() : null;
+        String observableProperty = constellation.getObservableProperty() != null
+                ? constellation.getObservablePropertyIdentifier()
+                : null;
+        String feature = constellation.isSetFeatureOfInterest()
+                ? constellation.getFeatureOfInterestIdentifier()
+                : null;
+        // the insertion handlers store the observations in the dataset of the
+        // first offering
+        String offering = constellation.getOfferings() != null && !constellation.getOfferings().isEmpty()
+                ? constellation.getOfferings().iterator().next()
+                : null;
+        keys.add(DATASET_PREFIX + KEY_JOINER.join(procedure, observableProperty, feature, offering));
+        if (feature != null) {
+            // features are shared between datasets and are created on the fly
+            keys.add(FEATURE_PREFIX + feature);
+        }
+        return keys;
+    }
+
+    /**
+     * Get the natural keys of the shared entities which are created on the
+     * fly when the observation is inserted.
+     *
+     * @param observation
+     *            the observation
+     * @return the shared entity keys
+     */
+    protected Set<String> getSharedEntityKeys(OmObservation observation) {
+        Set<String> keys = new LinkedHashSet<>();
+        OmObservationConstellation constellation = observation.getObservationConstellation();
+        if (constellation != null) {
+            if (constellation.isSetProcedure()) {
+                keys.add(PROCEDURE_PREFIX + constellation.getProcedureIdentifier());
+            }
+            addPropertyKeys(constellation.getObservableProperty(), keys);
+            if (constellation.getOfferings() != null) {
+                for (String offering : constellation.getOfferings()) {
+                    keys.add(OFFERING_PREFIX + offering);
+                }
+            }
+            if (constellation.isSetObservationType()) {
+                keys.add(OBSERVATION_TYPE_PREFIX + constellation.getObservationType());
+            }
+            if (constellation.isSetFeatureOfInterest()) {
+                addCodespaceKeys(constellation.getFeatureOfInterest(), keys);
+            }
+        }
+        addCodespaceKeys(observation, keys);
+        if (observation.getValue() != null) {
+            addUnitKey(observation.getValue().getValue(), keys);
+        }
+        if (observation.isSetParameter()) {
+            for (NamedValue<?> parameter : observation.getParameter()) {
+                if (parameter.isSetName() && parameter.getName().isSetHref()) {
+                    keys.add(PARAMETER_PREFIX + parameter.getName().getHref());
+                }
+                addUnitKey(parameter.getValue(), keys);
+            }
+        }
+        return keys;
+    }
+
+    private void addPropertyKeys(AbstractPhenomenon phenomenon, Set<String> keys) {
+        if (phenomenon != null) {
+            keys.add(PROPERTY_PREFIX + phenomenon.getIdentifier());
+            if (phenomenon instanceof OmCompositePhenomenon) {
+                for (OmObservableProperty component : ((OmCompositePhenomenon) phenomenon)) {
+                    keys.add(PROPERTY_PREFIX + component.getIdentifier());
+                }
+            }
+        }
+    }
+
+    private void addCodespaceKeys(AbstractFeature feature, Set<String> keys) {
+        if (feature.isSetIdentifier() && feature.getIdentifierCodeWithAuthority().isSetCodeSpace()) {
+            keys.add(CODESPACE_PREFIX + feature.getIdentifierCodeWithAuthority().getCodeSpace());
+        }
+        if (feature.isSetName()) {
+            for (CodeType name : feature.getName()) {
+                if (name.isSetCodeSpace()) {
+                    keys.add(CODESPACE_PREFIX + name.getCodeSpace().toString());
+                }
+            }
+        }
+    }
+
+    private void addUnitKey(Value<?> value, Set<String> keys) {
+        if (value != null && value.isSetUnit()) {
+            keys.add(UNIT_PREFIX + value.getUnit());
+        }
+    }
+
+    /**
+     * Remember the shared entity keys of a committed request, the entities
+     * exist afterwards and do not need to be locked anymore.
+     */
+    private void committed(Collection<String> keys) {
+        if (committedKeys.size() > MAX_COMMITTED_KEYS) {
+            // entities may have been deleted in the meantime, start over
+            committedKeys.clear();
+        }
+        committedKeys.addAll(keys);
+    }
+
+    @VisibleForTesting
+    boolean isCommitted(String key) {
+        return committedKeys.contains(key);
+    }
+
+    @VisibleForTesting
+    Lock getLock(String key) {
+        return stripes.get(key);
+    }
+
+    /**
+     * The locks acquired for a single insertion request.
+     */
+    public static class Lease implements AutoCloseable {
+
+        private final Deque<Lock> locks;
+
+        private final DatasetInsertionLocks owner;
+
+        private final Set<String> sharedKeys = new LinkedHashSet<>();
+
+        Lease(Deque<Lock> locks, DatasetInsertionLocks owner) {
+            this.locks = locks;
+            this.owner = owner;
+        }
+
+        /**
+         * @return the locked keys of shared entities, which are not known to
+         *         exist
+         */
+        public Set<String> getSharedKeys() {
+            return Collections.unmodifiableSet(sharedKeys);
+        }
+
+        /**
+         * Mark the shared entities as existing after the transaction is
+         * committed. Has to be called before {@link #release()}.
+         */
+        public void committed() {
+            owner.committed(sharedKeys);
+        }
+
+        /**
+         * Release the locks in reverse acquisition order. Calling this
+         * method more than once has no effect.
+         */
+        public void release() {
+            while (!locks.isEmpty()) {
+                locks.pop().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+}
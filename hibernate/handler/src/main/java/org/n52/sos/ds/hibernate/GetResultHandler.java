@@ -28,6 +28,7 @@
  */
 package org.n52.sos.ds.hibernate;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -37,6 +38,7 @@ import javax.inject.Inject;
 
 import org.hibernate.Criteria;
 import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
 import org.hibernate.Session;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
@@ -63,8 +65,10 @@ import org.n52.sos.ds.hibernate.dao.DaoFactory;
 import org.n52.sos.ds.hibernate.util.HibernateHelper;
 import org.n52.sos.ds.hibernate.util.QueryHelper;
 import org.n52.sos.ds.hibernate.util.ResultHandlingHelper;
+import org.n52.sos.ds.hibernate.util.ScrollableIterable;
 import org.n52.sos.ds.hibernate.util.SosTemporalRestrictions;
 import org.n52.sos.ds.hibernate.util.SpatialRestrictions;
+import org.n52.sos.ds.hibernate.values.HibernateStreamingSettings;
 import org.n52.sos.exception.ows.concrete.UnsupportedOperatorException;
 import org.n52.sos.exception.ows.concrete.UnsupportedTimeException;
 import org.n52.sos.exception.ows.concrete.UnsupportedValueReferenceException;
@@ -87,6 +91,8 @@ public class GetResultHandler extends AbstractGetResultHandler implements Abstra
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GetResultHandler.class);
 
+    private static final int MAX_COUNT_LENGTH = Long.toString(Long.MAX_VALUE).length();
+
     private HibernateSessionHolder sessionHolder;
 
     private DaoFactory daoFactory;
@@ -97,6 +103,8 @@ public class GetResultHandler extends AbstractGetResultHandler implements Abstra
 
     private boolean supportsDatabaseEntities;
 
+    private boolean resultStreaming;
+
     public GetResultHandler() {
         super(SosConstants.SOS);
     }
@@ -116,6 +124,15 @@ public class GetResultHandler extends AbstractGetResultHandler implements Abstra
         this.strictSpatialFilteringProfile = strictSpatialFilteringProfile;
     }
 
+    @Setting(HibernateStreamingSettings.RESULT_STREAMING)
+    public void setResultStreaming(boolean resultStreaming) {
+        this.resultStreaming = resultStreaming;
+    }
+
+    public boolean isResultStreaming() {
+        return resultStreaming;
+    }
+
     @Override
     public void init() {
         this.supportsDatabaseEntities = HibernateHelper.isEntitySupported(ResultTemplateEntity.class);
@@ -183,13 +200,18 @@ public class GetResultHandler extends AbstractGetResultHandler implements Abstra
                 sosResultStructure = generateSosResultStructure(request.getObservedProperty(),
                         request.getOffering(), featureIdentifier, session);
             }
-            final List<DataEntity<?>> observations;
-            observations = querySeriesObservation(request, featureIdentifier, session);
-            response.setResultValues(getResultHandlingHelper().createResultValuesFromObservations(observations,
-                    sosResultEncoding, sosResultStructure, getProfileHandler().getActiveProfile()
-                            .getResponseNoDataPlaceholder(), session));
+            String noDataPlaceholder = getProfileHandler().getActiveProfile().getResponseNoDataPlaceholder();
+            if (isResultStreaming()) {
+                response.setResultValues(streamResultValues(request, featureIdentifier, sosResultEncoding,
+                        sosResultStructure, noDataPlaceholder, session));
+            } else {
+                final List<DataEntity<?>> observations;
+                observations = querySeriesObservation(request, featureIdentifier, session);
+                response.setResultValues(getResultHandlingHelper().createResultValuesFromObservations(observations,
+                        sosResultEncoding, sosResultStructure, noDataPlaceholder, session));
+            }
             return response;
-        } catch (final HibernateException he) {
+        } catch (final HibernateException | IOException he) {
             throw new NoApplicableCodeException().causedBy(he)
                     .withMessage("Error while querying result data!")
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
@@ -216,28 +238,109 @@ public class GetResultHandler extends AbstractGetResultHandler implements Abstra
     @SuppressWarnings("unchecked")
     protected List<DataEntity<?>> querySeriesObservation(GetResultRequest request,
             Collection<String> featureIdentifiers, Session session) throws OwsExceptionReport {
-        final Criteria c = createCriteriaFor(DataEntity.class, session);
-        addSpatialFilteringProfileRestrictions(c, request, session);
-        addParentChildRestriction(c);
+        final Criteria c = createSeriesObservationCriteria(request, featureIdentifiers, session);
+        if (c == null) {
+            return null;
+        }
+        c.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
+                .addOrder(Order.asc(DataEntity.PROPERTY_SAMPLING_TIME_START));
+        LOGGER.trace("QUERY queryObservation(request, featureIdentifiers): {}", HibernateHelper.getSqlString(c));
+        return c.list();
+
+    }
 
+    /**
+     * Write the result values of the series observations while the database
+     * cursor is open. The values are scrolled in order of the phenomenon time
+     * and evicted from the session after they are written, so that the
+     * observations are never loaded into memory at once. The element count is
+     * the number of written values and written afterwards into space reserved
+     * in front of the values, so it always matches the values even if
+     * observations are inserted concurrently.
+     *
+     * @param request
+     *            GetResult request
+     * @param featureIdentifiers
+     *            Set of feature identifiers
+     * @param sosResultEncoding
+     *            The ResultEncoding
+     * @param sosResultStructure
+     *            The ResultStructure
+     * @param noDataPlaceholder
+     *            The no data placeholder
+     * @param session
+     *            Hibernate session
+     * @return Result values
+     * @throws OwsExceptionReport
+     *             If an error occurs.
+     * @throws IOException
+     *             If an error occurs when writing the values
+     */
+    protected String streamResultValues(GetResultRequest request, Collection<String> featureIdentifiers,
+            SosResultEncoding sosResultEncoding, SosResultStructure sosResultStructure, String noDataPlaceholder,
+            Session session) throws OwsExceptionReport, IOException {
+        Criteria c = createSeriesObservationCriteria(request, featureIdentifiers, session);
+        if (c == null) {
+            return "";
+        }
+        // ordered by id within equal times, so that duplicated rows are
+        // consecutive and written once
+        c.addOrder(Order.asc(DataEntity.PROPERTY_SAMPLING_TIME_START))
+                .addOrder(Order.asc(DataEntity.PROPERTY_ID));
+        LOGGER.trace("QUERY streamResultValues(request, featureIdentifiers): {}", HibernateHelper.getSqlString(c));
+        // reserve the space for the element count, so the values are not
+        // shifted when it is written
+        StringBuilder resultValues = new StringBuilder();
+        resultValues.setLength(MAX_COUNT_LENGTH);
+        long written;
+        try (ScrollableIterable<DataEntity<?>> observations =
+                ScrollableIterable.fromResults(c.scroll(ScrollMode.FORWARD_ONLY))) {
+            written = getResultHandlingHelper().writeResultValuesFromObservations(observations,
+                    sosResultEncoding, sosResultStructure, noDataPlaceholder, resultValues, session);
+        }
+        if (written == 0) {
+            return "";
+        }
+        String count = Long.toString(written);
+        int start = MAX_COUNT_LENGTH - count.length();
+        for (int i = 0; i < count.length(); i++) {
+            resultValues.setCharAt(start + i, count.charAt(i));
+        }
+        return resultValues.substring(start);
+    }
+
+    /**
+     * Create the {@link Criteria} for the series observations depending on
+     * requested filters
+     *
+     * @param request
+     *            GetResult request
+     * @param featureIdentifiers
+     *            Set of feature identifiers
+     * @param session
+     *            Hibernate session
+     * @return {@link Criteria} or <code>null</code> if no series matches
+     * @throws OwsExceptionReport
+     *             If an error occurs.
+     */
+    private Criteria createSeriesObservationCriteria(GetResultRequest request, Collection<String> featureIdentifiers,
+            Session session) throws OwsExceptionReport {
         List<DatasetEntity> series = getDaoFactory().getSeriesDAO()
                 .getSeries(request, featureIdentifiers, session);
         if (CollectionHelper.isEmpty(series)) {
             return null;
-        } else {
-            c.add(Restrictions.in(DataEntity.PROPERTY_DATASET_ID, series.stream()
-                    .map(DatasetEntity::getId)
-                    .collect(Collectors.toSet())));
         }
-
+        final Criteria c = createCriteriaFor(DataEntity.class, session);
+        addSpatialFilteringProfileRestrictions(c, request, session);
+        addParentChildRestriction(c);
+        c.add(Restrictions.in(DataEntity.PROPERTY_DATASET_ID, series.stream()
+                .map(DatasetEntity::getId)
+                .collect(Collectors.toSet())));
         if (request.getTemporalFilter() != null && !request.getTemporalFilter()
                 .isEmpty()) {
             addTemporalFilter(c, request.getTemporalFilter());
         }
-
-        LOGGER.trace("QUERY queryObservation(request, featureIdentifiers): {}", HibernateHelper.getSqlString(c));
-        return c.list();
-
+        return c;
     }
 
     /**
@@ -284,22 +387,18 @@ public class GetResultHandler extends AbstractGetResultHandler implements Abstra
     }
 
     /**
-     * Create Hibernate Criteria for the class and add ascending of phenomenon
-     * start time
+     * Create Hibernate Criteria for the class for not deleted observations
      *
      * @param clazz
      *            The class for the Criteria
      * @param session
      *            Hibernate session
-     * @return Hibernate Criteria for the class and add ascending of phenomenon
-     *         start time
+     * @return Hibernate Criteria for the class
      */
     @SuppressWarnings("rawtypes")
     private Criteria createCriteriaFor(Class clazz, Session session) {
         return session.createCriteria(clazz)
-                .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
-                .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, false))
-                .addOrder(Order.asc(DataEntity.PROPERTY_SAMPLING_TIME_START));
+                .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, false));
     }
 
     private void addParentChildRestriction(Criteria c) {
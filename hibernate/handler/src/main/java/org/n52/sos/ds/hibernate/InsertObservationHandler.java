@@ -70,6 +70,8 @@ import org.n52.shetland.ogc.sos.response.InsertObservationResponse;
 import org.n52.sos.ds.AbstractInsertObservationHandler;
 import org.n52.sos.ds.hibernate.dao.DaoFactory;
 import org.n52.sos.ds.hibernate.dao.observation.AbstractObservationDAO;
+import org.n52.sos.ds.hibernate.dao.observation.ObservationDuplicateChecker;
+import org.n52.sos.ds.hibernate.dao.observation.series.SeriesFirstLastValueUpdates;
 import org.n52.sos.ds.hibernate.util.HibernateHelper;
 import org.n52.sos.service.SosSettings;
 
@@ -108,10 +110,15 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
     @Inject
     private DaoFactory daoFactory;
 
+    @Inject
+    private DatasetInsertionLocks datasetInsertionLocks;
+
     private HibernateSessionHolder sessionHolder;
 
     private boolean strictSpatialFilteringProfile;
 
+    private boolean skipDuplicateObservations;
+
     /**
      * constructor
      */
@@ -133,19 +140,30 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
         return strictSpatialFilteringProfile;
     }
 
+    @Setting(SosSettings.SKIP_DUPLICATE_OBSERVATIONS)
+    public synchronized void setSkipDuplicateObservations(final boolean skipDuplicateObservations) {
+        this.skipDuplicateObservations = skipDuplicateObservations;
+    }
+
+    public synchronized boolean isSkipDuplicateObservations() {
+        return skipDuplicateObservations;
+    }
+
     @Override
     public boolean isSupported() {
         return HibernateHelper.isEntitySupported(ProcedureHistoryEntity.class);
     }
 
     @Override
-    public synchronized InsertObservationResponse insertObservation(final InsertObservationRequest request)
+    public InsertObservationResponse insertObservation(final InsertObservationRequest request)
             throws OwsExceptionReport {
         final InsertObservationResponse response = new InsertObservationResponse();
         response.setService(request.getService());
         response.setVersion(request.getVersion());
         Session session = null;
         Transaction transaction = null;
+        // serialize only requests which write into the same datasets
+        DatasetInsertionLocks.Lease locks = getDatasetInsertionLocks().lock(request.getObservations());
 
         // TODO: checkConstellation unit and set if available and not defined in
         // DB
@@ -154,7 +172,9 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
             transaction = session.beginTransaction();
 
             CompositeOwsException exceptions = new CompositeOwsException();
-            InsertObservationCache cache = new InsertObservationCache();
+            InsertObservationCache cache = new InsertObservationCache(
+                    new ObservationDuplicateChecker(isSkipDuplicateObservations())
+                            .addTimeSpan(request.getObservations()));
 
             cache.addOfferings(request.getOfferings());
 
@@ -185,8 +205,11 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
                 throw exceptions;
             }
 
+            // update the first/latest values once per touched series
+            cache.getSeriesUpdates().apply(getDaoFactory().getSeriesDAO(), session);
             session.flush();
             transaction.commit();
+            locks.committed();
         } catch (PersistenceException pe) {
             if (transaction != null) {
                 transaction.rollback();
@@ -194,6 +217,7 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
             handleHibernateException(pe);
         } finally {
             getHibernateSessionHolder().returnSession(session);
+            locks.release();
         }
         /*
          * TODO: ... all the DS insertion stuff Requirement 68
@@ -248,10 +272,12 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
             DatasetEntity dataset = null;
             if (sosObservation.getValue() instanceof SingleObservationValue) {
                 dataset = observationDAO.insertObservationSingleValue(hDataset, hFeature, sosObservation,
-                        cache.getCodespaceCache(), cache.getUnitCache(), cache.getFormatCache(), session);
+                        cache.getCodespaceCache(), cache.getUnitCache(), cache.getFormatCache(),
+                        cache.getSeriesUpdates(), cache.getDuplicateChecker(), session);
             } else if (sosObservation.getValue() instanceof MultiObservationValues) {
                 dataset = observationDAO.insertObservationMultiValue(hDataset, hFeature, sosObservation,
-                        cache.getCodespaceCache(), cache.getUnitCache(), cache.getFormatCache(), session);
+                        cache.getCodespaceCache(), cache.getUnitCache(), cache.getFormatCache(),
+                        cache.getSeriesUpdates(), cache.getDuplicateChecker(), session);
             }
             if (dataset != null && !cache.get(sosObsConst, offeringID).equals(dataset)) {
                 cache.putConstellation(sosObsConst, offeringID, dataset);
@@ -360,10 +386,15 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
         return sessionHolder;
     }
 
+    private synchronized DatasetInsertionLocks getDatasetInsertionLocks() {
+        return datasetInsertionLocks;
+    }
+
     @VisibleForTesting
     protected synchronized void initForTesting(DaoFactory daoFactory, ConnectionProvider connectionProvider) {
         this.daoFactory = daoFactory;
         this.connectionProvider = connectionProvider;
+        this.datasetInsertionLocks = new DatasetInsertionLocks();
     }
 
     private static class InsertObservationCache {
@@ -380,11 +411,19 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
 
         private final Map<String, FormatEntity> formatCache = Maps.newHashMap();
 
+        private final SeriesFirstLastValueUpdates seriesUpdates = new SeriesFirstLastValueUpdates();
+
+        private final ObservationDuplicateChecker duplicateChecker;
+
         private final HashMultimap<OmObservationConstellation, String> obsConstOfferingCheckedMap =
                 HashMultimap.create();
 
         private final HashMultimap<AbstractFeature, String> relatedFeatureCheckedMap = HashMultimap.create();
 
+        InsertObservationCache(ObservationDuplicateChecker duplicateChecker) {
+            this.duplicateChecker = duplicateChecker;
+        }
+
         public DatasetEntity get(OmObservationConstellation oc, String offering) {
             return this.obsConstOfferingHibernateObsConstTable.get(oc, offering);
         }
@@ -447,6 +486,14 @@ public class InsertObservationHandler extends AbstractInsertObservationHandler i
             return formatCache;
         }
 
+        public SeriesFirstLastValueUpdates getSeriesUpdates() {
+            return seriesUpdates;
+        }
+
+        public ObservationDuplicateChecker getDuplicateChecker() {
+            return duplicateChecker;
+        }
+
         public Set<String> getAllOfferings() {
             return allOfferings;
         }
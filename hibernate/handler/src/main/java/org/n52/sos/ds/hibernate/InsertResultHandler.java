@@ -28,7 +28,6 @@
  */
 package org.n52.sos.ds.hibernate;
 
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -92,10 +91,14 @@ import org.n52.sos.ds.AbstractInsertResultHandler;
 import org.n52.sos.ds.hibernate.dao.DaoFactory;
 import org.n52.sos.ds.hibernate.dao.FormatDAO;
 import org.n52.sos.ds.hibernate.dao.observation.AbstractObservationDAO;
+import org.n52.sos.ds.hibernate.dao.observation.ObservationDuplicateChecker;
 import org.n52.sos.ds.hibernate.dao.observation.series.AbstractSeriesDAO;
+import org.n52.sos.ds.hibernate.dao.observation.series.SeriesFirstLastValueUpdates;
 import org.n52.sos.ds.hibernate.util.HibernateHelper;
 import org.n52.sos.ds.hibernate.util.ResultHandlingHelper;
+import org.n52.sos.ds.hibernate.util.ResultValuesTokenizer;
 import org.n52.sos.ds.hibernate.util.observation.ObservationUnfolder;
+import org.n52.sos.service.SosSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -125,11 +128,16 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
     @Inject
     private DaoFactory daoFactory;
 
+    @Inject
+    private DatasetInsertionLocks datasetInsertionLocks;
+
     private HibernateSessionHolder sessionHolder;
 
     private boolean convertComplexProfileToSingleProfiles;
 
-    private boolean abortInsertResultForExistingObservations;
+    private volatile boolean abortInsertResultForExistingObservations;
+
+    private volatile boolean skipDuplicateObservations;
 
     private ResultHandlingHelper helper;
 
@@ -145,20 +153,24 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
     }
 
     @Override
-    public synchronized InsertResultResponse insertResult(final InsertResultRequest request)
+    public InsertResultResponse insertResult(final InsertResultRequest request)
             throws OwsExceptionReport {
         final InsertResultResponse response = new InsertResultResponse();
         response.setService(request.getService());
         response.setVersion(request.getVersion());
         Session session = null;
         Transaction transaction = null;
+        DatasetInsertionLocks.Lease locks = null;
 
         Map<String, CodespaceEntity> codespaceCache = Maps.newHashMap();
         Map<UoM, UnitEntity> unitCache = Maps.newHashMap();
         Map<String, FormatEntity> formatCache = Maps.newHashMap();
+        SeriesFirstLastValueUpdates seriesUpdates = new SeriesFirstLastValueUpdates();
 
         try {
             session = getHibernateSessionHolder().getSession();
+            // send the inserts of each flush as JDBC batch
+            session.setJdbcBatchSize(FLUSH_THRESHOLD);
             final ResultTemplateEntity resultTemplate = getDaoFactory().getResultTemplateDAO()
                     .getResultTemplateObject(request.getTemplateIdentifier(), session);
             transaction = session.beginTransaction();
@@ -171,6 +183,11 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
             } else {
                 response.setObservations(observations);
             }
+            // serialize only requests which write into the same datasets
+            locks = getDatasetInsertionLocks().lock(observations);
+            ObservationDuplicateChecker duplicateChecker = new ObservationDuplicateChecker(
+                    isSkipDuplicateObservations() || !abortInsertResultForExistingObservations())
+                            .addTimeSpan(observations);
 
             final AbstractSeriesDAO obsConstDao = getDaoFactory().getSeriesDAO();
             final FormatDAO obsTypeDao = getDaoFactory().getObservationTypeDAO();
@@ -219,10 +236,10 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
                 try {
                     if (observation.getValue() instanceof SingleObservationValue) {
                         observationDAO.insertObservationSingleValue(obsConst, feature, observation, codespaceCache,
-                                unitCache, formatCache, session);
+                                unitCache, formatCache, seriesUpdates, duplicateChecker, session);
                     } else if (observation.getValue() instanceof MultiObservationValues) {
                         observationDAO.insertObservationMultiValue(obsConst, feature, observation, codespaceCache,
-                                unitCache, formatCache, session);
+                                unitCache, formatCache, seriesUpdates, duplicateChecker, session);
                     }
                 } catch (NoApplicableCodeException nace) {
                     if (abortInsertResultForExistingObservations()) {
@@ -237,8 +254,12 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
                     LOGGER.debug("Saved {}/{} observations.", insertion, size);
                 }
             }
-            LOGGER.debug("Saved {} observations.", size);
+            LOGGER.debug("Saved {} observations, skipped {} already existing observations.",
+                    size - duplicateChecker.getSkipped(), duplicateChecker.getSkipped());
+            // update the first/latest values once per touched series
+            seriesUpdates.apply(obsConstDao, session);
             transaction.commit();
+            locks.committed();
         } catch (final HibernateException he) {
             if (transaction != null) {
                 transaction.rollback();
@@ -246,7 +267,13 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
             // XXX exception text
             throw new NoApplicableCodeException().causedBy(he);
         } finally {
+            if (session != null) {
+                session.setJdbcBatchSize(null);
+            }
             getHibernateSessionHolder().returnSession(session);
+            if (locks != null) {
+                locks.release();
+            }
         }
         return response;
     }
@@ -300,7 +327,7 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
             throws OwsExceptionReport {
         final SosResultEncoding resultEncoding = createSosResultEncoding(resultTemplate.getEncoding());
         final SosResultStructure resultStructure = createSosResultStructure(resultTemplate.getStructure());
-        final String[] blockValues = getBlockValues(resultValues, resultEncoding.get().get());
+        final List<List<String>> blockValues = getBlockValues(resultValues, resultEncoding.get().get());
         final OmObservation singleObservation = getObservation(resultTemplate, blockValues,
                 resultStructure.get().get(), resultEncoding.get().get(), session);
         // final AbstractFeature feature =
@@ -399,7 +426,8 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
      * @throws OwsExceptionReport
      *             If processing fails
      */
-    private OmObservation getObservation(final ResultTemplateEntity resultTemplate, final String[] blockValues,
+    private OmObservation getObservation(final ResultTemplateEntity resultTemplate,
+            final List<List<String>> blockValues,
             final SweAbstractDataComponent resultStructure, final SweAbstractEncoding encoding, final Session session)
             throws OwsExceptionReport {
         final int resultTimeIndex = helper.hasResultTime(resultStructure);
@@ -494,46 +522,22 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
      * @throws OwsExceptionReport
      *             If processing fails
      */
-    private MultiObservationValues<SweDataArray> createObservationValueFrom(final String[] blockValues,
+    private MultiObservationValues<SweDataArray> createObservationValueFrom(final List<List<String>> blockValues,
             final SweAbstractDataComponent recordFromResultStructure, final SweAbstractEncoding encoding,
             final int resultTimeIndex, final int phenomenonTimeIndex) throws OwsExceptionReport {
         final SweDataArray dataArray = new SweDataArray();
         dataArray.setElementType(recordFromResultStructure);
         dataArray.setEncoding(encoding);
+        dataArray.setValues(blockValues);
 
         final SweDataArrayValue dataArrayValue = new SweDataArrayValue();
         dataArrayValue.setValue(dataArray);
 
-        for (final String block : blockValues) {
-            if (block != null && !block.isEmpty()) {
-                final String[] singleValues = getSingleValues(block, encoding);
-                if (singleValues != null && singleValues.length > 0) {
-                    dataArrayValue.addBlock(Arrays.asList(singleValues));
-                }
-            }
-        }
         final MultiObservationValues<SweDataArray> sosValues = new MultiObservationValues<SweDataArray>();
         sosValues.setValue(dataArrayValue);
         return sosValues;
     }
 
-    /**
-     * Get single values from a block value
-     *
-     * @param block
-     *            Block value
-     * @param encoding
-     *            ResultEncoding
-     * @return Single value array
-     */
-    private String[] getSingleValues(final String block, final SweAbstractEncoding encoding) {
-        if (encoding instanceof SweTextEncoding) {
-            final SweTextEncoding textEncoding = (SweTextEncoding) encoding;
-            return separateValues(block, textEncoding.getTokenSeparator());
-        }
-        return null;
-    }
-
     /**
      * Get block values from result values
      *
@@ -541,51 +545,19 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
      *            Result values
      * @param encoding
      *            ResultEncoding
-     * @return Block value array
+     * @return Blocks of single values without preceding count value
+     * @throws OwsExceptionReport
+     *             If the encoding is not supported
      */
-    private String[] getBlockValues(final String resultValues, final SweAbstractEncoding encoding) {
+    private List<List<String>> getBlockValues(final String resultValues, final SweAbstractEncoding encoding)
+            throws OwsExceptionReport {
         if (encoding instanceof SweTextEncoding) {
             final SweTextEncoding textEncoding = (SweTextEncoding) encoding;
-            final String[] blockValues = separateValues(resultValues, textEncoding.getBlockSeparator());
-            return checkForCountValue(blockValues, textEncoding.getTokenSeparator());
+            return new ResultValuesTokenizer(textEncoding.getTokenSeparator(), textEncoding.getBlockSeparator())
+                    .tokenize(resultValues);
         }
-        return null;
-    }
-
-    /**
-     * Check if the block values from result values contains a preceding count
-     * value
-     *
-     * @param blockValues
-     *            Block values from result values
-     * @param tokenSeparator
-     *            Token separator
-     * @return Block value array without preceding count value
-     */
-    private String[] checkForCountValue(final String[] blockValues, final String tokenSeparator) {
-        if (blockValues != null && blockValues.length > 0) {
-            if (blockValues[0].contains(tokenSeparator)) {
-                return blockValues;
-            } else {
-                final String[] blockValuesWithoutCount = new String[blockValues.length - 1];
-                System.arraycopy(blockValues, 1, blockValuesWithoutCount, 0, blockValuesWithoutCount.length);
-                return blockValuesWithoutCount;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Separate values from String with separator
-     *
-     * @param values
-     *            Value String
-     * @param separator
-     *            Separator
-     * @return Separated values as array
-     */
-    private String[] separateValues(final String values, final String separator) {
-        return values.split(separator, Integer.MAX_VALUE);
+        throw new NoApplicableCodeException().withMessage("The result encoding %s is not supported!",
+                encoding != null ? encoding.getClass().getName() : null);
     }
 
     private DatasetEntity insertObservationConstellationForProfiles(AbstractSeriesDAO obsConstDao,
@@ -624,6 +596,10 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
         return sessionHolder;
     }
 
+    private synchronized DatasetInsertionLocks getDatasetInsertionLocks() {
+        return datasetInsertionLocks;
+    }
+
     @Setting(ABORT_INSERT_RESULT_FOR_EXISTING_OBSERVATIONS)
     public void setAbortInsertResultForExistingObservations(boolean abortInsertResultForExistingObservations) {
         this.abortInsertResultForExistingObservations = abortInsertResultForExistingObservations;
@@ -633,10 +609,20 @@ public class InsertResultHandler extends AbstractInsertResultHandler implements
         return abortInsertResultForExistingObservations;
     }
 
+    @Setting(SosSettings.SKIP_DUPLICATE_OBSERVATIONS)
+    public void setSkipDuplicateObservations(boolean skipDuplicateObservations) {
+        this.skipDuplicateObservations = skipDuplicateObservations;
+    }
+
+    private boolean isSkipDuplicateObservations() {
+        return skipDuplicateObservations;
+    }
+
     @VisibleForTesting
     protected synchronized void initForTesting(DaoFactory daoFactory, ConnectionProvider connectionProvider) {
         this.daoFactory = daoFactory;
         this.connectionProvider = connectionProvider;
+        this.datasetInsertionLocks = new DatasetInsertionLocks();
     }
 
 }
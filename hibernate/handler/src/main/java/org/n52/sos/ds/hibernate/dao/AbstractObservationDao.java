@@ -96,6 +96,8 @@ public abstract class AbstractObservationDao implements HibernateDao {
 
     private int chunkSize;
 
+    private boolean keysetPagination;
+
     @Inject
     public void setEncoderRepository(EncoderRepository encoderRepository) {
         this.encoderRepository = encoderRepository;
@@ -139,6 +141,26 @@ public abstract class AbstractObservationDao implements HibernateDao {
         return chunkSize;
     }
 
+    /**
+     * Set whether chunks should be queried with keyset (seek) pagination
+     *
+     * @param keysetPagination
+     *            the keyset pagination flag
+     */
+    @Setting(HibernateStreamingSettings.KEYSET_PAGINATION)
+    public void setKeysetPagination(boolean keysetPagination) {
+        this.keysetPagination = keysetPagination;
+    }
+
+    /**
+     * Is keyset (seek) pagination enabled
+     *
+     * @return <code>true</code>, if keyset pagination is enabled
+     */
+    public boolean isKeysetPagination() {
+        return keysetPagination;
+    }
+
     /**
      * Get ObservationConstellations and check if size limit is exceeded
      *
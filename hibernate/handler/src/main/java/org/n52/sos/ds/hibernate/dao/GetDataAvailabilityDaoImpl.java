@@ -28,6 +28,7 @@
  */
 package org.n52.sos.ds.hibernate.dao;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -64,6 +65,7 @@ import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityRequest;
 import org.n52.shetland.ogc.sos.gda.GetDataAvailabilityResponse.DataAvailability;
 import org.n52.sos.ds.hibernate.HibernateSessionHolder;
 import org.n52.sos.ds.hibernate.util.HibernateHelper;
+import org.n52.sos.ds.hibernate.util.QueryHelper;
 import org.n52.sos.ds.hibernate.util.SosTemporalRestrictions;
 import org.n52.sos.ds.hibernate.util.TemporalRestrictions;
 import org.n52.sos.exception.ows.concrete.UnsupportedOperatorException;
@@ -117,6 +119,13 @@ public class GetDataAvailabilityDaoImpl implements org.n52.sos.ds.dao.GetDataAva
         return getMetadata(dataAvailability);
     }
 
+    @Override
+    public Map<Long, Map<String, NamedValue<?>>> getMetadata(Collection<Long> datasets, Object connection)
+            throws OwsExceptionReport {
+        // dataset metadata is not yet supported, see queryMetadata()
+        return new HashMap<>();
+    }
+
     private Map<String, NamedValue<?>> queryMetadata(DataAvailability dataAvailability, Session session) {
         Map<String, NamedValue<?>> map = new HashMap<>();
         // if (HibernateHelper.isEntitySupported(SeriesMetadata.class)) {
@@ -159,6 +168,52 @@ public class GetDataAvailabilityDaoImpl implements org.n52.sos.ds.dao.GetDataAva
         return getResultTimes(dataAvailability, request);
     }
 
+    @Override
+    public Map<Long, List<TimeInstant>> getResultTimes(Collection<Long> datasets, GetDataAvailabilityRequest request,
+            Object connection) throws OwsExceptionReport {
+        if (datasets == null || datasets.isEmpty()) {
+            return new HashMap<>();
+        }
+        Session session = null;
+        try {
+            session = checkConnection(connection) ? HibernateSessionHolder.getSession(connection)
+                    : sessionHolder.getSession();
+            return queryResultTimes(datasets, request, session);
+        } catch (final HibernateException | OwsExceptionReport he) {
+            throw new NoApplicableCodeException().causedBy(he)
+                    .withMessage("Error while querying result time for GetDataAvailability!")
+                    .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            if (!checkConnection(connection)) {
+                sessionHolder.returnSession(session);
+            }
+        }
+    }
+
+    private Map<Long, List<TimeInstant>> queryResultTimes(Collection<Long> datasets,
+            GetDataAvailabilityRequest request, Session session)
+            throws UnsupportedTimeException, UnsupportedValueReferenceException, UnsupportedOperatorException {
+        Criteria c = session.createCriteria(DataEntity.class).add(Restrictions.eq(DataEntity.PROPERTY_DELETED, false))
+                .add(QueryHelper.getCriterionForObjects(DataEntity.PROPERTY_DATASET_ID, datasets));
+        if (hasPhenomenonTimeFilter(request.getExtensions())) {
+            c.add(SosTemporalRestrictions.filter(getPhenomenonTimeFilter(request.getExtensions())));
+        }
+        c.setProjection(Projections.distinct(Projections.projectionList()
+                .add(Projections.property(DataEntity.PROPERTY_DATASET_ID))
+                .add(Projections.property(DataEntity.PROPERTY_RESULT_TIME))));
+        c.addOrder(Order.asc(DataEntity.PROPERTY_DATASET_ID));
+        c.addOrder(Order.asc(DataEntity.PROPERTY_RESULT_TIME));
+        LOGGER.trace("QUERY getResultTimesForDatasets(): {}", HibernateHelper.getSqlString(c));
+        Map<Long, List<TimeInstant>> resultTimes = new HashMap<>();
+        for (Object[] row : (List<Object[]>) c.list()) {
+            if (row[1] != null) {
+                resultTimes.computeIfAbsent((Long) row[0], k -> Lists.newArrayList())
+                        .add(new TimeInstant((Date) row[1]));
+            }
+        }
+        return resultTimes;
+    }
+
     private List<TimeInstant> queryResultTime(DataAvailability dataAvailability, GetDataAvailabilityRequest request,
             Session session)
             throws UnsupportedTimeException, UnsupportedValueReferenceException, UnsupportedOperatorException {
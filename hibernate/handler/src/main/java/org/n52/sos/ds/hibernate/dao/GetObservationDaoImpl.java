@@ -30,11 +30,17 @@ package org.n52.sos.ds.hibernate.dao;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
@@ -42,6 +48,7 @@ import org.apache.xmlbeans.XmlObject;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
+import org.n52.faroe.Validation;
 import org.n52.faroe.annotation.Configurable;
 import org.n52.faroe.annotation.Setting;
 import org.n52.iceland.convert.ConverterException;
@@ -50,6 +57,7 @@ import org.n52.iceland.exception.ows.concrete.NotYetSupportedException;
 import org.n52.iceland.i18n.I18NSettings;
 import org.n52.janmayen.http.HTTPStatus;
 import org.n52.janmayen.i18n.LocaleHelper;
+import org.n52.janmayen.lifecycle.Destroyable;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.shetland.ogc.gml.time.IndeterminateValue;
@@ -63,11 +71,15 @@ import org.n52.shetland.ogc.sos.response.GetObservationResponse;
 import org.n52.shetland.ogc.sos.response.GlobalObservationResponseValues;
 import org.n52.sos.ds.hibernate.HibernateSessionHolder;
 import org.n52.sos.ds.hibernate.dao.observation.series.AbstractSeriesDAO;
+import org.n52.sos.ds.hibernate.util.LatestValueCache;
 import org.n52.sos.ds.hibernate.util.ObservationTimeExtrema;
 import org.n52.sos.ds.hibernate.util.observation.HibernateObservationUtilities;
+import org.n52.sos.ds.hibernate.util.observation.ObservationTemplateCache;
 import org.n52.sos.ds.hibernate.util.observation.OmObservationCreatorContext;
+import org.n52.sos.ds.hibernate.values.HibernateStreamingSettings;
+import org.n52.sos.ds.hibernate.values.StreamingSessionScope;
 import org.n52.sos.ds.hibernate.values.series.HibernateChunkSeriesStreamingValue;
-import org.n52.sos.ds.hibernate.values.series.HibernateSeriesStreamingValue;
+import org.n52.sos.ds.hibernate.values.series.StreamingReadAhead;
 import org.n52.sos.service.profile.ProfileHandler;
 import org.n52.svalbard.encode.Encoder;
 import org.n52.svalbard.encode.ObservationEncoder;
@@ -79,11 +91,16 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 @Configurable
-public class GetObservationDaoImpl extends AbstractObservationDao implements org.n52.sos.ds.dao.GetObservationDao {
+public class GetObservationDaoImpl extends AbstractObservationDao
+        implements org.n52.sos.ds.dao.GetObservationDao, Destroyable {
     private static final Logger LOGGER = LoggerFactory.getLogger(GetObservationDaoImpl.class);
 
     private static final String LOG_TIME_TO_QUERY = "Time to query observations needs {} ms!";
 
+    private static final String READ_AHEAD_THREAD_NAME = "series-read-ahead-";
+
+    private static final int DEFAULT_READ_AHEAD_THREADS = 4;
+
     private HibernateSessionHolder sessionHolder;
 
     private ProfileHandler profileHandler;
@@ -92,10 +109,18 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
 
     private OmObservationCreatorContext observationCreatorContext;
 
+    private LatestValueCache latestValueCache;
+
     private boolean overallExtrema;
 
     private Locale defaultLanguage;
 
+    private int readAhead;
+
+    private int readAheadThreads = DEFAULT_READ_AHEAD_THREADS;
+
+    private ExecutorService readAheadExecutor;
+
     @Inject
     public void setDaoFactory(DaoFactory daoFactory) {
         this.daoFactory = daoFactory;
@@ -111,6 +136,11 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
         this.profileHandler = profileHandler;
     }
 
+    @Inject
+    public void setLatestValueCache(LatestValueCache latestValueCache) {
+        this.latestValueCache = latestValueCache;
+    }
+
     @Inject
     public void setOmObservationCreatorContext(OmObservationCreatorContext observationCreatorContext) {
         this.observationCreatorContext = observationCreatorContext;
@@ -126,18 +156,67 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
         this.defaultLanguage = LocaleHelper.decode(defaultLanguage);
     }
 
+    /**
+     * Set the number of chunks queried in advance per request, {@code 0}
+     * disables the read-ahead.
+     *
+     * @param readAhead
+     *            the read-ahead window
+     */
+    @Setting(HibernateStreamingSettings.READ_AHEAD)
+    public void setReadAhead(int readAhead) {
+        this.readAhead = Math.max(0, readAhead);
+    }
+
+    @Setting(HibernateStreamingSettings.READ_AHEAD_THREADS)
+    public synchronized void setReadAheadThreads(int readAheadThreads) {
+        Validation.greaterZero("Read-ahead threads", readAheadThreads);
+        this.readAheadThreads = readAheadThreads;
+        if (readAheadExecutor != null) {
+            readAheadExecutor.shutdown();
+            readAheadExecutor = null;
+        }
+    }
+
+    private synchronized ExecutorService getReadAheadExecutor() {
+        if (readAheadExecutor == null) {
+            AtomicInteger count = new AtomicInteger();
+            readAheadExecutor = Executors.newFixedThreadPool(readAheadThreads, r -> {
+                Thread thread = new Thread(r, READ_AHEAD_THREAD_NAME + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return readAheadExecutor;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (readAheadExecutor != null) {
+            readAheadExecutor.shutdownNow();
+            readAheadExecutor = null;
+        }
+    }
+
     @Override
     public GetObservationResponse queryObservationData(GetObservationRequest request, GetObservationResponse response)
             throws OwsExceptionReport {
         Session session = null;
+        StreamingSessionScope sessionScope = null;
         try {
             session = sessionHolder.getSession();
-            return getObservations(request, response, session);
+            // the streaming values keep the session until they are exhausted
+            sessionScope = new StreamingSessionScope(sessionHolder, session);
+            return getObservations(request, response, session, sessionScope);
         } catch (HibernateException he) {
             throw new NoApplicableCodeException().causedBy(he).withMessage("Error while querying observation data!")
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
         } finally {
-            sessionHolder.returnSession(session);
+            if (sessionScope != null) {
+                sessionScope.release();
+            } else {
+                sessionHolder.returnSession(session);
+            }
         }
 
     }
@@ -146,17 +225,17 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
     public GetObservationResponse queryObservationData(GetObservationRequest request, GetObservationResponse response,
             Object connection) throws OwsExceptionReport {
         if (checkConnection(connection)) {
-            return getObservations(request, response, HibernateSessionHolder.getSession(connection));
+            return getObservations(request, response, HibernateSessionHolder.getSession(connection), null);
         }
         return queryObservationData(request, response);
     }
 
     private GetObservationResponse getObservations(GetObservationRequest request, GetObservationResponse response,
-            Session session) throws OwsExceptionReport {
+            Session session, StreamingSessionScope sessionScope) throws OwsExceptionReport {
         List<OmObservation> observations = new ArrayList<>();
         try {
             if (!request.hasFirstLatestTemporalFilter()) {
-                observations.addAll(querySeriesObservationForStreaming(request, response, session));
+                observations.addAll(querySeriesObservationForStreaming(request, response, session, sessionScope));
             } else {
                 observations.addAll(querySeriesObservation(request, session));
             }
@@ -192,13 +271,35 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
         List<String> features = request.getFeatureIdentifiers();
 
         Collection<DataEntity<?>> seriesObservations = Lists.newArrayList();
+        List<OmObservation> cachedObservations = new LinkedList<>();
+        Set<Long> seriesWithObservations = new HashSet<>();
+        boolean useLatestValueCache = latestValueCache != null && latestValueCache.isEnabled();
         AbstractSeriesDAO seriesDAO = daoFactory.getSeriesDAO();
         for (IndeterminateValue sosIndeterminateTime : request.getFirstLatestTemporalFilter()) {
             for (DatasetEntity series : getSeries(seriesDAO, request, features, sosIndeterminateTime, session)) {
-                if (sosIndeterminateTime.equals(ExtendedIndeterminateTime.FIRST)) {
-                    seriesObservations.add(series.getFirstObservation());
-                } else if (sosIndeterminateTime.equals(ExtendedIndeterminateTime.LATEST)) {
-                    seriesObservations.add(series.getLastObservation());
+                if (useLatestValueCache) {
+                    // the cache is validated against the first/last value
+                    // time of the dataset and needs no observation query
+                    List<OmObservation> cached = latestValueCache.get(series, sosIndeterminateTime, request);
+                    if (cached == null) {
+                        DataEntity<?> observation = getFirstLatestObservation(series, sosIndeterminateTime);
+                        if (observation != null) {
+                            List<OmObservation> created = new LinkedList<>();
+                            toSosObservation(Collections.singletonList(observation), request, requestedLocale, pdf,
+                                    observationCreatorContext, session).forEachRemaining(created::add);
+                            cached = latestValueCache.put(series, sosIndeterminateTime, request, created);
+                        }
+                    }
+                    if (cached != null) {
+                        cachedObservations.addAll(cached);
+                        seriesWithObservations.add(series.getId());
+                    }
+                } else {
+                    DataEntity<?> observation = getFirstLatestObservation(series, sosIndeterminateTime);
+                    if (observation != null) {
+                        seriesObservations.add(observation);
+                        seriesWithObservations.add(series.getId());
+                    }
                 }
             }
         }
@@ -212,28 +313,34 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
                 seriesToCheckMap.put(series.getId(), series);
             }
 
-            // check observations and remove any series found from the map
-            for (DataEntity<?> seriesObs : seriesObservations) {
-                long seriesId = seriesObs.getDataset().getId();
-                if (seriesToCheckMap.containsKey(seriesId)) {
-                    seriesToCheckMap.remove(seriesId);
-                }
-            }
+            // remove any series with observations from the map
+            seriesToCheckMap.keySet().removeAll(seriesWithObservations);
             // now we're left with the series without matching observations in
             // the check map,
             // add "result" observations for them
+            ObservationTemplateCache templateCache = new ObservationTemplateCache();
             for (DatasetEntity series : seriesToCheckMap.values()) {
                 HibernateObservationUtilities.createSosObservationFromSeries(series, request, requestedLocale, pdf,
-                        observationCreatorContext, session).forEachRemaining(result::add);
+                        observationCreatorContext, templateCache, session).forEachRemaining(result::add);
             }
         }
 
         LOGGER.debug(LOG_TIME_TO_QUERY, System.currentTimeMillis() - start);
         toSosObservation(new ArrayList<>(seriesObservations), request, requestedLocale, pdf, observationCreatorContext,
                 session).forEachRemaining(result::add);
+        result.addAll(cachedObservations);
         return result;
     }
 
+    private DataEntity<?> getFirstLatestObservation(DatasetEntity series, IndeterminateValue sosIndeterminateTime) {
+        if (sosIndeterminateTime.equals(ExtendedIndeterminateTime.FIRST)) {
+            return series.getFirstObservation();
+        } else if (sosIndeterminateTime.equals(ExtendedIndeterminateTime.LATEST)) {
+            return series.getLastObservation();
+        }
+        return null;
+    }
+
     private List<DatasetEntity> getSeries(AbstractSeriesDAO seriesDAO, GetObservationRequest request,
             List<String> features, IndeterminateValue sosIndeterminateTime, Session session) throws OwsExceptionReport {
         if (!overallExtrema) {
@@ -277,6 +384,10 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
      *            The GetObservation request
      * @param session
      *            Hibernate Session
+     * @param sessionScope
+     *            the session scope the streaming values are bound to or
+     *            {@code null}, if each streaming value borrows its own
+     *            session
      * @return List of internal observations
      * @throws OwsExceptionReport
      *             If an error occurs.
@@ -284,7 +395,8 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
      *             If an error occurs during sensor description creation.
      */
     private List<OmObservation> querySeriesObservationForStreaming(GetObservationRequest request,
-            GetObservationResponse response, Session session) throws OwsExceptionReport, ConverterException {
+            GetObservationResponse response, Session session, StreamingSessionScope sessionScope)
+            throws OwsExceptionReport, ConverterException {
         final long start = System.currentTimeMillis();
         final List<OmObservation> result = new LinkedList<OmObservation>();
         List<String> features = request.getFeatureIdentifiers();
@@ -292,28 +404,51 @@ public class GetObservationDaoImpl extends AbstractObservationDao implements org
         List<DatasetEntity> serieses = daoFactory.getSeriesDAO().getSeries(request, features, session);
         checkMaxNumberOfReturnedSeriesSize(serieses.size());
         int maxNumberOfValuesPerSeries = getMaxNumberOfValuesPerSeries(serieses.size());
-        for (DatasetEntity series : serieses) {
-            ObservationStream createSosObservationFromSeries =
-                    HibernateObservationUtilities.createSosObservationFromSeries(series, request,
-                            getRequestedLocale(request), getProcedureDescriptionFormat(request.getResponseFormat()),
-                            observationCreatorContext, session);
-            OmObservation observationTemplate = createSosObservationFromSeries.next();
-            HibernateSeriesStreamingValue streamingValue =
-                    new HibernateChunkSeriesStreamingValue(sessionHolder.getConnectionProvider(), daoFactory, request,
-                            series.getId(), observationCreatorContext.getBindingRepository(), getChunkSize());
-            streamingValue.setResponseFormat(request.getResponseFormat());
-            streamingValue.setTemporalFilterCriterion(temporalFilterCriterion);
-            streamingValue.setObservationTemplate(observationTemplate);
-            streamingValue.setMaxNumberOfValues(maxNumberOfValuesPerSeries);
-            observationTemplate.setValue(streamingValue);
-            result.add(observationTemplate);
-        }
+        Locale requestedLocale = getRequestedLocale(request);
+        String pdf = getProcedureDescriptionFormat(request.getResponseFormat());
+        // the series share procedures, features and units, create them once
+        ObservationTemplateCache templateCache = new ObservationTemplateCache();
+        // the read-ahead is limited to chunks, whole series are not buffered
+        StreamingReadAhead streamingReadAhead = readAhead > 0 && getChunkSize() > 0
+                ? new StreamingReadAhead(getReadAheadExecutor(), readAhead)
+                : null;
+        // the streaming values retain the session of the request, release them if the response is not created
+        List<HibernateChunkSeriesStreamingValue> streamingValues = new LinkedList<>();
+        try {
+            for (DatasetEntity series : serieses) {
+                ObservationStream createSosObservationFromSeries =
+                        HibernateObservationUtilities.createSosObservationFromSeries(series, request, requestedLocale,
+                                pdf, observationCreatorContext, templateCache, session);
+                OmObservation observationTemplate = createSosObservationFromSeries.next();
+                HibernateChunkSeriesStreamingValue streamingValue =
+                        new HibernateChunkSeriesStreamingValue(sessionHolder.getConnectionProvider(), daoFactory,
+                                request, series.getId(), observationCreatorContext.getBindingRepository(),
+                                getChunkSize());
+                streamingValues.add(streamingValue);
+                if (sessionScope != null) {
+                    streamingValue.setSessionScope(sessionScope);
+                }
+                if (streamingReadAhead != null) {
+                    streamingValue.setReadAhead(streamingReadAhead);
+                }
+                streamingValue.setKeysetPagination(isKeysetPagination());
+                streamingValue.setResponseFormat(request.getResponseFormat());
+                streamingValue.setTemporalFilterCriterion(temporalFilterCriterion);
+                streamingValue.setObservationTemplate(observationTemplate);
+                streamingValue.setMaxNumberOfValues(maxNumberOfValuesPerSeries);
+                observationTemplate.setValue(streamingValue);
+                result.add(observationTemplate);
+            }
 
-        ObservationTimeExtrema timeExtrema =
-                daoFactory.getValueTimeDAO().getTimeExtremaForSeries(serieses, temporalFilterCriterion, session);
-        if (timeExtrema.isSetPhenomenonTimes()) {
-            response.setGlobalObservationValues(
-                    new GlobalObservationResponseValues().setPhenomenonTime(timeExtrema.getPhenomenonTime()));
+            ObservationTimeExtrema timeExtrema =
+                    daoFactory.getValueTimeDAO().getTimeExtremaForSeries(serieses, temporalFilterCriterion, session);
+            if (timeExtrema.isSetPhenomenonTimes()) {
+                response.setGlobalObservationValues(
+                        new GlobalObservationResponseValues().setPhenomenonTime(timeExtrema.getPhenomenonTime()));
+            }
+        } catch (OwsExceptionReport | ConverterException | RuntimeException e) {
+            streamingValues.forEach(HibernateChunkSeriesStreamingValue::close);
+            throw e;
         }
         LOGGER.debug(LOG_TIME_TO_QUERY, System.currentTimeMillis() - start);
         return result;
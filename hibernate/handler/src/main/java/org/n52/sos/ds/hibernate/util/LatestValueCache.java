@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.n52.faroe.annotation.Configurable;
+import org.n52.faroe.annotation.Setting;
+import org.n52.janmayen.event.Event;
+import org.n52.janmayen.event.EventListener;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.shetland.ogc.gml.time.IndeterminateValue;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.ows.extension.Extension;
+import org.n52.shetland.ogc.sos.ExtendedIndeterminateTime;
+import org.n52.shetland.ogc.sos.request.AbstractObservationRequest;
+import org.n52.shetland.ogc.sos.request.SrsNameRequest;
+import org.n52.shetland.ogc.swe.simpleType.SweAbstractSimpleType;
+import org.n52.sos.event.events.CompleteCacheUpdateFinished;
+import org.n52.sos.event.events.DeleteObservationEvent;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.sos.event.events.ResultInsertion;
+import org.n52.sos.event.events.UpdateCache;
+import org.n52.sos.service.SosSettings;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Bounded cache of the observations created for the first and latest value of
+ * datasets. The entries are keyed by dataset id and are only valid as long as
+ * the first/last value time of the dataset matches the time the entry was
+ * created for, so a hit only needs the dataset row and never touches the
+ * observation tables. InsertObservation, InsertResult and DeleteObservation
+ * evict the entries of the affected datasets, which are created again by the
+ * next request. Complete content cache updates clear the cache.
+ *
+ * The least recently used datasets are evicted if the cache exceeds its
+ * size, a size of {@code 0} disables the cache.
+ *
+ * Only copies of the observations and their constellations are handed out.
+ * The features of interest are shared, their geometries are transformed in
+ * place to the CRS of the response, so each requested CRS is cached
+ * separately.
+ *
+ * @since 5.1.1
+ */
+@Configurable
+public class LatestValueCache implements EventListener {
+
+    private static final Set<Class<? extends Event>> EVENT_TYPES = ImmutableSet.of(ObservationInsertion.class,
+            ResultInsertion.class, DeleteObservationEvent.class, UpdateCache.class,
+            CompleteCacheUpdateFinished.class);
+
+    private static final Joiner KEY_JOINER = Joiner.on('|').useForNull("");
+
+    private final Map<Long, DatasetValues> datasets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, Set<Long>> datasetsForConstellation = new HashMap<>();
+
+    private volatile int maxSize;
+
+    /**
+     * Set the maximum number of cached datasets, {@code 0} disables the
+     * cache.
+     *
+     * @param maxSize
+     *            the maximum number of datasets
+     */
+    @Setting(SosSettings.LATEST_VALUE_CACHE_SIZE)
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+        evict();
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Get copies of the observations cached for the first or latest value of
+     * the dataset.
+     *
+     * @param dataset
+     *            the dataset
+     * @param indeterminateTime
+     *            {@link ExtendedIndeterminateTime#FIRST} or
+     *            {@link ExtendedIndeterminateTime#LATEST}
+     * @param request
+     *            the request the observations are created for
+     * @return the observations or {@code null}, if no valid entry exists
+     */
+    public List<OmObservation> get(DatasetEntity dataset, IndeterminateValue indeterminateTime,
+            AbstractObservationRequest request) {
+        Date time = getTime(dataset, indeterminateTime);
+        if (isEnabled() && time != null) {
+            Entry entry;
+            synchronized (this) {
+                DatasetValues values = datasets.get(dataset.getId());
+                entry = values != null ? values.entries.get(getVariant(indeterminateTime, request)) : null;
+            }
+            if (entry != null && entry.time.equals(time)) {
+                return copy(entry.observations);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cache the observations created for the first or latest value of the
+     * dataset. The observations must not be modified afterwards.
+     *
+     * @param dataset
+     *            the dataset
+     * @param indeterminateTime
+     *            {@link ExtendedIndeterminateTime#FIRST} or
+     *            {@link ExtendedIndeterminateTime#LATEST}
+     * @param request
+     *            the request the observations are created for
+     * @param observations
+     *            the created observations
+     * @return copies of the observations
+     */
+    public List<OmObservation> put(DatasetEntity dataset, IndeterminateValue indeterminateTime,
+            AbstractObservationRequest request, List<OmObservation> observations) {
+        Date time = getTime(dataset, indeterminateTime);
+        if (isEnabled() && time != null) {
+            String constellation = getConstellationKey(dataset);
+            synchronized (this) {
+                DatasetValues values = datasets.get(dataset.getId());
+                if (values == null || !values.constellation.equals(constellation)) {
+                    remove(dataset.getId());
+                    values = new DatasetValues(constellation);
+                    datasets.put(dataset.getId(), values);
+                    datasetsForConstellation.computeIfAbsent(constellation, key -> new HashSet<>())
+                            .add(dataset.getId());
+                }
+                values.entries.put(getVariant(indeterminateTime, request), new Entry(time, observations));
+                evict();
+            }
+        }
+        return copy(observations);
+    }
+
+    public synchronized void clear() {
+        datasets.clear();
+        datasetsForConstellation.clear();
+    }
+
+    public synchronized int size() {
+        return datasets.size();
+    }
+
+    @Override
+    public Set<Class<? extends Event>> getTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public void handle(Event event) {
+        if (event instanceof UpdateCache || event instanceof CompleteCacheUpdateFinished) {
+            clear();
+        } else if (event instanceof ObservationInsertion) {
+            invalidate(((ObservationInsertion) event).getRequest().getObservations());
+        } else if (event instanceof ResultInsertion) {
+            invalidate(((ResultInsertion) event).getResponse().getObservations());
+        } else if (event instanceof DeleteObservationEvent) {
+            DeleteObservationEvent deletion = (DeleteObservationEvent) event;
+            if (deletion.isSetDeletedObservation()) {
+                invalidate(deletion.getDeletedObservation());
+            } else {
+                // observations deleted by temporal filter or offering
+                clear();
+            }
+        }
+    }
+
+    private void invalidate(Collection<OmObservation> observations) {
+        if (observations != null) {
+            observations.forEach(this::invalidate);
+        }
+    }
+
+    private synchronized void invalidate(OmObservation observation) {
+        OmObservationConstellation constellation = observation.getObservationConstellation();
+        if (constellation != null) {
+            Set<Long> ids = datasetsForConstellation.get(getConstellationKey(constellation));
+            if (ids != null) {
+                new HashSet<>(ids).forEach(this::remove);
+            }
+        }
+    }
+
+    private void remove(Long id) {
+        DatasetValues values = datasets.remove(id);
+        if (values != null) {
+            Set<Long> ids = datasetsForConstellation.get(values.constellation);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                datasetsForConstellation.remove(values.constellation);
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Long> it = datasets.keySet().iterator();
+        while (datasets.size() > maxSize && it.hasNext()) {
+            Long id = it.next();
+            it.remove();
+            datasetsForConstellation.values().forEach(ids -> ids.remove(id));
+        }
+        datasetsForConstellation.values().removeIf(Set::isEmpty);
+    }
+
+    private Date getTime(DatasetEntity dataset, IndeterminateValue indeterminateTime) {
+        if (ExtendedIndeterminateTime.FIRST.equals(indeterminateTime)) {
+            return dataset.getFirstValueAt();
+        } else if (ExtendedIndeterminateTime.LATEST.equals(indeterminateTime)) {
+            return dataset.getLastValueAt();
+        }
+        return null;
+    }
+
+    /**
+     * The observations depend on the encoding, language and CRS of the
+     * request, so each combination is cached separately.
+     */
+    private String getVariant(IndeterminateValue indeterminateTime, AbstractObservationRequest request) {
+        String acceptType = request.getRequestContext() != null
+                ? request.getRequestContext().getAcceptType().map(Object::toString).orElse(null)
+                : null;
+        return KEY_JOINER.join(indeterminateTime, request.getService(), request.getVersion(),
+                request.getResponseFormat(), acceptType, request.getResultModel(), request.getRequestedLanguage(),
+                getCrs(request));
+    }
+
+    private String getCrs(AbstractObservationRequest request) {
+        Object crs = request.getExtension(OWSConstants.AdditionalRequestParams.crs).map(Extension::getValue)
+                .map(value -> value instanceof SweAbstractSimpleType ? ((SweAbstractSimpleType<?>) value).getValue()
+                        : value)
+                .orElse(null);
+        if (crs == null && request instanceof SrsNameRequest && ((SrsNameRequest) request).isSetSrsName()) {
+            crs = ((SrsNameRequest) request).getSrsName();
+        }
+        return crs != null ? crs.toString() : null;
+    }
+
+    private String getConstellationKey(DatasetEntity dataset) {
+        return KEY_JOINER.join(dataset.getProcedure().getIdentifier(), dataset.getPhenomenon().getIdentifier(),
+                dataset.getFeature() != null ? dataset.getFeature().getIdentifier() : null);
+    }
+
+    private String getConstellationKey(OmObservationConstellation constellation) {
+        return KEY_JOINER.join(constellation.isSetProcedure() ? constellation.getProcedureIdentifier() : null,
+                constellation.getObservableProperty() != null ? constellation.getObservablePropertyIdentifier()
+                        : null,
+                constellation.isSetFeatureOfInterest() ? constellation.getFeatureOfInterestIdentifier() : null);
+    }
+
+    private List<OmObservation> copy(List<OmObservation> observations) {
+        return observations.stream().map(observation -> {
+            OmObservation copy = observation.copyTo(new OmObservation());
+            copy.setObservationConstellation(observation.getObservationConstellation().copy());
+            return copy;
+        }).collect(Collectors.toList());
+    }
+
+    private static class DatasetValues {
+        private final String constellation;
+
+        private final Map<String, Entry> entries = new HashMap<>();
+
+        DatasetValues(String constellation) {
+            this.constellation = constellation;
+        }
+    }
+
+    private static class Entry {
+        private final Date time;
+
+        private final List<OmObservation> observations;
+
+        Entry(Date time, List<OmObservation> observations) {
+            this.time = time;
+            this.observations = observations;
+        }
+    }
+}
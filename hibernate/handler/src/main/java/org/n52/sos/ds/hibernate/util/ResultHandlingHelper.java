@@ -28,6 +28,7 @@
  */
 package org.n52.sos.ds.hibernate.util;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Date;
@@ -170,55 +171,8 @@ public class ResultHandlingHelper implements HibernateUnproxy {
                             ((ProfileDataEntity) observation).getDataset().getVerticalMetadata(), session));
                     builder.append(blockSeparator);
                 } else {
-                    for (final Entry<Integer, String> entry : valueOrder.entrySet()) {
-                        final String definition = entry.getValue();
-                        switch (definition) {
-                            case OmConstants.PHENOMENON_TIME:
-                                builder.append(getTimeStringForPhenomenonTime(observation.getSamplingTimeStart(),
-                                        observation.getSamplingTimeEnd(), noDataPlaceholder));
-                                break;
-                            case OmConstants.RESULT_TIME:
-                                builder.append(
-                                        getTimeStringForResultTime(observation.getResultTime(), noDataPlaceholder));
-                                break;
-                            case OmConstants.PARAM_NAME_SAMPLING_GEOMETRY:
-                                builder.append(
-                                        getSamplingGeometry(observation, tokenSeparator, sosResultStructure.get()
-                                                .get(), noDataPlaceholder));
-                                break;
-                            case OmConstants.OM_PARAMETER:
-                            case OmConstants.PARAMETER:
-                                builder.append(getParameters(observation, tokenSeparator, sosResultStructure.get()
-                                        .get(), vertical));
-                                break;
-                            case OM_PROCEDURE:
-                                if (observation.getDataset()
-                                        .getProcedure() != null && observation.getDataset().getProcedure()
-                                                .isSetIdentifier()) {
-                                    builder.append(observation.getDataset().getProcedure().getIdentifier());
-                                } else {
-                                    builder.append("");
-                                }
-                                break;
-                            case OM_FEATURE_OF_INTEREST:
-                                if (observation.getDataset()
-                                        .getFeature() != null && observation.getDataset()
-                                                .getFeature()
-                                                .isSetIdentifier()) {
-                                    builder.append(observation.getDataset()
-                                            .getFeature()
-                                            .getIdentifier());
-                                } else {
-                                    builder.append("");
-                                }
-                                break;
-                            default:
-                                builder.append(getValueAsStringForObservedProperty(observation, definition));
-                                break;
-                        }
-                        builder.append(tokenSeparator);
-                    }
-                    builder.delete(builder.lastIndexOf(tokenSeparator), builder.length());
+                    builder.append(createResultValuesFromObservation(observation, sosResultStructure,
+                            noDataPlaceholder, valueOrder, tokenSeparator, vertical));
                     builder.append(blockSeparator);
                 }
             }
@@ -229,6 +183,146 @@ public class ResultHandlingHelper implements HibernateUnproxy {
         return builder.toString();
     }
 
+    /**
+     * Write result values from observations according to ResultEncoding and
+     * ResultStructure to the {@link Appendable}. In contrast to
+     * {@link #createResultValuesFromObservations(Collection, SosResultEncoding, SosResultStructure, String, Session)}
+     * the observations are not required to be held in memory, each
+     * observation and the child observations of profile and complex
+     * observations are evicted from the session after they are written. This
+     * allows to write the values while a {@link ScrollableIterable} is still
+     * open.
+     *
+     * The element count is not written, each value block is preceded by the
+     * block separator. Consecutive rows of the same observation, e.g. from
+     * joins of the query restrictions, are written once, so the observations
+     * have to be ordered by id within equal times.
+     *
+     * @param observations
+     *            Observations to write result values for
+     * @param sosResultEncoding
+     *            The ResultEncoding
+     * @param sosResultStructure
+     *            The ResultStructure
+     * @param noDataPlaceholder
+     *            The no data placeholder
+     * @param out
+     *            The {@link Appendable} to write to
+     * @param session
+     *            The Hibernate session
+     * @return Number of written observations
+     * @throws OwsExceptionReport
+     *             If creation fails
+     * @throws IOException
+     *             If writing fails
+     */
+    public long writeResultValuesFromObservations(Iterable<DataEntity<?>> observations,
+            SosResultEncoding sosResultEncoding, SosResultStructure sosResultStructure, String noDataPlaceholder,
+            Appendable out, Session session) throws OwsExceptionReport, IOException {
+        final Map<Integer, String> valueOrder = getValueOrderMap(sosResultStructure.get()
+                .get());
+        final String tokenSeparator = getTokenSeparator(sosResultEncoding.get()
+                .get());
+        final String blockSeparator = getBlockSeparator(sosResultEncoding.get()
+                .get());
+        long written = 0;
+        Long lastId = null;
+        for (final DataEntity<?> obs : observations) {
+            if (lastId != null && lastId.equals(obs.getId())) {
+                session.evict(obs);
+                continue;
+            }
+            lastId = obs.getId();
+            DataEntity<?> observation = unproxy(obs, session);
+            out.append(blockSeparator);
+            if (observation instanceof ProfileDataEntity) {
+                out.append(createResultValuesFromObservations(((ProfileDataEntity) observation).getValue(),
+                        sosResultEncoding, sosResultStructure, noDataPlaceholder, valueOrder, false,
+                        ((ProfileDataEntity) observation).getDataset().getVerticalMetadata(), session));
+            } else {
+                out.append(createResultValuesFromObservation(observation, sosResultStructure, noDataPlaceholder,
+                        valueOrder, tokenSeparator, null));
+            }
+            evict(observation, session);
+            session.evict(obs);
+            written++;
+        }
+        return written;
+    }
+
+    private void evict(DataEntity<?> observation, Session session) {
+        Collection<DataEntity<?>> children = null;
+        if (observation instanceof ProfileDataEntity) {
+            children = ((ProfileDataEntity) observation).getValue();
+        } else if (observation instanceof ComplexDataEntity) {
+            children = ((ComplexDataEntity) observation).getValue();
+        }
+        if (children != null) {
+            for (DataEntity<?> child : children) {
+                evict(child, session);
+            }
+        }
+        session.evict(observation);
+    }
+
+    private String createResultValuesFromObservation(DataEntity<?> observation,
+            SosResultStructure sosResultStructure, String noDataPlaceholder, Map<Integer, String> valueOrder,
+            String tokenSeparator, VerticalMetadataEntity vertical) throws OwsExceptionReport {
+        final StringBuilder builder = new StringBuilder();
+        for (final Entry<Integer, String> entry : valueOrder.entrySet()) {
+            final String definition = entry.getValue();
+            switch (definition) {
+                case OmConstants.PHENOMENON_TIME:
+                    builder.append(getTimeStringForPhenomenonTime(observation.getSamplingTimeStart(),
+                            observation.getSamplingTimeEnd(), noDataPlaceholder));
+                    break;
+                case OmConstants.RESULT_TIME:
+                    builder.append(
+                            getTimeStringForResultTime(observation.getResultTime(), noDataPlaceholder));
+                    break;
+                case OmConstants.PARAM_NAME_SAMPLING_GEOMETRY:
+                    builder.append(
+                            getSamplingGeometry(observation, tokenSeparator, sosResultStructure.get()
+                                    .get(), noDataPlaceholder));
+                    break;
+                case OmConstants.OM_PARAMETER:
+                case OmConstants.PARAMETER:
+                    builder.append(getParameters(observation, tokenSeparator, sosResultStructure.get()
+                            .get(), vertical));
+                    break;
+                case OM_PROCEDURE:
+                    if (observation.getDataset()
+                            .getProcedure() != null && observation.getDataset().getProcedure()
+                                    .isSetIdentifier()) {
+                        builder.append(observation.getDataset().getProcedure().getIdentifier());
+                    } else {
+                        builder.append("");
+                    }
+                    break;
+                case OM_FEATURE_OF_INTEREST:
+                    if (observation.getDataset()
+                            .getFeature() != null && observation.getDataset()
+                                    .getFeature()
+                                    .isSetIdentifier()) {
+                        builder.append(observation.getDataset()
+                                .getFeature()
+                                .getIdentifier());
+                    } else {
+                        builder.append("");
+                    }
+                    break;
+                default:
+                    builder.append(getValueAsStringForObservedProperty(observation, definition));
+                    break;
+            }
+            builder.append(tokenSeparator);
+        }
+        if (builder.length() > 0) {
+            builder.delete(builder.lastIndexOf(tokenSeparator), builder.length());
+        }
+        return builder.toString();
+    }
+
     /**
      * Get token separator from encoding
      *
@@ -100,7 +100,8 @@ import com.google.common.collect.Maps;
  * @since 4.1.0
  *
  */
-public abstract class AbstractHibernateStreamingValue extends StreamingValue<DataEntity<?>> {
+public abstract class AbstractHibernateStreamingValue extends StreamingValue<DataEntity<?>>
+        implements AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractHibernateStreamingValue.class);
 
@@ -116,6 +117,8 @@ public abstract class AbstractHibernateStreamingValue extends StreamingValue<Dat
 
     private Session session;
 
+    private StreamingSessionScope sessionScope;
+
     private BindingRepository bindingRepository;
 
     /**
@@ -137,7 +140,26 @@ public abstract class AbstractHibernateStreamingValue extends StreamingValue<Dat
         this.bindingRepository = bindingRepository;
     }
 
+    protected HibernateSessionHolder getSessionHolder() {
+        return sessionHolder;
+    }
+
+    /**
+     * Bind this streaming value to the session of the request. The session is
+     * used for all queries until the values are exhausted.
+     *
+     * @param sessionScope
+     *            the session scope of the request
+     */
+    public void setSessionScope(StreamingSessionScope sessionScope) {
+        sessionScope.retain();
+        this.sessionScope = sessionScope;
+    }
+
     protected Session getSession() throws OwsExceptionReport {
+        if (sessionScope != null) {
+            return sessionScope.getSession();
+        }
         if (session == null) {
             session = sessionHolder.getSession();
         }
@@ -145,11 +167,46 @@ public abstract class AbstractHibernateStreamingValue extends StreamingValue<Dat
         return session;
     }
 
+    /**
+     * Return the session after a single query. A session bound to the request
+     * is kept until {@link #releaseSession()} is called.
+     *
+     * @param session
+     *            the session to return
+     */
     protected void returnSession(Session session) {
+        if (sessionScope != null) {
+            return;
+        }
         this.session = null;
         sessionHolder.returnSession(session);
     }
 
+    /**
+     * Release the session after the values are exhausted or an error occurred.
+     */
+    protected void releaseSession() {
+        if (sessionScope != null) {
+            sessionScope.release();
+            sessionScope = null;
+        } else if (session != null) {
+            returnSession(session);
+        }
+    }
+
+    /**
+     * Release the session of a streaming value that is not consumed
+     * completely, e.g. because the creation or the encoding of the response
+     * failed or the client disconnected. Calling this method for exhausted
+     * values has no effect.
+     *
+     * @since 5.1.1
+     */
+    @Override
+    public void close() {
+        releaseSession();
+    }
+
     @Override
     public ObservationStream merge() throws OwsExceptionReport {
         Map<String, OmObservation> observations = Maps.newHashMap();
@@ -169,7 +226,7 @@ public abstract class AbstractHibernateStreamingValue extends StreamingValue<Dat
                 }
             }
             mergeValueToObservation(nextEntity, observation, getResponseFormat());
-            sessionHolder.getSession().evict(nextEntity);
+            getSession().evict(nextEntity);
         }
         return ObservationStream.of(observations.values());
     }
@@ -180,19 +237,11 @@ public abstract class AbstractHibernateStreamingValue extends StreamingValue<Dat
 
     private void addSpecificValuesToObservation(OmObservation observation, DataEntity<?> value,
             Extensions extensions) {
-        boolean newSession = false;
         try {
-            if (session == null) {
-                session = sessionHolder.getSession();
-                newSession = true;
-            }
-            addValueSpecificDataToObservation(value, observation, session, extensions);
+            // the session of the values is returned when they are exhausted
+            addValueSpecificDataToObservation(value, observation, getSession(), extensions);
         } catch (OwsExceptionReport owse) {
             LOGGER.error("Error while querying times", owse);
-        } finally {
-            if (newSession) {
-                sessionHolder.returnSession(session);
-            }
         }
     }
 
@@ -43,6 +43,7 @@ public class HibernateStreamingConfiguration {
 
     private static int DEFAULT_CHUNK_SIZE = 10000;
     private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private boolean keysetPagination;
 
     /**
      * Set the chunk size for chunk streaming
@@ -64,4 +65,25 @@ public class HibernateStreamingConfiguration {
         return chunkSize;
     }
 
+    /**
+     * Set whether chunks should be queried with keyset (seek) pagination
+     * instead of row offsets
+     *
+     * @param keysetPagination
+     *            the keyset pagination flag
+     */
+    @Setting(HibernateStreamingSettings.KEYSET_PAGINATION)
+    public void setKeysetPagination(boolean keysetPagination) {
+        this.keysetPagination = keysetPagination;
+    }
+
+    /**
+     * Is keyset (seek) pagination enabled
+     *
+     * @return <code>true</code>, if keyset pagination is enabled
+     */
+    public boolean isKeysetPagination() {
+        return keysetPagination;
+    }
+
 }
@@ -39,4 +39,12 @@ public interface HibernateStreamingSettings {
 
     String CHUNK_SIZE = "service.streaming.datasource.chunkSize";
 
+    String KEYSET_PAGINATION = "service.streaming.datasource.keysetPagination";
+
+    String RESULT_STREAMING = "service.streaming.datasource.getResult";
+
+    String READ_AHEAD = "service.streaming.datasource.readAhead";
+
+    String READ_AHEAD_THREADS = "service.streaming.datasource.readAheadThreads";
+
 }
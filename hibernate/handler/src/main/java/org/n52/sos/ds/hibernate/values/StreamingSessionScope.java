@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.values;
+
+import org.hibernate.Session;
+import org.n52.shetland.ogc.ows.exception.NoApplicableCodeException;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.sos.ds.hibernate.HibernateSessionHolder;
+
+/**
+ * Reference counted session of a single request, which is shared by the
+ * query of the observation templates and the streaming values of the
+ * response. The creator holds the first reference, every streaming value
+ * retains a reference until it is exhausted. The session is returned to the
+ * connection provider when the last reference is released.
+ *
+ * @since 5.1.1
+ */
+public class StreamingSessionScope {
+
+    private final HibernateSessionHolder sessionHolder;
+
+    private final Session session;
+
+    private int references = 1;
+
+    /**
+     * @param sessionHolder
+     *            the session holder the session was borrowed from
+     * @param session
+     *            the session of the request
+     */
+    public StreamingSessionScope(HibernateSessionHolder sessionHolder, Session session) {
+        this.sessionHolder = sessionHolder;
+        this.session = session;
+    }
+
+    /**
+     * @return the session of the request
+     * @throws OwsExceptionReport
+     *             if the session was already returned
+     */
+    public synchronized Session getSession() throws OwsExceptionReport {
+        if (references <= 0) {
+            throw new NoApplicableCodeException().withMessage("The session of the request was already returned!");
+        }
+        return session;
+    }
+
+    /**
+     * Add a reference to the session.
+     */
+    public synchronized void retain() {
+        if (references <= 0) {
+            throw new IllegalStateException("The session of the request was already returned!");
+        }
+        references++;
+    }
+
+    /**
+     * Remove a reference to the session and return it, if it was the last.
+     */
+    public synchronized void release() {
+        if (references > 0 && --references == 0) {
+            sessionHolder.returnSession(session);
+        }
+    }
+
+    /**
+     * @return if the session was returned
+     */
+    public synchronized boolean isReleased() {
+        return references <= 0;
+    }
+}
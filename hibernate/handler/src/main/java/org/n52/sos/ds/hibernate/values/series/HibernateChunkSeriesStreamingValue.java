@@ -31,6 +31,10 @@ package org.n52.sos.ds.hibernate.values.series;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
@@ -68,6 +72,24 @@ public class HibernateChunkSeriesStreamingValue extends HibernateSeriesStreaming
 
     private int currentResultSize;
 
+    private boolean keysetPagination;
+
+    private DataEntity<?> lastValue;
+
+    private volatile boolean lastChunkQueried;
+
+    private StreamingReadAhead readAhead;
+
+    private Future<?> pendingChunk;
+
+    private boolean pendingChunkStarted;
+
+    private Chunk readyChunk;
+
+    private Chunk currentChunk;
+
+    private boolean closed;
+
     /**
      * constructor
      *
@@ -89,22 +111,44 @@ public class HibernateChunkSeriesStreamingValue extends HibernateSeriesStreaming
         this.chunkSize = chunkSize;
     }
 
+    /**
+     * Set whether the chunks should be queried with keyset (seek) pagination,
+     * i.e. starting after the last value of the previous chunk instead of
+     * skipping the already queried rows.
+     *
+     * @param keysetPagination
+     *            the keyset pagination flag
+     */
+    public void setKeysetPagination(boolean keysetPagination) {
+        this.keysetPagination = keysetPagination;
+    }
+
+    /**
+     * Let the read-ahead of the request query the chunks of this series in
+     * advance.
+     *
+     * @param readAhead
+     *            the read-ahead of the request
+     */
+    public void setReadAhead(StreamingReadAhead readAhead) {
+        this.readAhead = readAhead;
+        readAhead.register(this);
+    }
+
     @Override
     public boolean hasNext() throws OwsExceptionReport {
         boolean next = false;
-        if ((seriesValuesResult == null || !seriesValuesResult.hasNext()) && getSession().isOpen()) {
-            if (!noChunk) {
-                getNextResults();
-                if (chunkSize <= 0 || currentResultSize < chunkSize) {
-                    noChunk = true;
-                }
+        if ((seriesValuesResult == null || !seriesValuesResult.hasNext()) && !noChunk && getSession().isOpen()) {
+            getNextResults();
+            if (chunkSize <= 0 || currentResultSize < chunkSize) {
+                noChunk = true;
             }
         }
         if (seriesValuesResult != null) {
             next = seriesValuesResult.hasNext();
         }
         if (!next) {
-            returnSession(getSession());
+            releaseSession();
         }
 
         return next;
@@ -121,14 +165,17 @@ public class HibernateChunkSeriesStreamingValue extends HibernateSeriesStreaming
             if (hasNext()) {
                 DataEntity<?> resultObject = seriesValuesResult.next();
                 TimeValuePair value = createTimeValuePairFrom(resultObject);
-                getSession().evict(resultObject);
+                evict(resultObject);
                 return value;
             }
             return null;
         } catch (final HibernateException he) {
-            returnSession(getSession());
+            releaseSession();
             throw new NoApplicableCodeException().causedBy(he).withMessage(ERROR_LOG)
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
+        } catch (final OwsExceptionReport owse) {
+            releaseSession();
+            throw owse;
         }
     }
 
@@ -140,14 +187,17 @@ public class HibernateChunkSeriesStreamingValue extends HibernateSeriesStreaming
                 DataEntity<?> resultObject = seriesValuesResult.next();
                 addValuesToObservation(resultObject, observation, getResponseFormat());
                 checkForModifications(observation);
-                getSession().evict(resultObject);
+                evict(resultObject);
                 return observation;
             }
             return null;
         } catch (final HibernateException he) {
-            returnSession(getSession());
+            releaseSession();
             throw new NoApplicableCodeException().causedBy(he).withMessage(ERROR_LOG)
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
+        } catch (final OwsExceptionReport owse) {
+            releaseSession();
+            throw owse;
         }
     }
 
@@ -158,26 +208,169 @@ public class HibernateChunkSeriesStreamingValue extends HibernateSeriesStreaming
      *             If an error occurs when querying the next results
      */
     private void getNextResults() throws OwsExceptionReport {
-        Session session = null;
         try {
-            session = getSession();
-            // query with temporal filter
-            Collection<DataEntity<?>> resutltValues = new ArrayList<>();
-            if (temporalFilterCriterion != null) {
-                resutltValues.addAll(seriesValueDAO.getStreamingSeriesValuesFor(request, series,
-                        temporalFilterCriterion, chunkSize, currentRow, session));
+            if (readAhead != null) {
+                closeChunk(currentChunk);
+                Chunk chunk = takePendingChunk();
+                currentChunk = chunk != null ? chunk : new Chunk(null, queryChunk(getSession()));
+                checkMaxNumberOfReturnedValues(currentChunk.values.size());
+                setSeriesValuesResult(currentChunk.values);
+                readAhead.fill(this);
             } else {
-                // query without temporal or indeterminate filters
-                resutltValues.addAll(seriesValueDAO.getStreamingSeriesValuesFor(request, series, chunkSize, currentRow,
-                        getSession()));
+                List<DataEntity<?>> resutltValues = queryChunk(getSession());
+                checkMaxNumberOfReturnedValues(resutltValues.size());
+                setSeriesValuesResult(resutltValues);
             }
-            currentRow += chunkSize;
-            checkMaxNumberOfReturnedValues(resutltValues.size());
-            setSeriesValuesResult(resutltValues);
         } catch (final HibernateException he) {
-            returnSession(session);
+            releaseSession();
             throw new NoApplicableCodeException().causedBy(he).withMessage(ERROR_LOG)
                     .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
+        } catch (final OwsExceptionReport owse) {
+            releaseSession();
+            throw owse;
+        }
+    }
+
+    /**
+     * Query the next chunk and advance the position in the series.
+     *
+     * @param session
+     *            the session to query the chunk with
+     * @return the values of the chunk
+     * @throws OwsExceptionReport
+     *             If an error occurs when querying the chunk
+     */
+    private List<DataEntity<?>> queryChunk(Session session) throws OwsExceptionReport {
+        List<DataEntity<?>> resutltValues = new ArrayList<>();
+        if (keysetPagination && chunkSize > 0) {
+            // query the chunk after the last value of the previous chunk
+            resutltValues.addAll(seriesValueDAO.getStreamingSeriesValuesAfter(request, series,
+                    temporalFilterCriterion, chunkSize, lastValue, session));
+            if (!resutltValues.isEmpty()) {
+                lastValue = resutltValues.get(resutltValues.size() - 1);
+            }
+        } else if (temporalFilterCriterion != null) {
+            // query with temporal filter
+            resutltValues.addAll(seriesValueDAO.getStreamingSeriesValuesFor(request, series,
+                    temporalFilterCriterion, chunkSize, currentRow, session));
+        } else {
+            // query without temporal or indeterminate filters
+            resutltValues.addAll(seriesValueDAO.getStreamingSeriesValuesFor(request, series, chunkSize, currentRow,
+                    session));
+        }
+        currentRow += chunkSize;
+        if (chunkSize <= 0 || resutltValues.size() < chunkSize) {
+            lastChunkQueried = true;
+        }
+        return resutltValues;
+    }
+
+    @Override
+    protected void releaseSession() {
+        if (readAhead != null) {
+            closeChunk(currentChunk);
+            currentChunk = null;
+            synchronized (this) {
+                closed = true;
+                closeChunk(readyChunk);
+                readyChunk = null;
+                if (pendingChunk != null) {
+                    pendingChunk.cancel(false);
+                    // a running query closes its chunk itself, one that never starts returns its permit here
+                    if (!pendingChunkStarted) {
+                        readAhead.release();
+                    }
+                    pendingChunk = null;
+                }
+            }
+        }
+        super.releaseSession();
+    }
+
+    /**
+     * @return if the next chunk of this series can be queried in advance
+     */
+    synchronized boolean canPrefetch() {
+        return !closed && pendingChunk == null && !lastChunkQueried;
+    }
+
+    /**
+     * Query the next chunk with a separate session in the background. The
+     * session is kept open until the chunk is consumed, so lazy associations
+     * of the values can still be loaded. The queried chunk is handed over to
+     * this streaming value, unless it was released meanwhile. In this case
+     * the query closes the chunk itself, while a query that was not started
+     * yet is cancelled and its permit is returned by {@link #releaseSession()}.
+     *
+     * @param executor
+     *            the executor to query the chunk
+     */
+    synchronized void prefetch(ExecutorService executor) {
+        pendingChunkStarted = false;
+        pendingChunk = executor.submit(() -> {
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                pendingChunkStarted = true;
+            }
+            Session session = null;
+            try {
+                session = getSessionHolder().getSession();
+                Chunk chunk = new Chunk(session, queryChunk(session));
+                synchronized (this) {
+                    if (closed) {
+                        closeChunk(chunk);
+                    } else {
+                        readyChunk = chunk;
+                    }
+                }
+                return null;
+            } catch (HibernateException | OwsExceptionReport e) {
+                getSessionHolder().returnSession(session);
+                readAhead.release();
+                throw e;
+            }
+        });
+    }
+
+    private Chunk takePendingChunk() throws OwsExceptionReport {
+        Future<?> future;
+        synchronized (this) {
+            future = pendingChunk;
+            pendingChunk = null;
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            future.get();
+            synchronized (this) {
+                Chunk chunk = readyChunk;
+                readyChunk = null;
+                return chunk;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoApplicableCodeException().causedBy(e).withMessage(ERROR_LOG);
+        } catch (ExecutionException e) {
+            throw new NoApplicableCodeException().causedBy(e.getCause()).withMessage(ERROR_LOG)
+                    .setStatus(HTTPStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void closeChunk(Chunk chunk) {
+        if (chunk != null && chunk.session != null) {
+            getSessionHolder().returnSession(chunk.session);
+            readAhead.release();
+        }
+    }
+
+    private void evict(DataEntity<?> resultObject) throws OwsExceptionReport {
+        if (currentChunk != null && currentChunk.session != null) {
+            currentChunk.session.evict(resultObject);
+        } else {
+            getSession().evict(resultObject);
         }
     }
 
@@ -196,4 +389,18 @@ public class HibernateChunkSeriesStreamingValue extends HibernateSeriesStreaming
 
     }
 
+    /**
+     * The values of a chunk and the session they were queried with, if it
+     * is not the session of the streaming value.
+     */
+    private static final class Chunk {
+        private final Session session;
+        private final List<DataEntity<?>> values;
+
+        Chunk(Session session, List<DataEntity<?>> values) {
+            this.session = session;
+            this.values = values;
+        }
+    }
+
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.values.series;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Read-ahead of the chunk streaming values of a single request. While a
+ * series is consumed, the next chunks of this and the following series are
+ * queried in the background. Every chunk queried in advance holds a session
+ * until it is consumed, the window therefore limits both the buffered chunks
+ * and the connections used by the request for read-ahead.
+ *
+ * @since 5.1.1
+ */
+public class StreamingReadAhead {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingReadAhead.class);
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final List<HibernateChunkSeriesStreamingValue> values = new ArrayList<>();
+
+    private int current;
+
+    /**
+     * @param executor
+     *            the executor to query the chunks
+     * @param window
+     *            the maximum number of chunks queried in advance
+     */
+    public StreamingReadAhead(ExecutorService executor, int window) {
+        this.executor = executor;
+        this.permits = new Semaphore(window);
+    }
+
+    synchronized void register(HibernateChunkSeriesStreamingValue value) {
+        values.add(value);
+    }
+
+    /**
+     * Schedule the queries of the next chunks, starting with the series that
+     * is currently consumed.
+     *
+     * @param consumed
+     *            the currently consumed series
+     */
+    synchronized void fill(HibernateChunkSeriesStreamingValue consumed) {
+        current = Math.max(current, values.indexOf(consumed));
+        for (int i = current; i < values.size(); i++) {
+            HibernateChunkSeriesStreamingValue value = values.get(i);
+            if (value.canPrefetch()) {
+                if (!permits.tryAcquire()) {
+                    return;
+                }
+                try {
+                    value.prefetch(executor);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.debug("Read-ahead of series values rejected", e);
+                    permits.release();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the permit of a chunk queried in advance after it was consumed.
+     */
+    void release() {
+        permits.release();
+    }
+
+    @VisibleForTesting
+    int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.CategoryEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.FormatEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.PhenomenonEntity;
+import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.beans.dataset.DatasetType;
+import org.n52.shetland.ogc.filter.FilterConstants.SpatialOperator;
+import org.n52.shetland.ogc.filter.SpatialFilter;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.om.OmConstants;
+import org.n52.shetland.ogc.om.features.FeatureCollection;
+import org.n52.shetland.ogc.om.features.SfConstants;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.Sos2Constants;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.shetland.ogc.sos.request.GetFeatureOfInterestRequest;
+import org.n52.sos.ds.hibernate.H2Configuration;
+import org.n52.sos.ds.hibernate.HibernateTestCase;
+import org.n52.sos.util.GeometryHandler;
+
+/**
+ * Test the single query path of {@link GetFeatureOfInterestHandler} against
+ * the expected features and the entity based path.
+ */
+public class GetFeatureOfInterestHandlerTest extends HibernateTestCase {
+
+    private static final String PROCEDURE_1 = "procedure1";
+
+    private static final String PROCEDURE_2 = "procedure2";
+
+    private static final String OBSPROP_1 = "obsprop1";
+
+    private static final String OBSPROP_2 = "obsprop2";
+
+    private static final String FEATURE_A = "featureA";
+
+    private static final String FEATURE_B = "featureB";
+
+    private static final String FEATURE_WITHOUT_DATASET = "featureWithoutDataset";
+
+    private static final String FEATURE_DELETED = "featureOfDeletedDataset";
+
+    private static final String FEATURE_UNPUBLISHED = "featureOfUnpublishedDataset";
+
+    private static final String PARENT = "parent";
+
+    private static final String GRANDPARENT = "grandparent";
+
+    private static final GeometryFactory FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private final GetFeatureOfInterestHandler handler = new GetFeatureOfInterestHandler();
+
+    private final HibernateSessionStore sessionStore = new HibernateSessionStore() {
+        @Override
+        public Session getSession() {
+            return HibernateTestCase.getSession();
+        }
+
+        @Override
+        public void returnSession(Session session) {
+            HibernateTestCase.returnSession(session);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    };
+
+    private final Map<String, ProcedureEntity> procedures = new HashMap<>();
+
+    private final Map<String, PhenomenonEntity> phenomena = new HashMap<>();
+
+    private FormatEntity featureType;
+
+    private FormatEntity observationType;
+
+    private OfferingEntity offering;
+
+    private CategoryEntity category;
+
+    private PlatformEntity platform;
+
+    @Before
+    public void setUp() {
+        GeometryHandler geometryHandler = new GeometryHandler();
+        geometryHandler.setAuthority("EPSG");
+        geometryHandler.setStorageEpsg(4326);
+        geometryHandler.setSpatialDatasource(true);
+        geometryHandler.init();
+        handler.setGeometryHandler(geometryHandler);
+        handler.setConnectionProvider(sessionStore);
+        handler.setGetFeatureOfInterestDao(Optional.empty());
+
+        Session session = getSession();
+        Transaction transaction = session.beginTransaction();
+        try {
+            createReferences(session);
+            FeatureEntity grandparent = createFeature(session, GRANDPARENT, null);
+            FeatureEntity parent = createFeature(session, PARENT, null, grandparent);
+            FeatureEntity featureA = createFeature(session, FEATURE_A, point(5, 6));
+            FeatureEntity featureB = createFeature(session, FEATURE_B, point(6, 5), parent);
+            createFeature(session, FEATURE_WITHOUT_DATASET, point(30, 30));
+            FeatureEntity deleted = createFeature(session, FEATURE_DELETED, point(40, 40));
+            FeatureEntity unpublished = createFeature(session, FEATURE_UNPUBLISHED, point(40, 41));
+            createDataset(session, featureA, PROCEDURE_1, OBSPROP_1, false, true);
+            createDataset(session, featureB, PROCEDURE_2, OBSPROP_2, false, true);
+            createDataset(session, deleted, PROCEDURE_1, OBSPROP_1, true, true);
+            createDataset(session, unpublished, PROCEDURE_1, OBSPROP_1, false, false);
+            session.flush();
+            transaction.commit();
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        H2Configuration.truncate();
+    }
+
+    @AfterClass
+    public static void cleanUp() {
+        H2Configuration.recreate();
+    }
+
+    @Test
+    public void should_include_features_without_datasets_if_unconstrained() throws OwsExceptionReport {
+        assertThat(getIdentifiers(queryFeatures(createRequest())),
+                contains(FEATURE_A, FEATURE_B, FEATURE_WITHOUT_DATASET, GRANDPARENT, PARENT));
+    }
+
+    @Test
+    public void should_query_features_by_identifier() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setFeatureIdentifiers(Arrays.asList(FEATURE_A, FEATURE_WITHOUT_DATASET, FEATURE_DELETED));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_A, FEATURE_WITHOUT_DATASET));
+    }
+
+    @Test
+    public void should_query_features_by_more_identifiers_than_allowed_in_one_expression()
+            throws OwsExceptionReport {
+        List<String> identifiers = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            identifiers.add("unknown" + i);
+        }
+        identifiers.add(FEATURE_B);
+        identifiers.add(1200, FEATURE_A);
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setFeatureIdentifiers(identifiers);
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_A, FEATURE_B));
+    }
+
+    @Test
+    public void should_query_features_by_procedure() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setProcedures(Collections.singletonList(PROCEDURE_1));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_A));
+    }
+
+    @Test
+    public void should_query_features_by_observed_property() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setObservedProperties(Collections.singletonList(OBSPROP_2));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_B));
+    }
+
+    @Test
+    public void should_combine_procedure_and_observed_property() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setProcedures(Collections.singletonList(PROCEDURE_2));
+        request.setObservedProperties(Collections.singletonList(OBSPROP_1));
+        assertThat(queryFeatures(request).getMembers().isEmpty(), is(true));
+
+        request.setObservedProperties(Collections.singletonList(OBSPROP_2));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_B));
+    }
+
+    @Test
+    public void should_combine_identifier_and_procedure() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setFeatureIdentifiers(Arrays.asList(FEATURE_A, FEATURE_B, FEATURE_WITHOUT_DATASET));
+        request.setProcedures(Collections.singletonList(PROCEDURE_2));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_B));
+    }
+
+    @Test
+    public void should_query_features_by_spatial_filter() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setSpatialFilters(Collections.singletonList(createBBox()));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_A, FEATURE_B));
+
+        request.setObservedProperties(Collections.singletonList(OBSPROP_1));
+        assertThat(getIdentifiers(queryFeatures(request)), contains(FEATURE_A));
+    }
+
+    @Test
+    public void should_resolve_parent_hierarchies() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest request = createRequest();
+        request.setFeatureIdentifiers(Collections.singletonList(FEATURE_B));
+        Map<String, AbstractFeature> members = queryFeatures(request).getMembers();
+        assertThat(members.keySet(), contains(FEATURE_B));
+        SamplingFeature feature = (SamplingFeature) members.get(FEATURE_B);
+        assertThat(feature.getSampledFeatures(), hasSize(1));
+        SamplingFeature parent = (SamplingFeature) feature.getSampledFeatures().get(0);
+        assertThat(parent.getIdentifier(), is(PARENT));
+        assertThat(parent.getSampledFeatures(), hasSize(1));
+        assertThat(parent.getSampledFeatures().get(0).getIdentifier(), is(GRANDPARENT));
+    }
+
+    @Test
+    public void should_match_entity_based_path() throws OwsExceptionReport {
+        GetFeatureOfInterestRequest identifiers = createRequest();
+        identifiers.setFeatureIdentifiers(Arrays.asList(FEATURE_A, FEATURE_B, FEATURE_WITHOUT_DATASET));
+        assertSameFeatures(identifiers);
+
+        GetFeatureOfInterestRequest procedure = createRequest();
+        procedure.setProcedures(Collections.singletonList(PROCEDURE_2));
+        assertSameFeatures(procedure);
+
+        GetFeatureOfInterestRequest observedProperty = createRequest();
+        observedProperty.setObservedProperties(Collections.singletonList(OBSPROP_2));
+        assertSameFeatures(observedProperty);
+
+        GetFeatureOfInterestRequest spatialFilter = createRequest();
+        spatialFilter.setSpatialFilters(Collections.singletonList(createBBox()));
+        assertSameFeatures(spatialFilter);
+    }
+
+    private void assertSameFeatures(GetFeatureOfInterestRequest request) throws OwsExceptionReport {
+        Session session = getSession();
+        try {
+            Map<String, String> expected = describe(handler.queryFeatureEntities(request, session));
+            Map<String, String> actual = describe(handler.queryFeatures(request, session));
+            assertThat(actual, is(expected));
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    /**
+     * Describe the features by identifier with name, geometry and the
+     * identifiers of the parent hierarchy.
+     */
+    private Map<String, String> describe(FeatureCollection features) {
+        Map<String, String> description = new HashMap<>();
+        for (AbstractFeature feature : features.getMembers().values()) {
+            description.put(feature.getIdentifier(), describe((SamplingFeature) feature));
+        }
+        return description;
+    }
+
+    private String describe(SamplingFeature feature) {
+        StringBuilder builder = new StringBuilder(feature.getIdentifier()).append('|')
+                .append(feature.getFirstName() != null ? feature.getFirstName().getValue() : null).append('|')
+                .append(feature.getGeometry() != null ? feature.getGeometry().toText() : null).append('[');
+        if (feature.getSampledFeatures() != null) {
+            for (AbstractFeature parent : feature.getSampledFeatures()) {
+                builder.append(describe((SamplingFeature) parent));
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    private FeatureCollection queryFeatures(GetFeatureOfInterestRequest request) throws OwsExceptionReport {
+        Session session = getSession();
+        try {
+            return handler.queryFeatures(request, session);
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    private Set<String> getIdentifiers(FeatureCollection features) {
+        return new TreeSet<>(features.getMembers().keySet());
+    }
+
+    private GetFeatureOfInterestRequest createRequest() {
+        GetFeatureOfInterestRequest request = new GetFeatureOfInterestRequest();
+        request.setService(SosConstants.SOS);
+        request.setVersion(Sos2Constants.SERVICEVERSION);
+        return request;
+    }
+
+    private SpatialFilter createBBox() {
+        Geometry envelope = FACTORY.toGeometry(new Envelope(0, 10, 0, 10));
+        envelope.setSRID(4326);
+        return new SpatialFilter(SpatialOperator.BBOX, envelope, "om:featureOfInterest/*/sams:shape");
+    }
+
+    private Geometry point(double x, double y) {
+        return FACTORY.createPoint(new Coordinate(x, y));
+    }
+
+    private void createReferences(Session session) {
+        featureType = createFormat(session, SfConstants.SAMPLING_FEAT_TYPE_SF_SAMPLING_POINT);
+        observationType = createFormat(session, OmConstants.OBS_TYPE_MEASUREMENT);
+        FormatEntity procedureFormat = createFormat(session, "http://www.opengis.net/sensorml/2.0");
+        for (String identifier : Arrays.asList(PROCEDURE_1, PROCEDURE_2)) {
+            ProcedureEntity procedure = new ProcedureEntity();
+            procedure.setIdentifier(identifier);
+            procedure.setFormat(procedureFormat);
+            session.save(procedure);
+            procedures.put(identifier, procedure);
+        }
+        for (String identifier : Arrays.asList(OBSPROP_1, OBSPROP_2)) {
+            PhenomenonEntity phenomenon = new PhenomenonEntity();
+            phenomenon.setIdentifier(identifier);
+            session.save(phenomenon);
+            phenomena.put(identifier, phenomenon);
+        }
+        offering = new OfferingEntity();
+        offering.setIdentifier("offering");
+        session.save(offering);
+        category = new CategoryEntity();
+        category.setIdentifier("category");
+        session.save(category);
+        platform = new PlatformEntity();
+        platform.setIdentifier("platform");
+        session.save(platform);
+    }
+
+    private FormatEntity createFormat(Session session, String format) {
+        FormatEntity entity = new FormatEntity();
+        entity.setFormat(format);
+        session.save(entity);
+        return entity;
+    }
+
+    private FeatureEntity createFeature(Session session, String identifier, Geometry geometry,
+            FeatureEntity... parents) {
+        FeatureEntity feature = new FeatureEntity();
+        feature.setIdentifier(identifier);
+        feature.setName(identifier);
+        feature.setFeatureType(featureType);
+        if (geometry != null) {
+            geometry.setSRID(4326);
+            feature.setGeometry(geometry);
+        }
+        if (parents.length > 0) {
+            feature.setParents(new HashSet<>(Arrays.asList(parents)));
+        }
+        session.save(feature);
+        return feature;
+    }
+
+    private void createDataset(Session session, FeatureEntity feature, String procedure, String phenomenon,
+            boolean deleted, boolean published) {
+        DatasetEntity dataset = new DatasetEntity();
+        dataset.setFeature(feature);
+        dataset.setProcedure(procedures.get(procedure));
+        dataset.setObservableProperty(phenomena.get(phenomenon));
+        dataset.setOffering(offering);
+        dataset.setCategory(category);
+        dataset.setPlatform(platform);
+        dataset.setOmObservationType(observationType);
+        dataset.setDatasetType(DatasetType.timeseries);
+        dataset.setDeleted(deleted);
+        dataset.setPublished(published);
+        dataset.setHidden(false);
+        session.save(dataset);
+    }
+}
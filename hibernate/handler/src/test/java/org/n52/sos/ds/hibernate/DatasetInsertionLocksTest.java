@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.om.SingleObservationValue;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.om.values.QuantityValue;
+import org.n52.shetland.ogc.sensorML.SensorML;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Test for {@link DatasetInsertionLocks}. Mutual exclusion is checked with
+ * latches, so the tests do not depend on timing.
+ */
+public class DatasetInsertionLocksTest {
+
+    private static final int TRANSACTIONS = 64;
+
+    private static final int THREADS = 8;
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final DatasetInsertionLocks locks = new DatasetInsertionLocks();
+
+    @Test
+    public void should_create_different_keys_for_different_procedures() {
+        assertThat(locks.getKeys(createConstellation("procedure_1", "feature_1")).equals(
+                locks.getKeys(createConstellation("procedure_2", "feature_2"))), is(false));
+        assertThat(locks.getKeys(createConstellation("procedure_1", "feature_1")),
+                equalTo(locks.getKeys(createConstellation("procedure_1", "feature_1"))));
+    }
+
+    @Test
+    public void should_lock_different_datasets_in_parallel() throws Exception {
+        String first = "dataset_1";
+        String second = getKeyOfOtherStripe(first);
+        CountDownLatch bothLocked = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> firstResult = executor.submit(() -> lockAndAwait(first, bothLocked));
+            Future<Boolean> secondResult = executor.submit(() -> lockAndAwait(second, bothLocked));
+            assertThat(firstResult.get(), is(true));
+            assertThat(secondResult.get(), is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_serialize_same_dataset() throws Exception {
+        CountDownLatch firstLocked = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch secondLocked = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> {
+                try (DatasetInsertionLocks.Lease lease = locks.lockKeys(Collections.singleton("dataset"))) {
+                    firstLocked.countDown();
+                    releaseFirst.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+                return null;
+            });
+            assertThat(firstLocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+            Future<?> second = executor.submit(() -> {
+                try (DatasetInsertionLocks.Lease lease = locks.lockKeys(Collections.singleton("dataset"))) {
+                    secondLocked.countDown();
+                }
+            });
+            // the second request can not acquire the lock held by the first
+            assertThat(locks.getLock("dataset").tryLock(), is(false));
+            assertThat(secondLocked.getCount(), is(1L));
+            releaseFirst.countDown();
+            assertThat(secondLocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(true));
+            first.get();
+            second.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_not_deadlock_with_overlapping_keys() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                Set<String> keys = new LinkedHashSet<>(i % 2 == 0 ? Arrays.asList("a", "b", "c")
+                        : Arrays.asList("c", "b", "a"));
+                futures.add(executor.submit(() -> {
+                    locks.lockKeys(keys).release();
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_insert_into_different_datasets_in_parallel() throws Exception {
+        commitSharedEntities();
+        List<OmObservation> observations = createObservationsOfDifferentStripes(THREADS);
+        CountDownLatch allLocked = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (OmObservation observation : observations) {
+                futures.add(executor.submit(() -> {
+                    try (DatasetInsertionLocks.Lease lease = locks.lock(Collections.singleton(observation))) {
+                        allLocked.countDown();
+                        // only completes if all insertions hold their locks at the same time
+                        return allLocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertThat(future.get(), is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void should_serialize_concurrent_insertions_into_same_dataset() throws Exception {
+        commitSharedEntities();
+        OmObservation observation = createObservation("procedure_0", "feature_1", "degC");
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                boolean contended = i < THREADS;
+                futures.add(executor.submit(() -> {
+                    if (contended) {
+                        // the first insertions request the lock at the same time
+                        start.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    }
+                    try (DatasetInsertionLocks.Lease lease = locks.lock(Collections.singleton(observation))) {
+                        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        concurrent.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(maxConcurrent.get(), is(1));
+    }
+
+    @Test
+    public void should_lock_shared_entities_of_different_datasets() {
+        OmObservation first = createObservation("procedure_1", "feature_1", "degC");
+        OmObservation second = createObservation("procedure_2", "feature_2", "degC");
+        Set<String> shared = Sets.intersection(locks.getSharedEntityKeys(first), locks.getSharedEntityKeys(second));
+        assertThat(shared, hasItem("unit:degC"));
+        assertThat(shared, hasItem("property:property"));
+        assertThat(shared, hasItem("offering:offering"));
+        assertThat(shared, not(hasItem("procedure:procedure_1")));
+    }
+
+    @Test
+    public void should_not_lock_shared_entities_after_commit() {
+        OmObservation observation = createObservation("procedure", "feature", "degC");
+        try (DatasetInsertionLocks.Lease lease = locks.lock(Collections.singleton(observation))) {
+            assertThat(lease.getSharedKeys(), hasItem("unit:degC"));
+            lease.committed();
+        }
+        assertThat(locks.isCommitted("unit:degC"), is(true));
+        try (DatasetInsertionLocks.Lease lease = locks.lock(Collections.singleton(observation))) {
+            assertThat(lease.getSharedKeys().isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void should_lock_shared_entities_again_after_rollback() {
+        OmObservation observation = createObservation("procedure", "feature", "degC");
+        try (DatasetInsertionLocks.Lease lease = locks.lock(Collections.singleton(observation))) {
+            assertThat(lease.getSharedKeys(), hasItem("unit:degC"));
+        }
+        assertThat(locks.isCommitted("unit:degC"), is(false));
+    }
+
+    private boolean lockAndAwait(String dataset, CountDownLatch latch) throws InterruptedException {
+        try (DatasetInsertionLocks.Lease lease = locks.lockKeys(Collections.singleton(dataset))) {
+            latch.countDown();
+            return latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Insert a first observation, so the shared entities exist and only the
+     * datasets and features of further insertions are locked.
+     */
+    private void commitSharedEntities() {
+        try (DatasetInsertionLocks.Lease lease =
+                locks.lock(Collections.singleton(createObservation("procedure_0", "feature_0", "degC")))) {
+            lease.committed();
+        }
+    }
+
+    private List<OmObservation> createObservationsOfDifferentStripes(int count) {
+        List<OmObservation> observations = new ArrayList<>();
+        Set<Lock> used = Sets.newIdentityHashSet();
+        for (int i = 1; observations.size() < count; i++) {
+            // the datasets differ in the feature only, all shared entities exist
+            OmObservation observation = createObservation("procedure_0", "feature_" + i, "degC");
+            Set<Lock> stripes = Sets.newIdentityHashSet();
+            locks.getKeys(observation.getObservationConstellation()).forEach(key -> stripes.add(locks.getLock(key)));
+            if (Collections.disjoint(used, stripes)) {
+                used.addAll(stripes);
+                observations.add(observation);
+            }
+        }
+        return observations;
+    }
+
+    private String getKeyOfOtherStripe(String key) {
+        for (int i = 0;; i++) {
+            String other = "dataset_other_" + i;
+            if (locks.getLock(other) != locks.getLock(key)) {
+                return other;
+            }
+        }
+    }
+
+    private OmObservation createObservation(String procedure, String feature, String unit) {
+        OmObservation observation = new OmObservation();
+        observation.setObservationConstellation(createConstellation(procedure, feature));
+        QuantityValue value = new QuantityValue(1.0);
+        value.setUnit(unit);
+        observation.setValue(new SingleObservationValue<>(value));
+        return observation;
+    }
+
+    private OmObservationConstellation createConstellation(String procedure, String feature) {
+        SensorML sensorML = new SensorML();
+        sensorML.setIdentifier(procedure);
+        return new OmObservationConstellation()
+                .setProcedure(new SosProcedureDescription<AbstractFeature>(sensorML))
+                .setObservableProperty(new OmObservableProperty("property"))
+                .setFeatureOfInterest(new SamplingFeature(new CodeWithAuthority(feature)))
+                .setOfferings(Sets.newHashSet("offering"));
+    }
+}
@@ -187,6 +187,23 @@ public class TrajectoryObservationInsertDAOTest extends AbstractInsertDAOTest {
                 + "2013-07-18T07:00:00.000Z,2013-07-18T07:00:00.000Z,5.0000000000,53.1,7.56"));
     }
 
+    @Test
+    public void testGeneratedGetResultStreaming() throws OwsExceptionReport, ConverterException {
+        inserObservationData();
+        GetResultRequest request = new GetResultRequest();
+        request.setObservedProperty(OBSPROP3);
+        request.setOffering(OFFERING3);
+        String expected = getResultHandler.getResult(request).getResultValues();
+        getResultHandler.setResultStreaming(true);
+        try {
+            GetResultResponse response = getResultHandler.getResult(request);
+            assertThat(response, notNullValue());
+            assertThat(response.getResultValues(), is(expected));
+        } finally {
+            getResultHandler.setResultStreaming(false);
+        }
+    }
+
     private List<OmObservation> createDefaultObservation() throws OwsExceptionReport, ConverterException {
         OmObservation obs = new OmObservation();
 
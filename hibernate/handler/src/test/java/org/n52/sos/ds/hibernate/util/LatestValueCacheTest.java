@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.PhenomenonEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.shetland.ogc.gml.AbstractFeature;
+import org.n52.shetland.ogc.gml.CodeWithAuthority;
+import org.n52.shetland.ogc.om.OmObservableProperty;
+import org.n52.shetland.ogc.om.OmObservation;
+import org.n52.shetland.ogc.om.OmObservationConstellation;
+import org.n52.shetland.ogc.om.features.samplingFeatures.SamplingFeature;
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.sensorML.SensorML;
+import org.n52.shetland.ogc.sos.ExtendedIndeterminateTime;
+import org.n52.shetland.ogc.sos.SosProcedureDescription;
+import org.n52.shetland.ogc.sos.request.GetObservationRequest;
+import org.n52.shetland.ogc.sos.request.InsertObservationRequest;
+import org.n52.shetland.ogc.sos.request.InsertResultRequest;
+import org.n52.shetland.ogc.sos.response.InsertObservationResponse;
+import org.n52.shetland.ogc.sos.response.InsertResultResponse;
+import org.n52.shetland.ogc.swe.simpleType.SweText;
+import org.n52.shetland.ogc.swes.SwesExtension;
+import org.n52.sos.event.events.CompleteCacheUpdateFinished;
+import org.n52.sos.event.events.ObservationInsertion;
+import org.n52.sos.event.events.ResultInsertion;
+
+public class LatestValueCacheTest {
+
+    private static final String PROPERTY = "property";
+
+    private final LatestValueCache cache = new LatestValueCache();
+
+    private final GetObservationRequest request = new GetObservationRequest();
+
+    @Before
+    public void init() {
+        cache.setMaxSize(2);
+    }
+
+    @Test
+    public void should_return_copies_while_the_last_value_time_is_unchanged() {
+        DatasetEntity dataset = createDataset(1L, "procedure", "feature", new Date(1000));
+        List<OmObservation> observations = Collections.singletonList(createObservation("procedure", "feature"));
+        List<OmObservation> put = cache.put(dataset, ExtendedIndeterminateTime.LATEST, request, observations);
+
+        List<OmObservation> cached = cache.get(dataset, ExtendedIndeterminateTime.LATEST, request);
+        assertThat(cached, hasSize(1));
+        assertThat(cached.get(0), not(sameInstance(observations.get(0))));
+        assertThat(cached.get(0), not(sameInstance(put.get(0))));
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.FIRST, request), nullValue());
+
+        dataset.setLastValueAt(new Date(2000));
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, request), nullValue());
+    }
+
+    @Test
+    public void should_cache_each_requested_crs_separately() {
+        DatasetEntity dataset = createDataset(1L, "procedure", "feature", new Date(1000));
+        cache.put(dataset, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature")));
+
+        GetObservationRequest transformed = new GetObservationRequest();
+        SweText crs = (SweText) new SweText().setValue("4326")
+                .setIdentifier(OWSConstants.AdditionalRequestParams.crs.name());
+        transformed.addExtension(new SwesExtension<SweText>().setValue(crs)
+                .setIdentifier(OWSConstants.AdditionalRequestParams.crs.name()));
+
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, transformed), nullValue());
+        cache.put(dataset, ExtendedIndeterminateTime.LATEST, transformed,
+                Collections.singletonList(createObservation("procedure", "feature")));
+        List<OmObservation> cached = cache.get(dataset, ExtendedIndeterminateTime.LATEST, transformed);
+        assertThat(cached, hasSize(1));
+        assertThat(cached.get(0).getObservationConstellation(),
+                not(sameInstance(cache.get(dataset, ExtendedIndeterminateTime.LATEST, transformed).get(0)
+                        .getObservationConstellation())));
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, request), notNullValue());
+    }
+
+    @Test
+    public void should_evict_datasets_of_inserted_observations() {
+        DatasetEntity dataset = createDataset(1L, "procedure", "feature", new Date(1000));
+        DatasetEntity other = createDataset(2L, "procedure", "other", new Date(1000));
+        cache.put(dataset, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature")));
+        cache.put(other, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "other")));
+
+        InsertObservationRequest insertion = new InsertObservationRequest();
+        insertion.setObservation(Collections.singletonList(createObservation("procedure", "feature")));
+        cache.handle(new ObservationInsertion(insertion, new InsertObservationResponse()));
+
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, request), nullValue());
+        assertThat(cache.get(other, ExtendedIndeterminateTime.LATEST, request), notNullValue());
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void should_evict_datasets_of_inserted_results() {
+        DatasetEntity dataset = createDataset(1L, "procedure", "feature", new Date(1000));
+        DatasetEntity other = createDataset(2L, "procedure", "other", new Date(1000));
+        cache.put(dataset, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature")));
+        cache.put(other, ExtendedIndeterminateTime.FIRST, request,
+                Collections.singletonList(createObservation("procedure", "other")));
+
+        InsertResultResponse response = new InsertResultResponse();
+        response.setObservations(Collections.singletonList(createObservation("procedure", "other")));
+        cache.handle(new ResultInsertion(new InsertResultRequest(), response));
+
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, request), notNullValue());
+        assertThat(cache.get(other, ExtendedIndeterminateTime.FIRST, request), nullValue());
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void should_clear_the_datasets_after_complete_cache_updates() {
+        DatasetEntity dataset = createDataset(1L, "procedure", "feature", new Date(1000));
+        cache.put(dataset, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature")));
+        cache.handle(new CompleteCacheUpdateFinished());
+
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, request), nullValue());
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void should_evict_least_recently_used_datasets() {
+        DatasetEntity first = createDataset(1L, "procedure", "feature_1", new Date(1000));
+        DatasetEntity second = createDataset(2L, "procedure", "feature_2", new Date(1000));
+        DatasetEntity third = createDataset(3L, "procedure", "feature_3", new Date(1000));
+        cache.put(first, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature_1")));
+        cache.put(second, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature_2")));
+        cache.get(first, ExtendedIndeterminateTime.LATEST, request);
+        cache.put(third, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature_3")));
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get(first, ExtendedIndeterminateTime.LATEST, request), notNullValue());
+        assertThat(cache.get(second, ExtendedIndeterminateTime.LATEST, request), nullValue());
+    }
+
+    @Test
+    public void should_not_cache_if_disabled() {
+        cache.setMaxSize(0);
+        DatasetEntity dataset = createDataset(1L, "procedure", "feature", new Date(1000));
+        cache.put(dataset, ExtendedIndeterminateTime.LATEST, request,
+                Collections.singletonList(createObservation("procedure", "feature")));
+        assertThat(cache.isEnabled(), is(false));
+        assertThat(cache.get(dataset, ExtendedIndeterminateTime.LATEST, request), nullValue());
+    }
+
+    private DatasetEntity createDataset(long id, String procedure, String feature, Date lastValueAt) {
+        ProcedureEntity procedureEntity = new ProcedureEntity();
+        procedureEntity.setIdentifier(procedure);
+        PhenomenonEntity phenomenon = new PhenomenonEntity();
+        phenomenon.setIdentifier(PROPERTY);
+        FeatureEntity featureEntity = new FeatureEntity();
+        featureEntity.setIdentifier(feature);
+        DatasetEntity dataset = new DatasetEntity();
+        dataset.setId(id);
+        dataset.setProcedure(procedureEntity);
+        dataset.setPhenomenon(phenomenon);
+        dataset.setFeature(featureEntity);
+        dataset.setFirstValueAt(lastValueAt);
+        dataset.setLastValueAt(lastValueAt);
+        return dataset;
+    }
+
+    private OmObservation createObservation(String procedure, String feature) {
+        SensorML sensorML = new SensorML();
+        sensorML.setIdentifier(procedure);
+        OmObservation observation = new OmObservation();
+        observation.setObservationConstellation(new OmObservationConstellation()
+                .setProcedure(new SosProcedureDescription<AbstractFeature>(sensorML))
+                .setObservableProperty(new OmObservableProperty(PROPERTY))
+                .setFeatureOfInterest(new SamplingFeature(new CodeWithAuthority(feature))));
+        return observation;
+    }
+}
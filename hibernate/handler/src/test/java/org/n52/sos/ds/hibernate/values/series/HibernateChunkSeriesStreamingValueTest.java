@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.ds.hibernate.values.series;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.iceland.ds.ConnectionProvider;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.QuantityDataEntity;
+import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.shetland.ogc.sos.request.AbstractObservationRequest;
+import org.n52.shetland.ogc.sos.request.GetObservationRequest;
+import org.n52.sos.ds.hibernate.HibernateSessionHolder;
+import org.n52.sos.ds.hibernate.dao.DaoFactory;
+import org.n52.sos.ds.hibernate.dao.observation.series.AbstractSeriesValueDAO;
+import org.n52.sos.ds.hibernate.values.StreamingSessionScope;
+
+public class HibernateChunkSeriesStreamingValueTest {
+
+    private static final int CHUNK_SIZE = 2;
+
+    private final ConnectionProvider connectionProvider = mock(ConnectionProvider.class);
+
+    private final DaoFactory daoFactory = mock(DaoFactory.class);
+
+    private final AbstractSeriesValueDAO valueDAO = mock(AbstractSeriesValueDAO.class);
+
+    private final Session session = mock(Session.class);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final CountDownLatch querying = new CountDownLatch(1);
+
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    private StreamingSessionScope sessionScope;
+
+    @Before
+    public void init() throws Exception {
+        when(connectionProvider.getConnection()).thenReturn(session);
+        when(session.isOpen()).thenReturn(true);
+        when(daoFactory.getValueDAO()).thenReturn(valueDAO);
+        when(valueDAO.getStreamingSeriesValuesFor(any(AbstractObservationRequest.class), anyLong(), anyInt(),
+                anyInt(), any(Session.class))).thenReturn(createChunk());
+        sessionScope = new StreamingSessionScope(new HibernateSessionHolder(connectionProvider), session);
+    }
+
+    @After
+    public void shutdown() {
+        proceed.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void should_release_the_session_scope_if_too_many_values_are_returned() throws Exception {
+        HibernateChunkSeriesStreamingValue value = createValue();
+        value.setSessionScope(sessionScope);
+        value.setMaxNumberOfValues(1);
+        // the templates of the response are created
+        sessionScope.release();
+        try {
+            value.hasNext();
+            fail("The size limit of the response is exceeded");
+        } catch (OwsExceptionReport e) {
+            assertThat(sessionScope.isReleased(), is(true));
+            verify(connectionProvider).returnConnection(session);
+        }
+    }
+
+    @Test
+    public void should_release_the_session_scope_of_closed_values() throws Exception {
+        HibernateChunkSeriesStreamingValue first = createValue();
+        HibernateChunkSeriesStreamingValue second = createValue();
+        first.setSessionScope(sessionScope);
+        second.setSessionScope(sessionScope);
+        sessionScope.release();
+        first.close();
+        assertThat(sessionScope.isReleased(), is(false));
+        verify(connectionProvider, never()).returnConnection(session);
+        second.close();
+        assertThat(sessionScope.isReleased(), is(true));
+        verify(connectionProvider).returnConnection(session);
+    }
+
+    @Test
+    public void should_release_the_session_scope_of_a_partially_consumed_value() throws Exception {
+        HibernateChunkSeriesStreamingValue value = createValue();
+        value.setSessionScope(sessionScope);
+        sessionScope.release();
+        assertThat(value.hasNext(), is(true));
+        value.nextEntity();
+        // the encoding of the response stops before the value is exhausted
+        value.close();
+        assertThat(sessionScope.isReleased(), is(true));
+        verify(connectionProvider).returnConnection(session);
+        value.close();
+        verify(connectionProvider).returnConnection(session);
+    }
+
+    @Test
+    public void should_return_the_session_of_a_chunk_queried_while_aborting() throws Exception {
+        when(valueDAO.getStreamingSeriesValuesFor(any(AbstractObservationRequest.class), anyLong(), anyInt(),
+                anyInt(), any(Session.class))).thenReturn(createChunk()).thenAnswer(invocation -> {
+                    querying.countDown();
+                    proceed.await(10, TimeUnit.SECONDS);
+                    return createChunk();
+                });
+        HibernateChunkSeriesStreamingValue value = createValueWithReadAhead();
+        assertThat(value.hasNext(), is(true));
+        assertThat(querying.await(10, TimeUnit.SECONDS), is(true));
+        value.close();
+        proceed.countDown();
+        awaitReadAhead();
+        verify(connectionProvider, times(2)).getConnection();
+        verify(connectionProvider, times(2)).returnConnection(session);
+    }
+
+    @Test
+    public void should_return_the_session_of_a_chunk_queried_before_aborting() throws Exception {
+        HibernateChunkSeriesStreamingValue value = createValueWithReadAhead();
+        assertThat(value.hasNext(), is(true));
+        awaitReadAhead();
+        value.close();
+        verify(connectionProvider, times(2)).getConnection();
+        verify(connectionProvider, times(2)).returnConnection(session);
+    }
+
+    @Test
+    public void should_not_query_a_chunk_after_aborting() throws Exception {
+        // keep the read-ahead busy until the streaming value is aborted
+        executor.submit(() -> proceed.await(10, TimeUnit.SECONDS));
+        HibernateChunkSeriesStreamingValue value = createValueWithReadAhead();
+        assertThat(value.hasNext(), is(true));
+        value.close();
+        proceed.countDown();
+        awaitReadAhead();
+        verify(connectionProvider, times(1)).getConnection();
+        verify(connectionProvider, times(1)).returnConnection(session);
+    }
+
+    @Test
+    public void should_return_all_read_ahead_permits_of_an_abandoned_response() throws Exception {
+        // keep the read-ahead busy, the chunks of both series are still pending when the response is abandoned
+        executor.submit(() -> proceed.await(10, TimeUnit.SECONDS));
+        StreamingReadAhead readAhead = new StreamingReadAhead(executor, 3);
+        HibernateChunkSeriesStreamingValue first = createValue();
+        HibernateChunkSeriesStreamingValue second = createValue();
+        first.setReadAhead(readAhead);
+        second.setReadAhead(readAhead);
+        assertThat(first.hasNext(), is(true));
+        assertThat(readAhead.getAvailablePermits(), is(1));
+        first.close();
+        second.close();
+        assertThat(readAhead.getAvailablePermits(), is(3));
+        proceed.countDown();
+        awaitReadAhead();
+        assertThat(readAhead.getAvailablePermits(), is(3));
+        verify(connectionProvider, times(1)).getConnection();
+    }
+
+    @Test
+    public void should_return_all_read_ahead_permits_of_a_partially_consumed_response() throws Exception {
+        StreamingReadAhead readAhead = new StreamingReadAhead(executor, 2);
+        HibernateChunkSeriesStreamingValue first = createValue();
+        HibernateChunkSeriesStreamingValue second = createValue();
+        first.setReadAhead(readAhead);
+        second.setReadAhead(readAhead);
+        assertThat(first.hasNext(), is(true));
+        first.nextEntity();
+        awaitReadAhead();
+        assertThat(readAhead.getAvailablePermits(), is(0));
+        first.close();
+        second.close();
+        assertThat(readAhead.getAvailablePermits(), is(2));
+        verify(connectionProvider, times(3)).getConnection();
+        verify(connectionProvider, times(3)).returnConnection(session);
+    }
+
+    private HibernateChunkSeriesStreamingValue createValueWithReadAhead() throws OwsExceptionReport {
+        HibernateChunkSeriesStreamingValue value = createValue();
+        value.setReadAhead(new StreamingReadAhead(executor, 1));
+        return value;
+    }
+
+    private void awaitReadAhead() throws Exception {
+        // the read-ahead executor runs the queries in order
+        executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+    }
+
+    private HibernateChunkSeriesStreamingValue createValue() throws OwsExceptionReport {
+        return new HibernateChunkSeriesStreamingValue(connectionProvider, daoFactory, new GetObservationRequest(), 1L,
+                null, CHUNK_SIZE);
+    }
+
+    private List<DataEntity<?>> createChunk() {
+        List<DataEntity<?>> chunk = new ArrayList<>();
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            chunk.add(new QuantityDataEntity());
+        }
+        return chunk;
+    }
+}
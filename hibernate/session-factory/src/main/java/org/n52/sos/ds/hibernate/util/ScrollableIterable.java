@@ -33,6 +33,7 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
 import org.hibernate.ScrollableResults;
 
 /**
@@ -43,10 +44,17 @@ import org.hibernate.ScrollableResults;
 public class ScrollableIterable<T> implements Iterable<T>, Closeable {
     private final ScrollableResults results;
 
+    private final boolean rows;
+
     private Iterator<T> iterator;
 
     public ScrollableIterable(ScrollableResults results) {
+        this(results, false);
+    }
+
+    private ScrollableIterable(ScrollableResults results, boolean rows) {
         this.results = results;
+        this.rows = rows;
     }
 
     public static <T> ScrollableIterable<T> fromResults(ScrollableResults sr) {
@@ -57,6 +65,18 @@ public class ScrollableIterable<T> implements Iterable<T>, Closeable {
         return new ScrollableIterable<>(c.scroll());
     }
 
+    /**
+     * Creates a forward only iterable of the rows of a criteria with a
+     * projection list, each row containing all projected values.
+     *
+     * @param c
+     *            the criteria
+     * @return the rows
+     */
+    public static ScrollableIterable<Object[]> fromProjection(Criteria c) {
+        return new ScrollableIterable<>(c.scroll(ScrollMode.FORWARD_ONLY), true);
+    }
+
     @Override
     public Iterator<T> iterator() {
         if (iterator != null) {
@@ -88,7 +108,7 @@ public class ScrollableIterable<T> implements Iterable<T>, Closeable {
         public T next() {
             if (hasNext != null && hasNext) {
                 hasNext = null;
-                return (T) results.get(0);
+                return (T) (rows ? results.get() : results.get(0));
             } else {
                 throw new NoSuchElementException();
             }
@@ -150,6 +150,19 @@ public final class SpatialRestrictions {
         return org.hibernate.spatial.criterion.SpatialRestrictions.isNotEmpty(propertyName);
     }
 
+    /**
+     * Get the bounding box filter restriction, which is evaluated with the
+     * spatial index by dialects supporting filtering.
+     *
+     * @param propertyName column name
+     * @param value        the geometry
+     *
+     * @return filter restriction
+     */
+    public static Criterion indexFilter(String propertyName, Geometry value) {
+        return org.hibernate.spatial.criterion.SpatialRestrictions.filter(propertyName, value);
+    }
+
     public static Criterion spatialRestriction(int relation, String propertyName, Geometry value) {
         return org.hibernate.spatial.criterion.SpatialRestrictions.spatialRestriction(relation,
                                                                                       propertyName,
@@ -35,6 +35,8 @@ import java.util.SortedSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.inject.Inject;
+
 import org.n52.iceland.exception.ows.concrete.InvalidAcceptVersionsParameterException;
 import org.n52.janmayen.function.Functions;
 import org.n52.janmayen.http.HTTPMethods;
@@ -53,20 +55,38 @@ import org.n52.shetland.ogc.ows.exception.CompositeOwsException;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesRequest;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesResponse;
+import org.n52.shetland.ogc.ows.service.OwsServiceRequest;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
 import org.n52.shetland.ogc.sos.SosCapabilities;
 import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.shetland.ogc.sos.SosObservationOffering;
 import org.n52.sos.ds.AbstractGetCapabilitiesHandler;
+import org.n52.sos.service.CapabilitiesResponseCache;
 
 public class AqdGetCapabilitiesOperatorV10 extends
         AbstractAqdRequestOperator<AbstractGetCapabilitiesHandler, GetCapabilitiesRequest, GetCapabilitiesResponse> {
 
     private static final String OPERATION_NAME = SosConstants.Operations.GetCapabilities.name();
 
+    private CapabilitiesResponseCache capabilitiesResponseCache;
+
     public AqdGetCapabilitiesOperatorV10() {
         super(OPERATION_NAME, GetCapabilitiesRequest.class);
     }
 
+    @Inject
+    public void setCapabilitiesResponseCache(CapabilitiesResponseCache capabilitiesResponseCache) {
+        this.capabilitiesResponseCache = capabilitiesResponseCache;
+    }
+
+    @Override
+    public OwsServiceResponse receiveRequest(OwsServiceRequest request) throws OwsExceptionReport {
+        if (capabilitiesResponseCache != null && request instanceof GetCapabilitiesRequest) {
+            return capabilitiesResponseCache.get((GetCapabilitiesRequest) request, () -> super.receiveRequest(request));
+        }
+        return super.receiveRequest(request);
+    }
+
     @Override
     public GetCapabilitiesResponse receive(GetCapabilitiesRequest request) throws OwsExceptionReport {
         return modifyCapabilities((GetCapabilitiesResponse) changeResponseServiceVersion(
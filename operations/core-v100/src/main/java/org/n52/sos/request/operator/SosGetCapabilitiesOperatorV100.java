@@ -31,12 +31,17 @@ package org.n52.sos.request.operator;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.inject.Inject;
+
 import org.n52.shetland.ogc.sos.Sos1Constants;
 import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesRequest;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesResponse;
+import org.n52.shetland.ogc.ows.service.OwsServiceRequest;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.sos.ds.AbstractGetCapabilitiesHandler;
+import org.n52.sos.service.CapabilitiesResponseCache;
 
 /**
  * @since 4.0.0
@@ -50,10 +55,25 @@ public class SosGetCapabilitiesOperatorV100 extends
 
     private static final String OPERATION_NAME = SosConstants.Operations.GetCapabilities.name();
 
+    private CapabilitiesResponseCache capabilitiesResponseCache;
+
     public SosGetCapabilitiesOperatorV100() {
         super(OPERATION_NAME, GetCapabilitiesRequest.class);
     }
 
+    @Inject
+    public void setCapabilitiesResponseCache(CapabilitiesResponseCache capabilitiesResponseCache) {
+        this.capabilitiesResponseCache = capabilitiesResponseCache;
+    }
+
+    @Override
+    public OwsServiceResponse receiveRequest(OwsServiceRequest request) throws OwsExceptionReport {
+        if (capabilitiesResponseCache != null && request instanceof GetCapabilitiesRequest) {
+            return capabilitiesResponseCache.get((GetCapabilitiesRequest) request, () -> super.receiveRequest(request));
+        }
+        return super.receiveRequest(request);
+    }
+
     @Override
     public Set<String> getConformanceClasses(String service, String version) {
         if (SosConstants.SOS.equals(service) && Sos1Constants.SERVICEVERSION.equals(version)) {
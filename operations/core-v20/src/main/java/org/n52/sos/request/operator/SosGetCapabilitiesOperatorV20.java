@@ -31,13 +31,18 @@ package org.n52.sos.request.operator;
 import java.util.Collections;
 import java.util.Set;
 
+import javax.inject.Inject;
+
 import org.n52.shetland.ogc.ows.exception.CompositeOwsException;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesRequest;
 import org.n52.shetland.ogc.ows.service.GetCapabilitiesResponse;
+import org.n52.shetland.ogc.ows.service.OwsServiceRequest;
+import org.n52.shetland.ogc.ows.service.OwsServiceResponse;
 import org.n52.shetland.ogc.sos.Sos2Constants;
 import org.n52.shetland.ogc.sos.SosConstants;
 import org.n52.sos.ds.AbstractGetCapabilitiesHandler;
+import org.n52.sos.service.CapabilitiesResponseCache;
 import org.n52.sos.wsdl.Metadata;
 import org.n52.sos.wsdl.Metadatas;
 import org.n52.svalbard.ConformanceClasses;
@@ -53,10 +58,25 @@ public class SosGetCapabilitiesOperatorV20 extends
     private static final Set<String> CONFORMANCE_CLASSES = Collections
             .singleton(ConformanceClasses.SOS_V2_CORE_PROFILE);
 
+    private CapabilitiesResponseCache capabilitiesResponseCache;
+
     public SosGetCapabilitiesOperatorV20() {
         super(OPERATION_NAME, GetCapabilitiesRequest.class);
     }
 
+    @Inject
+    public void setCapabilitiesResponseCache(CapabilitiesResponseCache capabilitiesResponseCache) {
+        this.capabilitiesResponseCache = capabilitiesResponseCache;
+    }
+
+    @Override
+    public OwsServiceResponse receiveRequest(OwsServiceRequest request) throws OwsExceptionReport {
+        if (capabilitiesResponseCache != null && request instanceof GetCapabilitiesRequest) {
+            return capabilitiesResponseCache.get((GetCapabilitiesRequest) request, () -> super.receiveRequest(request));
+        }
+        return super.receiveRequest(request);
+    }
+
     @Override
     public Set<String> getConformanceClasses(String service, String version) {
         if (SosConstants.SOS.equals(service) && Sos2Constants.SERVICEVERSION.equals(version)) {
@@ -28,12 +28,16 @@
  */
 package org.n52.sos.web.admin;
 
+import java.util.Optional;
+
+import javax.inject.Inject;
 import javax.servlet.UnavailableException;
 
 import org.n52.iceland.exception.JSONException;
 import org.n52.janmayen.Json;
 import org.n52.shetland.ogc.ows.exception.CompositeOwsException;
 import org.n52.shetland.ogc.ows.exception.OwsExceptionReport;
+import org.n52.sos.ds.CacheFeederHandler;
 import org.n52.sos.web.common.ControllerConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,11 +57,16 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 public class AdminReloadCacheController extends AbstractAdminController {
     private static final Logger LOG = LoggerFactory.getLogger(AdminReloadCacheController.class);
 
+    @Inject
+    private Optional<CacheFeederHandler> cacheFeederHandler;
+
     @RequestMapping(value = ControllerConstants.Paths.ADMIN_RELOAD_CAPABILITIES_CACHE, method = RequestMethod.POST)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void reload() throws OwsExceptionReport, UnavailableException {
         if (!cacheIsLoading()) {
             LOG.debug("Reloading Capabilitities Cache");
+            // reloading from the admin interface always rebuilds the complete cache
+            cacheFeederHandler.ifPresent(CacheFeederHandler::resetDeltaUpdate);
             updateCache();
         }
         // TODO display other message here because the WebUI is displaying
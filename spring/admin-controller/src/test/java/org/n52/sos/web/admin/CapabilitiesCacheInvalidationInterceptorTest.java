@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.web.admin;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.service.CapabilitiesResponseCache;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class CapabilitiesCacheInvalidationInterceptorTest {
+
+    private final CapabilitiesCacheInvalidationInterceptor interceptor =
+            new CapabilitiesCacheInvalidationInterceptor();
+
+    private final CapabilitiesResponseCache cache = mock(CapabilitiesResponseCache.class);
+
+    @Before
+    public void setUp() {
+        interceptor.setCapabilitiesResponseCache(cache);
+    }
+
+    @Test
+    public void should_clear_cache_after_modifying_requests() {
+        complete("POST");
+        complete("DELETE");
+        verify(cache, times(2)).clear();
+    }
+
+    @Test
+    public void should_clear_cache_after_failed_modifying_requests() {
+        interceptor.afterCompletion(new MockHttpServletRequest("POST", "/admin/settings"),
+                new MockHttpServletResponse(), null, new IllegalStateException());
+        verify(cache).clear();
+    }
+
+    @Test
+    public void should_not_clear_cache_after_reading_requests() {
+        complete("GET");
+        complete("HEAD");
+        verify(cache, never()).clear();
+    }
+
+    private void complete(String method) {
+        interceptor.afterCompletion(new MockHttpServletRequest(method, "/admin/settings"),
+                new MockHttpServletResponse(), null, null);
+    }
+}
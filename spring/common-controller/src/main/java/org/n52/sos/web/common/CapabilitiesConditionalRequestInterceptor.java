@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.web.common;
+
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.n52.shetland.ogc.ows.OWSConstants;
+import org.n52.shetland.ogc.ows.service.OwsServiceRequestContext;
+import org.n52.shetland.ogc.sos.SosConstants;
+import org.n52.sos.service.CapabilitiesResponseCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Adds {@code ETag} and {@code Last-Modified} headers to GetCapabilities
+ * requests via HTTP GET and answers conditional requests with {@code 304 Not
+ * Modified}, if the {@link CapabilitiesResponseCache} is enabled and was not
+ * cleared since. The entity tag depends on the {@code Accept-Language} header
+ * and on whether the client may see the transactional operations, so the
+ * responses vary by {@code Accept-Language}.
+ *
+ * @since 5.1.1
+ */
+public class CapabilitiesConditionalRequestInterceptor implements HandlerInterceptor {
+
+    private static final Splitter ETAG_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private CapabilitiesResponseCache capabilitiesResponseCache;
+
+    @Inject
+    public void setCapabilitiesResponseCache(CapabilitiesResponseCache capabilitiesResponseCache) {
+        this.capabilitiesResponseCache = capabilitiesResponseCache;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!isCapabilitiesRequest(request)) {
+            return true;
+        }
+        String eTag = capabilitiesResponseCache.getETag(request.getQueryString(),
+                request.getHeader(HttpHeaders.ACCEPT_LANGUAGE), capabilitiesResponseCache
+                        .showTransactionalOperations(OwsServiceRequestContext.fromRequest(request)));
+        long lastModified = capabilitiesResponseCache.getLastModified();
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE);
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        if (isNotModified(request, eTag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isCapabilitiesRequest(HttpServletRequest request) {
+        return capabilitiesResponseCache != null && capabilitiesResponseCache.isEnabled()
+                && HttpMethod.GET.matches(request.getMethod())
+                && SosConstants.Operations.GetCapabilities.name()
+                        .equalsIgnoreCase(getParameter(request, OWSConstants.RequestParams.request.name()));
+    }
+
+    private String getParameter(HttpServletRequest request, String name) {
+        // KVP parameter names are case insensitive
+        for (String parameter : request.getParameterMap().keySet()) {
+            if (parameter.equalsIgnoreCase(name)) {
+                return request.getParameter(parameter);
+            }
+        }
+        return null;
+    }
+
+    private boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ETAG_SPLITTER.split(ifNoneMatch)) {
+                if (candidate.startsWith(WEAK_PREFIX)) {
+                    candidate = candidate.substring(WEAK_PREFIX.length());
+                }
+                if (candidate.equals(eTag) || candidate.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try {
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince >= 0 && ifModifiedSince >= lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2012-2020 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public
+ * License version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ */
+package org.n52.sos.web.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.n52.sos.service.CapabilitiesResponseCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class CapabilitiesConditionalRequestInterceptorTest {
+
+    private static final String ETAG = "\"1000-abc\"";
+
+    private static final long LAST_MODIFIED = 1_000_000L;
+
+    private final CapabilitiesConditionalRequestInterceptor interceptor =
+            new CapabilitiesConditionalRequestInterceptor();
+
+    private final CapabilitiesResponseCache cache = mock(CapabilitiesResponseCache.class);
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Before
+    public void setUp() {
+        when(cache.isEnabled()).thenReturn(true);
+        when(cache.getETag(anyString(), isNull(), anyBoolean())).thenReturn(ETAG);
+        when(cache.showTransactionalOperations(any())).thenReturn(true);
+        when(cache.getLastModified()).thenReturn(LAST_MODIFIED);
+        interceptor.setCapabilitiesResponseCache(cache);
+    }
+
+    @Test
+    public void should_add_validators_to_capabilities_requests() {
+        assertTrue(interceptor.preHandle(getCapabilities(), response, null));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(LAST_MODIFIED, response.getDateHeader(HttpHeaders.LAST_MODIFIED));
+        assertEquals(HttpHeaders.ACCEPT_LANGUAGE, response.getHeader(HttpHeaders.VARY));
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void should_distinguish_languages_and_transactional_clients() {
+        String germanETag = "\"1000-de\"";
+        String nonTransactionalETag = "\"1000-nt\"";
+        when(cache.getETag(anyString(), eq("de"), eq(true))).thenReturn(germanETag);
+        when(cache.getETag(anyString(), isNull(), eq(false))).thenReturn(nonTransactionalETag);
+
+        MockHttpServletRequest german = getCapabilities();
+        german.addHeader(HttpHeaders.ACCEPT_LANGUAGE, "de");
+        german.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertTrue(interceptor.preHandle(german, response, null));
+        assertEquals(germanETag, response.getHeader(HttpHeaders.ETAG));
+
+        when(cache.showTransactionalOperations(any())).thenReturn(false);
+        MockHttpServletResponse nonTransactional = new MockHttpServletResponse();
+        MockHttpServletRequest request = getCapabilities();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertTrue(interceptor.preHandle(request, nonTransactional, null));
+        assertEquals(nonTransactionalETag, nonTransactional.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void should_answer_matching_etags_with_not_modified() {
+        assertNotModified("\"other\", " + ETAG);
+        assertNotModified("W/" + ETAG);
+        assertNotModified("*");
+    }
+
+    @Test
+    public void should_handle_requests_with_other_etags() {
+        MockHttpServletRequest request = getCapabilities();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"999-abc\"");
+        // If-None-Match takes precedence over If-Modified-Since
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED);
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void should_answer_unmodified_requests_with_not_modified() {
+        MockHttpServletRequest request = getCapabilities();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED);
+        assertFalse(interceptor.preHandle(request, response, null));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+    }
+
+    @Test
+    public void should_handle_modified_requests() {
+        MockHttpServletRequest request = getCapabilities();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED - 1000L);
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+    }
+
+    @Test
+    public void should_accept_case_insensitive_parameter_names() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/service");
+        request.setParameter("REQUEST", "getcapabilities");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertFalse(interceptor.preHandle(request, response, null));
+    }
+
+    @Test
+    public void should_ignore_other_requests() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/service");
+        request.setParameter("request", "GetObservation");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void should_ignore_post_requests() {
+        MockHttpServletRequest request = getCapabilities();
+        request.setMethod("POST");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    public void should_ignore_requests_if_disabled() {
+        when(cache.isEnabled()).thenReturn(false);
+        MockHttpServletRequest request = getCapabilities();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    private void assertNotModified(String ifNoneMatch) {
+        MockHttpServletRequest request = getCapabilities();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request, notModified, null));
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.getStatus());
+        assertEquals(ETAG, notModified.getHeader(HttpHeaders.ETAG));
+    }
+
+    private MockHttpServletRequest getCapabilities() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/service");
+        request.setQueryString("service=SOS&request=GetCapabilities");
+        request.setParameter("service", "SOS");
+        request.setParameter("request", "GetCapabilities");
+        return request;
+    }
+}